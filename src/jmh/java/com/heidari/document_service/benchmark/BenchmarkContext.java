@@ -0,0 +1,118 @@
+package com.heidari.document_service.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heidari.document_service.DocumentServiceApplication;
+import com.heidari.document_service.dto.CreateDocumentRequest;
+import com.heidari.document_service.service.BulkIngestService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Starts the application (without a web server, except for the load test) against a fresh embedded H2 database.
+ * <p>
+ * The datasource settings come from the test resources (H2 in PostgreSQL mode); every context gets
+ * its own database.
+ * Settings are passed as command line arguments because those take precedence over any
+ * application.properties on the classpath.
+ */
+final class BenchmarkContext {
+
+    static final long SEED = 42;
+
+    private BenchmarkContext() {}
+
+    /**
+     * @param engine     "index" or "specification".
+     * @param properties Extra "--name=value" arguments.
+     * @return A running context; close it in the benchmark's @TearDown.
+     */
+    static ConfigurableApplicationContext start(String engine, String... properties) {
+        List<String> arguments = new ArrayList<>(defaults());
+        arguments.add("--document.search.engine=" + engine);
+        arguments.add("--document.search.cache.enabled=false"); // measure the search, not the cache
+        arguments.addAll(Arrays.asList(properties));
+        return run(WebApplicationType.NONE, arguments);
+    }
+
+    /**
+     * Starts the application with its web server on a random port (see "local.server.port"), for the load test.
+     * The arguments replace the defaults with the same name, so "--spring.datasource.*" points it at another
+     * database (e.g. a local PostgreSQL) instead of a fresh embedded H2 one.
+     *
+     * @param properties "--name=value" arguments.
+     */
+    static ConfigurableApplicationContext startServer(List<String> properties) {
+        Map<String, String> arguments = new LinkedHashMap<>();
+        for (String argument : defaults()) {
+            arguments.put(name(argument), argument);
+        }
+        arguments.put("--server.port", "--server.port=0");
+        for (String argument : properties) {
+            arguments.put(name(argument), argument);
+        }
+        return run(WebApplicationType.SERVLET, new ArrayList<>(arguments.values()));
+    }
+
+    private static List<String> defaults() {
+        return List.of(
+                // The test datasource, minus H2's own shutdown hook (which races with the context's)
+                "--spring.datasource.url=jdbc:h2:mem:benchmark-" + System.nanoTime()
+                        + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_ON_EXIT=FALSE",
+                "--document.ingest.batch-size=500",
+                "--document.ingest.commit-interval=10",
+                "--spring.docker.compose.enabled=false",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN");
+    }
+
+    private static String name(String argument) {
+        int equals = argument.indexOf('=');
+        return equals < 0 ? argument : argument.substring(0, equals);
+    }
+
+    private static ConfigurableApplicationContext run(WebApplicationType type, List<String> arguments) {
+        // DevTools would restart the context in a new class loader; it only reads this as a system property
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        SpringApplication application = new SpringApplication(DocumentServiceApplication.class);
+        application.setWebApplicationType(type);
+        return application.run(arguments.toArray(String[]::new));
+    }
+
+    /**
+     * Inserts documents through the bulk ingest path.
+     */
+    static void seed(ConfigurableApplicationContext context, List<CreateDocumentRequest> documents) {
+        byte[] ndjson = ndjson(context.getBean(ObjectMapper.class), documents);
+        try {
+            context.getBean(BulkIngestService.class).ingest(new ByteArrayInputStream(ndjson));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The documents as NDJSON (one object per line).
+     */
+    static byte[] ndjson(ObjectMapper objectMapper, List<CreateDocumentRequest> documents) {
+        StringBuilder body = new StringBuilder();
+        try {
+            for (CreateDocumentRequest document : documents) {
+                body.append(objectMapper.writeValueAsString(document)).append('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,25 @@
+package com.heidari.document_service.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Entry point of the "benchmark" Maven profile: creates the directory of the JSON result file
+ * ("-rff"), which JMH expects to exist, then hands over to JMH's own command line.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {}
+
+    public static void main(String[] args) throws Exception {
+        for (int i = 0; i < args.length - 1; i++) {
+            if ("-rff".equals(args[i])) {
+                Path parent = Path.of(args[i + 1]).toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+            }
+        }
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,96 @@
+package com.heidari.document_service.benchmark;
+
+import com.heidari.document_service.service.DocumentService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compressed vs. plain "content" column: write and read throughput, and bytes stored per body.
+ * <p>
+ * With compression=true, bodies of 4 KB use LZ4 and bodies of 32 KB use Deflate
+ * (see ContentCompressor); compression=false is the plain TEXT column.
+ * "readDocument" loads a document and reads its body (decoding it); paths that never read the body
+ * (e.g. view=summary) are unaffected by compression. The "storedBytesPerDocument" secondary result
+ * is the average size of the stored body (encoded, or plain ASCII text) over the seeded corpus.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ContentStorageBenchmark {
+
+    @Param({"true", "false"})
+    public boolean compression;
+
+    @Param({"4096", "32768"})
+    public int contentLength;
+
+    @Param("1000")
+    public int documentCount;
+
+    @Param("100")
+    public int tagCardinality;
+
+    private ConfigurableApplicationContext context;
+    private DocumentService documentService;
+    private JdbcTemplate jdbcTemplate;
+    private CorpusGenerator corpus;
+    private long firstId;
+    private long storedBytesPerDocument;
+    private long next;
+
+    /**
+     * Secondary result reported next to the throughput.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Storage {
+        public long storedBytesPerDocument;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        corpus = new CorpusGenerator(BenchmarkContext.SEED, contentLength, tagCardinality);
+        context = BenchmarkContext.start("index",
+                "--document.storage.compression.enabled=" + compression,
+                "--document.storage.inline-threshold=" + Integer.MAX_VALUE); // keep every body in the row
+        BenchmarkContext.seed(context, corpus.next(documentCount));
+        documentService = context.getBean(DocumentService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        firstId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM document", Long.class);
+        storedBytesPerDocument = jdbcTemplate.queryForObject(
+                "SELECT AVG(COALESCE(OCTET_LENGTH(compressed_content), LENGTH(content))) FROM document",
+                Long.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long createDocument(Storage storage) {
+        // JMH resets the counters before every iteration; re-publishing the value costs one field write
+        storage.storedBytesPerDocument = storedBytesPerDocument;
+        return documentService.createDocument(corpus.next());
+    }
+
+    @Benchmark
+    public int readDocument(Storage storage) {
+        storage.storedBytesPerDocument = storedBytesPerDocument;
+        long id = firstId + (next++ % documentCount);
+        return documentService.findDocument(id).orElseThrow().getContent().length();
+    }
+}
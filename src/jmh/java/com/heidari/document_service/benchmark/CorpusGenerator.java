@@ -0,0 +1,135 @@
+package com.heidari.document_service.benchmark;
+
+import com.heidari.document_service.dto.CreateDocumentRequest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates a reproducible synthetic corpus for the benchmarks.
+ * <p>
+ * The same seed and settings always produce the same documents, so runs on different commits
+ * measure the same workload. Words are drawn from a fixed vocabulary (so queries are guaranteed
+ * to match) and tags from "tag-0" .. "tag-(cardinality - 1)".
+ * <p>
+ * With a skew above 0, tags and query words follow Zipf's law (see {@link Zipf}) instead of a uniform
+ * distribution: "tag-0" and the first words of the vocabulary are the most frequent.
+ */
+public final class CorpusGenerator {
+
+    private static final String[] VOCABULARY = {
+            "java", "spring", "boot", "hibernate", "postgres", "index", "search", "query", "cache", "thread",
+            "stream", "batch", "cursor", "page", "token", "document", "service", "tag", "title", "content",
+            "kernel", "network", "socket", "buffer", "memory", "heap", "garbage", "collector", "latency", "throughput",
+            "cluster", "replica", "shard", "leader", "follower", "commit", "rollback", "isolation", "snapshot", "lock",
+            "python", "kotlin", "scala", "rust", "golang", "compiler", "runtime", "bytecode", "vector", "matrix",
+            "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel", "india", "juliet",
+            "kilo", "lima", "mike", "november"
+    };
+
+    private static final int TAGS_PER_DOCUMENT = 3;
+
+    private final Random random;
+    private final int contentLength;
+    private final int tagCardinality;
+    private final Zipf tagRanks;       // null: uniform
+    private final Zipf queryRanks;     // null: uniform
+
+    /**
+     * @param seed           Seed of the pseudo-random sequence.
+     * @param contentLength  Approximate number of characters per document body.
+     * @param tagCardinality Number of distinct tag names.
+     */
+    public CorpusGenerator(long seed, int contentLength, int tagCardinality) {
+        this(seed, contentLength, tagCardinality, 0);
+    }
+
+    /**
+     * @param seed           Seed of the pseudo-random sequence.
+     * @param contentLength  Approximate number of characters per document body.
+     * @param tagCardinality Number of distinct tag names.
+     * @param skew           Zipf exponent of tags and query words (0 for uniform).
+     */
+    public CorpusGenerator(long seed, int contentLength, int tagCardinality, double skew) {
+        this.random = new Random(seed);
+        this.contentLength = contentLength;
+        this.tagCardinality = tagCardinality;
+        this.tagRanks = skew > 0 ? new Zipf(tagCardinality, skew) : null;
+        this.queryRanks = skew > 0 ? new Zipf(VOCABULARY.length, skew) : null;
+    }
+
+    /** @return The next document of the sequence. */
+    public CreateDocumentRequest next() {
+        CreateDocumentRequest request = new CreateDocumentRequest();
+        request.setTitle(sentence(40));
+        request.setContent(sentence(contentLength));
+
+        Set<String> tags = new LinkedHashSet<>();
+        while (tags.size() < Math.min(TAGS_PER_DOCUMENT, tagCardinality)) {
+            tags.add(tagName(tag()));
+        }
+        request.setTags(new ArrayList<>(tags));
+        return request;
+    }
+
+    /** @return The next "count" documents of the sequence. */
+    public List<CreateDocumentRequest> next(int count) {
+        List<CreateDocumentRequest> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            documents.add(next());
+        }
+        return documents;
+    }
+
+    /**
+     * @param count Number of queries.
+     * @param tags  True for tag names (tag mode), false for vocabulary words.
+     * @return Queries that are guaranteed to occur in the corpus.
+     */
+    public String[] queries(int count, boolean tags) {
+        String[] queries = new String[count];
+        for (int i = 0; i < count; i++) {
+            queries[i] = tags ? tagName(tag()) : query();
+        }
+        return queries;
+    }
+
+    /**
+     * @param tag True for a tag name (tag mode), false for a vocabulary word.
+     * @return The next query of the sequence.
+     */
+    public String query(boolean tag) {
+        return tag ? tagName(tag()) : query();
+    }
+
+    /** @return The name of the i-th tag. */
+    public static String tagName(int i) {
+        return "tag-" + i;
+    }
+
+    private String sentence(int length) {
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            if (!text.isEmpty()) {
+                text.append(' ');
+            }
+            text.append(word());
+        }
+        return text.toString();
+    }
+
+    private int tag() {
+        return tagRanks != null ? tagRanks.sample(random) : random.nextInt(tagCardinality);
+    }
+
+    private String query() {
+        return queryRanks != null ? VOCABULARY[queryRanks.sample(random)] : word();
+    }
+
+    private String word() {
+        return VOCABULARY[random.nextInt(VOCABULARY.length)];
+    }
+}
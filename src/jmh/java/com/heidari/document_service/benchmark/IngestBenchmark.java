@@ -0,0 +1,103 @@
+package com.heidari.document_service.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heidari.document_service.dto.BulkIngestReport;
+import com.heidari.document_service.service.BulkIngestService;
+import com.heidari.document_service.service.DocumentService;
+import com.heidari.document_service.service.TagDictionary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write paths: single and bulk document creation, and tag name resolution.
+ * Scores are documents (or tag lookups) per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IngestBenchmark {
+
+    private static final int BULK_SIZE = 500;
+    private static final int TAGS_PER_LOOKUP = 10;
+
+    @Param("1000")
+    public int documentCount;
+
+    @Param("500")
+    public int contentLength;
+
+    @Param("100")
+    public int tagCardinality;
+
+    private ConfigurableApplicationContext context;
+    private DocumentService documentService;
+    private BulkIngestService bulkIngestService;
+    private TagDictionary tagDictionary;
+    private CorpusGenerator corpus;
+    private byte[] bulkBody;
+    private List<String> knownTags;
+    private long newTagCounter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        corpus = new CorpusGenerator(BenchmarkContext.SEED, contentLength, tagCardinality);
+        context = BenchmarkContext.start("index");
+        BenchmarkContext.seed(context, corpus.next(documentCount));
+
+        documentService = context.getBean(DocumentService.class);
+        bulkIngestService = context.getBean(BulkIngestService.class);
+        tagDictionary = context.getBean(TagDictionary.class);
+        bulkBody = BenchmarkContext.ndjson(context.getBean(ObjectMapper.class), corpus.next(BULK_SIZE));
+
+        knownTags = new ArrayList<>();
+        for (int i = 0; i < TAGS_PER_LOOKUP; i++) {
+            knownTags.add(CorpusGenerator.tagName(i % tagCardinality));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long createDocument() {
+        return documentService.createDocument(corpus.next());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_SIZE)
+    public BulkIngestReport bulkIngest() throws IOException {
+        return bulkIngestService.ingest(new ByteArrayInputStream(bulkBody));
+    }
+
+    /** Names already in the dictionary: answered from memory. */
+    @Benchmark
+    @OperationsPerInvocation(TAGS_PER_LOOKUP)
+    public Map<String, Long> resolveKnownTags() {
+        return tagDictionary.resolve(knownTags);
+    }
+
+    /** A brand-new name per lookup: one upsert plus one query each. */
+    @Benchmark
+    public Map<String, Long> resolveNewTag() {
+        return tagDictionary.resolve(List.of("new-tag-" + newTagCounter++));
+    }
+}
@@ -0,0 +1,187 @@
+package com.heidari.document_service.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.heidari.document_service.benchmark.LoadWorkload.Operation;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and throughput of one load test run, per operation (endpoint and mode).
+ * <p>
+ * Educational Note:
+ * Two latencies are recorded for every request, in HdrHistograms (exact to 3 significant digits at any
+ * magnitude, so p99.9 is as trustworthy as p50):
+ * - "latency": from the time the request was due to be sent (by the arrival schedule) to its response.
+ *   This is what a user sees. When the service stalls, the requests due during the stall are still
+ *   counted from their due time, so the stall shows up in the percentiles; a closed-loop client that
+ *   waits before sending its next request would record just one slow request ("coordinated omission").
+ * - "service time": from the time it was actually sent. The gap between the two shows queueing in the
+ *   client: if it is large, the client, not the service, was the bottleneck and the run is not valid.
+ * <p>
+ * The report is written as JSON, whose fields have a fixed order, so runs on two commits can be diffed,
+ * or compared with --load.baseline.
+ */
+final class LoadReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    /** Counters and histograms of one operation; recorded from the HTTP client's threads. */
+    static final class Stats {
+        final Histogram latency = new ConcurrentHistogram(3);
+        final Histogram serviceTime = new ConcurrentHistogram(3);
+        final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        final LongAdder failures = new LongAdder();   // no response (connection error, timeout)
+        final LongAdder dropped = new LongAdder();    // not sent: too many requests outstanding
+
+        void record(int status, long dueNanos, long sentNanos, long completedNanos) {
+            statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+            latency.recordValue(completedNanos - dueNanos);
+            serviceTime.recordValue(completedNanos - sentNanos);
+        }
+
+        long successes() {
+            return statuses.entrySet().stream()
+                    .filter(entry -> entry.getKey() < 400)
+                    .mapToLong(entry -> entry.getValue().sum())
+                    .sum();
+        }
+    }
+
+    private final Map<Operation, Stats> stats = new LinkedHashMap<>();
+
+    LoadReport(List<Operation> operations) {
+        operations.forEach(operation -> stats.put(operation, new Stats()));
+    }
+
+    Stats stats(Operation operation) {
+        return stats.get(operation);
+    }
+
+    /**
+     * @return The report as a JSON tree: the settings, then per operation its counts, throughput
+     *         (successful responses per second) and latency percentiles in milliseconds.
+     */
+    Map<String, Object> toJson(LoadTestSettings settings, Instant startedAt, Duration measured) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("label", settings.label);
+        report.put("startedAt", startedAt.toString());
+        report.put("settings", settings.describe());
+        Map<String, Object> operations = new LinkedHashMap<>();
+        stats.forEach((operation, stats) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("endpoint", operation.endpoint());
+            entry.put("mode", operation.mode());
+            entry.put("requests", stats.latency.getTotalCount() + stats.failures.sum());
+            Map<String, Long> statuses = new TreeMap<>();
+            stats.statuses.forEach((status, count) -> statuses.put(String.valueOf(status), count.sum()));
+            entry.put("statuses", statuses);
+            entry.put("failures", stats.failures.sum());
+            entry.put("dropped", stats.dropped.sum());
+            entry.put("throughput", round(stats.successes() / (measured.toNanos() / 1e9)));
+            entry.put("latencyMs", percentiles(stats.latency));
+            entry.put("serviceTimeMs", percentiles(stats.serviceTime));
+            operations.put(operation.name(), entry);
+        });
+        report.put("operations", operations);
+        return report;
+    }
+
+    /** Prints one line per operation. */
+    static void print(Map<String, Object> report, PrintStream out) {
+        out.printf(Locale.ROOT, "%n%-16s %9s %7s %7s %9s %9s %9s %9s %9s %9s %9s%n", "operation", "requests",
+                "errors", "dropped", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99");
+        operations(report).forEach((name, entry) -> {
+            Map<String, Object> latency = map(entry.get("latencyMs"));
+            Map<String, Long> statuses = map(entry.get("statuses"));
+            long errors = (long) entry.get("failures") + statuses.entrySet().stream()
+                    .filter(status -> Integer.parseInt(status.getKey()) >= 400)
+                    .mapToLong(Map.Entry::getValue).sum();
+            out.printf(Locale.ROOT, "%-16s %9d %7d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n", name,
+                    entry.get("requests"), errors, entry.get("dropped"), entry.get("throughput"),
+                    latency.get("p50"), latency.get("p90"), latency.get("p99"), latency.get("p999"),
+                    latency.get("max"), map(entry.get("serviceTimeMs")).get("p99"));
+        });
+    }
+
+    /**
+     * Prints the relative change of throughput and latency percentiles against an earlier report.
+     * Operations missing from either report are skipped.
+     */
+    static void compare(Path baseline, Map<String, Object> report, ObjectMapper objectMapper, PrintStream out)
+            throws IOException {
+        JsonNode before = objectMapper.readTree(baseline.toFile()).path("operations");
+        out.printf(Locale.ROOT, "%nChange against %s (latency: negative is better)%n", baseline);
+        out.printf(Locale.ROOT, "%-16s %9s %9s %9s %9s %9s%n", "operation", "req/s", "p50", "p90", "p99", "p99.9");
+        operations(report).forEach((name, entry) -> {
+            JsonNode old = before.path(name);
+            if (old.isMissingNode()) {
+                return;
+            }
+            Map<String, Object> latency = map(entry.get("latencyMs"));
+            StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%-16s %9s", name,
+                    change(old.path("throughput").asDouble(), (double) entry.get("throughput"))));
+            for (String percentile : PERCENTILE_NAMES) {
+                line.append(String.format(Locale.ROOT, " %9s",
+                        change(old.path("latencyMs").path(percentile).asDouble(), (double) latency.get(percentile))));
+            }
+            out.println(line);
+        });
+    }
+
+    /** Writes the report to "loadtest-{timestamp}.json" in the directory. */
+    static Path write(Map<String, Object> report, Path directory, ObjectMapper objectMapper) throws IOException {
+        Files.createDirectories(directory);
+        String timestamp = report.get("startedAt").toString().replaceAll("[:.]", "-");
+        Path file = directory.resolve("loadtest-" + timestamp + ".json");
+        objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), report);
+        return file;
+    }
+
+    private static Map<String, Double> percentiles(Histogram histogram) {
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            percentiles.put(PERCENTILE_NAMES[i], millis(histogram.getValueAtPercentile(PERCENTILES[i])));
+        }
+        percentiles.put("max", millis(histogram.getMaxValue()));
+        percentiles.put("mean", round(histogram.getMean() / 1e6));
+        return percentiles;
+    }
+
+    private static String change(double before, double after) {
+        return before == 0 ? "n/a" : String.format(Locale.ROOT, "%+.1f%%", (after - before) / before * 100);
+    }
+
+    private static double millis(long nanos) {
+        return round(nanos / 1e6);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    private static Map<String, Map<String, Object>> operations(Map<String, Object> report) {
+        return map(report.get("operations"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Map<String, V> map(Object value) {
+        return (Map<String, V>) value;
+    }
+}
@@ -0,0 +1,94 @@
+package com.heidari.document_service.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Entry point of the load test ("benchmark" Maven profile, exec:exec@loadtest): seeds a synthetic corpus,
+ * drives POST /documents and GET /documents/search over HTTP at an open-loop arrival rate, and writes
+ * a latency and throughput report per operation.
+ * <p>
+ * Without --load.target, the application is started in this JVM on a random port, against a fresh
+ * embedded H2 database, or another database given by "--spring.datasource.*" arguments. The corpus
+ * is created through POST /documents/bulk either way, so a remote service is seeded the same way.
+ * <p>
+ * Unlike the JMH benchmarks, which time one method in isolation, this measures the whole service under
+ * concurrent load: HTTP, admission control, the connection pool, caches and the database together.
+ * Run it on a quiet machine; the client shares the CPU with an embedded service.
+ */
+public final class LoadTestMain {
+
+    private static final int SEED_BATCH_SIZE = 5_000;
+
+    private LoadTestMain() {}
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.parse(args);
+        ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+        HttpClient client = OpenLoopDriver.client(Duration.ofSeconds(10));
+
+        ConfigurableApplicationContext context = settings.target.isEmpty()
+                ? BenchmarkContext.startServer(settings.applicationArguments) : null;
+        try {
+            String baseUrl = context != null
+                    ? "http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                    : settings.target;
+            seed(settings, baseUrl, client, objectMapper);
+
+            System.out.printf("Sending %.0f requests/s to %s for %s (after %s of warmup)%n",
+                    settings.rate, baseUrl, settings.duration, settings.warmup);
+            Instant startedAt = Instant.now();
+            LoadReport report = new OpenLoopDriver(settings, new LoadWorkload(settings, baseUrl, objectMapper), client)
+                    .run();
+
+            Map<String, Object> json = report.toJson(settings, startedAt, settings.duration);
+            LoadReport.print(json, System.out);
+            Path file = LoadReport.write(json, settings.reportDirectory, objectMapper);
+            System.out.println("\nReport written to " + file.toAbsolutePath());
+            if (settings.baseline != null) {
+                LoadReport.compare(settings.baseline, json, objectMapper, System.out);
+            }
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+        System.exit(0); // The HTTP client's threads would keep the JVM alive
+    }
+
+    /**
+     * Creates the corpus through the bulk endpoint, in NDJSON batches.
+     */
+    private static void seed(LoadTestSettings settings, String baseUrl, HttpClient client, ObjectMapper objectMapper)
+            throws IOException, InterruptedException {
+        if (settings.documents <= 0) {
+            return;
+        }
+        CorpusGenerator corpus = new CorpusGenerator(settings.seed, settings.contentLength, settings.tags, settings.skew);
+        long started = System.nanoTime();
+        for (int seeded = 0; seeded < settings.documents; seeded += SEED_BATCH_SIZE) {
+            int count = Math.min(SEED_BATCH_SIZE, settings.documents - seeded);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/documents/bulk"))
+                    .header("Content-Type", "application/x-ndjson")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(BenchmarkContext.ndjson(objectMapper, corpus.next(count))))
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() >= 300) {
+                throw new IllegalStateException("Seeding failed with " + response.statusCode() + ": " + response.body());
+            }
+        }
+        System.out.printf("Seeded %d documents in %d ms%n",
+                settings.documents, Duration.ofNanos(System.nanoTime() - started).toMillis());
+    }
+}
@@ -0,0 +1,124 @@
+package com.heidari.document_service.benchmark;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings of the load test, parsed from "--load.name=value" arguments. Every other argument
+ * ("--spring.datasource.url=...", "--document.search.cache.enabled=false", ...) configures the
+ * application under test.
+ */
+final class LoadTestSettings {
+
+    private static final String PREFIX = "--load.";
+
+    /** Base URL of an already running service; empty to start one in this JVM. */
+    String target = "";
+    /** Documents created through POST /documents/bulk before the test (0 to reuse an existing corpus). */
+    int documents = 20_000;
+    int contentLength = 500;
+    int tags = 1_000;
+    /** Zipf exponent of tags and queries (0 for uniform). */
+    double skew = 1.0;
+    long seed = BenchmarkContext.SEED;
+    /** Requests per second, whatever the response times. */
+    double rate = 100;
+    /** "poisson" (exponential gaps) or "uniform" (fixed gaps). */
+    String arrivals = "poisson";
+    Duration warmup = Duration.ofSeconds(10);
+    Duration duration = Duration.ofSeconds(60);
+    /** Operation weights, see {@link LoadWorkload}. */
+    Map<String, Integer> mix = parseMix("create=10,search:title=25,search:tag=25,search:content=20,search:all=20");
+    /** Requests awaiting a response beyond this are not sent, but counted as dropped. */
+    int maxOutstanding = 1024;
+    Duration requestTimeout = Duration.ofSeconds(30);
+    Path reportDirectory = Path.of("target", "loadtest");
+    /** Free text stored in the report (e.g. the commit under test). */
+    String label = "";
+    /** A previous report to compare this run with. */
+    Path baseline;
+
+    /** The arguments that are not load test settings. */
+    final List<String> applicationArguments = new ArrayList<>();
+
+    static LoadTestSettings parse(String[] args) {
+        LoadTestSettings settings = new LoadTestSettings();
+        for (String argument : args) {
+            if (!argument.startsWith(PREFIX)) {
+                settings.applicationArguments.add(argument);
+                continue;
+            }
+            int equals = argument.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Expected " + PREFIX + "name=value: " + argument);
+            }
+            settings.set(argument.substring(PREFIX.length(), equals), argument.substring(equals + 1));
+        }
+        return settings;
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "target" -> target = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+            case "documents" -> documents = Integer.parseInt(value);
+            case "content-length" -> contentLength = Integer.parseInt(value);
+            case "tags" -> tags = Integer.parseInt(value);
+            case "skew" -> skew = Double.parseDouble(value);
+            case "seed" -> seed = Long.parseLong(value);
+            case "rate" -> rate = Double.parseDouble(value);
+            case "arrivals" -> arrivals = value;
+            case "warmup" -> warmup = DurationStyle.detectAndParse(value);
+            case "duration" -> duration = DurationStyle.detectAndParse(value);
+            case "mix" -> mix = parseMix(value);
+            case "max-outstanding" -> maxOutstanding = Integer.parseInt(value);
+            case "request-timeout" -> requestTimeout = DurationStyle.detectAndParse(value);
+            case "report-directory" -> reportDirectory = Path.of(value);
+            case "label" -> label = value;
+            case "baseline" -> baseline = Path.of(value);
+            default -> throw new IllegalArgumentException("Unknown setting " + PREFIX + name);
+        }
+        if (rate <= 0 || !(arrivals.equals("poisson") || arrivals.equals("uniform"))) {
+            throw new IllegalArgumentException("Invalid " + PREFIX + name + ": " + value);
+        }
+    }
+
+    /** @return "name=weight,..." as an ordered map. */
+    private static Map<String, Integer> parseMix(String value) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected name=weight in --load.mix: " + entry);
+            }
+            mix.put(parts[0], Integer.parseInt(parts[1]));
+        }
+        return mix;
+    }
+
+    /** @return The settings that define the workload, as stored in the report. */
+    Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("target", target.isEmpty() ? "embedded" : target);
+        description.put("documents", documents);
+        description.put("contentLength", contentLength);
+        description.put("tags", tags);
+        description.put("skew", skew);
+        description.put("seed", seed);
+        description.put("rate", rate);
+        description.put("arrivals", arrivals);
+        description.put("warmup", warmup.toString());
+        description.put("duration", duration.toString());
+        description.put("mix", mix);
+        description.put("maxOutstanding", maxOutstanding);
+        description.put("applicationArguments", applicationArguments.stream()
+                .map(argument -> argument.contains("password") ? argument.replaceAll("=.*", "=***") : argument)
+                .toList());
+        return description;
+    }
+}
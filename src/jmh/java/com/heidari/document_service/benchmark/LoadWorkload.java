@@ -0,0 +1,122 @@
+package com.heidari.document_service.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The request mix of the load test: each request is drawn from the operations by weight.
+ * <p>
+ * Operations:
+ * - "create": POST /documents with a document from the corpus generator;
+ * - "search:title", "search:tag", "search:content", "search:all": GET /documents/search in that mode,
+ *   with Zipf-distributed query words (tag names in tag mode), so popular queries repeat as they do
+ *   in production.
+ * <p>
+ * The draws come from seeded generators, so the same settings send the same sequence of requests.
+ * Not thread-safe: only the dispatching thread builds requests.
+ */
+final class LoadWorkload {
+
+    /**
+     * One kind of request, reported separately.
+     *
+     * @param name     The name in --load.mix and in the report.
+     * @param endpoint E.g. "GET /documents/search".
+     * @param mode     The search mode, or "-".
+     */
+    record Operation(String name, String endpoint, String mode) {}
+
+    private static final int PAGE_SIZE = 20;
+
+    private final String baseUrl;
+    private final Duration timeout;
+    private final ObjectMapper objectMapper;
+    private final CorpusGenerator corpus;
+    private final Random random;
+    private final List<Operation> operations = new ArrayList<>();
+    private final int[] cumulativeWeights;
+
+    LoadWorkload(LoadTestSettings settings, String baseUrl, ObjectMapper objectMapper) {
+        this.baseUrl = baseUrl;
+        this.timeout = settings.requestTimeout;
+        this.objectMapper = objectMapper;
+        // Another seed than the seeded corpus: new documents, the same tag and query distributions
+        this.corpus = new CorpusGenerator(settings.seed + 1, settings.contentLength, settings.tags, settings.skew);
+        this.random = new Random(settings.seed + 2);
+
+        cumulativeWeights = new int[settings.mix.size()];
+        int total = 0;
+        for (Map.Entry<String, Integer> entry : settings.mix.entrySet()) {
+            if (entry.getValue() <= 0) {
+                continue;
+            }
+            operations.add(operation(entry.getKey()));
+            total += entry.getValue();
+            cumulativeWeights[operations.size() - 1] = total;
+        }
+        if (operations.isEmpty()) {
+            throw new IllegalArgumentException("--load.mix has no operation with a positive weight");
+        }
+    }
+
+    /** @return Every operation of the mix, in its order. */
+    List<Operation> operations() {
+        return operations;
+    }
+
+    /** @return The next operation, drawn by weight. */
+    Operation next() {
+        int draw = random.nextInt(cumulativeWeights[operations.size() - 1]);
+        for (int i = 0; ; i++) {
+            if (draw < cumulativeWeights[i]) {
+                return operations.get(i);
+            }
+        }
+    }
+
+    /** @return The next request of that operation. */
+    HttpRequest request(Operation operation) {
+        if (operation.name().equals("create")) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/documents"))
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(json(corpus.next())))
+                    .build();
+        }
+        String query = corpus.query(operation.mode().equals("tag"));
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/documents/search?query="
+                        + URLEncoder.encode(query, StandardCharsets.UTF_8)
+                        + "&mode=" + operation.mode() + "&limit=" + PAGE_SIZE))
+                .timeout(timeout)
+                .GET()
+                .build();
+    }
+
+    private static Operation operation(String name) {
+        return switch (name) {
+            case "create" -> new Operation(name, "POST /documents", "-");
+            case "search:title", "search:tag", "search:content", "search:all" ->
+                    new Operation(name, "GET /documents/search", name.substring("search:".length()));
+            default -> throw new IllegalArgumentException("Unknown operation in --load.mix: " + name);
+        };
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.heidari.document_service.benchmark;
+
+import com.heidari.document_service.benchmark.LoadWorkload.Operation;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests at a fixed average rate, whatever the response times (an "open loop").
+ * <p>
+ * Educational Note:
+ * A closed-loop client (N threads, each sending its next request when the previous one returns) slows
+ * down with the service: during a one-second stall it sends nothing, so it records one slow request
+ * instead of the hundreds a real user population would have sent and waited on. Its percentiles then
+ * look far better than what users see ("coordinated omission").
+ * Here the due time of every request is fixed in advance by the arrival schedule (Poisson: exponential
+ * gaps, like independent users; or uniform gaps), requests are sent asynchronously, and latency is
+ * measured from the due time (see {@link LoadReport}). A request is never held back by a slow one.
+ * <p>
+ * The number of outstanding requests is still bounded (--load.max-outstanding), so an overwhelmed
+ * service cannot exhaust the client's memory; requests beyond it are counted as dropped, not hidden.
+ */
+final class OpenLoopDriver {
+
+    private final LoadTestSettings settings;
+    private final LoadWorkload workload;
+    private final HttpClient client;
+    private final Random arrivals;
+    private final Semaphore outstanding;
+
+    OpenLoopDriver(LoadTestSettings settings, LoadWorkload workload, HttpClient client) {
+        this.settings = settings;
+        this.workload = workload;
+        this.client = client;
+        this.arrivals = new Random(settings.seed + 3);
+        this.outstanding = new Semaphore(settings.maxOutstanding);
+    }
+
+    /**
+     * Sends requests for the warmup period (not recorded), then for the measured period.
+     *
+     * @return The measured requests, once every response has arrived (or timed out).
+     */
+    LoadReport run() throws InterruptedException {
+        LoadReport report = new LoadReport(workload.operations());
+        long start = System.nanoTime();
+        long measureFrom = start + settings.warmup.toNanos();
+        long end = measureFrom + settings.duration.toNanos();
+
+        double due = start;
+        while (due < end) {
+            long dueNanos = (long) due;
+            waitUntil(dueNanos);
+            Operation operation = workload.next();
+            LoadReport.Stats stats = dueNanos >= measureFrom ? report.stats(operation) : null;
+            send(operation, workload.request(operation), dueNanos, stats);
+            due += gapNanos();
+        }
+
+        long waitForResponses = settings.requestTimeout.plusSeconds(5).toNanos();
+        if (!outstanding.tryAcquire(settings.maxOutstanding, waitForResponses, TimeUnit.NANOSECONDS)) {
+            System.err.println("Some responses did not arrive in time; they are missing from the report");
+        }
+        return report;
+    }
+
+    private void send(Operation operation, HttpRequest request, long dueNanos, LoadReport.Stats stats) {
+        if (!outstanding.tryAcquire()) {
+            if (stats != null) {
+                stats.dropped.increment();
+            }
+            return;
+        }
+        long sentNanos = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            long completedNanos = System.nanoTime();
+            outstanding.release();
+            if (stats == null) {
+                return;
+            }
+            if (failure != null) {
+                stats.failures.increment();
+            } else {
+                stats.record(response.statusCode(), dueNanos, sentNanos, completedNanos);
+            }
+        });
+    }
+
+    private double gapNanos() {
+        double mean = TimeUnit.SECONDS.toNanos(1) / settings.rate;
+        // Inverse transform sampling of the exponential distribution
+        return settings.arrivals.equals("poisson") ? -Math.log(1 - arrivals.nextDouble()) * mean : mean;
+    }
+
+    // Behind schedule (e.g. after a GC pause of the client), requests are sent at once, still timed from their due time
+    private static void waitUntil(long dueNanos) {
+        long remaining;
+        while ((remaining = dueNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /** @return A client that does not cap its connections, so it never queues requests itself. */
+    static HttpClient client(Duration connectTimeout) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .build();
+    }
+}
@@ -0,0 +1,89 @@
+package com.heidari.document_service.benchmark;
+
+import com.heidari.document_service.dto.CreateDocumentRequest;
+import com.heidari.document_service.search.InvertedIndex;
+import com.heidari.document_service.search.SearchMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of one search over the segmented {@link InvertedIndex}, by number of cores a query may use.
+ * <p>
+ * The index is built directly (no database), so only the scan, the per-segment top k and the merge are
+ * measured. With parallelism 1 the segments are searched on the calling thread; above it, on a pool of
+ * that many threads. Compare the average times across "parallelism" on a machine with at least that
+ * many cores; queries combine two frequent words, so every query touches most segments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParallelSearchBenchmark {
+
+    private static final int QUERIES = 64;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param("200000")
+    public int documentCount;
+
+    @Param("500")
+    public int contentLength;
+
+    @Param("100")
+    public int tagCardinality;
+
+    @Param("16384")
+    public int minSegmentSize;
+
+    private ForkJoinPool pool;
+    private InvertedIndex index;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = (parallelism > 1) ? new ForkJoinPool(parallelism) : null;
+        index = new InvertedIndex();
+        index.setParallelism(new InvertedIndex.Parallelism(pool, parallelism, minSegmentSize));
+
+        CorpusGenerator corpus = new CorpusGenerator(BenchmarkContext.SEED, contentLength, tagCardinality);
+        for (int id = 1; id <= documentCount; id++) {
+            CreateDocumentRequest document = corpus.next();
+            index.add(id, id, document.getTitle(), document.getContent(), document.getTags());
+        }
+        String[] words = corpus.queries(2 * QUERIES, false);
+        queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = words[2 * i] + " " + words[2 * i + 1];
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public long[] newestPage() {
+        return index.searchPage(queries[next++ % QUERIES], SearchMode.ALL, null, 20);
+    }
+
+    @Benchmark
+    public long[] ranked() {
+        return index.searchRanked(queries[next++ % QUERIES], SearchMode.ALL, 20, InvertedIndex.Scoring.DEFAULT);
+    }
+}
@@ -0,0 +1,70 @@
+package com.heidari.document_service.benchmark;
+
+import com.heidari.document_service.dto.SearchPage;
+import com.heidari.document_service.model.Document;
+import com.heidari.document_service.service.DocumentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * First page of {@link DocumentService#searchDocuments} for every search mode and engine.
+ * The result cache is disabled, and queries rotate over 64 words that occur in the corpus.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SearchBenchmark {
+
+    private static final int QUERIES = 64;
+
+    @Param({"title", "content", "tag", "all"})
+    public String mode;
+
+    @Param({"index", "specification"})
+    public String engine;
+
+    @Param("10000")
+    public int documentCount;
+
+    @Param("500")
+    public int contentLength;
+
+    @Param("100")
+    public int tagCardinality;
+
+    private ConfigurableApplicationContext context;
+    private DocumentService documentService;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CorpusGenerator corpus = new CorpusGenerator(BenchmarkContext.SEED, contentLength, tagCardinality);
+        context = BenchmarkContext.start(engine);
+        BenchmarkContext.seed(context, corpus.next(documentCount));
+        documentService = context.getBean(DocumentService.class);
+        queries = corpus.queries(QUERIES, "tag".equals(mode));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public SearchPage<Document> search() {
+        String query = queries[next++ % QUERIES];
+        return documentService.searchDocuments(query, mode, null, 20);
+    }
+}
@@ -0,0 +1,46 @@
+package com.heidari.document_service.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Draws ranks 0 .. n-1 with Zipf's law: rank k is drawn with a probability proportional to 1 / (k + 1)^s.
+ * <p>
+ * Educational Note:
+ * Real tag and query frequencies are heavily skewed: a few popular tags are on many documents and a few
+ * queries make up most of the traffic, while a long tail is rare. A uniform workload hides the effects
+ * of that skew (hot posting lists, cache hit ratios, coalescing). With s = 1, the most frequent rank is
+ * drawn about twice as often as the second and ten times as often as the tenth; s = 0 is uniform.
+ * <p>
+ * Sampling is a binary search over the precomputed cumulative distribution: O(n) memory, O(log n) time.
+ */
+public final class Zipf {
+
+    private final double[] cumulative;
+
+    /**
+     * @param n        Number of ranks.
+     * @param exponent Skew s (0 for a uniform distribution).
+     */
+    public Zipf(int n, double exponent) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be at least 1");
+        }
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= sum;
+        }
+    }
+
+    /** @return A rank in [0, n), the smaller the more likely. */
+    public int sample(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        int rank = index >= 0 ? index + 1 : -index - 1; // The first rank whose cumulative share exceeds the draw
+        return Math.min(rank, cumulative.length - 1);
+    }
+}
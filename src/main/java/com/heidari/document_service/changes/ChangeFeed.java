@@ -0,0 +1,370 @@
+package com.heidari.document_service.changes;
+
+import com.heidari.document_service.config.ChangeFeedProperties;
+import com.heidari.document_service.config.ReadConsistency;
+import com.heidari.document_service.metrics.DocumentMetrics;
+import com.heidari.document_service.model.ChangeCheckpoint;
+import com.heidari.document_service.model.DocumentChange;
+import com.heidari.document_service.repository.ChangeCheckpointRepository;
+import com.heidari.document_service.repository.DocumentChangeRepository;
+import com.heidari.document_service.repository.DocumentChangeRepositoryCustom.TransactionHorizon;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers the change log to the registered {@link ChangeListener}s in the background, in batches,
+ * and remembers in "change_checkpoint" how far each of them has got, so they resume there after a restart.
+ * <p>
+ * Educational Note on gaps:
+ * Change ids are drawn from a sequence when the entry is inserted, but transactions commit in any
+ * order: id 7 may become visible before id 6. A consumer that moved its checkpoint to 7 would never
+ * read 6. So the feed only delivers the run of consecutive ids that follows the checkpoint and stops
+ * at the first missing one. A missing id belongs to a transaction that is still open (wait) or that
+ * rolled back (it never appears). This is why the entries are inserted with one nextval() per row
+ * instead of Hibernate's pooled blocks, which would leave gaps all the time.
+ * <p>
+ * On PostgreSQL the two cases are told apart by transaction ids: the writer takes its id before it draws
+ * change ids, so a missing id was drawn by a transaction older than the snapshot in which the gap was
+ * first seen. Once the oldest running transaction is newer than that snapshot, every such writer has
+ * ended, and whatever is still missing rolled back: it is skipped at the next poll, without waiting for
+ * "gap-timeout", and a late commit is never skipped however long its transaction runs. Databases without
+ * snapshot functions (H2) fall back to giving a missing id up after "gap-timeout".
+ * <p>
+ * Lag: while a consumer is behind (it received a full batch), the feed polls again at once instead of
+ * sleeping, so the lag stays bounded by how fast the listener applies changes, not by "poll-interval".
+ * The lag in changes and in seconds is published per consumer (see {@link DocumentMetrics}).
+ * A failing listener is retried with a doubling pause and does not hold up the others.
+ * <p>
+ * Applied entries older than "retention" are deleted once every consumer is past them.
+ * The feed assumes a single application instance consumes the log.
+ */
+@Component
+public class ChangeFeed implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeFeed.class);
+
+    // Deleting applied entries is not urgent: at most once per this period
+    private static final long PURGE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final List<ChangeListener> listeners;
+    private final DocumentChangeRepository documentChangeRepository;
+    private final ChangeCheckpointRepository checkpointRepository;
+    private final ChangeFeedProperties properties;
+    private final DocumentMetrics metrics;
+    private final ReadConsistency readConsistency;
+    private final List<Consumer> consumers = new ArrayList<>();
+
+    private Thread thread;
+    private volatile boolean running;
+    private long lastPurge;
+
+    public ChangeFeed(List<ChangeListener> listeners, DocumentChangeRepository documentChangeRepository,
+                      ChangeCheckpointRepository checkpointRepository, ChangeFeedProperties properties,
+                      DocumentMetrics metrics, ReadConsistency readConsistency) {
+        this.listeners = listeners;
+        this.documentChangeRepository = documentChangeRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.properties = properties;
+        this.metrics = metrics;
+        this.readConsistency = readConsistency;
+    }
+
+    // The delivery state of one listener; only touched by the feed thread (the gauges read volatiles)
+    private static final class Consumer {
+        final ChangeListener listener;
+        volatile long checkpoint;
+        volatile long head;
+        volatile LocalDateTime oldestPending;
+        long gapId;
+        long gapSince;
+        TransactionHorizon gapHorizon;
+        boolean gapReported;
+        int failures;
+        long retryAt;
+
+        Consumer(ChangeListener listener, long checkpoint) {
+            this.listener = listener;
+            this.checkpoint = checkpoint;
+            this.head = checkpoint;
+        }
+
+        long lag() {
+            return Math.max(0, head - checkpoint);
+        }
+
+        double lagSeconds() {
+            LocalDateTime oldest = oldestPending;
+            return oldest == null ? 0 : Math.max(0, ChronoUnit.MILLIS.between(oldest, LocalDateTime.now()) / 1000.0);
+        }
+    }
+
+    /**
+     * Counts the changes that can be delivered: the run of consecutive ids right after the checkpoint.
+     *
+     * @param checkpoint The last applied change id.
+     * @param changes    The next changes, lowest id first.
+     * @return The length of the run (0 if the first change is not checkpoint + 1).
+     */
+    static int consecutive(long checkpoint, List<DocumentChange> changes) {
+        long expected = checkpoint + 1;
+        int count = 0;
+        for (DocumentChange change : changes) {
+            if (change.getId() != expected) {
+                break;
+            }
+            expected++;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Reads and delivers everything that is ready, for every consumer, and returns.
+     * The background thread calls this in a loop; tests may call it directly.
+     *
+     * @return True if some consumer may have more changes waiting (poll again without pausing).
+     */
+    public synchronized boolean pollOnce() {
+        // The log is read on the primary: a lagging replica would only delay delivery
+        return readConsistency.onPrimary(this::pollConsumers);
+    }
+
+    private boolean pollConsumers() {
+        boolean behind = false;
+        for (Consumer consumer : consumers) {
+            if (System.nanoTime() - consumer.retryAt >= 0) {
+                behind |= poll(consumer);
+            }
+        }
+        if (System.nanoTime() - lastPurge >= PURGE_INTERVAL_NANOS) {
+            lastPurge = System.nanoTime();
+            purge();
+        }
+        return behind;
+    }
+
+    /**
+     * @return The checkpoint of a consumer, or -1 if there is no listener of that name.
+     */
+    public long checkpoint(String consumer) {
+        for (Consumer candidate : consumers) {
+            if (candidate.listener.name().equals(consumer)) {
+                return candidate.checkpoint;
+            }
+        }
+        return -1;
+    }
+
+    // --- Lifecycle: consumers are registered and the thread started with the application context ---
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        if (!properties.isEnabled() || listeners.isEmpty()) {
+            return;
+        }
+        Set<String> names = new HashSet<>();
+        long head = readConsistency.onPrimary(documentChangeRepository::findMaxId);
+        for (ChangeListener listener : listeners) {
+            if (!names.add(listener.name())) {
+                throw new IllegalStateException("Two change listeners are named " + listener.name());
+            }
+            // A new consumer starts at the current end of the log: it is expected to have built its
+            // view from the tables themselves (as the search index does at startup)
+            long checkpoint = readConsistency.onPrimary(() -> checkpointRepository.findById(listener.name())
+                    .map(ChangeCheckpoint::getLastChangeId)
+                    .orElseGet(() -> checkpointRepository.save(new ChangeCheckpoint(listener.name(), head))
+                            .getLastChangeId()));
+            Consumer consumer = new Consumer(listener, checkpoint);
+            consumers.add(consumer);
+            metrics.bindChangeConsumer(listener.name(), consumer::lag, consumer::lagSeconds);
+            log.info("Change feed consumer '{}' starts after change {} (log head {})",
+                    listener.name(), checkpoint, head);
+        }
+        lastPurge = System.nanoTime();
+        thread = new Thread(this::pollLoop, "change-feed");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (thread == null) {
+            return;
+        }
+        try {
+            // Let the batch in progress finish and save its checkpoint
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Lower phases stop later: changes committed by the draining ingestion workers are still delivered
+        return DEFAULT_PHASE - 1;
+    }
+
+    private void pollLoop() {
+        long pause = properties.getPollInterval().toMillis();
+        while (running) {
+            boolean behind;
+            try {
+                behind = pollOnce();
+            } catch (RuntimeException e) {
+                // Reading the log or saving a checkpoint failed (e.g. the database is unreachable)
+                log.warn("Change feed poll failed: {}", e.toString());
+                behind = false;
+            }
+            if (!behind) {
+                try {
+                    Thread.sleep(pause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // Delivers the next batch of one consumer; returns true if it received a full batch
+    private boolean poll(Consumer consumer) {
+        int batchSize = properties.getBatchSize();
+        consumer.head = documentChangeRepository.findMaxId();
+        if (consumer.head <= consumer.checkpoint) {
+            consumer.oldestPending = null;
+            return false;
+        }
+        // Decided before the log is read: a gap writer that commits in between is then read, not skipped
+        boolean gapSettled = consumer.gapId == consumer.checkpoint + 1 && writersEnded(consumer.gapHorizon);
+        List<DocumentChange> changes = documentChangeRepository
+                .findByIdGreaterThanOrderByIdAsc(consumer.checkpoint, Limit.of(batchSize));
+        if (changes.isEmpty()) {
+            // Everything after the checkpoint is still uncommitted (or rolled back)
+            return false;
+        }
+        int ready = consecutive(consumer.checkpoint, changes);
+        if (ready == 0) {
+            ready = skipGap(consumer, changes, gapSettled);
+            if (ready == 0) {
+                consumer.oldestPending = changes.get(0).getChangedAt();
+                return false;
+            }
+        }
+        consumer.gapId = 0;
+
+        List<DocumentChange> batch = changes.subList(0, ready);
+        String name = consumer.listener.name();
+        long started = System.nanoTime();
+        try {
+            consumer.listener.apply(batch);
+        } catch (Exception e) {
+            metrics.recordChangeFailure(name);
+            consumer.failures++;
+            long delay = Math.min(properties.getPollInterval().toNanos() << Math.min(consumer.failures, 20),
+                    properties.getMaxRetryDelay().toNanos());
+            consumer.retryAt = System.nanoTime() + delay;
+            consumer.oldestPending = batch.get(0).getChangedAt();
+            log.warn("Change listener '{}' failed on changes {}..{} (attempt {}), retrying in {} ms: {}",
+                    name, batch.get(0).getId(), batch.get(ready - 1).getId(), consumer.failures,
+                    TimeUnit.NANOSECONDS.toMillis(delay), e.toString());
+            return false;
+        }
+        long applyNanos = System.nanoTime() - started;
+
+        long last = batch.get(ready - 1).getId();
+        ChangeCheckpoint checkpoint = new ChangeCheckpoint(name, last);
+        checkpointRepository.save(checkpoint);
+        consumer.checkpoint = last;
+        consumer.failures = 0;
+        consumer.oldestPending = ready < changes.size() ? changes.get(ready).getChangedAt() : null;
+
+        long[] delays = new long[ready];
+        LocalDateTime now = checkpoint.getUpdatedAt();
+        for (int i = 0; i < ready; i++) {
+            delays[i] = Math.max(0, Duration.between(batch.get(i).getChangedAt(), now).toNanos());
+        }
+        metrics.recordChangeBatch(name, ready, applyNanos, delays);
+        if (consumer.lag() > properties.getMaxLag()) {
+            log.warn("Change listener '{}' is {} changes behind", name, consumer.lag());
+        }
+        return ready == batchSize;
+    }
+
+    /*
+     * Waits for a missing id until every transaction that may have drawn it has ended (or, without
+     * transaction ids, up to "gap-timeout"), then gives it up; returns the changes deliverable now.
+     */
+    private int skipGap(Consumer consumer, List<DocumentChange> changes, boolean settled) {
+        long missing = consumer.checkpoint + 1;
+        long first = changes.get(0).getId();
+        if (consumer.gapId != missing) {
+            consumer.gapId = missing;
+            consumer.gapSince = System.nanoTime();
+            consumer.gapHorizon = documentChangeRepository.transactionHorizon();
+            consumer.gapReported = false;
+            return 0;
+        }
+        boolean timedOut = System.nanoTime() - consumer.gapSince >= properties.getGapTimeout().toNanos();
+        if (consumer.gapHorizon == null) {
+            if (!timedOut) {
+                return 0;
+            }
+            log.warn("Change feed consumer '{}' skips the missing changes {}..{} after {}",
+                    consumer.listener.name(), missing, first - 1, properties.getGapTimeout());
+            return consecutive(first - 1, changes);
+        }
+        if (!settled) {
+            if (timedOut && !consumer.gapReported) {
+                consumer.gapReported = true;
+                log.warn("Change feed consumer '{}' has waited {} for change {}: a write transaction is still open",
+                        consumer.listener.name(), properties.getGapTimeout(), missing);
+            }
+            return 0;
+        }
+        log.info("Change feed consumer '{}' skips the rolled-back changes {}..{}",
+                consumer.listener.name(), missing, first - 1);
+        return consecutive(first - 1, changes);
+    }
+
+    // True once every transaction that was running when the horizon was read has ended
+    private boolean writersEnded(TransactionHorizon horizon) {
+        if (horizon == null) {
+            return false;
+        }
+        TransactionHorizon now = documentChangeRepository.transactionHorizon();
+        return now != null && now.oldestActive() >= horizon.next();
+    }
+
+    private void purge() {
+        long lowest = Long.MAX_VALUE;
+        for (Consumer consumer : consumers) {
+            lowest = Math.min(lowest, consumer.checkpoint);
+        }
+        LocalDateTime before = LocalDateTime.now().minus(properties.getRetention());
+        int deleted = documentChangeRepository.deleteApplied(lowest, before);
+        if (deleted > 0) {
+            log.info("Deleted {} applied changes up to {}", deleted, lowest);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.heidari.document_service.changes;
+
+import com.heidari.document_service.model.DocumentChange;
+
+import java.util.List;
+
+/**
+ * A consumer of the change feed. Every Spring bean implementing this interface is registered
+ * with the {@link ChangeFeed} at startup.
+ * <p>
+ * Delivery is at least once, in change-id order: a batch is applied before its checkpoint is saved,
+ * so a crash in between delivers the batch again. Implementations must therefore be idempotent
+ * (e.g. "add the document unless it is already there").
+ */
+public interface ChangeListener {
+
+    /**
+     * @return A stable, unique name; the consumer's checkpoint is stored under it.
+     */
+    String name();
+
+    /**
+     * Applies a batch of changes. Throwing leaves the checkpoint where it was: the same changes
+     * (possibly with more) are delivered again after a back-off.
+     *
+     * @param changes Committed changes, lowest id first.
+     */
+    void apply(List<DocumentChange> changes) throws Exception;
+}
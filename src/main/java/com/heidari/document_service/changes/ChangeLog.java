@@ -0,0 +1,36 @@
+package com.heidari.document_service.changes;
+
+import com.heidari.document_service.config.ChangeFeedProperties;
+import com.heidari.document_service.model.ChangeType;
+import com.heidari.document_service.repository.DocumentChangeRepository;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * The write side of the change feed: records changes in the caller's transaction
+ * (see {@link com.heidari.document_service.model.DocumentChange}).
+ */
+@Component
+public class ChangeLog {
+
+    private final DocumentChangeRepository documentChangeRepository;
+    private final ChangeFeedProperties properties;
+
+    public ChangeLog(DocumentChangeRepository documentChangeRepository, ChangeFeedProperties properties) {
+        this.documentChangeRepository = documentChangeRepository;
+        this.properties = properties;
+    }
+
+    /**
+     * Records that the documents were created. Must be called inside the transaction that inserts them.
+     *
+     * @param documentIds The new documents (their ids are assigned before the insert).
+     */
+    public void recordCreated(Collection<Long> documentIds) {
+        if (properties.isEnabled() && !documentIds.isEmpty()) {
+            documentChangeRepository.append(ChangeType.CREATED, documentIds, LocalDateTime.now());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.heidari.document_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Admission control settings of the /documents endpoints, bound from the "document.admission.*" properties
+ * (see {@link com.heidari.document_service.controller.AdmissionControlFilter}).
+ */
+@ConfigurationProperties(prefix = "document.admission")
+public class AdmissionProperties {
+
+    /** When false, every request is admitted. */
+    private boolean enabled = true;
+
+    /** Seconds suggested to rejected clients in the Retry-After header. */
+    private int retryAfterSeconds = 1;
+
+    /**
+     * Share of a budget that expensive requests ("all" and "content" searches, substring and fuzzy
+     * matches, ranked searches, NDJSON results and exports; bulk and streamed writes, imports) may
+     * occupy; the rest stays available to cheap ones.
+     */
+    private double expensiveShare = 0.5;
+
+    /** Concurrency budget of reads (GET). */
+    private final Budget read = new Budget(20, 2, 200, Duration.ofMillis(500));
+
+    /** Concurrency budget of writes (POST, PUT, PATCH, DELETE). */
+    private final Budget write = new Budget(10, 1, 100, Duration.ofSeconds(1));
+
+    /**
+     * One concurrency budget, adjusted by AIMD (additive increase, multiplicative decrease).
+     */
+    public static class Budget {
+
+        /** Concurrent requests admitted at startup. */
+        private int initialLimit;
+
+        /** The limit never drops below this. */
+        private int minLimit;
+
+        /** The limit never grows above this. */
+        private int maxLimit;
+
+        /** A request slower than this (or failing with a 5xx) counts as a sign of overload. */
+        private Duration latencyThreshold;
+
+        /** Factor applied to the limit on overload (at most once per latency threshold). */
+        private double backoffRatio = 0.9;
+
+        public Budget(int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold) {
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.latencyThreshold = latencyThreshold;
+        }
+
+        public int getInitialLimit() { return initialLimit; }
+        public void setInitialLimit(int initialLimit) { this.initialLimit = initialLimit; }
+
+        public int getMinLimit() { return minLimit; }
+        public void setMinLimit(int minLimit) { this.minLimit = minLimit; }
+
+        public int getMaxLimit() { return maxLimit; }
+        public void setMaxLimit(int maxLimit) { this.maxLimit = maxLimit; }
+
+        public Duration getLatencyThreshold() { return latencyThreshold; }
+        public void setLatencyThreshold(Duration latencyThreshold) { this.latencyThreshold = latencyThreshold; }
+
+        public double getBackoffRatio() { return backoffRatio; }
+        public void setBackoffRatio(double backoffRatio) { this.backoffRatio = backoffRatio; }
+    }
+
+    // --- Accessors ---
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public int getRetryAfterSeconds() { return retryAfterSeconds; }
+    public void setRetryAfterSeconds(int retryAfterSeconds) { this.retryAfterSeconds = retryAfterSeconds; }
+
+    public double getExpensiveShare() { return expensiveShare; }
+    public void setExpensiveShare(double expensiveShare) { this.expensiveShare = expensiveShare; }
+
+    public Budget getRead() { return read; }
+
+    public Budget getWrite() { return write; }
+}
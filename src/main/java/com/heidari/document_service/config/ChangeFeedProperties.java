@@ -0,0 +1,61 @@
+package com.heidari.document_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Change log and change feed settings, bound from the "document.changes.*" properties.
+ */
+@ConfigurationProperties(prefix = "document.changes")
+public class ChangeFeedProperties {
+
+    /** Whether writes are recorded in the change log and delivered to the listeners. */
+    private boolean enabled = true;
+
+    /** Pause between polls of the log once every consumer has caught up. */
+    private Duration pollInterval = Duration.ofMillis(500);
+
+    /** Changes delivered to a listener per call (and per checkpoint update). */
+    private int batchSize = 500;
+
+    /**
+     * How long a missing change id holds back the changes after it, on databases that cannot tell an open
+     * transaction from a rolled-back one (on PostgreSQL a missing id is skipped once its writers have ended,
+     * and this only delays a warning). An id is missing while its transaction is still open, or for good if it
+     * rolled back; keep this above the longest write transaction.
+     */
+    private Duration gapTimeout = Duration.ofSeconds(30);
+
+    /** A consumer that falls more than this many changes behind is logged at WARN level. */
+    private long maxLag = 10_000;
+
+    /** How long applied changes are kept before they are deleted. */
+    private Duration retention = Duration.ofHours(1);
+
+    /** Longest pause between retries of a failing listener (the pause doubles from "poll-interval"). */
+    private Duration maxRetryDelay = Duration.ofMinutes(1);
+
+    // --- Accessors ---
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public Duration getPollInterval() { return pollInterval; }
+    public void setPollInterval(Duration pollInterval) { this.pollInterval = pollInterval; }
+
+    public int getBatchSize() { return batchSize; }
+    public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+    public Duration getGapTimeout() { return gapTimeout; }
+    public void setGapTimeout(Duration gapTimeout) { this.gapTimeout = gapTimeout; }
+
+    public long getMaxLag() { return maxLag; }
+    public void setMaxLag(long maxLag) { this.maxLag = maxLag; }
+
+    public Duration getRetention() { return retention; }
+    public void setRetention(Duration retention) { this.retention = retention; }
+
+    public Duration getMaxRetryDelay() { return maxRetryDelay; }
+    public void setMaxRetryDelay(Duration maxRetryDelay) { this.maxRetryDelay = maxRetryDelay; }
+}
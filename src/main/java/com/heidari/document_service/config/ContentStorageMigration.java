@@ -0,0 +1,130 @@
+package com.heidari.document_service.config;
+
+import com.heidari.document_service.model.ContentStorage;
+import com.heidari.document_service.search.SearchResultCache;
+import com.heidari.document_service.storage.ContentCompressor;
+import com.heidari.document_service.storage.ContentStore;
+import com.heidari.document_service.storage.StoredContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Moves existing bodies out of the "content" column: oversized ones to the {@link ContentStore},
+ * compressible ones to the "compressed_content" column (see {@link ContentCompressor}).
+ * <p>
+ * Educational Note:
+ * Rows written before file-backed storage and compression existed keep their body inline (their
+ * "content_storage" is null, which means INLINE). With "document.storage.migrate-on-startup=true",
+ * every body longer than "inline-threshold" is copied to a file as a character stream, then the row
+ * is switched to FILE in a single UPDATE; shorter bodies above the compression "min-size" are
+ * compressed and switched to COMPRESSED the same way. The file is durable before the row points to
+ * it, so an interrupted run leaves at worst an unused file (overwritten by the next run); finished
+ * rows are skipped, so the migration can be repeated safely. {@link #migrate()} can also be called
+ * at any time.
+ */
+@Component
+public class ContentStorageMigration implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(ContentStorageMigration.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ContentStore contentStore;
+    private final ContentCompressor contentCompressor;
+    private final StorageProperties storageProperties;
+    private final SearchResultCache searchResultCache;
+
+    public ContentStorageMigration(JdbcTemplate jdbcTemplate, ContentStore contentStore,
+                                   ContentCompressor contentCompressor, StorageProperties storageProperties,
+                                   SearchResultCache searchResultCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.contentStore = contentStore;
+        this.contentCompressor = contentCompressor;
+        this.storageProperties = storageProperties;
+        this.searchResultCache = searchResultCache;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (storageProperties.isMigrateOnStartup()) {
+            migrate();
+        }
+    }
+
+    /**
+     * Migrates every inline body that is too long or compressible, in id order and batches of
+     * "migration-batch-size" ids.
+     *
+     * @return The number of documents moved to files or compressed.
+     */
+    public int migrate() {
+        long started = System.currentTimeMillis();
+        StorageProperties.Compression compression = storageProperties.getCompression();
+        int minLength = compression.isEnabled()
+                ? Math.min(compression.getMinSize() - 1, storageProperties.getInlineThreshold())
+                : storageProperties.getInlineThreshold();
+        int migrated = 0;
+        long afterId = 0;
+        List<Map<String, Object>> rows;
+        do {
+            rows = jdbcTemplate.queryForList(
+                    "SELECT id, LENGTH(content) AS length FROM document "
+                            + "WHERE id > ? AND content IS NOT NULL AND LENGTH(content) > ? ORDER BY id LIMIT ?",
+                    afterId, minLength, storageProperties.getMigrationBatchSize());
+            for (Map<String, Object> row : rows) {
+                long id = ((Number) row.get("id")).longValue();
+                long length = ((Number) row.get("length")).longValue();
+                migrated += (length > storageProperties.getInlineThreshold()) ? moveToFile(id) : compress(id);
+                afterId = id;
+            }
+        } while (!rows.isEmpty());
+
+        if (migrated > 0) {
+            searchResultCache.invalidateAfterCommit();
+            log.info("Moved the content of {} documents out of the content column in {} ms",
+                    migrated, System.currentTimeMillis() - started);
+        }
+        return migrated;
+    }
+
+    // Bodies up to the inline threshold are small enough to be read as a String
+    private int compress(long id) {
+        String content = jdbcTemplate.queryForObject("SELECT content FROM document WHERE id = ?", String.class, id);
+        Optional<ContentCompressor.Compressed> compressed = contentCompressor.compress(content);
+        if (compressed.isEmpty()) {
+            return 0; // incompressible: stays inline
+        }
+        return jdbcTemplate.update("UPDATE document SET content = NULL, content_storage = ?, content_codec = ?, "
+                        + "compressed_content = ?, content_length = ? WHERE id = ? AND content IS NOT NULL",
+                ContentStorage.COMPRESSED.name(), compressed.get().codec().name(), compressed.get().encoded(),
+                compressed.get().rawLength(), id);
+    }
+
+    private int moveToFile(long id) {
+        StoredContent stored = jdbcTemplate.query("SELECT content FROM document WHERE id = ?", rs -> {
+            if (!rs.next()) {
+                return null;
+            }
+            try (Reader content = rs.getCharacterStream(1)) {
+                return (content != null) ? contentStore.write(id, content) : null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, id);
+        if (stored == null) {
+            return 0;
+        }
+        return jdbcTemplate.update("UPDATE document SET content = NULL, content_storage = ?, content_length = ?, "
+                        + "content_checksum = ? WHERE id = ? AND content IS NOT NULL",
+                ContentStorage.FILE.name(), stored.length(), stored.checksum(), id);
+    }
+}
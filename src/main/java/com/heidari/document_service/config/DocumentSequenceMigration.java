@@ -0,0 +1,56 @@
+package com.heidari.document_service.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * One-time migration for databases created while Document ids were IDENTITY columns.
+ * <p>
+ * Educational Note:
+ * With "ddl-auto=update", Hibernate creates the new "document_seq" sequence starting at 1,
+ * but the table may already contain rows with ids 1..N. Without this step the first
+ * inserts would collide with existing primary keys. We move the sequence past MAX(id);
+ * on an already-migrated database this is a no-op.
+ */
+@Component
+public class DocumentSequenceMigration implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentSequenceMigration.class);
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+
+    public DocumentSequenceMigration(DataSource dataSource, JdbcTemplate jdbcTemplate) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!isPostgres()) {
+            return;
+        }
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM document", Long.class);
+        Long lastValue = jdbcTemplate.queryForObject("SELECT last_value FROM document_seq", Long.class);
+        if (maxId != null && lastValue != null && maxId > lastValue) {
+            // The next nextval() then returns maxId + increment, i.e. a fresh block of ids above maxId
+            jdbcTemplate.queryForObject("SELECT setval('document_seq', ?)", Long.class, maxId);
+            log.info("Moved document_seq from {} to {} (existing IDENTITY ids)", lastValue, maxId);
+        }
+    }
+
+    private boolean isPostgres() {
+        try (Connection connection = dataSource.getConnection()) {
+            return "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not determine the database product", e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.heidari.document_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Bulk ingestion settings, bound from the "document.ingest.*" properties.
+ */
+@ConfigurationProperties(prefix = "document.ingest")
+public class IngestProperties {
+
+    /** Documents written per JDBC batch (flush + clear of the persistence context). */
+    private int batchSize = 500;
+
+    /** Batches written per database transaction. */
+    private int commitInterval = 10;
+
+    /**
+     * Body characters per batch: a batch ends early once its bodies add up to this, so a stream of large
+     * bodies holds a bounded amount of text in memory, not "batch-size" bodies of any size.
+     */
+    private int maxBatchCharacters = 8 * 1024 * 1024;
+
+    /** Asynchronous single-document ingestion ("document.ingest.async.*"). */
+    private final Async async = new Async();
+
+    /**
+     * Settings of the asynchronous ingestion pipeline (POST /documents/async).
+     */
+    public static class Async {
+
+        /** Documents that may wait for a worker; further requests are rejected with 429. */
+        private int queueCapacity = 10_000;
+
+        /** Worker threads (each holds a database connection only while committing a batch). */
+        private int workers = 2;
+
+        /** Upper bound of documents per group commit. */
+        private int maxBatchSize = 500;
+
+        /** How long the status of a ticket can be queried after it was last updated. */
+        private Duration ticketRetention = Duration.ofMinutes(15);
+
+        /** Seconds suggested to rejected clients in the Retry-After header. */
+        private int retryAfterSeconds = 1;
+
+        public int getQueueCapacity() { return queueCapacity; }
+        public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+
+        public int getWorkers() { return workers; }
+        public void setWorkers(int workers) { this.workers = workers; }
+
+        public int getMaxBatchSize() { return maxBatchSize; }
+        public void setMaxBatchSize(int maxBatchSize) { this.maxBatchSize = maxBatchSize; }
+
+        public Duration getTicketRetention() { return ticketRetention; }
+        public void setTicketRetention(Duration ticketRetention) { this.ticketRetention = ticketRetention; }
+
+        public int getRetryAfterSeconds() { return retryAfterSeconds; }
+        public void setRetryAfterSeconds(int retryAfterSeconds) { this.retryAfterSeconds = retryAfterSeconds; }
+    }
+
+    // --- Accessors ---
+
+    public int getBatchSize() { return batchSize; }
+    public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+    public int getCommitInterval() { return commitInterval; }
+    public void setCommitInterval(int commitInterval) { this.commitInterval = commitInterval; }
+
+    public int getMaxBatchCharacters() { return maxBatchCharacters; }
+    public void setMaxBatchCharacters(int maxBatchCharacters) { this.maxBatchCharacters = maxBatchCharacters; }
+
+    public Async getAsync() { return async; }
+}
@@ -0,0 +1,105 @@
+package com.heidari.document_service.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.OptionalLong;
+import java.util.function.Supplier;
+
+/**
+ * Read-your-writes on top of replica routing (see {@link ReplicaRoutingDataSource}).
+ * <p>
+ * Educational Note on consistency tokens:
+ * A replica applies the primary's commits with a delay, so a client that has just created a document
+ * may not find it when its next read goes to the replica. After a write, the client receives a token:
+ * the primary's position once the write has committed (see {@link ReplicaLagMonitor}). When the
+ * client sends the token back with a read ("X-Consistency-Token" header), the read is served by the
+ * replica only if the replica has reached that position, and by the primary otherwise.
+ * Clients without a token get the replica's (bounded) staleness.
+ * <p>
+ * Tokens and the required position are per thread: a request that streams its response from
+ * another thread does not carry its token there.
+ */
+@Component
+public class ReadConsistency {
+
+    /** The request and response header carrying a token. */
+    public static final String HEADER = "X-Consistency-Token";
+
+    /** The required position of reads pinned to the primary (see {@link #onPrimary}). */
+    public static final long PRIMARY = Long.MAX_VALUE;
+
+    private static final ThreadLocal<long[]> REQUIRED = ThreadLocal.withInitial(() -> new long[1]);
+    private static final ThreadLocal<boolean[]> STALE = ThreadLocal.withInitial(() -> new boolean[1]);
+
+    private final ObjectProvider<ReplicaLagMonitor> lagMonitor;
+
+    public ReadConsistency(ObjectProvider<ReplicaLagMonitor> lagMonitor) {
+        this.lagMonitor = lagMonitor;
+    }
+
+    /**
+     * Issues a token covering every write committed so far. Call it after the write's transaction has committed.
+     *
+     * @return The token, or empty if no replica is configured (reads always see the primary then).
+     */
+    public OptionalLong tokenAfterWrite() {
+        ReplicaLagMonitor monitor = lagMonitor.getIfAvailable();
+        return monitor == null ? OptionalLong.empty() : OptionalLong.of(monitor.currentPrimaryPosition());
+    }
+
+    /**
+     * Makes the read-only transactions of the calling thread wait for nothing older than the token:
+     * they go to the primary until the replica has reached it. Undo with {@link #clear()}.
+     */
+    public void require(long token) {
+        REQUIRED.get()[0] = token;
+    }
+
+    /** Forgets the token set by {@link #require(long)}. */
+    public void clear() {
+        REQUIRED.get()[0] = 0;
+    }
+
+    /**
+     * Runs the action with the calling thread's reads pinned to the primary, whatever the replica's state.
+     * For readers that derive state from the tables (the search index, the change feed) and must not miss
+     * a commit the replica has not applied yet.
+     */
+    public <T> T onPrimary(Supplier<T> action) {
+        long[] required = REQUIRED.get();
+        long previous = required[0];
+        required[0] = PRIMARY;
+        try {
+            return action.get();
+        } finally {
+            required[0] = previous;
+        }
+    }
+
+    /** @return The position the calling thread's reads must see, 0 for none, or {@link #PRIMARY}. */
+    public long requiredPosition() {
+        return REQUIRED.get()[0];
+    }
+
+    /**
+     * @return True if the calling thread's reads must reach a position (a token, or {@link #onPrimary}):
+     *         they cannot share results read by other threads, which may have read an older replica.
+     */
+    public static boolean isPositionRequired() {
+        return REQUIRED.get()[0] != 0;
+    }
+
+    /**
+     * @return True if the calling thread's current (most recent) connection comes from a replica that was
+     *         behind the primary when it was handed out. Results read through it should not be cached,
+     *         because they may miss writes that the cache invalidation already accounted for.
+     */
+    public static boolean isStaleRead() {
+        return STALE.get()[0];
+    }
+
+    static void setStaleRead(boolean stale) {
+        STALE.get()[0] = stale;
+    }
+}
@@ -0,0 +1,93 @@
+package com.heidari.document_service.config;
+
+import com.heidari.document_service.metrics.DocumentMetrics;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Read replica routing, enabled with "document.datasource.replica.enabled=true".
+ * <p>
+ * Replaces Spring Boot's single DataSource with two connection pools, each sized on its own:
+ * - primaryDataSource: "spring.datasource.*" and "spring.datasource.hikari.*", for every write;
+ * - replicaDataSource: "document.datasource.replica.*" and "document.datasource.replica.hikari.*",
+ *   for read-only transactions (searches, facets, single-document reads).
+ * The application's DataSource is a {@link ReplicaRoutingDataSource} over both, so heavy searches
+ * no longer take connections (or database time) away from ingestion.
+ * <p>
+ * Schema management ("ddl-auto") runs on the primary only; the replica gets its schema by replication.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "document.datasource.replica", name = "enabled", havingValue = "true")
+public class ReplicaDataSourceConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("document.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(ReplicaProperties properties) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(properties.getUrl())
+                .username(properties.getUsername())
+                .password(properties.getPassword())
+                .driverClassName(properties.getDriverClassName())
+                .build();
+        dataSource.setPoolName("replica");
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("primaryDataSource") DataSource primary,
+                                               @Qualifier("replicaDataSource") DataSource replica,
+                                               ReplicaProperties properties, ChangeFeedProperties changes) {
+        // Without the change log the fallback positions never move (lag 0, every token met) and nothing
+        // would say so; refuse to start rather than serve stale reads as fresh
+        if (!changes.isEnabled()) {
+            throw new IllegalStateException(
+                    "document.datasource.replica.enabled=true requires document.changes.enabled=true");
+        }
+        JdbcTemplate primaryTemplate = new JdbcTemplate(primary);
+        boolean postgres = "PostgreSQL".equals(primaryTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName()));
+        return new ReplicaLagMonitor(primaryTemplate, new JdbcTemplate(replica), properties, postgres);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReplicaLagMonitor lagMonitor, ReadConsistency readConsistency,
+                                 ReplicaProperties properties, DocumentMetrics metrics) {
+        metrics.bindReplicaRouting(lagMonitor::lag);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replica, lagMonitor,
+                readConsistency, properties, metrics);
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    /** Routes every transaction on its own (see the note in {@link ReplicaRoutingDataSource}). */
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionsAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                "DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION");
+    }
+}
@@ -0,0 +1,147 @@
+package com.heidari.document_service.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how far the replica is behind the primary, every "lag-check-interval".
+ * <p>
+ * Educational Note on positions:
+ * On PostgreSQL a position is a WAL location, in bytes: pg_current_wal_lsn() on the primary and
+ * pg_last_wal_replay_lsn() on the replica. Commit records are written to the WAL in commit order and
+ * replayed in that order, so a replica that has replayed past a location has every transaction that
+ * committed before it; the lag is the difference of the two positions, in WAL bytes.
+ * The highest change log id would not do: ids are drawn when a row is inserted, not when it commits,
+ * so a replica may hold change 8 while change 7 (and its document) is still to come.
+ * <p>
+ * Databases without WAL functions (the H2 stand-ins used in tests, where "replication" is a copy of
+ * the primary) use the highest change log id instead, in changes. Either way the replica requires the
+ * change log: it is enabled at startup or the application fails to start (see
+ * {@link ReplicaDataSourceConfiguration}).
+ * <p>
+ * The replica is usable while the last check succeeded, is recent (three intervals), and the lag
+ * is at most "max-lag". A failed check or a refused connection marks it unavailable until the next
+ * successful check.
+ */
+public class ReplicaLagMonitor implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    static final String PRIMARY_WAL_POSITION_SQL =
+            "SELECT CAST(pg_wal_lsn_diff(pg_current_wal_lsn(), '0/0') AS bigint)";
+    // Null while the replica is not in recovery (not a standby): it then never satisfies a token
+    static final String REPLICA_WAL_POSITION_SQL =
+            "SELECT COALESCE(CAST(pg_wal_lsn_diff(pg_last_wal_replay_lsn(), '0/0') AS bigint), 0)";
+    static final String CHANGE_LOG_POSITION_SQL = "SELECT COALESCE(MAX(id), 0) FROM document_change";
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final ReplicaProperties properties;
+    private final String primaryPositionSql;
+    private final String replicaPositionSql;
+
+    private volatile long primaryPosition;
+    private volatile long replicaPosition;
+    private volatile boolean available;
+    private volatile long checkedAt;
+
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    /**
+     * @param walPositions True to compare WAL locations (PostgreSQL), false for change log ids.
+     */
+    public ReplicaLagMonitor(JdbcTemplate primary, JdbcTemplate replica, ReplicaProperties properties,
+                             boolean walPositions) {
+        this.primary = primary;
+        this.replica = replica;
+        this.properties = properties;
+        this.primaryPositionSql = walPositions ? PRIMARY_WAL_POSITION_SQL : CHANGE_LOG_POSITION_SQL;
+        this.replicaPositionSql = walPositions ? REPLICA_WAL_POSITION_SQL : CHANGE_LOG_POSITION_SQL;
+    }
+
+    /**
+     * Reads both positions now.
+     */
+    public synchronized void refresh() {
+        try {
+            // The replica first: the primary can only have moved on meanwhile, so the lag is never understated
+            long replicaNow = replica.queryForObject(replicaPositionSql, Long.class);
+            long primaryNow = currentPrimaryPosition();
+            primaryPosition = primaryNow;
+            replicaPosition = replicaNow;
+            if (!available) {
+                log.info("Read replica available ({} behind)", Math.max(0, primaryNow - replicaNow));
+            }
+            available = true;
+        } catch (DataAccessException e) {
+            markUnavailable(e);
+        }
+        checkedAt = System.nanoTime();
+    }
+
+    /** @return The primary's position right now (one query on the primary). */
+    public long currentPrimaryPosition() {
+        return primary.queryForObject(primaryPositionSql, Long.class);
+    }
+
+    /** @return The replica's position at the last check (it only moves forward). */
+    public long replicaPosition() {
+        return replicaPosition;
+    }
+
+    /** @return How far the replica was behind at the last check (see positions), or -1 if it is unavailable. */
+    public long lag() {
+        return available ? Math.max(0, primaryPosition - replicaPosition) : -1;
+    }
+
+    /** @return True if the last successful check is recent. */
+    public boolean isAvailable() {
+        long maxAge = properties.getLagCheckInterval().toNanos() * 3;
+        return available && System.nanoTime() - checkedAt <= maxAge;
+    }
+
+    /** Takes the replica out of rotation until the next successful check. */
+    public void markUnavailable(Exception cause) {
+        if (available) {
+            log.warn("Read replica unavailable, reads go to the primary: {}", cause.toString());
+        }
+        available = false;
+    }
+
+    // --- Lifecycle: the first check runs before the application takes requests ---
+
+    @Override
+    public void start() {
+        running = true;
+        refresh();
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getLagCheckInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,61 @@
+package com.heidari.document_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Read replica settings, bound from the "document.datasource.replica.*" properties
+ * (see {@link ReplicaDataSourceConfiguration}).
+ * <p>
+ * The replica's connection pool is configured like the primary's, under
+ * "document.datasource.replica.hikari.*" (e.g. maximum-pool-size), while the primary keeps
+ * "spring.datasource.hikari.*".
+ */
+@ConfigurationProperties(prefix = "document.datasource.replica")
+public class ReplicaProperties {
+
+    /** Whether read-only transactions may be served by the replica. */
+    private boolean enabled = false;
+
+    private String url;
+
+    private String username;
+
+    private String password;
+
+    /** Optional; derived from the URL when empty. */
+    private String driverClassName;
+
+    /**
+     * Largest lag at which the replica still serves reads; beyond it, reads fall back to the primary.
+     * In WAL bytes on PostgreSQL, in change log entries elsewhere (see {@link ReplicaLagMonitor}).
+     */
+    private long maxLag = 16L * 1024 * 1024;
+
+    /** How often the positions of the primary and the replica are compared. */
+    private Duration lagCheckInterval = Duration.ofSeconds(1);
+
+    // --- Accessors ---
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.url = url; }
+
+    public String getUsername() { return username; }
+    public void setUsername(String username) { this.username = username; }
+
+    public String getPassword() { return password; }
+    public void setPassword(String password) { this.password = password; }
+
+    public String getDriverClassName() { return driverClassName; }
+    public void setDriverClassName(String driverClassName) { this.driverClassName = driverClassName; }
+
+    public long getMaxLag() { return maxLag; }
+    public void setMaxLag(long maxLag) { this.maxLag = maxLag; }
+
+    public Duration getLagCheckInterval() { return lagCheckInterval; }
+    public void setLagCheckInterval(Duration lagCheckInterval) { this.lagCheckInterval = lagCheckInterval; }
+}
@@ -0,0 +1,105 @@
+package com.heidari.document_service.config;
+
+import com.heidari.document_service.metrics.DocumentMetrics;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Hands out primary connections to read-write work and replica connections to read-only transactions
+ * ({@code @Transactional(readOnly = true)}), unless the replica cannot serve the read.
+ * <p>
+ * Educational Note on when the route is decided:
+ * The decision is made when a physical connection is requested, from the transaction's read-only flag.
+ * Spring sets that flag only after the transaction has begun, and the JPA transaction manager asks for
+ * a connection while beginning it; so this DataSource sits behind a LazyConnectionDataSourceProxy,
+ * which defers the real request to the first SQL statement (see {@link ReplicaDataSourceConfiguration}).
+ * Hibernate is also told to release the connection after each transaction, so every transaction is
+ * routed afresh instead of reusing the connection of the previous one (e.g. with open-session-in-view).
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    /**
+     * Where a connection went, and why.
+     */
+    public enum Route {
+        /** Not a read-only transaction: the primary. */
+        WRITE,
+        /** A read-only transaction served by the replica. */
+        REPLICA,
+        /** Read-only, but pinned to the primary (see {@link ReadConsistency#onPrimary}). */
+        PRIMARY_PINNED,
+        /** Read-only, but the replica has not reached the caller's consistency token yet. */
+        PRIMARY_FOR_TOKEN,
+        /** Read-only, but the replica is more than "max-lag" behind. */
+        PRIMARY_LAGGING,
+        /** Read-only, but the replica is unreachable. */
+        PRIMARY_UNAVAILABLE
+    }
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final ReplicaLagMonitor lagMonitor;
+    private final ReadConsistency readConsistency;
+    private final ReplicaProperties properties;
+    private final DocumentMetrics metrics;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor,
+                                    ReadConsistency readConsistency, ReplicaProperties properties,
+                                    DocumentMetrics metrics) {
+        this.primary = primary;
+        this.replica = replica;
+        this.lagMonitor = lagMonitor;
+        this.readConsistency = readConsistency;
+        this.properties = properties;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Route route = route();
+        if (route == Route.REPLICA) {
+            try {
+                Connection connection = replica.getConnection();
+                metrics.recordRoute(route);
+                ReadConsistency.setStaleRead(lagMonitor.lag() != 0);
+                return connection;
+            } catch (SQLException e) {
+                // Don't fail the read: use the primary until the monitor sees the replica again
+                lagMonitor.markUnavailable(e);
+                route = Route.PRIMARY_UNAVAILABLE;
+            }
+        }
+        metrics.recordRoute(route);
+        ReadConsistency.setStaleRead(false);
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new UnsupportedOperationException("Credentials are configured per route");
+    }
+
+    Route route() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Route.WRITE;
+        }
+        long required = readConsistency.requiredPosition();
+        if (required == ReadConsistency.PRIMARY) {
+            return Route.PRIMARY_PINNED;
+        }
+        if (!lagMonitor.isAvailable()) {
+            return Route.PRIMARY_UNAVAILABLE;
+        }
+        if (lagMonitor.replicaPosition() < required) {
+            return Route.PRIMARY_FOR_TOKEN;
+        }
+        if (lagMonitor.lag() > properties.getMaxLag()) {
+            return Route.PRIMARY_LAGGING;
+        }
+        return Route.REPLICA;
+    }
+}
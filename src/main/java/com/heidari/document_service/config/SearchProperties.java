@@ -0,0 +1,301 @@
+package com.heidari.document_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Search settings, bound from the "document.search.*" properties.
+ * <p>
+ * Example (application.properties):
+ * document.search.engine=specification
+ */
+@ConfigurationProperties(prefix = "document.search")
+public class SearchProperties {
+
+    /**
+     * Which implementation answers search requests.
+     */
+    public enum Engine {
+        /** The in-memory inverted index (default). */
+        INDEX,
+        /** The original JPA Specification path: LIKE queries against the database. */
+        SPECIFICATION
+    }
+
+    private Engine engine = Engine.INDEX;
+
+    /** Number of documents loaded per query while building the index at startup. */
+    private int rebuildBatchSize = 500;
+
+    /**
+     * Whether a new document is added to the index right after its transaction commits. When false,
+     * the write path does no tokenization and the change feed indexes documents asynchronously.
+     */
+    private boolean indexOnCommit = true;
+
+    /** Page size used when a search request does not specify "limit". */
+    private int defaultPageSize = 20;
+
+    /** Upper bound for "limit"; larger values are clamped. */
+    private int maxPageSize = 100;
+
+    /** Rows fetched per database round trip when streaming search results. */
+    private int streamFetchSize = 500;
+
+    /** Result cache in front of paginated searches ("document.search.cache.*"). */
+    private final Cache cache = new Cache();
+
+    /** Sharing of identical concurrent searches ("document.search.coalescing.*"). */
+    private final Coalescing coalescing = new Coalescing();
+
+    /** BM25 parameters of ranked searches ("document.search.ranking.*"). */
+    private final Ranking ranking = new Ranking();
+
+    /** Trigram index for substring and fuzzy searches ("document.search.trigram.*"). */
+    private final Trigram trigram = new Trigram();
+
+    /** On-disk snapshots of the index, for fast restarts ("document.search.snapshot.*"). */
+    private final Snapshot snapshot = new Snapshot();
+
+    /** Type-ahead suggestions of titles and tags ("document.search.suggest.*"). */
+    private final Suggest suggest = new Suggest();
+
+    /** Parallel search of the index segments ("document.search.parallel.*"). */
+    private final Parallel parallel = new Parallel();
+
+    /**
+     * Search result cache settings.
+     */
+    public static class Cache {
+
+        private boolean enabled = true;
+
+        /** Approximate total size of all cached pages, in bytes. */
+        private long maximumWeight = 64L * 1024 * 1024;
+
+        /** Pages larger than this (in bytes) are not cached, so one huge page cannot flush the rest. */
+        private long maximumEntryWeight = 1024L * 1024;
+
+        /** Time after which an entry expires even without writes. */
+        private Duration timeToLive = Duration.ofMinutes(5);
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public long getMaximumWeight() { return maximumWeight; }
+        public void setMaximumWeight(long maximumWeight) { this.maximumWeight = maximumWeight; }
+
+        public long getMaximumEntryWeight() { return maximumEntryWeight; }
+        public void setMaximumEntryWeight(long maximumEntryWeight) { this.maximumEntryWeight = maximumEntryWeight; }
+
+        public Duration getTimeToLive() { return timeToLive; }
+        public void setTimeToLive(Duration timeToLive) { this.timeToLive = timeToLive; }
+    }
+
+    /**
+     * Single-flight settings, see {@link com.heidari.document_service.search.SearchCoalescer}.
+     */
+    public static class Coalescing {
+
+        private boolean enabled = true;
+
+        /** How long a caller waits for an identical search in progress before running it itself. */
+        private Duration maxWait = Duration.ofSeconds(2);
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public Duration getMaxWait() { return maxWait; }
+        public void setMaxWait(Duration maxWait) { this.maxWait = maxWait; }
+    }
+
+    /**
+     * Relevance ranking settings (ranked=true), see {@link com.heidari.document_service.search.InvertedIndex#searchRanked}.
+     */
+    public static class Ranking {
+
+        /** Term frequency saturation. */
+        private double k1 = 1.2;
+
+        /** Field length normalization, from 0 (none) to 1 (full). */
+        private double b = 0.75;
+
+        private double titleBoost = 2.0;
+        private double contentBoost = 1.0;
+        private double tagBoost = 1.5;
+
+        public double getK1() { return k1; }
+        public void setK1(double k1) { this.k1 = k1; }
+
+        public double getB() { return b; }
+        public void setB(double b) { this.b = b; }
+
+        public double getTitleBoost() { return titleBoost; }
+        public void setTitleBoost(double titleBoost) { this.titleBoost = titleBoost; }
+
+        public double getContentBoost() { return contentBoost; }
+        public void setContentBoost(double contentBoost) { this.contentBoost = contentBoost; }
+
+        public double getTagBoost() { return tagBoost; }
+        public void setTagBoost(double tagBoost) { this.tagBoost = tagBoost; }
+    }
+
+    /**
+     * Trigram index settings (match=substring / match=fuzzy), see
+     * {@link com.heidari.document_service.search.TrigramIndex}.
+     */
+    public static class Trigram {
+
+        /** When false, substring searches use the Specification path and fuzzy searches are refused. */
+        private boolean enabled = true;
+
+        /** Approximate memory budget of the trigram posting lists; later documents are verified unfiltered. */
+        private long maxBytes = 256L * 1024 * 1024;
+
+        /** Fields longer than this (in characters) are not indexed, only verified. */
+        private int maxFieldLength = 64 * 1024;
+
+        /** Largest edit distance accepted by fuzzy searches. */
+        private int maxDistance = 2;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public long getMaxBytes() { return maxBytes; }
+        public void setMaxBytes(long maxBytes) { this.maxBytes = maxBytes; }
+
+        public int getMaxFieldLength() { return maxFieldLength; }
+        public void setMaxFieldLength(int maxFieldLength) { this.maxFieldLength = maxFieldLength; }
+
+        public int getMaxDistance() { return maxDistance; }
+        public void setMaxDistance(int maxDistance) { this.maxDistance = maxDistance; }
+    }
+
+    /**
+     * Index snapshot settings, see {@link com.heidari.document_service.search.DocumentIndex}.
+     */
+    public static class Snapshot {
+
+        /** When false, the index is always rebuilt from the database at startup and never written to disk. */
+        private boolean enabled = true;
+
+        /** Directory of the snapshot files. */
+        private String directory = "data/index";
+
+        /** Time between two snapshots (skipped when no document was indexed meanwhile). */
+        private Duration interval = Duration.ofMinutes(10);
+
+        /** Number of snapshot files kept; older ones are deleted. */
+        private int retain = 2;
+
+        /**
+         * Documents created up to this long before the newest document of a snapshot are replayed as well,
+         * in case they committed after the snapshot was taken (transactions commit out of id order).
+         */
+        private Duration replayWindow = Duration.ofMinutes(5);
+
+        /** Write a final snapshot when the application shuts down, so the next start replays nothing. */
+        private boolean writeOnShutdown = true;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public String getDirectory() { return directory; }
+        public void setDirectory(String directory) { this.directory = directory; }
+
+        public Duration getInterval() { return interval; }
+        public void setInterval(Duration interval) { this.interval = interval; }
+
+        public int getRetain() { return retain; }
+        public void setRetain(int retain) { this.retain = retain; }
+
+        public Duration getReplayWindow() { return replayWindow; }
+        public void setReplayWindow(Duration replayWindow) { this.replayWindow = replayWindow; }
+
+        public boolean isWriteOnShutdown() { return writeOnShutdown; }
+        public void setWriteOnShutdown(boolean writeOnShutdown) { this.writeOnShutdown = writeOnShutdown; }
+    }
+
+    /**
+     * Type-ahead settings, see {@link com.heidari.document_service.search.SuggestionTrie}.
+     */
+    public static class Suggest {
+
+        /** Suggestions returned when the request has no "limit" (which is capped at "max-page-size"). */
+        private int defaultLimit = 10;
+
+        /** Most trie nodes one lookup may open; bounds its time and allocations on very popular prefixes. */
+        private int maxExpansions = 512;
+
+        public int getDefaultLimit() { return defaultLimit; }
+        public void setDefaultLimit(int defaultLimit) { this.defaultLimit = defaultLimit; }
+
+        public int getMaxExpansions() { return maxExpansions; }
+        public void setMaxExpansions(int maxExpansions) { this.maxExpansions = maxExpansions; }
+    }
+
+    /**
+     * Parallel segment search settings, see {@link com.heidari.document_service.search.InvertedIndex}.
+     */
+    public static class Parallel {
+
+        /** When false, the segments of a query are searched one after the other on the request thread. */
+        private boolean enabled = true;
+
+        /** Threads of the segment search pool; 0 means one per available processor. */
+        private int threads = 0;
+
+        /** Most tasks (and so cores) one query may use; 0 means as many as there are threads. */
+        private int maxParallelism = 0;
+
+        /** Fewest documents per segment: below this, splitting costs more than it saves. */
+        private int minSegmentSize = 65_536;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getThreads() { return threads; }
+        public void setThreads(int threads) { this.threads = threads; }
+
+        public int getMaxParallelism() { return maxParallelism; }
+        public void setMaxParallelism(int maxParallelism) { this.maxParallelism = maxParallelism; }
+
+        public int getMinSegmentSize() { return minSegmentSize; }
+        public void setMinSegmentSize(int minSegmentSize) { this.minSegmentSize = minSegmentSize; }
+    }
+
+    // --- Accessors ---
+
+    public Engine getEngine() { return engine; }
+    public void setEngine(Engine engine) { this.engine = engine; }
+
+    public int getRebuildBatchSize() { return rebuildBatchSize; }
+    public void setRebuildBatchSize(int rebuildBatchSize) { this.rebuildBatchSize = rebuildBatchSize; }
+
+    public boolean isIndexOnCommit() { return indexOnCommit; }
+    public void setIndexOnCommit(boolean indexOnCommit) { this.indexOnCommit = indexOnCommit; }
+
+    public int getDefaultPageSize() { return defaultPageSize; }
+    public void setDefaultPageSize(int defaultPageSize) { this.defaultPageSize = defaultPageSize; }
+
+    public int getMaxPageSize() { return maxPageSize; }
+    public void setMaxPageSize(int maxPageSize) { this.maxPageSize = maxPageSize; }
+
+    public int getStreamFetchSize() { return streamFetchSize; }
+    public void setStreamFetchSize(int streamFetchSize) { this.streamFetchSize = streamFetchSize; }
+
+    public Cache getCache() { return cache; }
+
+    public Coalescing getCoalescing() { return coalescing; }
+
+    public Ranking getRanking() { return ranking; }
+
+    public Trigram getTrigram() { return trigram; }
+
+    public Snapshot getSnapshot() { return snapshot; }
+
+    public Suggest getSuggest() { return suggest; }
+
+    public Parallel getParallel() { return parallel; }
+}
@@ -0,0 +1,41 @@
+package com.heidari.document_service.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Counts the SQL statements Hibernate prepares, per thread.
+ * <p>
+ * Educational Note:
+ * N+1 problems are invisible in the code (a getter on a lazy collection looks free) and only
+ * show up as extra statements. Hibernate hands every statement to the registered StatementInspector
+ * before preparing it, which makes it a cheap place to count them. Callers take the difference
+ * of {@link #currentThreadCount()} before and after an operation.
+ */
+@Component
+public class SqlStatementCounter implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql; // unchanged
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+
+    /**
+     * @return The number of statements prepared so far on the calling thread.
+     */
+    public long currentThreadCount() {
+        return COUNT.get()[0];
+    }
+}
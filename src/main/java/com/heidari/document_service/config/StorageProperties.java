@@ -0,0 +1,70 @@
+package com.heidari.document_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+
+/**
+ * File-backed content storage settings, bound from the "document.storage.*" properties.
+ */
+@ConfigurationProperties(prefix = "document.storage")
+public class StorageProperties {
+
+    /** Directory holding the content files. */
+    private Path root = Path.of("data", "content");
+
+    /** Bodies longer than this (in characters) are stored in a file instead of the "content" column. */
+    private int inlineThreshold = 64 * 1024;
+
+    /** Move existing oversized "content" values to files at startup. */
+    private boolean migrateOnStartup = false;
+
+    /** Documents migrated per transaction. */
+    private int migrationBatchSize = 50;
+
+    /** Compression of bodies kept in the database. */
+    private final Compression compression = new Compression();
+
+    /**
+     * Bounds (in characters) of the per-document codec choice, see ContentCompressor.
+     */
+    public static class Compression {
+
+        /**
+         * Compress inline bodies at all. Takes effect only while the search indexes serve content searches
+         * (see ContentCompressor).
+         */
+        private boolean enabled = true;
+
+        /** Shorter bodies are stored as plain text. */
+        private int minSize = 2048;
+
+        /** Bodies at least this long use Deflate; shorter ones LZ4. */
+        private int deflateMinSize = 32 * 1024;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getMinSize() { return minSize; }
+        public void setMinSize(int minSize) { this.minSize = minSize; }
+
+        public int getDeflateMinSize() { return deflateMinSize; }
+        public void setDeflateMinSize(int deflateMinSize) { this.deflateMinSize = deflateMinSize; }
+    }
+
+    // --- Accessors ---
+
+    public Path getRoot() { return root; }
+    public void setRoot(Path root) { this.root = root; }
+
+    public int getInlineThreshold() { return inlineThreshold; }
+    public void setInlineThreshold(int inlineThreshold) { this.inlineThreshold = inlineThreshold; }
+
+    public boolean isMigrateOnStartup() { return migrateOnStartup; }
+    public void setMigrateOnStartup(boolean migrateOnStartup) { this.migrateOnStartup = migrateOnStartup; }
+
+    public int getMigrationBatchSize() { return migrationBatchSize; }
+    public void setMigrationBatchSize(int migrationBatchSize) { this.migrationBatchSize = migrationBatchSize; }
+
+    public Compression getCompression() { return compression; }
+}
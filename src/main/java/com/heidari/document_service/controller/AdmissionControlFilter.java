@@ -0,0 +1,208 @@
+package com.heidari.document_service.controller;
+
+import com.heidari.document_service.config.AdmissionProperties;
+import com.heidari.document_service.metrics.DocumentMetrics;
+import com.heidari.document_service.metrics.DocumentMetrics.AdmissionBudget;
+import com.heidari.document_service.metrics.DocumentMetrics.RequestCost;
+import com.heidari.document_service.search.SearchMode;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Admission control in front of the /documents endpoints: limits how many requests run at once and
+ * rejects the excess right away with 503 Service Unavailable and a Retry-After header.
+ * <p>
+ * Educational Note:
+ * Without a limit, a handful of expensive searches can take every database connection; everything
+ * behind them waits for a connection until it times out, cheap requests and writes included, and
+ * the service stops answering anything. Rejecting what cannot be served soon keeps the latency of
+ * what is admitted low, and a client told to retry later can back off or try another instance.
+ * <p>
+ * Reads and writes have separate budgets, so a read storm cannot starve writes (and vice versa), and
+ * each limit adapts to the latency it observes (see {@link AdmissionLimiter}). Within a budget,
+ * expensive requests may only fill "expensive-share" of the limit, so under load they are shed first
+ * and cheap ones keep getting through:
+ * - expensive reads: searches and facets in "all" or "content" mode (the default), substring or fuzzy
+ *   matches, ranked searches, NDJSON search results, and corpus exports;
+ * - expensive writes: bulk and corpus imports, and streamed uploads;
+ * - everything else is cheap: title and tag searches, suggestions, single documents, single creates.
+ * <p>
+ * Long-running requests (bulk uploads, streamed uploads, corpus exports and imports, NDJSON search
+ * results, plain-text document bodies) take as long as their payload and the client's connection, not as
+ * long as the load makes them: they hold a slot while they run but do not feed their latency to the
+ * limit, which they would otherwise drive down to its minimum.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final String PATH_PREFIX = "/documents";
+    private static final Pattern DOCUMENT_PATH = Pattern.compile(PATH_PREFIX + "/\\d+");
+
+    private final AdmissionProperties properties;
+    private final DocumentMetrics metrics;
+    private final Map<AdmissionBudget, AdmissionLimiter> limiters = new EnumMap<>(AdmissionBudget.class);
+
+    public AdmissionControlFilter(AdmissionProperties properties, DocumentMetrics metrics) {
+        this.properties = properties;
+        this.metrics = metrics;
+        limiters.put(AdmissionBudget.READ, new AdmissionLimiter(properties.getRead()));
+        limiters.put(AdmissionBudget.WRITE, new AdmissionLimiter(properties.getWrite()));
+        limiters.forEach((budget, limiter) -> metrics.bindAdmissionBudget(budget, limiter::limit, limiter::inflight));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled() || !path(request).startsWith(PATH_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AdmissionBudget budget = budget(request);
+        RequestCost cost = cost(request);
+        AdmissionLimiter limiter = limiters.get(budget);
+        if (!limiter.tryAcquire(cost == RequestCost.EXPENSIVE ? properties.getExpensiveShare() : 1)) {
+            metrics.recordAdmissionRejected(budget, cost);
+            reject(response, budget);
+            return;
+        }
+
+        long started = System.nanoTime();
+        boolean measured = !longRunning(request);
+        AtomicBoolean released = new AtomicBoolean();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = response.getStatus() >= 500;
+        } finally {
+            if (request.isAsyncStarted()) {
+                // Streamed bodies are written after this returns: the request ends with the async context
+                request.getAsyncContext().addListener(new ReleaseOnCompletion(limiter, started, measured, released));
+            } else if (released.compareAndSet(false, true)) {
+                release(limiter, started, measured, failed);
+            }
+        }
+    }
+
+    static AdmissionBudget budget(HttpServletRequest request) {
+        String method = request.getMethod();
+        return ("GET".equals(method) || "HEAD".equals(method)) ? AdmissionBudget.READ : AdmissionBudget.WRITE;
+    }
+
+    static RequestCost cost(HttpServletRequest request) {
+        String path = path(request);
+        if (budget(request) == AdmissionBudget.WRITE) {
+            return (path.equals(PATH_PREFIX + "/bulk") || path.equals(PATH_PREFIX + "/import")
+                    || path.equals(PATH_PREFIX + "/stream")) ? RequestCost.EXPENSIVE : RequestCost.CHEAP;
+        }
+        if (path.equals(PATH_PREFIX + "/export")) {
+            return RequestCost.EXPENSIVE;
+        }
+        if (!path.equals(PATH_PREFIX + "/search") && !path.equals(PATH_PREFIX + "/facets")) {
+            return RequestCost.CHEAP;
+        }
+        SearchMode mode = SearchMode.from(request.getParameter("mode"));
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        boolean expensive = mode == SearchMode.ALL || mode == SearchMode.CONTENT
+                || StringUtils.hasText(request.getParameter("match"))
+                || Boolean.parseBoolean(request.getParameter("ranked"))
+                || (accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE));
+        return expensive ? RequestCost.EXPENSIVE : RequestCost.CHEAP;
+    }
+
+    /**
+     * @return True for requests whose duration depends on their payload (see the class note).
+     */
+    static boolean longRunning(HttpServletRequest request) {
+        String path = path(request);
+        if (budget(request) == AdmissionBudget.WRITE) {
+            return path.equals(PATH_PREFIX + "/bulk") || path.equals(PATH_PREFIX + "/import")
+                    || path.equals(PATH_PREFIX + "/stream");
+        }
+        if (path.equals(PATH_PREFIX + "/export")) {
+            return true;
+        }
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null) {
+            return false;
+        }
+        // GET /documents/{id} as text/plain sends the whole body (or a range of it), possibly from a file
+        return (path.equals(PATH_PREFIX + "/search") && accept.contains(MediaType.APPLICATION_NDJSON_VALUE))
+                || (DOCUMENT_PATH.matcher(path).matches() && accept.contains(MediaType.TEXT_PLAIN_VALUE));
+    }
+
+    private static void release(AdmissionLimiter limiter, long started, boolean measured, boolean failed) {
+        if (measured) {
+            limiter.release(started, System.nanoTime(), failed);
+        } else {
+            limiter.release();
+        }
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    // Written here rather than through the error page, so a rejection costs next to nothing
+    private void reject(HttpServletResponse response, AdmissionBudget budget) throws IOException {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(properties.getRetryAfterSeconds()));
+        response.setContentType(MediaType.APPLICATION_PROBLEM_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write("{\"type\":\"about:blank\",\"title\":\"Service Unavailable\",\"status\":503,"
+                + "\"detail\":\"Too many concurrent " + (budget == AdmissionBudget.READ ? "reads" : "writes")
+                + "; retry later\"}");
+    }
+
+    // Releases the permit of an asynchronous request (e.g. a streamed export) when it ends
+    private record ReleaseOnCompletion(AdmissionLimiter limiter, long started, boolean measured,
+                                       AtomicBoolean released) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release(event, false);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release(event, true);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release(event, true);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+
+        private void release(AsyncEvent event, boolean failed) {
+            if (released.compareAndSet(false, true)) {
+                boolean serverError = event.getSuppliedResponse() instanceof HttpServletResponse response
+                        && response.getStatus() >= 500;
+                AdmissionControlFilter.release(limiter, started, measured, failed || serverError);
+            }
+        }
+    }
+}
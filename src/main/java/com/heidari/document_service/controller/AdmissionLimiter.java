@@ -0,0 +1,108 @@
+package com.heidari.document_service.controller;
+
+import com.heidari.document_service.config.AdmissionProperties;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A concurrency limit that adapts to the observed latency with AIMD, as TCP congestion control does.
+ * <p>
+ * Educational Note:
+ * The right number of concurrent requests is not known in advance: it depends on the connection pool,
+ * the queries and the machine. So the limit is probed. Each request that completes within the latency
+ * threshold while the limit is actually in use adds 1/limit to it (so about +1 per limit's worth of
+ * fast requests: additive increase). A slow or failing one multiplies it by the backoff ratio
+ * (multiplicative decrease), at most once per threshold period, so one burst of slow responses
+ * counts as one signal and not as one per request. The limit thus settles just below the concurrency
+ * at which latency degrades, and follows it when that changes.
+ * <p>
+ * Requests beyond the limit are not queued: waiting would only add to the latency that triggered
+ * the limit. Callers reject them right away.
+ * <p>
+ * Only requests whose duration reflects the load are a signal. A bulk upload, a corpus export or a
+ * streamed result runs as long as its payload takes to transfer, far beyond any threshold on an idle
+ * server; such requests are released with {@link #release()} and count against the concurrency only.
+ * <p>
+ * Thread-safe: admission is a CAS on the in-flight counter; adjustments are synchronized.
+ */
+final class AdmissionLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long thresholdNanos;
+    private final double backoffRatio;
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    private double limit;                // guarded by this
+    private long lastDecrease;           // guarded by this
+    private boolean decreased;           // guarded by this
+    private volatile int currentLimit;
+
+    AdmissionLimiter(AdmissionProperties.Budget budget) {
+        this.minLimit = Math.max(1, budget.getMinLimit());
+        this.maxLimit = Math.max(minLimit, budget.getMaxLimit());
+        this.thresholdNanos = budget.getLatencyThreshold().toNanos();
+        this.backoffRatio = budget.getBackoffRatio();
+        this.limit = Math.max(minLimit, Math.min(maxLimit, budget.getInitialLimit()));
+        this.currentLimit = (int) limit;
+    }
+
+    /** @return The current limit. */
+    int limit() { return currentLimit; }
+
+    /** @return The requests admitted and not yet released. */
+    int inflight() { return inflight.get(); }
+
+    /**
+     * Admits a request if fewer than share * limit requests are in flight (at least one slot).
+     *
+     * @param share The part of the limit this request may use (1 for all of it).
+     * @return False if the request must be rejected; otherwise {@link #release} must follow.
+     */
+    boolean tryAcquire(double share) {
+        int allowed = Math.max(1, (int) (currentLimit * share));
+        while (true) {
+            int current = inflight.get();
+            if (current >= allowed) {
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases an admitted request and adjusts the limit from its outcome.
+     *
+     * @param startedNanos  When it was admitted (System.nanoTime()).
+     * @param finishedNanos When it completed.
+     * @param failed        True if it failed in a way that suggests overload (5xx, exception).
+     */
+    void release(long startedNanos, long finishedNanos, boolean failed) {
+        int inflightAtFinish = inflight.getAndDecrement();
+        adjust(finishedNanos - startedNanos, finishedNanos, failed, inflightAtFinish);
+    }
+
+    /**
+     * Releases an admitted request without adjusting the limit: for requests whose duration depends on
+     * their size, not on the load (see the class note).
+     */
+    void release() {
+        inflight.decrementAndGet();
+    }
+
+    private synchronized void adjust(long elapsedNanos, long now, boolean failed, int inflightAtFinish) {
+        if (failed || elapsedNanos > thresholdNanos) {
+            if (!decreased || now - lastDecrease >= thresholdNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                lastDecrease = now;
+                decreased = true;
+            }
+        } else if (inflightAtFinish * 2 >= limit) {
+            // Only grow while at least half the limit is in use: an idle limit proves nothing
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        currentLimit = (int) limit;
+    }
+}
@@ -0,0 +1,48 @@
+package com.heidari.document_service.controller;
+
+import com.heidari.document_service.service.ImportConflictException;
+import com.heidari.document_service.service.IngestQueueFullException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Translates exceptions thrown by the service layer into HTTP error responses.
+ * <p>
+ * Educational Note:
+ * A @RestControllerAdvice applies to every controller, so services can signal errors with plain
+ * Java exceptions instead of depending on web types. Responses use the RFC 7807
+ * "Problem Details" format (application/problem+json).
+ */
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    /**
+     * Invalid client input that passed binding (e.g. a malformed search cursor) -> 400 Bad Request.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ProblemDetail handleBadRequest(IllegalArgumentException ex) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, ex.getMessage());
+    }
+
+    /**
+     * The asynchronous ingestion queue is full -> 429 Too Many Requests, with a Retry-After hint.
+     */
+    @ExceptionHandler(IngestQueueFullException.class)
+    public ResponseEntity<ProblemDetail> handleQueueFull(IngestQueueFullException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ProblemDetail.forStatusAndDetail(HttpStatus.TOO_MANY_REQUESTS, ex.getMessage()));
+    }
+
+    /**
+     * Another import runs under the same checkpoint name -> 409 Conflict.
+     */
+    @ExceptionHandler(ImportConflictException.class)
+    public ProblemDetail handleImportConflict(ImportConflictException ex) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, ex.getMessage());
+    }
+}
@@ -0,0 +1,49 @@
+package com.heidari.document_service.controller;
+
+import com.heidari.document_service.config.ReadConsistency;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Applies the "X-Consistency-Token" request header (returned by earlier writes) to the reads of the request,
+ * so they are not served by a replica that has not caught up with those writes (see {@link ReadConsistency}).
+ * A malformed token is rejected with 400 Bad Request.
+ */
+@Component
+public class ConsistencyTokenFilter extends OncePerRequestFilter {
+
+    private final ReadConsistency readConsistency;
+
+    public ConsistencyTokenFilter(ReadConsistency readConsistency) {
+        this.readConsistency = readConsistency;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader(ReadConsistency.HEADER);
+        if (header == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long token;
+        try {
+            token = Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid " + ReadConsistency.HEADER + " header");
+            return;
+        }
+        readConsistency.require(token);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            readConsistency.clear();
+        }
+    }
+}
@@ -1,39 +1,451 @@
 package com.heidari.document_service.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.heidari.document_service.config.ReadConsistency;
+import com.heidari.document_service.dto.BulkIngestReport;
 import com.heidari.document_service.dto.CreateDocumentRequest;
+import com.heidari.document_service.dto.DocumentSummary;
+import com.heidari.document_service.dto.ImportReport;
+import com.heidari.document_service.dto.IngestTicket;
+import com.heidari.document_service.dto.SearchPage;
+import com.heidari.document_service.dto.Suggestion;
+import com.heidari.document_service.dto.TagFacets;
+import com.heidari.document_service.metrics.DocumentMetrics;
+import com.heidari.document_service.model.ContentStorage;
 import com.heidari.document_service.model.Document;
+import com.heidari.document_service.search.SearchMatch;
+import com.heidari.document_service.search.SearchMode;
+import com.heidari.document_service.service.AsyncIngestService;
+import com.heidari.document_service.service.BulkIngestService;
 import com.heidari.document_service.service.DocumentService;
+import com.heidari.document_service.storage.ContentBody;
+import com.heidari.document_service.storage.ContentStore;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/documents")
 public class DocumentController {
 
+    // Request attributes of Tomcat's sendfile support (see org.apache.coyote.Constants)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Buffer of the gzip streams of exports and imports
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
     private final DocumentService documentService;
+    private final BulkIngestService bulkIngestService;
+    private final AsyncIngestService asyncIngestService;
+    private final ObjectMapper objectMapper;
+    private final DocumentMetrics metrics;
+    private final ContentStore contentStore;
+    private final ReadConsistency readConsistency;
 
     // Constructor Injection (Best Practice for required dependencies)
-    public DocumentController(DocumentService documentService) {
+    public DocumentController(DocumentService documentService, BulkIngestService bulkIngestService,
+                              AsyncIngestService asyncIngestService, ObjectMapper objectMapper,
+                              DocumentMetrics metrics, ContentStore contentStore,
+                              ReadConsistency readConsistency) {
         this.documentService = documentService;
+        this.bulkIngestService = bulkIngestService;
+        this.asyncIngestService = asyncIngestService;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.contentStore = contentStore;
+        this.readConsistency = readConsistency;
     }
 
+    /**
+     * Creates a document. With a read replica, the response carries an "X-Consistency-Token" header:
+     * sending it back with later reads guarantees they see this document (see {@link ReadConsistency}).
+     */
     @PostMapping
     public ResponseEntity<Long> createDocument(@RequestBody CreateDocumentRequest request) {
-        Long documentId = documentService.createDocument(request);
-        return ResponseEntity.ok(documentId);
+        long started = System.nanoTime();
+        Long documentId = documentService.createDocument(request); // commits before returning
+        metrics.recordCreate(System.nanoTime() - started);
+        return withConsistencyToken(ResponseEntity.ok()).body(documentId);
+    }
+
+    /**
+     * Streaming variant of POST /documents for very large bodies: the request body IS the content
+     * (UTF-8 text), and is copied into the content store as it arrives, never held in memory.
+     * Usage: curl -H 'Content-Type: text/plain' --data-binary @book.txt '/documents/stream?title=Book&amp;tags=Java'
+     */
+    @PostMapping(value = "/stream", consumes = {MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<Long> createDocumentFromStream(@RequestParam String title,
+                                                         @RequestParam(required = false) List<String> tags,
+                                                         HttpServletRequest request) throws IOException {
+        long started = System.nanoTime();
+        Long documentId = documentService.createDocument(title, tags, request.getInputStream());
+        metrics.recordCreate(System.nanoTime() - started);
+        return withConsistencyToken(ResponseEntity.ok()).body(documentId);
+    }
+
+    /**
+     * Asynchronous variant of POST /documents.
+     * Returns 202 Accepted with a ticket as soon as the document is queued (429 if the queue is full);
+     * poll the Location (GET /documents/tickets/{ticketId}) until the status is DURABLE.
+     */
+    @PostMapping("/async")
+    public ResponseEntity<IngestTicket> createDocumentAsync(@RequestBody CreateDocumentRequest request) {
+        IngestTicket ticket = asyncIngestService.submit(request);
+        return ResponseEntity.accepted()
+                .location(URI.create("/documents/tickets/" + ticket.ticketId()))
+                .body(ticket);
+    }
+
+    /**
+     * Status of an asynchronous submission (404 if unknown or expired).
+     */
+    @GetMapping("/tickets/{ticketId}")
+    public ResponseEntity<IngestTicket> getTicket(@PathVariable String ticketId) {
+        return ResponseEntity.of(asyncIngestService.ticket(ticketId));
+    }
+
+    /**
+     * Bulk Import Endpoint.
+     * Accepts a JSON array of documents, or NDJSON (Content-Type: application/x-ndjson).
+     * The body is read as a stream (not bound with @RequestBody), so arbitrarily large imports
+     * never have to fit in memory at once.
+     */
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BulkIngestReport> bulkCreateDocuments(HttpServletRequest request) throws IOException {
+        BulkIngestReport report = bulkIngestService.ingest(request.getInputStream());
+        return withConsistencyToken(ResponseEntity.ok()).body(report);
+    }
+
+    /**
+     * Exports the whole corpus as NDJSON, one {@link com.heidari.document_service.dto.ExportedDocument}
+     * per line (id, title, full content, tags, createdAt), in ascending id order.
+     * Usage: curl -H 'Accept-Encoding: gzip' '/documents/export' -o corpus.ndjson.gz
+     * <p>
+     * The body is written while rows are read from a server-side cursor, so memory stays flat for any
+     * corpus size; file-backed bodies are copied from their file without being loaded whole. With
+     * "Accept-Encoding: gzip" the stream is compressed (NDJSON of natural text shrinks several times).
+     * An interrupted export resumes with afterId=&lt;id of the last complete line&gt;.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportDocuments(
+            @RequestParam(defaultValue = "0") long afterId,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+
+        boolean gzip = acceptsGzip(acceptEncoding);
+        StreamingResponseBody body = output -> {
+            OutputStream target = gzip ? new GZIPOutputStream(output, TRANSFER_BUFFER_SIZE) : output;
+            // Closing the generator finishes the gzip stream
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(target)) {
+                generator.setRootValueSeparator(null);
+                documentService.exportDocuments(afterId, (document, tags) -> writeExported(generator, document, tags));
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    /**
+     * Imports an export of GET /documents/export (NDJSON, gzip-compressed with "Content-Encoding: gzip").
+     * Documents are written in batches, like POST /documents/bulk, and get new ids; they keep their exported
+     * creation times unless "keepCreatedAt=false".
+     * Usage: curl -H 'Content-Type: application/x-ndjson' -H 'Content-Encoding: gzip' \
+     *            --data-binary @corpus.ndjson.gz '/documents/import?checkpoint=migration-1'
+     * <p>
+     * With a checkpoint name, a failed or interrupted import is resumed by sending the same export again
+     * with the same name: the documents committed by earlier attempts are skipped (see
+     * {@link BulkIngestService#importDocuments}).
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<ImportReport> importDocuments(
+            @RequestParam(required = false) String checkpoint,
+            @RequestParam(defaultValue = "true") boolean keepCreatedAt,
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+            HttpServletRequest request) throws IOException {
+
+        InputStream input = request.getInputStream();
+        if ("gzip".equalsIgnoreCase(contentEncoding)) {
+            input = new GZIPInputStream(input, TRANSFER_BUFFER_SIZE);
+        } else if (contentEncoding != null && !"identity".equalsIgnoreCase(contentEncoding)) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+        }
+        ImportReport report = bulkIngestService.importDocuments(input,
+                StringUtils.hasText(checkpoint) ? checkpoint : null, keepCreatedAt);
+        return withConsistencyToken(ResponseEntity.ok()).body(report);
+    }
+
+    private void writeExported(JsonGenerator generator, Document document, List<String> tags) {
+        try {
+            generator.writeStartObject();
+            generator.writeNumberField("id", document.getId());
+            generator.writeStringField("title", document.getTitle());
+            generator.writeFieldName("content");
+            if (document.getContentStorage() == ContentStorage.FILE) {
+                try (Reader reader = contentStore.openReader(document.getId())) {
+                    generator.writeString(reader, -1);
+                }
+            } else {
+                generator.writeString(document.getContent());
+            }
+            generator.writeArrayFieldStart("tags");
+            for (String tag : tags) {
+                generator.writeString(tag);
+            }
+            generator.writeEndArray();
+            generator.writeFieldName("createdAt");
+            generator.writeObject(document.getCreatedAt());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").equals("q=0");
+            }
+        }
+        return false;
+    }
+
+    // Adds the read-your-writes token of the writes committed so far, if a replica is configured
+    private ResponseEntity.BodyBuilder withConsistencyToken(ResponseEntity.BodyBuilder response) {
+        readConsistency.tokenAfterWrite()
+                .ifPresent(token -> response.header(ReadConsistency.HEADER, Long.toString(token)));
+        return response;
     }
 
     /**
-     * Advanced Search Endpoint.
-     * Usage: GET /documents/search?query=java&mode=title
+     * Advanced Search Endpoint (keyset-paginated).
+     * Usage: GET /documents/search?query=java&mode=title&limit=20
+     * Next page: repeat the request with cursor=&lt;nextCursor of the previous response&gt;.
+     * <p>
+     * With view=summary, results are {@link DocumentSummary} objects without the content body
+     * (add snippets=true for a highlighted excerpt around the match); the full body is then
+     * available from GET /documents/{id}.
+     * <p>
+     * With ranked=true, the response is the single page of the "limit" best matches by relevance
+     * (BM25 over title, content and tags), best first and without a cursor.
+     * <p>
+     * tags=&lt;expression&gt; keeps only documents whose tags satisfy a boolean expression, e.g.
+     * {@code tags=java AND (spring OR jakarta) AND NOT legacy}; with tags, query may be empty.
+     * <p>
+     * match=substring finds the query as a whole inside a field (like the Specification path's LIKE),
+     * and match=fuzzy tolerates up to "distance" typos (default 1); both are served by the trigram index
+     * and return full documents only, without tags. match=terms requires every query term as a prefix of a
+     * term of the document (the inverted index).
+     * <p>
+     * Without "match", a plain search (no tags, ranking or summary view) matches substrings, as this endpoint
+     * always has: "ava" finds "Java". Tag filters, ranking and summaries match terms.
+     * <p>
+     * The page is serialized here rather than by the message converter, so that serialization time
+     * and response size can be measured (see {@link DocumentMetrics}).
      */
     @GetMapping("/search")
-    public ResponseEntity<List<Document>> searchDocuments(
+    public ResponseEntity<byte[]> searchDocuments(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "all") String mode,
+            @RequestParam(required = false) String tags,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "full") String view,
+            @RequestParam(defaultValue = "false") boolean snippets,
+            @RequestParam(defaultValue = "false") boolean ranked,
+            @RequestParam(required = false) String match,
+            @RequestParam(defaultValue = "1") int distance) throws IOException {
+
+        long started = System.nanoTime();
+        boolean summary = "summary".equalsIgnoreCase(view);
+        SearchMatch searchMatch = StringUtils.hasText(match) ? SearchMatch.from(match)
+                : (summary || ranked || StringUtils.hasText(tags)) ? SearchMatch.TERMS : SearchMatch.SUBSTRING;
+        if (searchMatch != SearchMatch.TERMS && (summary || ranked || StringUtils.hasText(tags))) {
+            throw new IllegalArgumentException(
+                    "match=" + match + " supports neither view=summary, ranked=true nor tags");
+        }
+        SearchPage<?> page;
+        if (searchMatch != SearchMatch.TERMS) {
+            page = documentService.searchSubstring(query, mode, searchMatch == SearchMatch.FUZZY ? distance : 0,
+                    cursor, limit);
+        } else if (summary) {
+            page = documentService.searchSummaries(query, mode, tags, cursor, limit, snippets, ranked);
+        } else {
+            page = documentService.searchDocuments(query, mode, tags, cursor, limit, ranked);
+        }
+
+        SearchMode searchMode = SearchMode.from(mode);
+        long serializeStarted = System.nanoTime();
+        byte[] body = objectMapper.writeValueAsBytes(page);
+        long finished = System.nanoTime();
+        metrics.searchPhase(searchMode, DocumentMetrics.SearchPhase.SERIALIZE)
+                .record(finished - serializeStarted, TimeUnit.NANOSECONDS);
+        metrics.recordSearch(searchMode, finished - started, page.items().size(), body.length);
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Facet Endpoint: the most frequent tags among ALL matches of a search, with their counts.
+     * Usage: GET /documents/facets?query=java&mode=all&tags=NOT legacy&limit=10
+     * Takes the same query, mode and tags as the search endpoint; an empty query matches every document.
+     */
+    @GetMapping("/facets")
+    public ResponseEntity<TagFacets> getTagFacets(
+            @RequestParam(defaultValue = "") String query,
+            @RequestParam(defaultValue = "all") String mode,
+            @RequestParam(required = false) String tags,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(documentService.findTagFacets(query, mode, tags, limit));
+    }
+
+    /**
+     * Autocomplete Endpoint: the most frequent titles and tag names starting with what the user has typed.
+     * Usage: GET /documents/suggest?prefix=jav&mode=tag&limit=10
+     * The mode is "title", "tag" or "all" (both kinds, each suggestion says which it is).
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<Suggestion>> suggest(
+            @RequestParam(defaultValue = "") String prefix,
+            @RequestParam(defaultValue = "all") String mode,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(documentService.suggest(prefix, mode, limit));
+    }
+
+    /**
+     * Streaming variant of the search endpoint, selected with "Accept: application/x-ndjson".
+     * Writes every match as one JSON object per line while rows are still being read from the
+     * database, so the first bytes arrive immediately and memory stays flat for any result size.
+     * Usage: curl -H 'Accept: application/x-ndjson' '/documents/search?query=java&mode=all'
+     */
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamSearchResults(
             @RequestParam String query,
             @RequestParam(defaultValue = "all") String mode) {
 
-        return ResponseEntity.ok(documentService.searchDocuments(query, mode));
+        // Flush when the servlet buffer is full, not after every row
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        StreamingResponseBody body = output -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+                generator.setRootValueSeparator(null);
+                documentService.streamDocuments(query, mode, document -> {
+                    try {
+                        writer.writeValue(generator, document);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Returns one document (title, content, tags) as JSON.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<Document> getDocument(@PathVariable Long id) {
+        return ResponseEntity.of(documentService.findDocument(id));
+    }
+
+    /**
+     * Plain-text variant of GET /documents/{id}, selected with "Accept: text/plain": only the body.
+     * A single byte range is honoured (206 Partial Content), so clients can page through a large body
+     * or resume an interrupted download; file-backed bodies also carry their checksum as ETag.
+     * Usage: curl -H 'Accept: text/plain' -H 'Range: bytes=0-1023' /documents/42
+     * <p>
+     * Educational Note on zero-copy downloads:
+     * File-backed bodies are never read into the heap. On Tomcat, the file is handed to the connector
+     * ("sendfile"), which lets the kernel copy it from the page cache straight to the socket once the
+     * handler returns. Elsewhere (e.g. MockMvc), it is sent with {@link ContentStore#transferTo}.
+     */
+    @GetMapping(value = "/{id}", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<StreamingResponseBody> getDocumentContent(@PathVariable Long id,
+                                                                    @RequestHeader HttpHeaders headers,
+                                                                    HttpServletRequest request) throws IOException {
+        Optional<ContentBody> found = documentService.findContent(id);
+        if (found.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        ContentBody content = found.get();
+        long length = content.length();
+        String etag = (content.checksum() != null) ? "\"" + content.checksum() + "\"" : null;
+
+        // Several ranges would need a multipart response; the whole body is a valid answer to those
+        List<HttpRange> ranges = headers.getRange();
+        String ifRange = headers.getFirst(HttpHeaders.IF_RANGE);
+        boolean partial = ranges.size() == 1 && (ifRange == null || ifRange.equals(etag));
+        long start = 0;
+        long end = length - 1;
+        if (partial) {
+            start = ranges.get(0).getRangeStart(length);
+            end = ranges.get(0).getRangeEnd(length);
+            if (start >= length || start > end) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                        .build();
+            }
+        }
+        long count = end - start + 1;
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(partial ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .contentLength(count)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (partial) {
+            response.header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        if (etag != null) {
+            response.eTag(etag);
+        }
+
+        long first = start;
+        if (content.isInline()) {
+            return response.body(out -> out.write(content.inline(), (int) first, (int) count));
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT)) && count > 0) {
+            // Tomcat sends the file itself after the handler returns (it requires a canonical path)
+            request.setAttribute(SENDFILE_FILENAME, contentStore.path(id).toFile().getCanonicalPath());
+            request.setAttribute(SENDFILE_START, first);
+            request.setAttribute(SENDFILE_END, first + count);
+            return response.build();
+        }
+        return response.body(out -> contentStore.transferTo(id, first, count, Channels.newChannel(out)));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,28 @@
+package com.heidari.document_service.dto;
+
+import java.util.List;
+
+/**
+ * Result of a bulk ingestion: overall totals plus the throughput of every batch.
+ *
+ * @param documents         Total number of documents written.
+ * @param elapsedMillis     Wall-clock time of the whole import.
+ * @param documentsPerSecond Overall throughput.
+ * @param batches           Per-batch statistics, in the order the batches were written.
+ */
+public record BulkIngestReport(long documents,
+                               long elapsedMillis,
+                               double documentsPerSecond,
+                               List<BatchReport> batches) {
+
+    /**
+     * Statistics of a single batch.
+     *
+     * @param batch              1-based batch number.
+     * @param documents          Documents in the batch.
+     * @param tags               Distinct tag names resolved for the batch.
+     * @param elapsedMillis      Time spent resolving tags and writing the batch.
+     * @param documentsPerSecond Throughput of the batch.
+     */
+    public record BatchReport(int batch, int documents, int tags, long elapsedMillis, double documentsPerSecond) {}
+}
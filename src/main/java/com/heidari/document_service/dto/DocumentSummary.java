@@ -0,0 +1,16 @@
+package com.heidari.document_service.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Lightweight search result for listing views: everything except the document body.
+ *
+ * @param id        The document id.
+ * @param title     The title.
+ * @param createdAt The creation time.
+ * @param tags      The tag names.
+ * @param snippet   HTML-escaped excerpt of the content around the match, with matching terms
+ *                  wrapped in &lt;em&gt;; null unless snippets were requested.
+ */
+public record DocumentSummary(Long id, String title, LocalDateTime createdAt, List<String> tags, String snippet) {}
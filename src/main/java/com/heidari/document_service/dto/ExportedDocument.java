@@ -0,0 +1,26 @@
+package com.heidari.document_service.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One line of a corpus export (GET /documents/export) and of an import (POST /documents/import).
+ *
+ * @param id        The id in the exporting service; exports are in ascending id order.
+ * @param title     The title.
+ * @param content   The full body, whatever its storage (inline, compressed or file).
+ * @param tags      The tag names.
+ * @param createdAt When the document was created in the exporting service; an import keeps it unless
+ *                  asked not to (it assigns new ids either way).
+ */
+public record ExportedDocument(Long id, String title, String content, List<String> tags, LocalDateTime createdAt) {
+
+    /** @return The document as a creation request of the bulk write path. */
+    public CreateDocumentRequest toCreateRequest() {
+        CreateDocumentRequest request = new CreateDocumentRequest();
+        request.setTitle(title);
+        request.setContent(content);
+        request.setTags(tags);
+        return request;
+    }
+}
@@ -0,0 +1,19 @@
+package com.heidari.document_service.dto;
+
+/**
+ * Result of a corpus import (POST /documents/import).
+ *
+ * @param checkpoint         The checkpoint name, or null for an import without one.
+ * @param imported           Documents written by this request.
+ * @param skipped            Documents skipped because the checkpoint shows an earlier request wrote them.
+ * @param lastSourceId       The export id of the last document written so far (0 if none).
+ * @param elapsedMillis      Wall-clock time of the request.
+ * @param documentsPerSecond Documents written per second.
+ */
+public record ImportReport(String checkpoint,
+                           long imported,
+                           long skipped,
+                           long lastSourceId,
+                           long elapsedMillis,
+                           double documentsPerSecond) {
+}
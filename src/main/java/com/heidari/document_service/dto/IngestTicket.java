@@ -0,0 +1,31 @@
+package com.heidari.document_service.dto;
+
+import java.time.Instant;
+
+/**
+ * Progress of a document submitted to POST /documents/async.
+ *
+ * @param ticketId    The id returned at submission.
+ * @param status      QUEUED until the document is committed (DURABLE) or could not be written (FAILED).
+ * @param documentId  The id of the stored document; null unless DURABLE.
+ * @param error       Why the write failed; null unless FAILED.
+ * @param acceptedAt  When the request entered the queue.
+ * @param completedAt When the document became durable or failed; null while QUEUED.
+ */
+public record IngestTicket(String ticketId, Status status, Long documentId, String error,
+                           Instant acceptedAt, Instant completedAt) {
+
+    public enum Status { QUEUED, DURABLE, FAILED }
+
+    public static IngestTicket queued(String ticketId) {
+        return new IngestTicket(ticketId, Status.QUEUED, null, null, Instant.now(), null);
+    }
+
+    public IngestTicket durable(Long documentId) {
+        return new IngestTicket(ticketId, Status.DURABLE, documentId, null, acceptedAt, Instant.now());
+    }
+
+    public IngestTicket failed(String error) {
+        return new IngestTicket(ticketId, Status.FAILED, null, error, acceptedAt, Instant.now());
+    }
+}
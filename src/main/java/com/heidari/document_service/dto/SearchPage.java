@@ -0,0 +1,12 @@
+package com.heidari.document_service.dto;
+
+import java.util.List;
+
+/**
+ * One page of search results.
+ *
+ * @param items      The results of this page, newest first.
+ * @param nextCursor Opaque token to pass as "cursor" for the next page, or null on the last page.
+ * @param <T>        The result type.
+ */
+public record SearchPage<T>(List<T> items, String nextCursor) {}
@@ -0,0 +1,18 @@
+package com.heidari.document_service.dto;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * One type-ahead suggestion: a title or tag name starting with the typed prefix.
+ *
+ * @param text  The title or tag name.
+ * @param type  "title" or "tag".
+ * @param count The number of documents with that title, or carrying that tag.
+ */
+public record Suggestion(String text, String type, long count) {
+
+    /** By descending count, then by text (case-insensitive). */
+    public static final Comparator<Suggestion> BY_COUNT = Comparator.comparingLong(Suggestion::count).reversed()
+            .thenComparing(suggestion -> suggestion.text().toLowerCase(Locale.ROOT));
+}
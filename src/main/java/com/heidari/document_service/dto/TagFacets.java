@@ -0,0 +1,18 @@
+package com.heidari.document_service.dto;
+
+import java.util.List;
+
+/**
+ * Tag counts over all the documents matching a search (not just one page).
+ *
+ * @param total The number of matching documents.
+ * @param tags  The most frequent tags among them, by descending count (ties by name).
+ */
+public record TagFacets(long total, List<Facet> tags) {
+
+    /**
+     * @param name  The tag name.
+     * @param count The number of matching documents carrying the tag.
+     */
+    public record Facet(String name, long count) {}
+}
@@ -0,0 +1,440 @@
+package com.heidari.document_service.metrics;
+
+import com.heidari.document_service.config.ReplicaRoutingDataSource.Route;
+import com.heidari.document_service.search.SearchMode;
+import com.heidari.document_service.storage.ContentCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer meters of the search and document creation hot paths (scraped at /actuator/prometheus).
+ * <p>
+ * Educational Note on overhead:
+ * Looking a meter up by name and tags on every request means building and hashing a tag list.
+ * All meters here are registered once, at startup, and kept in EnumMaps, so recording is a map read
+ * plus an update of the meter's lock-free counters. Percentile histograms are published as
+ * Prometheus buckets; the quantiles are computed at query time (histogram_quantile), not in the JVM.
+ * <p>
+ * Meters:
+ * - document.search.latency     (mode)        whole paginated search request, serialization included
+ * - document.search.phase       (mode, phase) build / index / ids / hydrate / serialize
+ * - document.search.results     (mode)        results per page
+ * - document.search.response.size (mode)      JSON bytes per page
+ * - document.search.statements  (mode)        SQL statements per (uncached) search
+ * - document.search.coalescing  (outcome)     cache misses by how they were served: executed / shared / abandoned
+ * - document.search.coalescing.ratio          share of cache misses served by another caller's search
+ * - document.create.latency                   createDocument request, commit included
+ * - document.create.phase       (phase)       tags / insert
+ * - document.create.statements                SQL statements per createDocument
+ * - document.ingest.queue.depth               documents waiting in the async ingestion queue
+ * - document.ingest.batch.size                documents per async group commit
+ * - document.ingest.commit.latency            duration of an async group commit
+ * - document.ingest.durable.latency           from acceptance to commit, per document
+ * - document.ingest.rejected                  submissions refused because the queue was full
+ * - document.content.codec.time (codec, operation) duration of each compression / decompression
+ * - document.content.compression.ratio (codec) encoded size / raw size of each compressed body
+ * - document.changes.lag        (consumer)    changes recorded but not yet applied by the consumer
+ * - document.changes.lag.age    (consumer)    age of the oldest change the consumer has not applied
+ * - document.changes.applied    (consumer)    changes applied (throughput)
+ * - document.changes.batch.latency (consumer) duration of one listener call
+ * - document.changes.delay      (consumer)    from a change being recorded to being applied, per change
+ * - document.changes.failures   (consumer)    listener calls that failed and will be retried
+ * - document.datasource.route   (route)       connections handed out, by route (with replica routing)
+ * - document.datasource.replica.lag           changes the read replica is behind the primary (-1: unavailable)
+ * - document.admission.limit    (budget)      current concurrency limit of reads / writes (with admission control)
+ * - document.admission.inflight (budget)      requests admitted and not yet completed
+ * - document.admission.rejected (budget, cost) requests rejected with 503, by budget and cheap / expensive
+ */
+@Component
+public class DocumentMetrics {
+
+    /**
+     * Steps of a search.
+     */
+    public enum SearchPhase {
+        /** Building the Specification (WHERE clause) from the request. */
+        BUILD,
+        /** Looking up the ids of the page in the in-memory index. */
+        INDEX,
+        /** Running the id query (phase 1) on the database. */
+        IDS,
+        /** Loading the rows and tags of the page (phase 2) into entities. */
+        HYDRATE,
+        /** Writing the page as JSON. */
+        SERIALIZE
+    }
+
+    /**
+     * Steps of createDocument.
+     */
+    public enum CreatePhase {
+        /** Resolving tag names to ids (TagDictionary). */
+        TAGS,
+        /** Inserting the document and its tag links. */
+        INSERT
+    }
+
+    /**
+     * How a search that missed the cache was served (see SearchCoalescer).
+     */
+    public enum Coalescing {
+        /** Ran the search, possibly for other callers too. */
+        EXECUTED,
+        /** Received the result of an identical search run by another caller. */
+        SHARED,
+        /** Stopped waiting for an identical search after "max-wait" and ran it itself. */
+        ABANDONED
+    }
+
+    /**
+     * The concurrency budgets of admission control (see AdmissionControlFilter).
+     */
+    public enum AdmissionBudget { READ, WRITE }
+
+    /**
+     * How expensive a request is expected to be; expensive reads may use only part of the read budget.
+     */
+    public enum RequestCost { CHEAP, EXPENSIVE }
+
+    private final Map<SearchMode, Timer> searchLatency = new EnumMap<>(SearchMode.class);
+    private final Map<SearchMode, Map<SearchPhase, Timer>> searchPhases = new EnumMap<>(SearchMode.class);
+    private final Map<SearchMode, DistributionSummary> searchResults = new EnumMap<>(SearchMode.class);
+    private final Map<SearchMode, DistributionSummary> searchResponseSize = new EnumMap<>(SearchMode.class);
+    private final Map<SearchMode, DistributionSummary> searchStatements = new EnumMap<>(SearchMode.class);
+    private final Map<Coalescing, Counter> coalescing = new EnumMap<>(Coalescing.class);
+    private final Map<CreatePhase, Timer> createPhases = new EnumMap<>(CreatePhase.class);
+    private final Timer createLatency;
+    private final DistributionSummary createStatements;
+    private final DistributionSummary ingestBatchSize;
+    private final Timer ingestCommitLatency;
+    private final Timer ingestDurableLatency;
+    private final Counter ingestRejected;
+    private final Map<ContentCodec, Timer> codecEncode = new EnumMap<>(ContentCodec.class);
+    private final Map<ContentCodec, Timer> codecDecode = new EnumMap<>(ContentCodec.class);
+    private final Map<ContentCodec, DistributionSummary> compressionRatio = new EnumMap<>(ContentCodec.class);
+    private final Map<String, ChangeMeters> changeConsumers = new ConcurrentHashMap<>();
+    private final Map<Route, Counter> routes = new EnumMap<>(Route.class);
+    private final Map<AdmissionBudget, Map<RequestCost, Counter>> admissionRejected = new EnumMap<>(AdmissionBudget.class);
+    private final MeterRegistry registry;
+
+    // The meters of one change feed consumer, registered when the feed starts
+    private record ChangeMeters(Counter applied, Timer batch, Timer delay, Counter failures) {}
+
+    public DocumentMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (SearchMode mode : SearchMode.values()) {
+            String modeTag = tag(mode);
+            searchLatency.put(mode, Timer.builder("document.search.latency")
+                    .description("Paginated search requests, serialization included")
+                    .tag("mode", modeTag)
+                    .publishPercentileHistogram()
+                    .register(registry));
+
+            Map<SearchPhase, Timer> phases = new EnumMap<>(SearchPhase.class);
+            for (SearchPhase phase : SearchPhase.values()) {
+                phases.put(phase, Timer.builder("document.search.phase")
+                        .description("Time spent in each step of a search")
+                        .tags("mode", modeTag, "phase", tag(phase))
+                        .publishPercentileHistogram()
+                        .register(registry));
+            }
+            searchPhases.put(mode, phases);
+
+            searchResults.put(mode, DistributionSummary.builder("document.search.results")
+                    .description("Results per search page")
+                    .tag("mode", modeTag)
+                    .publishPercentileHistogram()
+                    .register(registry));
+            searchResponseSize.put(mode, DistributionSummary.builder("document.search.response.size")
+                    .description("Serialized size of a search page")
+                    .baseUnit("bytes")
+                    .tag("mode", modeTag)
+                    .publishPercentileHistogram()
+                    .register(registry));
+            searchStatements.put(mode, DistributionSummary.builder("document.search.statements")
+                    .description("SQL statements issued by a search that missed the cache")
+                    .tag("mode", modeTag)
+                    .register(registry));
+        }
+
+        for (Coalescing outcome : Coalescing.values()) {
+            coalescing.put(outcome, Counter.builder("document.search.coalescing")
+                    .description("Searches that missed the cache, by how they were served")
+                    .tag("outcome", tag(outcome))
+                    .register(registry));
+        }
+        Gauge.builder("document.search.coalescing.ratio", this, DocumentMetrics::coalescingRatio)
+                .description("Share of the searches that missed the cache served by an identical search of another caller")
+                .register(registry);
+
+        for (CreatePhase phase : CreatePhase.values()) {
+            createPhases.put(phase, Timer.builder("document.create.phase")
+                    .description("Time spent in each step of createDocument")
+                    .tag("phase", tag(phase))
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        createLatency = Timer.builder("document.create.latency")
+                .description("createDocument requests, commit included")
+                .publishPercentileHistogram()
+                .register(registry);
+        createStatements = DistributionSummary.builder("document.create.statements")
+                .description("SQL statements issued by createDocument")
+                .register(registry);
+
+        ingestBatchSize = DistributionSummary.builder("document.ingest.batch.size")
+                .description("Documents per asynchronous group commit")
+                .publishPercentileHistogram()
+                .register(registry);
+        ingestCommitLatency = Timer.builder("document.ingest.commit.latency")
+                .description("Duration of an asynchronous group commit")
+                .publishPercentileHistogram()
+                .register(registry);
+        ingestDurableLatency = Timer.builder("document.ingest.durable.latency")
+                .description("Time from acceptance of an asynchronous document to its commit")
+                .publishPercentileHistogram()
+                .register(registry);
+        ingestRejected = Counter.builder("document.ingest.rejected")
+                .description("Asynchronous submissions rejected because the queue was full")
+                .register(registry);
+
+        for (ContentCodec codec : ContentCodec.values()) {
+            codecEncode.put(codec, codecTimer(codec, "encode"));
+            codecDecode.put(codec, codecTimer(codec, "decode"));
+            compressionRatio.put(codec, DistributionSummary.builder("document.content.compression.ratio")
+                    .description("Encoded size divided by raw size of each compressed body")
+                    .tag("codec", tag(codec))
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        ContentCodec.setListener(this::recordCodec);
+
+        for (AdmissionBudget budget : AdmissionBudget.values()) {
+            Map<RequestCost, Counter> rejected = new EnumMap<>(RequestCost.class);
+            for (RequestCost cost : RequestCost.values()) {
+                rejected.put(cost, Counter.builder("document.admission.rejected")
+                        .description("Requests rejected by admission control (503 Service Unavailable)")
+                        .tags("budget", tag(budget), "cost", tag(cost))
+                        .register(registry));
+            }
+            admissionRejected.put(budget, rejected);
+        }
+    }
+
+    /** @return The timer of one search phase. */
+    public Timer searchPhase(SearchMode mode, SearchPhase phase) {
+        return searchPhases.get(mode).get(phase);
+    }
+
+    /**
+     * Records a completed paginated search request.
+     *
+     * @param mode          The search mode.
+     * @param elapsedNanos  Total time, serialization included.
+     * @param results       Items on the page.
+     * @param responseBytes Size of the JSON body.
+     */
+    public void recordSearch(SearchMode mode, long elapsedNanos, int results, int responseBytes) {
+        searchLatency.get(mode).record(elapsedNanos, TimeUnit.NANOSECONDS);
+        searchResults.get(mode).record(results);
+        searchResponseSize.get(mode).record(responseBytes);
+    }
+
+    /** Records the SQL statements issued by one search. */
+    public void recordSearchStatements(SearchMode mode, long statements) {
+        searchStatements.get(mode).record(statements);
+    }
+
+    /** Counts a search that missed the cache. */
+    public void recordCoalescing(Coalescing outcome) {
+        coalescing.get(outcome).increment();
+    }
+
+    // Shared / all; 0 until the first search
+    private double coalescingRatio() {
+        double shared = coalescing.get(Coalescing.SHARED).count();
+        double all = shared + coalescing.get(Coalescing.EXECUTED).count() + coalescing.get(Coalescing.ABANDONED).count();
+        return all == 0 ? 0 : shared / all;
+    }
+
+    /** @return The timer of one createDocument phase. */
+    public Timer createPhase(CreatePhase phase) {
+        return createPhases.get(phase);
+    }
+
+    /** Records a completed createDocument request. */
+    public void recordCreate(long elapsedNanos) {
+        createLatency.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Records the SQL statements issued by one createDocument call. */
+    public void recordCreateStatements(long statements) {
+        createStatements.record(statements);
+    }
+
+    /** Publishes the size of the asynchronous ingestion queue as a gauge. */
+    public void bindIngestQueue(Collection<?> queue) {
+        Gauge.builder("document.ingest.queue.depth", queue, Collection::size)
+                .description("Documents waiting in the asynchronous ingestion queue")
+                .register(registry);
+    }
+
+    /** Records one asynchronous group commit. */
+    public void recordIngestBatch(int documents, long commitNanos) {
+        ingestBatchSize.record(documents);
+        ingestCommitLatency.record(commitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Records how long one document took from acceptance to commit. */
+    public void recordIngestDurable(long elapsedNanos) {
+        ingestDurableLatency.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Counts a submission refused because the queue was full. */
+    public void recordIngestRejected() {
+        ingestRejected.increment();
+    }
+
+    /** Records one compression or decompression of a body. */
+    public void recordCodec(ContentCodec codec, boolean encode, int rawBytes, int encodedBytes, long nanos) {
+        if (encode) {
+            codecEncode.get(codec).record(nanos, TimeUnit.NANOSECONDS);
+            if (rawBytes > 0) {
+                compressionRatio.get(codec).record((double) encodedBytes / rawBytes);
+            }
+        } else {
+            codecDecode.get(codec).record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Registers the meters of a change feed consumer.
+     *
+     * @param consumer   The consumer (listener) name.
+     * @param lag        Changes not yet applied.
+     * @param lagSeconds Age of the oldest change not yet applied, in seconds (0 when caught up).
+     */
+    public void bindChangeConsumer(String consumer, Supplier<Number> lag, Supplier<Number> lagSeconds) {
+        Gauge.builder("document.changes.lag", lag)
+                .description("Changes recorded but not yet applied by the consumer")
+                .tag("consumer", consumer)
+                .register(registry);
+        Gauge.builder("document.changes.lag.age", lagSeconds)
+                .description("Age of the oldest change the consumer has not applied")
+                .baseUnit("seconds")
+                .tag("consumer", consumer)
+                .register(registry);
+        changeConsumers.put(consumer, new ChangeMeters(
+                Counter.builder("document.changes.applied")
+                        .description("Changes applied by the consumer")
+                        .tag("consumer", consumer)
+                        .register(registry),
+                Timer.builder("document.changes.batch.latency")
+                        .description("Duration of one batch applied by the consumer")
+                        .tag("consumer", consumer)
+                        .publishPercentileHistogram()
+                        .register(registry),
+                Timer.builder("document.changes.delay")
+                        .description("Time from a change being recorded to being applied")
+                        .tag("consumer", consumer)
+                        .publishPercentileHistogram()
+                        .register(registry),
+                Counter.builder("document.changes.failures")
+                        .description("Batches the consumer failed to apply (retried later)")
+                        .tag("consumer", consumer)
+                        .register(registry)));
+    }
+
+    /**
+     * Records a batch applied by a change feed consumer.
+     *
+     * @param consumer    The consumer name (see {@link #bindChangeConsumer}).
+     * @param changes     Changes in the batch.
+     * @param applyNanos  Duration of the listener call.
+     * @param delayNanos  For each change, the time from being recorded to being applied.
+     */
+    public void recordChangeBatch(String consumer, int changes, long applyNanos, long[] delayNanos) {
+        ChangeMeters meters = changeConsumers.get(consumer);
+        meters.applied().increment(changes);
+        meters.batch().record(applyNanos, TimeUnit.NANOSECONDS);
+        for (long delay : delayNanos) {
+            meters.delay().record(delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Counts a batch that a change feed consumer failed to apply. */
+    public void recordChangeFailure(String consumer) {
+        changeConsumers.get(consumer).failures().increment();
+    }
+
+    /**
+     * Registers the meters of read replica routing (see ReplicaDataSourceConfiguration).
+     *
+     * @param lag Changes the replica is behind the primary, or -1 if it is unavailable.
+     */
+    public synchronized void bindReplicaRouting(Supplier<Number> lag) {
+        Gauge.builder("document.datasource.replica.lag", lag)
+                .description("Changes the read replica is behind the primary (-1: unavailable)")
+                .register(registry);
+        for (Route route : Route.values()) {
+            routes.put(route, Counter.builder("document.datasource.route")
+                    .description("Connections handed out by the routing DataSource")
+                    .tag("route", tag(route))
+                    .register(registry));
+        }
+    }
+
+    /** Counts a connection handed out by the routing DataSource. */
+    public void recordRoute(Route route) {
+        Counter counter = routes.get(route);
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * Registers the gauges of one admission control budget.
+     *
+     * @param limit    The current concurrency limit.
+     * @param inflight The requests admitted and not yet completed.
+     */
+    public void bindAdmissionBudget(AdmissionBudget budget, Supplier<Number> limit, Supplier<Number> inflight) {
+        Gauge.builder("document.admission.limit", limit)
+                .description("Current concurrency limit of admission control")
+                .tag("budget", tag(budget))
+                .register(registry);
+        Gauge.builder("document.admission.inflight", inflight)
+                .description("Requests admitted and not yet completed")
+                .tag("budget", tag(budget))
+                .register(registry);
+    }
+
+    /** Counts a request rejected by admission control. */
+    public void recordAdmissionRejected(AdmissionBudget budget, RequestCost cost) {
+        admissionRejected.get(budget).get(cost).increment();
+    }
+
+    private Timer codecTimer(ContentCodec codec, String operation) {
+        return Timer.builder("document.content.codec.time")
+                .description("Time spent compressing or decompressing document bodies")
+                .tags("codec", tag(codec), "operation", operation)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static String tag(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
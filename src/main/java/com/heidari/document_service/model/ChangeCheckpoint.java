@@ -0,0 +1,43 @@
+package com.heidari.document_service.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * How far a change feed consumer has got: every change up to "lastChangeId" has been applied.
+ */
+@Entity
+@Table(name = "change_checkpoint")
+public class ChangeCheckpoint {
+
+    /** The name of the consumer (see ChangeListener#name). */
+    @Id
+    @Column(length = 100)
+    private String consumer;
+
+    @Column(nullable = false)
+    private long lastChangeId;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Default constructor
+    public ChangeCheckpoint() {}
+
+    public ChangeCheckpoint(String consumer, long lastChangeId) {
+        this.consumer = consumer;
+        this.lastChangeId = lastChangeId;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // --- Getters and Setters ---
+
+    public String getConsumer() { return consumer; }
+    public void setConsumer(String consumer) { this.consumer = consumer; }
+
+    public long getLastChangeId() { return lastChangeId; }
+    public void setLastChangeId(long lastChangeId) { this.lastChangeId = lastChangeId; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,9 @@
+package com.heidari.document_service.model;
+
+/**
+ * What happened to a document, as recorded in the change log (see {@link DocumentChange}).
+ */
+public enum ChangeType {
+    /** The document was inserted. */
+    CREATED
+}
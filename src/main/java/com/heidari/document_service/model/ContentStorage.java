@@ -0,0 +1,13 @@
+package com.heidari.document_service.model;
+
+/**
+ * Where the body of a {@link Document} lives.
+ */
+public enum ContentStorage {
+    /** In the "content" column. */
+    INLINE,
+    /** In the "compressed_content" column, encoded with the document's content codec. */
+    COMPRESSED,
+    /** In a file of the content store; the "content" column is null. */
+    FILE
+}
@@ -1,15 +1,25 @@
 package com.heidari.document_service.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.heidari.document_service.storage.ContentCodec;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
 public class Document {
 
+    /*
+     * Educational Note:
+     * IDENTITY ids are only known after each INSERT has run, which forces Hibernate to execute
+     * inserts one by one and silently disables JDBC batching. A pooled SEQUENCE reserves
+     * 50 ids per round trip, so ids are known up front and inserts can be sent in batches.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "document_seq")
+    @SequenceGenerator(name = "document_seq", sequenceName = "document_seq", allocationSize = 50)
     private Long id;
 
     private String title;
@@ -22,6 +32,34 @@ public class Document {
     @Column(columnDefinition = "TEXT")
     private String content;
 
+    /*
+     * Large bodies are kept out of the row (see ContentStore): the entity then only carries
+     * their size and checksum. Rows written before this column existed have null here, meaning INLINE.
+     */
+    @Enumerated(EnumType.STRING)
+    private ContentStorage contentStorage;
+
+    /** Size of a file-backed or compressed body in bytes (UTF-8). */
+    private Long contentLength;
+
+    /** Codec of a COMPRESSED body. */
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private ContentCodec contentCodec;
+
+    /** The encoded body when contentStorage is COMPRESSED ("content" is null then). */
+    @JsonIgnore
+    @Column(columnDefinition = "BYTEA")
+    private byte[] compressedContent;
+
+    /** A COMPRESSED body once decoded by getContent(); never persisted. */
+    @Transient
+    private String decodedContent;
+
+    /** SHA-256 of a file-backed body, hex-encoded. */
+    @Column(length = 64)
+    private String contentChecksum;
+
     private LocalDateTime createdAt;
 
     @ManyToMany(cascade = {CascadeType.PERSIST, CascadeType.MERGE})
@@ -37,7 +75,9 @@ public class Document {
 
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
+        // Truncate to the database precision, so the in-memory value equals the stored one
+        // (createdAt is part of the keyset pagination cursor). Imports may carry the original time.
+        createdAt = (createdAt != null ? createdAt : LocalDateTime.now()).truncatedTo(ChronoUnit.MICROS);
     }
 
     // --- Accessors ---
@@ -48,9 +88,40 @@ public class Document {
     public String getTitle() { return title; }
     public void setTitle(String title) { this.title = title; }
 
-    public String getContent() { return content; }
+    /**
+     * @return The body. A COMPRESSED body is decoded on the first call only, so entities whose body is
+     * never read never pay for it. Null for FILE bodies (see ContentStore).
+     */
+    public String getContent() {
+        if (content == null && compressedContent != null) {
+            if (decodedContent == null) {
+                decodedContent = contentCodec.decompressString(compressedContent, Math.toIntExact(contentLength));
+            }
+            return decodedContent;
+        }
+        return content;
+    }
     public void setContent(String content) { this.content = content; }
 
+    public ContentStorage getContentStorage() { return contentStorage; }
+    public void setContentStorage(ContentStorage contentStorage) { this.contentStorage = contentStorage; }
+
+    public Long getContentLength() { return contentLength; }
+    public void setContentLength(Long contentLength) { this.contentLength = contentLength; }
+
+    public String getContentChecksum() { return contentChecksum; }
+    public void setContentChecksum(String contentChecksum) { this.contentChecksum = contentChecksum; }
+
+    public ContentCodec getContentCodec() { return contentCodec; }
+    public void setContentCodec(ContentCodec contentCodec) { this.contentCodec = contentCodec; }
+
+    @JsonIgnore
+    public byte[] getCompressedContent() { return compressedContent; }
+    public void setCompressedContent(byte[] compressedContent) {
+        this.compressedContent = compressedContent;
+        this.decodedContent = null;
+    }
+
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 
@@ -0,0 +1,62 @@
+package com.heidari.document_service.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One entry of the change log ("document_change"): written in the same transaction as the change
+ * itself, and read in id order by the change feed.
+ * <p>
+ * Educational Note on the "transactional outbox":
+ * Updating a derived view (an index, a cache, a replica) directly from the write path either slows
+ * the write down or loses the update when the process dies between the commit and the update.
+ * Recording the change as a row of the same transaction makes it exactly as durable as the write:
+ * a committed document always has its entry, a rolled-back one never has. Consumers then catch up
+ * from the log at their own pace, including after a restart.
+ * <p>
+ * Rows are inserted with a native statement (see DocumentChangeRepositoryCustom), so that
+ * the ids come from the sequence one by one, without gaps other than rolled-back transactions.
+ */
+@Entity
+@Table(name = "document_change")
+public class DocumentChange {
+
+    @Id
+    @SequenceGenerator(name = "document_change_seq", sequenceName = "document_change_seq", allocationSize = 1)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "document_change_seq")
+    private Long id;
+
+    @Column(nullable = false)
+    private Long documentId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private ChangeType changeType;
+
+    @Column(nullable = false)
+    private LocalDateTime changedAt;
+
+    // Default constructor
+    public DocumentChange() {}
+
+    public DocumentChange(Long id, Long documentId, ChangeType changeType, LocalDateTime changedAt) {
+        this.id = id;
+        this.documentId = documentId;
+        this.changeType = changeType;
+        this.changedAt = changedAt;
+    }
+
+    // --- Getters and Setters ---
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getDocumentId() { return documentId; }
+    public void setDocumentId(Long documentId) { this.documentId = documentId; }
+
+    public ChangeType getChangeType() { return changeType; }
+    public void setChangeType(ChangeType changeType) { this.changeType = changeType; }
+
+    public LocalDateTime getChangedAt() { return changedAt; }
+    public void setChangedAt(LocalDateTime changedAt) { this.changedAt = changedAt; }
+}
@@ -0,0 +1,59 @@
+package com.heidari.document_service.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * How far a named corpus import has got: every exported document up to "lastSourceId" has been written.
+ * Updated in the transaction that writes the documents, so it never claims more than was committed.
+ * The version makes concurrent imports under one name conflict instead of both writing the same documents.
+ */
+@Entity
+@Table(name = "import_checkpoint")
+public class ImportCheckpoint {
+
+    /** The name given by the client (the "checkpoint" request parameter). */
+    @Id
+    @Column(length = 100)
+    private String name;
+
+    /** The highest export id written; 0 before the first batch. */
+    @Column(nullable = false)
+    private long lastSourceId;
+
+    /** Documents written under this checkpoint, over all requests. */
+    @Column(nullable = false)
+    private long documents;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    /** Optimistic lock: an import that resumed from an older state fails when it saves. */
+    @Version
+    private Long version;
+
+    // Default constructor
+    public ImportCheckpoint() {}
+
+    public ImportCheckpoint(String name) {
+        this.name = name;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // --- Getters and Setters ---
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public long getLastSourceId() { return lastSourceId; }
+    public void setLastSourceId(long lastSourceId) { this.lastSourceId = lastSourceId; }
+
+    public long getDocuments() { return documents; }
+    public void setDocuments(long documents) { this.documents = documents; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+}
@@ -0,0 +1,10 @@
+package com.heidari.document_service.repository;
+
+import com.heidari.document_service.model.ChangeCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * Repository of the change feed checkpoints, one row per consumer.
+ */
+public interface ChangeCheckpointRepository extends JpaRepository<ChangeCheckpoint, String> {
+}
@@ -0,0 +1,45 @@
+package com.heidari.document_service.repository;
+
+import com.heidari.document_service.model.DocumentChange;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository of the change log (see {@link DocumentChange}).
+ */
+public interface DocumentChangeRepository extends JpaRepository<DocumentChange, Long>, DocumentChangeRepositoryCustom {
+
+    /**
+     * Reads the log in order, from a consumer's checkpoint.
+     *
+     * @param afterId The last change already applied.
+     * @param limit   The batch size.
+     * @return The next committed changes, lowest id first.
+     */
+    List<DocumentChange> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    /**
+     * @return The highest change id, or 0 if the log is empty.
+     */
+    @Query("SELECT COALESCE(MAX(c.id), 0) FROM DocumentChange c")
+    long findMaxId();
+
+    /**
+     * Removes entries that every consumer has applied and that are older than the retention period.
+     *
+     * @param maxId  The lowest checkpoint of all consumers.
+     * @param before The retention cut-off.
+     * @return The number of entries removed.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM DocumentChange c WHERE c.id <= :maxId AND c.changedAt < :before")
+    int deleteApplied(@Param("maxId") long maxId, @Param("before") LocalDateTime before);
+}
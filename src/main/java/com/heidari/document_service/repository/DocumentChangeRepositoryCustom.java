@@ -0,0 +1,45 @@
+package com.heidari.document_service.repository;
+
+import com.heidari.document_service.model.ChangeType;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Custom (hand-written) operations for {@link DocumentChangeRepository}.
+ */
+public interface DocumentChangeRepositoryCustom {
+
+    /**
+     * Appends one change per document to the log, with a single multi-row INSERT per chunk of ids.
+     * <p>
+     * Must join the transaction that writes the documents (MANDATORY fails without one): the entries
+     * are only worth something if they commit or roll back together with the change they describe.
+     *
+     * @param type        What happened.
+     * @param documentIds The documents it happened to.
+     * @param changedAt   When it happened.
+     * @return The number of entries written.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    int append(ChangeType type, Collection<Long> documentIds, LocalDateTime changedAt);
+
+    /**
+     * Reads the bounds of the current snapshot: every transaction id below "oldestActive" has ended, and
+     * every id from "next" on was assigned later. Used by the change feed to tell a missing change that is
+     * still uncommitted from one that rolled back (see ChangeFeed).
+     *
+     * @return The bounds, or null on databases without snapshot functions (only PostgreSQL 13+ has them).
+     */
+    TransactionHorizon transactionHorizon();
+
+    /**
+     * Bounds of a snapshot, from pg_snapshot_xmin() and pg_snapshot_xmax().
+     *
+     * @param oldestActive The oldest transaction id still running (or "next" if none is).
+     * @param next         The next transaction id to be assigned.
+     */
+    record TransactionHorizon(long oldestActive, long next) {}
+}
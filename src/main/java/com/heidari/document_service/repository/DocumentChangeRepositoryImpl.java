@@ -0,0 +1,86 @@
+package com.heidari.document_service.repository;
+
+import com.heidari.document_service.model.ChangeType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.hibernate.Session;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Implementation of {@link DocumentChangeRepositoryCustom}.
+ */
+class DocumentChangeRepositoryImpl implements DocumentChangeRepositoryCustom {
+
+    /**
+     * Keeps each statement well below the JDBC driver's bind-parameter limit
+     * (one per row, plus the type and timestamp shared by all rows).
+     */
+    static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Whether the database has snapshot functions; decided on first use
+    private volatile Boolean postgres;
+
+    @Override
+    public int append(ChangeType type, Collection<Long> documentIds, LocalDateTime changedAt) {
+        List<Long> all = new ArrayList<>(documentIds);
+        if (all.isEmpty()) {
+            return 0;
+        }
+        if (isPostgres()) {
+            // Take a transaction id before drawing change ids, so that the writer of a change id is always
+            // older than any snapshot taken after the id was drawn (see ChangeFeed on gaps)
+            entityManager.createNativeQuery("SELECT CAST(pg_current_xact_id() AS text)").getSingleResult();
+        }
+        int inserted = 0;
+        for (int start = 0; start < all.size(); start += MAX_ROWS_PER_STATEMENT) {
+            List<Long> chunk = all.subList(start, Math.min(start + MAX_ROWS_PER_STATEMENT, all.size()));
+
+            // The database draws every id from the sequence (no pooled blocks, see ChangeFeed on gaps):
+            // INSERT INTO document_change (...) VALUES (nextval('document_change_seq'), ?3, ?1, ?2), ...
+            StringBuilder sql = new StringBuilder(
+                    "INSERT INTO document_change (id, document_id, change_type, changed_at) VALUES ");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i > 0 ? ", " : "")
+                        .append("(nextval('document_change_seq'), ?").append(i + 3).append(", ?1, ?2)");
+            }
+
+            Query query = entityManager.createNativeQuery(sql.toString());
+            query.setParameter(1, type.name());
+            query.setParameter(2, changedAt);
+            for (int i = 0; i < chunk.size(); i++) {
+                query.setParameter(i + 3, chunk.get(i));
+            }
+            inserted += query.executeUpdate();
+        }
+        return inserted;
+    }
+
+    @Override
+    public TransactionHorizon transactionHorizon() {
+        if (!isPostgres()) {
+            return null;
+        }
+        Object[] row = (Object[]) entityManager.createNativeQuery(
+                "SELECT CAST(CAST(pg_snapshot_xmin(s) AS text) AS bigint), CAST(CAST(pg_snapshot_xmax(s) AS text) AS bigint)"
+                        + " FROM (SELECT pg_current_snapshot() AS s) snapshot").getSingleResult();
+        return new TransactionHorizon(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+    }
+
+    private boolean isPostgres() {
+        Boolean known = postgres;
+        if (known == null) {
+            known = entityManager.unwrap(Session.class).doReturningWork(connection ->
+                    "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName()));
+            postgres = known;
+        }
+        return known;
+    }
+}
@@ -1,9 +1,20 @@
 package com.heidari.document_service.repository;
 
 
+import com.heidari.document_service.model.ContentStorage;
 import com.heidari.document_service.model.Document;
+import com.heidari.document_service.storage.ContentCodec;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository interface for Document entity.
@@ -14,6 +25,148 @@ import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
  * This allows passing a 'Specification' object to 'findAll()' for dynamic, programmatic query generation,
  * which is cleaner and safer than string-based JPQL for complex filters.
  */
-public interface DocumentRepository extends JpaRepository<Document, Long>, JpaSpecificationExecutor<Document> {
-    // No explicit methods needed. Spring Data JPA generates implementation proxies at runtime.
-}
\ No newline at end of file
+public interface DocumentRepository extends JpaRepository<Document, Long>, JpaSpecificationExecutor<Document>,
+        DocumentRepositoryCustom {
+
+    /**
+     * Loads a contiguous id range together with its tags (used to build the search index).
+     * The @EntityGraph turns the lazy "tags" collection into a single JOIN FETCH,
+     * so a whole range costs one query instead of 1 + N.
+     *
+     * @param fromId Lower bound (inclusive).
+     * @param toId   Upper bound (inclusive).
+     * @return Documents in the range, ordered by id.
+     */
+    @EntityGraph(attributePaths = "tags")
+    List<Document> findByIdBetweenOrderByIdAsc(Long fromId, Long toId);
+
+    /**
+     * Loads the documents up to an id that were created at or after a point in time, together with their tags
+     * (documents that may have committed after an index snapshot was taken).
+     */
+    @EntityGraph(attributePaths = "tags")
+    List<Document> findByIdLessThanEqualAndCreatedAtGreaterThanEqualOrderByIdAsc(Long maxId, LocalDateTime since);
+
+    /**
+     * @return The highest document id, or 0 if the table is empty.
+     */
+    @Query("SELECT COALESCE(MAX(d.id), 0) FROM Document d")
+    long findMaxId();
+
+    /**
+     * Loads a single document together with its tags.
+     */
+    @EntityGraph(attributePaths = "tags")
+    Optional<Document> findWithTagsById(Long id);
+
+    /**
+     * Loads documents by id together with their tags, in one query (second phase of a search).
+     * Hibernate de-duplicates the joined rows into one entity per document.
+     *
+     * @param ids The ids selected by the first phase.
+     * @return The documents, in no particular order.
+     */
+    @EntityGraph(attributePaths = "tags")
+    List<Document> findWithTagsByIdIn(Collection<Long> ids);
+
+    /**
+     * Like {@link #findWithTagsByIdIn}, restricted to bodies stored in the given ways: loads only the
+     * candidates a search must verify in memory (see {@link DocumentSpecification#OUT_OF_ROW}).
+     */
+    @EntityGraph(attributePaths = "tags")
+    List<Document> findWithTagsByIdInAndContentStorageIn(Collection<Long> ids, Collection<ContentStorage> storages);
+
+    /*
+     * Educational Note on projections:
+     * The methods below return interfaces instead of entities. Spring Data then selects only the
+     * aliased columns, so the TEXT "content" column is never read from disk nor sent over the wire.
+     */
+
+    /**
+     * Search summary columns: everything a listing view needs except the body.
+     */
+    interface SummaryRow {
+        Long getId();
+        String getTitle();
+        LocalDateTime getCreatedAt();
+    }
+
+    /**
+     * Summary columns plus a short excerpt of the body, and where the body is (the excerpt is null
+     * unless it is inline).
+     */
+    interface SnippetRow extends SummaryRow {
+        String getSnippet();
+        ContentStorage getContentStorage();
+    }
+
+    /**
+     * One (document, tag name) pair.
+     */
+    interface TagNameRow {
+        Long getDocumentId();
+        String getName();
+    }
+
+    /**
+     * A title or tag name with the number of documents having it.
+     */
+    interface SuggestionRow {
+        String getText();
+        Long getCount();
+    }
+
+    /**
+     * Where the body of a document is: inline text, compressed bytes, or the length and checksum of its file.
+     */
+    interface ContentRow {
+        String getContent();
+        ContentStorage getContentStorage();
+        Long getContentLength();
+        String getContentChecksum();
+        ContentCodec getContentCodec();
+        byte[] getCompressedContent();
+    }
+
+    /**
+     * @return Only the body columns of a document, without materializing the entity.
+     */
+    @Query("SELECT d.content AS content, d.contentStorage AS contentStorage, d.contentLength AS contentLength, "
+            + "d.contentChecksum AS contentChecksum, d.contentCodec AS contentCodec, "
+            + "d.compressedContent AS compressedContent FROM Document d WHERE d.id = :id")
+    Optional<ContentRow> findContentById(@Param("id") Long id);
+
+    @Query("SELECT d.id AS id, d.title AS title, d.createdAt AS createdAt FROM Document d WHERE d.id IN :ids")
+    List<SummaryRow> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Like {@link #findSummariesByIdIn}, plus an excerpt of "length" characters that starts "before"
+     * characters ahead of the first occurrence of the term (or at the beginning if there is none).
+     * The excerpt is cut by the database; the full body never leaves it.
+     */
+    @Query("SELECT d.id AS id, d.title AS title, d.createdAt AS createdAt, "
+            + "SUBSTRING(d.content, GREATEST(LOCATE(:term, LOWER(d.content)) - :before, 1), :length) AS snippet, "
+            + "d.contentStorage AS contentStorage FROM Document d WHERE d.id IN :ids")
+    List<SnippetRow> findSummariesWithSnippetByIdIn(@Param("ids") Collection<Long> ids,
+                                                    @Param("term") String term,
+                                                    @Param("before") int before,
+                                                    @Param("length") int length);
+
+    @Query("SELECT d.id AS documentId, t.name AS name FROM Document d JOIN d.tags t WHERE d.id IN :ids")
+    List<TagNameRow> findTagNamesByDocumentIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Type-ahead without the index: the most common titles starting with the pattern (e.g. "jav%"),
+     * compared in lower case.
+     */
+    @Query("SELECT d.title AS text, COUNT(d) AS count FROM Document d WHERE LOWER(d.title) LIKE :pattern "
+            + "GROUP BY d.title ORDER BY COUNT(d) DESC, d.title")
+    List<SuggestionRow> suggestTitles(@Param("pattern") String pattern, Limit limit);
+
+    /**
+     * Type-ahead without the index: the most used tags whose name starts with the pattern, compared in lower case.
+     */
+    @Query("SELECT t.name AS text, COUNT(d) AS count FROM Document d JOIN d.tags t WHERE LOWER(t.name) LIKE :pattern "
+            + "GROUP BY t.name ORDER BY COUNT(d) DESC, t.name")
+    List<SuggestionRow> suggestTags(@Param("pattern") String pattern, Limit limit);
+}
@@ -0,0 +1,61 @@
+package com.heidari.document_service.repository;
+
+import com.heidari.document_service.model.ContentStorage;
+import com.heidari.document_service.model.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Custom (hand-written) operations for {@link DocumentRepository}.
+ */
+public interface DocumentRepositoryCustom {
+
+    /**
+     * Streams every document matching the specification from a server-side cursor.
+     * <p>
+     * Educational Note:
+     * findAll(spec) materializes the complete result list before returning. Here rows are fetched
+     * from the JDBC driver "fetchSize" at a time while the caller consumes the stream, so memory
+     * does not grow with the number of matches as long as the caller detaches what it has
+     * processed. On PostgreSQL a cursor is only used inside a transaction (autocommit off),
+     * so the stream must be consumed within one, and closed afterwards.
+     *
+     * @param spec      The WHERE clause (may return a null predicate to match everything).
+     * @param sort      The ORDER BY clause.
+     * @param fetchSize Rows per round trip to the database.
+     * @return A lazily-populated stream of read-only entities.
+     */
+    Stream<Document> streamAll(Specification<Document> spec, Sort sort, int fetchSize);
+
+    /**
+     * Selects only the ids of the matching documents (no entity, no "content" column).
+     *
+     * @param spec  The WHERE clause.
+     * @param sort  The ORDER BY clause.
+     * @param limit The maximum number of ids.
+     * @return Matching ids in sort order.
+     */
+    List<Long> findIds(Specification<Document> spec, Sort sort, int limit);
+
+    /**
+     * Like {@link #findIds}, with where each body is stored (the bodies that LIKE cannot see need checking).
+     *
+     * @return Matching ids in sort order, with their storage.
+     */
+    LinkedHashMap<Long, ContentStorage> findIdsWithStorage(Specification<Document> spec, Sort sort, int limit);
+
+    /**
+     * Counts the tags of the matching documents with one GROUP BY query
+     * (the Specification-path equivalent of the index's tag bitmaps).
+     *
+     * @param spec  The WHERE clause.
+     * @param limit The maximum number of tags.
+     * @return Tag name to number of matching documents, by descending count then name.
+     */
+    Map<String, Long> countTags(Specification<Document> spec, int limit);
+}
@@ -0,0 +1,112 @@
+package com.heidari.document_service.repository;
+
+import com.heidari.document_service.model.ContentStorage;
+import com.heidari.document_service.model.Document;
+import com.heidari.document_service.model.Tag;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.springframework.data.jpa.repository.query.QueryUtils.toOrders;
+
+/**
+ * Implementation of {@link DocumentRepositoryCustom}.
+ */
+class DocumentRepositoryImpl implements DocumentRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Stream<Document> streamAll(Specification<Document> spec, Sort sort, int fetchSize) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Document> query = cb.createQuery(Document.class);
+        Root<Document> root = query.from(Document.class);
+
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(toOrders(sort, root, cb));
+
+        return entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true) // no dirty-checking snapshots
+                .getResultStream();
+    }
+
+    @Override
+    public List<Long> findIds(Specification<Document> spec, Sort sort, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Document> root = query.from(Document.class);
+        query.select(root.get("id"));
+
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(toOrders(sort, root, cb));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public LinkedHashMap<Long, ContentStorage> findIdsWithStorage(Specification<Document> spec, Sort sort, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Document> root = query.from(Document.class);
+        query.multiselect(root.get("id"), root.get("contentStorage"));
+
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(toOrders(sort, root, cb));
+
+        LinkedHashMap<Long, ContentStorage> ids = new LinkedHashMap<>();
+        for (Tuple row : entityManager.createQuery(query).setMaxResults(limit).getResultList()) {
+            ids.put(row.get(0, Long.class), row.get(1, ContentStorage.class));
+        }
+        return ids;
+    }
+
+    @Override
+    public Map<String, Long> countTags(Specification<Document> spec, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Document> root = query.from(Document.class);
+        Join<Document, Tag> tag = root.join("tags");
+        Expression<Long> count = cb.count(root);
+        query.multiselect(tag.get("name"), count);
+
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.groupBy(tag.get("name"));
+        query.orderBy(cb.desc(count), cb.asc(tag.get("name")));
+
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Tuple row : entityManager.createQuery(query).setMaxResults(limit).getResultList()) {
+            counts.put(row.get(0, String.class), row.get(1, Long.class));
+        }
+        return counts;
+    }
+}
@@ -1,13 +1,25 @@
 package com.heidari.document_service.repository;
 
+import com.heidari.document_service.model.ContentStorage;
 import com.heidari.document_service.model.Document;
 import com.heidari.document_service.model.Tag;
+import com.heidari.document_service.search.SearchCursor;
+import com.heidari.document_service.search.SearchMode;
+import com.heidari.document_service.search.TagExpression;
+import jakarta.persistence.criteria.CommonAbstractCriteria;
+import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.Join;
-import jakarta.persistence.criteria.JoinType;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.util.StringUtils;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * Defines dynamic query logic for searching documents.
  * <p>
@@ -23,6 +35,13 @@ import org.springframework.util.StringUtils;
  */
 public class DocumentSpecification {
 
+    /**
+     * Where a body is kept outside the "content" column (in a file, or encoded), so that {@code LIKE} cannot
+     * see it. {@link #searchCandidates} returns such documents for every content search, to be verified in memory.
+     */
+    public static final Set<ContentStorage> OUT_OF_ROW =
+            Collections.unmodifiableSet(EnumSet.of(ContentStorage.FILE, ContentStorage.COMPRESSED));
+
     /**
      * Generates a Specification based on the search query and the search mode.
      *
@@ -40,7 +59,6 @@ public class DocumentSpecification {
 
             // Pattern for partial matching: "%text%" (Contains logic)
             String searchPattern = "%" + queryText.toLowerCase() + "%";
-            Join<Document, Tag> tagJoin;
 
             // Default to "all" if mode is null
             String searchMode = (mode != null) ? mode.toLowerCase() : "all";
@@ -55,38 +73,126 @@ public class DocumentSpecification {
                     return cb.like(cb.lower(root.get("content")), searchPattern);
 
                 case "tag":
-                    /*
-                     * Logic: INNER JOIN
-                     * We only want documents that definitely have this specific tag.
-                     * If a document has no tags, it is excluded immediately.
-                     */
-                    tagJoin = root.join("tags", JoinType.INNER);
-                    query.distinct(true); // Avoid duplicate results if a doc has multiple matching tags
-                    return cb.like(cb.lower(tagJoin.get("name")), searchPattern);
+                    // WHERE EXISTS (a tag of this document LIKE '%...%')
+                    return tagExists(root, query, cb, searchPattern);
 
                 case "all":
                 default:
                     /*
-                     * Critical Logic: LEFT JOIN vs INNER JOIN
-                     * We use LEFT JOIN here because we want to search in Title OR Content OR Tags.
-                     * * Why?
-                     * If we used INNER JOIN, a document with a matching Title but NO tags would be
-                     * hidden/excluded from the results. LEFT JOIN allows looking at tags
-                     * while still keeping documents that have no tags.
+                     * Critical Logic: EXISTS instead of JOIN + DISTINCT
+                     * We search in Title OR Content OR Tags. Joining "tags" would produce one row per
+                     * (document, tag) pair; a document without tags would need a LEFT JOIN to survive,
+                     * and the duplicates a DISTINCT over every column (including the TEXT body).
+                     * * Why EXISTS?
+                     * The tag condition becomes a correlated subquery: each document is a single row
+                     * whether it has zero, one or many tags, so there is nothing to de-duplicate.
                      */
-                    tagJoin = root.join("tags", JoinType.LEFT);
-
-                    // Create 3 independent conditions
                     Predicate titleMatch = cb.like(cb.lower(root.get("title")), searchPattern);
                     Predicate contentMatch = cb.like(cb.lower(root.get("content")), searchPattern);
-                    Predicate tagMatch = cb.like(cb.lower(tagJoin.get("name")), searchPattern);
-
-                    // Apply DISTINCT to prevent "Cartesian Product" duplicates in the result list
-                    query.distinct(true);
+                    Predicate tagMatch = tagExists(root, query, cb, searchPattern);
 
-                    // Combine with logical OR: (title LIKE ...) OR (content LIKE ...) OR (tag LIKE ...)
+                    // Combine with logical OR: (title LIKE ...) OR (content LIKE ...) OR EXISTS (tag LIKE ...)
                     return cb.or(titleMatch, contentMatch, tagMatch);
             }
         };
     }
-}
\ No newline at end of file
+
+    /**
+     * Like {@link #searchByMode}, plus every document whose body is {@link #OUT_OF_ROW} when the search
+     * covers content: a superset of the matches. The caller verifies those bodies in memory
+     * (see {@link #needsVerification}).
+     *
+     * @return A Specification acting as: WHERE (searchByMode) OR content_storage IN (...)
+     */
+    public static Specification<Document> searchCandidates(String queryText, String mode) {
+        if (!needsVerification(queryText, mode)) {
+            return searchByMode(queryText, mode);
+        }
+        return searchByMode(queryText, mode).or(storedOutOfRow());
+    }
+
+    /**
+     * @return True if {@link #searchCandidates} may return documents that do not match: the query has text
+     *         and covers content ("content" or "all").
+     */
+    public static boolean needsVerification(String queryText, String mode) {
+        SearchMode searchMode = SearchMode.from(mode);
+        return StringUtils.hasText(queryText) && (searchMode == SearchMode.CONTENT || searchMode == SearchMode.ALL);
+    }
+
+    /**
+     * @return A Specification acting as: WHERE content_storage IN (OUT_OF_ROW)
+     */
+    public static Specification<Document> storedOutOfRow() {
+        return (root, query, cb) -> root.get("contentStorage").in(OUT_OF_ROW);
+    }
+
+    // EXISTS (SELECT 1 FROM document_tags JOIN tag WHERE document_id = root.id AND LOWER(name) LIKE pattern)
+    private static Predicate tagExists(Root<Document> root, CommonAbstractCriteria query, CriteriaBuilder cb,
+                                       String searchPattern) {
+        Subquery<Integer> subquery = query.subquery(Integer.class);
+        Root<Document> document = subquery.correlate(root);
+        Join<Document, Tag> tag = document.join("tags");
+        subquery.select(cb.literal(1)).where(cb.like(cb.lower(tag.get("name")), searchPattern));
+        return cb.exists(subquery);
+    }
+
+    /**
+     * Restricts documents to a boolean tag expression: each tag name becomes an EXISTS subquery
+     * (exact name), combined with AND / OR / NOT like the expression.
+     *
+     * @param expression The parsed expression, or null for no restriction.
+     * @return A Specification acting as e.g.: WHERE EXISTS (tag 'a') AND NOT EXISTS (tag 'c')
+     */
+    public static Specification<Document> matchesTags(TagExpression expression) {
+        return (root, query, cb) -> (expression != null) ? tagPredicate(expression, root, query, cb) : null;
+    }
+
+    private static Predicate tagPredicate(TagExpression expression, Root<Document> root,
+                                          CommonAbstractCriteria query, CriteriaBuilder cb) {
+        if (expression instanceof TagExpression.Tag tag) {
+            Subquery<Integer> subquery = query.subquery(Integer.class);
+            Root<Document> document = subquery.correlate(root);
+            Join<Document, Tag> tagJoin = document.join("tags");
+            subquery.select(cb.literal(1)).where(cb.equal(tagJoin.get("name"), tag.name()));
+            return cb.exists(subquery);
+        }
+        if (expression instanceof TagExpression.Not not) {
+            return cb.not(tagPredicate(not.operand(), root, query, cb));
+        }
+        List<TagExpression> operands = (expression instanceof TagExpression.And and)
+                ? and.operands() : ((TagExpression.Or) expression).operands();
+        Predicate[] predicates = operands.stream()
+                .map(operand -> tagPredicate(operand, root, query, cb))
+                .toArray(Predicate[]::new);
+        return (expression instanceof TagExpression.And) ? cb.and(predicates) : cb.or(predicates);
+    }
+
+    /**
+     * Keyset pagination condition: only rows that sort after the cursor
+     * in (createdAt DESC, id DESC) order.
+     *
+     * @param cursor The position of the previous page's last row, or null for the first page.
+     * @return A Specification acting as: WHERE createdAt < :c OR (createdAt = :c AND id < :id)
+     */
+    public static Specification<Document> afterCursor(SearchCursor cursor) {
+        return (root, query, cb) -> {
+            if (cursor == null) {
+                return null;
+            }
+            return cb.or(
+                    cb.lessThan(root.get("createdAt"), cursor.createdAt()),
+                    cb.and(
+                            cb.equal(root.get("createdAt"), cursor.createdAt()),
+                            cb.lessThan(root.get("id"), cursor.id())));
+        };
+    }
+
+    /**
+     * @param id The last id already read (0 for all).
+     * @return A Specification acting as: WHERE id > :id
+     */
+    public static Specification<Document> idAfter(long id) {
+        return (root, query, cb) -> cb.greaterThan(root.get("id"), id);
+    }
+}
@@ -0,0 +1,10 @@
+package com.heidari.document_service.repository;
+
+import com.heidari.document_service.model.ImportCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * Repository of the corpus import checkpoints, one row per checkpoint name.
+ */
+public interface ImportCheckpointRepository extends JpaRepository<ImportCheckpoint, String> {
+}
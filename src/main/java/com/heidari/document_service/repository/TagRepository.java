@@ -3,13 +3,15 @@ package com.heidari.document_service.repository;
 
 import com.heidari.document_service.model.Tag;
 import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
  * Repository interface for managing Tag entities.
  * Extends JpaRepository to provide standard CRUD operations.
  */
-public interface TagRepository extends JpaRepository<Tag, Long> {
+public interface TagRepository extends JpaRepository<Tag, Long>, TagRepositoryCustom {
 
     /**
      * Finds a Tag by its name.
@@ -19,4 +21,13 @@ public interface TagRepository extends JpaRepository<Tag, Long> {
      * @return An Optional containing the Tag if found, or empty if not.
      */
     Optional<Tag> findByName(String name);
+
+    /**
+     * Finds all tags whose name is in the given set, in a single query.
+     * Used for set-based tag resolution during bulk ingestion.
+     *
+     * @param names The tag names to look up.
+     * @return The existing tags (missing names are simply absent).
+     */
+    List<Tag> findByNameIn(Collection<String> names);
 }
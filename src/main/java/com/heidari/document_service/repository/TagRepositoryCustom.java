@@ -0,0 +1,23 @@
+package com.heidari.document_service.repository;
+
+import java.util.Collection;
+
+/**
+ * Custom (hand-written) operations for {@link TagRepository}.
+ * <p>
+ * Educational Note:
+ * Spring Data merges this "fragment" interface into the repository proxy and routes its
+ * methods to {@link TagRepositoryImpl} (found by the "Impl" suffix naming convention).
+ */
+public interface TagRepositoryCustom {
+
+    /**
+     * Inserts every name that does not exist yet, using a single multi-row
+     * {@code INSERT ... ON CONFLICT DO NOTHING} per chunk of names.
+     * Names that already exist (or are inserted concurrently by another transaction) are skipped.
+     *
+     * @param names The tag names to make sure exist.
+     * @return The number of rows actually inserted.
+     */
+    int insertMissing(Collection<String> names);
+}
@@ -0,0 +1,44 @@
+package com.heidari.document_service.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Implementation of {@link TagRepositoryCustom}.
+ */
+class TagRepositoryImpl implements TagRepositoryCustom {
+
+    /** Keeps each statement well below the JDBC driver's bind-parameter limit. */
+    static final int MAX_NAMES_PER_STATEMENT = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int insertMissing(Collection<String> names) {
+        List<String> all = new ArrayList<>(names);
+        int inserted = 0;
+        for (int start = 0; start < all.size(); start += MAX_NAMES_PER_STATEMENT) {
+            List<String> chunk = all.subList(start, Math.min(start + MAX_NAMES_PER_STATEMENT, all.size()));
+
+            // INSERT INTO tag (name) VALUES (?1), (?2), ... ON CONFLICT DO NOTHING
+            StringBuilder sql = new StringBuilder("INSERT INTO tag (name) VALUES ");
+            for (int i = 1; i <= chunk.size(); i++) {
+                sql.append(i > 1 ? ", " : "").append("(?").append(i).append(')');
+            }
+            sql.append(" ON CONFLICT DO NOTHING");
+
+            Query query = entityManager.createNativeQuery(sql.toString());
+            for (int i = 0; i < chunk.size(); i++) {
+                query.setParameter(i + 1, chunk.get(i));
+            }
+            inserted += query.executeUpdate();
+        }
+        return inserted;
+    }
+}
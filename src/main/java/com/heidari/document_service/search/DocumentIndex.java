@@ -0,0 +1,500 @@
+package com.heidari.document_service.search;
+
+import com.heidari.document_service.config.ReadConsistency;
+import com.heidari.document_service.config.SearchProperties;
+import com.heidari.document_service.dto.Suggestion;
+import com.heidari.document_service.dto.TagFacets;
+import com.heidari.document_service.model.ContentStorage;
+import com.heidari.document_service.model.Document;
+import com.heidari.document_service.model.Tag;
+import com.heidari.document_service.repository.DocumentRepository;
+import com.heidari.document_service.storage.ContentStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the in-memory {@link InvertedIndex} in sync with the "document" table.
+ * <p>
+ * Lifecycle:
+ * 1. At startup (before the web server accepts requests) the newest usable snapshot is loaded
+ *    (see {@link IndexSnapshot}) and only the documents it may be missing are read from the table.
+ *    Without a snapshot, the index is built by reading the whole table in id ranges.
+ * 2. Every document created afterwards is added once its transaction has committed, or, with
+ *    "document.search.index-on-commit=false", shortly after by the change feed
+ *    (see {@link SearchIndexChangeListener}).
+ * 3. {@link IndexSnapshotter} writes a new snapshot periodically and at shutdown.
+ * <p>
+ * Educational Note on the high-water mark:
+ * A snapshot holds every document up to its highest id, EXCEPT documents whose transaction was still
+ * open when it was written: ids are assigned at insert, but transactions commit in any order. So the
+ * replay reads the ids above the mark, plus the documents below it created within "replay-window" of
+ * the snapshot's newest document. Adding a document twice is harmless, so the overlap costs nothing
+ * but a small query. A transaction that stays open longer than the window can be missed until the
+ * next full rebuild; keep the window above the longest write transaction. The same holds for an import
+ * that was running while the snapshot was written: its documents keep their exported creation times,
+ * which the window does not cover.
+ * <p>
+ * Bodies kept in the {@link ContentStore} are tokenized from their file, as a stream.
+ * <p>
+ * The segments of the index are searched on a dedicated fork/join pool ("search-segment-N" threads,
+ * see "document.search.parallel.*"), never on the common pool, which parallel streams and
+ * CompletableFutures elsewhere in the JVM share: a burst of searches cannot starve them, nor they it.
+ * <p>
+ * Until the first build has finished, {@link #isReady()} is false and callers should
+ * fall back to the Specification path.
+ */
+@Component
+public class DocumentIndex implements SmartInitializingSingleton, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentIndex.class);
+
+    private final DocumentRepository documentRepository;
+    private final SearchProperties searchProperties;
+    private final ContentStore contentStore;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate readAfterCommit;
+    private final ReadConsistency readConsistency;
+    private final InvertedIndex.Parallelism parallelism;
+
+    private volatile InvertedIndex index;
+    private volatile boolean ready;
+
+    // The index and document count of the last snapshot written or restored, to skip unchanged snapshots
+    private InvertedIndex snapshotIndex;
+    private int snapshotCount;
+
+    public DocumentIndex(DocumentRepository documentRepository,
+                         SearchProperties searchProperties,
+                         ContentStore contentStore,
+                         PlatformTransactionManager transactionManager,
+                         ReadConsistency readConsistency) {
+        this.documentRepository = documentRepository;
+        this.searchProperties = searchProperties;
+        this.contentStore = contentStore;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readAfterCommit = new TransactionTemplate(transactionManager);
+        this.readAfterCommit.setReadOnly(true);
+        this.readAfterCommit.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readConsistency = readConsistency;
+        this.parallelism = parallelism(searchProperties.getParallel());
+        this.index = newIndex();
+    }
+
+    @Override
+    public void destroy() {
+        if (parallelism.pool() != null) {
+            parallelism.pool().shutdownNow();
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (isEnabled() && !restoreSnapshot()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Rebuilds the index from scratch by reading the table in id ranges.
+     * Documents committed while the rebuild runs are added to the new index as well.
+     */
+    public void rebuild() {
+        long started = System.currentTimeMillis();
+        ready = false;
+        InvertedIndex fresh = newIndex();
+        index = fresh;
+
+        load(fresh, 1);
+
+        ready = true;
+        log.info("Search index built: {} documents in {} segments, {} terms, {} posting bytes, {} trigram bytes "
+                        + "({} documents unfiltered), {} tag bitmap bytes in {} ms",
+                fresh.documentCount(), fresh.segmentCount(), fresh.termCount(), fresh.postingBytes(),
+                fresh.trigramBytes(), fresh.trigramUnfilteredCount(), fresh.tagBitmapBytes(),
+                System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Replaces the index with the newest usable snapshot and replays the documents it may be missing
+     * (see the note on the high-water mark). Snapshots that are corrupt, of another format version, or
+     * built with other trigram settings are skipped.
+     *
+     * @return False if snapshots are disabled or none could be used: the caller should {@link #rebuild()}.
+     */
+    public boolean restoreSnapshot() {
+        SearchProperties.Snapshot settings = searchProperties.getSnapshot();
+        if (!settings.isEnabled()) {
+            return false;
+        }
+        List<Path> files;
+        try {
+            files = IndexSnapshot.list(snapshotDirectory());
+        } catch (IOException e) {
+            log.warn("Could not list search index snapshots: {}", e.toString());
+            return false;
+        }
+
+        SearchProperties.Trigram trigram = searchProperties.getTrigram();
+        for (Path file : files) {
+            long started = System.currentTimeMillis();
+            InvertedIndex restored;
+            try {
+                restored = IndexSnapshot.read(file);
+            } catch (IOException e) {
+                log.warn("Ignoring search index snapshot {}: {}", file, e.getMessage());
+                continue;
+            }
+            if (!restored.hasTrigramSettings(trigramMaxBytes(), trigram.getMaxFieldLength())) {
+                log.info("Ignoring search index snapshot {}: built with other trigram settings", file);
+                continue;
+            }
+            restored.setParallelism(parallelism);
+            long loaded = System.currentTimeMillis();
+            long highWaterMark = restored.maxDocumentId();
+
+            ready = false;
+            index = restored;
+            synchronized (this) {
+                snapshotIndex = restored;
+                snapshotCount = restored.documentCount();
+            }
+            int replayed = replay(restored, settings.getReplayWindow());
+            ready = true;
+            log.info("Search index restored from {}: {} documents (high-water mark {}) loaded in {} ms, "
+                            + "{} documents replayed in {} ms",
+                    file, restored.documentCount() - replayed, highWaterMark, loaded - started,
+                    replayed, System.currentTimeMillis() - loaded);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Writes the current index to a new snapshot file (see {@link IndexSnapshot}), unless no document
+     * was indexed since the last snapshot. Searches continue while it is written.
+     *
+     * @return True if a snapshot was written.
+     * @throws IOException If the file could not be written (the previous snapshots are kept).
+     */
+    public synchronized boolean writeSnapshot() throws IOException {
+        InvertedIndex current = index;
+        SearchProperties.Snapshot settings = searchProperties.getSnapshot();
+        if (!ready || !isEnabled() || !settings.isEnabled()) {
+            return false;
+        }
+        int count = current.documentCount();
+        if (current == snapshotIndex && count == snapshotCount) {
+            return false;
+        }
+        long started = System.currentTimeMillis();
+        Path file = IndexSnapshot.write(current, snapshotDirectory(), settings.getRetain());
+        snapshotIndex = current;
+        snapshotCount = count;
+        log.info("Search index snapshot written to {}: {} documents in {} ms",
+                file, count, System.currentTimeMillis() - started);
+        return true;
+    }
+
+    /**
+     * Adds a newly created document to the index.
+     * Inside a transaction, the document is indexed only after a successful commit,
+     * so rolled-back documents never become searchable.
+     * Does nothing if "index-on-commit" is off: the change feed adds the document instead.
+     * <p>
+     * The fields are passed individually (not as an entity) because callers may no longer hold
+     * a managed entity, and tag proxies cannot be read once the persistence context is cleared.
+     */
+    public void indexAfterCommit(Long id, LocalDateTime createdAt, String title, String content,
+                                 List<String> tagNames) {
+        if (isEnabled() && searchProperties.isIndexOnCommit()) {
+            afterCommit(() -> index.add(id, SearchCursor.toMicros(createdAt), title, content, tagNames));
+        }
+    }
+
+    /**
+     * Same as {@link #indexAfterCommit(Long, LocalDateTime, String, String, List)} for a body in the
+     * {@link ContentStore}: the file is tokenized now (it is written before the commit), and the terms
+     * are added after the commit.
+     */
+    public void indexFileAfterCommit(Long id, LocalDateTime createdAt, String title, List<String> tagNames)
+            throws IOException {
+        if (isEnabled() && searchProperties.isIndexOnCommit()) {
+            Map<String, Integer> contentTerms = contentStore.countTerms(id);
+            afterCommit(() -> index.add(id, SearchCursor.toMicros(createdAt), title, contentTerms, tagNames));
+        }
+    }
+
+    /**
+     * Adds documents created in the current transaction once it has committed, reading them back from the
+     * table in batches of "rebuild-batch-size". Bulk writers call this per batch instead of
+     * {@link #indexAfterCommit}: the ids of every batch of a transaction are collected by one
+     * synchronization, so no title or body is held until the commit.
+     * Does nothing if "index-on-commit" is off: the change feed adds the documents instead.
+     */
+    public void indexCommittedAfterCommit(Collection<Long> ids) {
+        if (!isEnabled() || !searchProperties.isIndexOnCommit() || ids.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addFromTable(ids);
+            return;
+        }
+        PendingIds pending = TransactionSynchronizationManager.getSynchronizations().stream()
+                .filter(synchronization -> synchronization instanceof PendingIds)
+                .map(PendingIds.class::cast)
+                .findFirst()
+                .orElseGet(() -> {
+                    PendingIds registered = new PendingIds();
+                    TransactionSynchronizationManager.registerSynchronization(registered);
+                    return registered;
+                });
+        pending.ids.addAll(ids);
+    }
+
+    /**
+     * Adds the committed documents among the ids that are not in the index yet, reading them from the table.
+     *
+     * @return The number of documents added (0 if the search engine does not use the index).
+     * @throws IllegalStateException If the index is being built: try again later.
+     */
+    public int indexMissing(Collection<Long> ids) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        if (!ready) {
+            throw new IllegalStateException("The search index is not ready");
+        }
+        InvertedIndex target = index;
+        List<Long> missing = ids.stream().distinct().filter(id -> !target.contains(id)).toList();
+        if (missing.isEmpty()) {
+            return 0;
+        }
+        List<Document> documents = read(() -> documentRepository.findWithTagsByIdIn(missing));
+        for (Document document : documents) {
+            add(target, document);
+        }
+        return documents.size();
+    }
+
+    /**
+     * @return Ids of one page of documents matching the query and the tag expression (may be null), newest first
+     *         (see {@link InvertedIndex#searchPage(String, SearchMode, TagExpression, SearchCursor, int)}).
+     */
+    public long[] searchPage(String query, SearchMode mode, TagExpression tags, SearchCursor after, int limit) {
+        return index.searchPage(query, mode, tags, after, limit);
+    }
+
+    /**
+     * @return Ids of the k most relevant documents matching the query and the tag expression (may be null),
+     *         best first (see {@link InvertedIndex#searchRanked}), scored with the "document.search.ranking.*"
+     *         settings.
+     */
+    public long[] searchRanked(String query, SearchMode mode, TagExpression tags, int k) {
+        SearchProperties.Ranking ranking = searchProperties.getRanking();
+        return index.searchRanked(query, mode, tags, k, new InvertedIndex.Scoring(ranking.getK1(), ranking.getB(),
+                ranking.getTitleBoost(), ranking.getContentBoost(), ranking.getTagBoost()));
+    }
+
+    /**
+     * @return Tag counts over every match (see {@link InvertedIndex#facets}).
+     */
+    public TagFacets facets(String query, SearchMode mode, TagExpression tags, int limit) {
+        return index.facets(query, mode, tags, limit);
+    }
+
+    /**
+     * @return The most frequent titles and tag names starting with the prefix (see {@link InvertedIndex#suggest}),
+     *         with the "document.search.suggest.max-expansions" budget.
+     */
+    public List<Suggestion> suggest(String prefix, SearchMode mode, int limit) {
+        return index.suggest(prefix, mode, limit, searchProperties.getSuggest().getMaxExpansions());
+    }
+
+    /**
+     * @return Candidates for a substring search, newest first, or null if the trigram index cannot narrow
+     *         the query down (see {@link InvertedIndex#substringCandidates}).
+     */
+    public long[] substringCandidates(String query, SearchMode mode, SearchCursor after) {
+        return index.substringCandidates(query, mode, after);
+    }
+
+    /**
+     * @return Candidates for a fuzzy search, newest first, or null if the trigram index cannot narrow
+     *         the query down (see {@link InvertedIndex#fuzzyCandidates}).
+     */
+    public long[] fuzzyCandidates(String query, int distance, SearchMode mode, SearchCursor after) {
+        return index.fuzzyCandidates(query, distance, mode, after);
+    }
+
+    /**
+     * @return Ids of all matching documents, newest first (see {@link InvertedIndex#searchAll}).
+     */
+    public long[] searchAll(String query, SearchMode mode) {
+        return index.searchAll(query, mode);
+    }
+
+    /** @return True once the startup build has completed. */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** @return True if substring and fuzzy searches can be served from the trigram index. */
+    public boolean isTrigramReady() {
+        return ready && searchProperties.getTrigram().isEnabled();
+    }
+
+    private InvertedIndex newIndex() {
+        InvertedIndex fresh = new InvertedIndex(trigramMaxBytes(), searchProperties.getTrigram().getMaxFieldLength());
+        fresh.setParallelism(parallelism);
+        return fresh;
+    }
+
+    // A pool of "threads" workers (one per core by default); each query uses at most "max-parallelism" of them
+    private static InvertedIndex.Parallelism parallelism(SearchProperties.Parallel settings) {
+        if (!settings.isEnabled()) {
+            return new InvertedIndex.Parallelism(null, 1, settings.getMinSegmentSize());
+        }
+        int threads = settings.getThreads() > 0 ? settings.getThreads() : Runtime.getRuntime().availableProcessors();
+        int maxTasks = settings.getMaxParallelism() > 0 ? Math.min(settings.getMaxParallelism(), threads) : threads;
+        ForkJoinPool pool = new ForkJoinPool(threads, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("search-segment-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        return new InvertedIndex.Parallelism(pool, maxTasks, settings.getMinSegmentSize());
+    }
+
+    // A disabled trigram index gets no budget: it stays empty
+    private long trigramMaxBytes() {
+        SearchProperties.Trigram trigram = searchProperties.getTrigram();
+        return trigram.isEnabled() ? trigram.getMaxBytes() : 0;
+    }
+
+    private Path snapshotDirectory() {
+        return Path.of(searchProperties.getSnapshot().getDirectory());
+    }
+
+    // Adds every document with an id from "fromId" to the current maximum, reading the table in id ranges
+    private void load(InvertedIndex target, long fromId) {
+        int batchSize = searchProperties.getRebuildBatchSize();
+        long maxId = readConsistency.onPrimary(documentRepository::findMaxId);
+        for (long from = fromId; from <= maxId; from += batchSize) {
+            long rangeStart = from;
+            long rangeEnd = from + batchSize - 1;
+            List<Document> batch = read(() -> documentRepository.findByIdBetweenOrderByIdAsc(rangeStart, rangeEnd));
+            for (Document document : batch) {
+                add(target, document);
+            }
+        }
+    }
+
+    // Adds the documents a restored snapshot may be missing; returns how many were new
+    private int replay(InvertedIndex target, Duration window) {
+        int before = target.documentCount();
+        long highWaterMark = target.maxDocumentId();
+        long newest = target.maxCreatedAtMicros();
+        if (newest != Long.MIN_VALUE) {
+            LocalDateTime since = SearchCursor.fromMicros(newest).minus(window);
+            List<Document> stragglers = read(() -> documentRepository
+                    .findByIdLessThanEqualAndCreatedAtGreaterThanEqualOrderByIdAsc(highWaterMark, since));
+            for (Document document : stragglers) {
+                add(target, document);
+            }
+        }
+        load(target, highWaterMark + 1);
+        return target.documentCount() - before;
+    }
+
+    // A read-only transaction on the primary: a lagging replica would make the index miss documents for good
+    private <T> T read(Supplier<T> query) {
+        return read(readOnlyTransaction, query);
+    }
+
+    private <T> T read(TransactionTemplate transaction, Supplier<T> query) {
+        return readConsistency.onPrimary(() -> transaction.execute(status -> query.get()));
+    }
+
+    private boolean isEnabled() {
+        return searchProperties.getEngine() == SearchProperties.Engine.INDEX;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // The ids of the documents a transaction created, added to the index after it committed
+    private final class PendingIds implements TransactionSynchronization {
+
+        private final List<Long> ids = new ArrayList<>();
+
+        @Override
+        public void afterCommit() {
+            addFromTable(ids);
+        }
+    }
+
+    /*
+     * Reads the documents back. After a commit, the committed transaction's resources are still bound to the
+     * thread, so the read gets a transaction of its own (REQUIRES_NEW) instead of joining the finished one.
+     */
+    private void addFromTable(Collection<Long> ids) {
+        InvertedIndex target = index;
+        List<Long> all = List.copyOf(ids);
+        int batchSize = searchProperties.getRebuildBatchSize();
+        for (int from = 0; from < all.size(); from += batchSize) {
+            List<Long> chunk = all.subList(from, Math.min(from + batchSize, all.size()));
+            for (Document document : read(readAfterCommit, () -> documentRepository.findWithTagsByIdIn(chunk))) {
+                add(target, document);
+            }
+        }
+    }
+
+    private void add(InvertedIndex target, Document document) {
+        List<String> tagNames = document.getTags().stream().map(Tag::getName).toList();
+        long createdAtMicros = SearchCursor.toMicros(document.getCreatedAt());
+        if (document.getContentStorage() != ContentStorage.FILE) {
+            target.add(document.getId(), createdAtMicros, document.getTitle(), document.getContent(), tagNames);
+            return;
+        }
+        Map<String, Integer> contentTerms;
+        try {
+            contentTerms = contentStore.countTerms(document.getId());
+        } catch (IOException e) {
+            // Keep the document findable by title and tags rather than failing the whole build
+            log.warn("Could not read the content file of document {}: {}", document.getId(), e.toString());
+            contentTerms = Map.of();
+        }
+        target.add(document.getId(), createdAtMicros, document.getTitle(), contentTerms, tagNames);
+    }
+}
@@ -0,0 +1,166 @@
+package com.heidari.document_service.search;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Per-document attributes the index needs without going to the database:
+ * the creation time (used to order and paginate matches) and the length of each field
+ * in terms (used to normalize relevance scores, see {@link InvertedIndex#searchRanked}).
+ * <p>
+ * Educational Note:
+ * A {@code HashMap<Long, Long>} would cost ~60 bytes per document in boxed keys, values and
+ * entries. This is an open-addressing hash table over two primitive arrays instead:
+ * 28 bytes per slot, no per-entry objects, and no garbage on lookup.
+ * <p>
+ * Not thread-safe; guarded by the owning {@link InvertedIndex}'s lock.
+ */
+class DocumentTable {
+
+    private static final long EMPTY = -1;
+    private static final int FIELDS = InvertedIndex.Field.values().length;
+
+    private long[] ids;
+    private long[] createdAt;
+    private int[] fieldLengths;
+    private int size;
+
+    DocumentTable() {
+        this(1024);
+    }
+
+    private DocumentTable(int capacity) {
+        ids = new long[capacity];
+        createdAt = new long[capacity];
+        fieldLengths = new int[capacity * FIELDS];
+        Arrays.fill(ids, EMPTY);
+    }
+
+    /**
+     * Stores the document's attributes.
+     *
+     * @param lengths The number of terms in each field, indexed by {@link InvertedIndex.Field#ordinal()}.
+     * @return False if the document was already present (nothing is changed).
+     */
+    boolean add(long id, long createdAtMicros, int[] lengths) {
+        if ((size + 1) * 4L > ids.length * 3L) { // keep the load factor below 0.75
+            resize(ids.length * 2);
+        }
+        int slot = slotOf(ids, id);
+        if (ids[slot] == id) {
+            return false;
+        }
+        ids[slot] = id;
+        createdAt[slot] = createdAtMicros;
+        System.arraycopy(lengths, 0, fieldLengths, slot * FIELDS, FIELDS);
+        size++;
+        return true;
+    }
+
+    boolean contains(long id) {
+        return ids[slotOf(ids, id)] == id;
+    }
+
+    /** @return The creation time in epoch microseconds, or Long.MIN_VALUE if unknown. */
+    long createdAt(long id) {
+        int slot = slotOf(ids, id);
+        return ids[slot] == id ? createdAt[slot] : Long.MIN_VALUE;
+    }
+
+    /** @return The number of terms in the field of the document, or 0 if unknown. */
+    int fieldLength(long id, int field) {
+        int slot = slotOf(ids, id);
+        return ids[slot] == id ? fieldLengths[slot * FIELDS + field] : 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** @return The highest document id, or 0 if the table is empty. */
+    long maxId() {
+        long max = 0;
+        for (long id : ids) {
+            max = Math.max(max, id);
+        }
+        return max;
+    }
+
+    /** @return The latest creation time in epoch microseconds, or Long.MIN_VALUE if the table is empty. */
+    long maxCreatedAt() {
+        long max = Long.MIN_VALUE;
+        for (int slot = 0; slot < ids.length; slot++) {
+            if (ids[slot] != EMPTY) {
+                max = Math.max(max, createdAt[slot]);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Writes every document and its attributes (see {@link #readFrom}).
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int slot = 0; slot < ids.length; slot++) {
+            if (ids[slot] != EMPTY) {
+                out.writeLong(ids[slot]);
+                out.writeLong(createdAt[slot]);
+                for (int field = 0; field < FIELDS; field++) {
+                    out.writeInt(fieldLengths[slot * FIELDS + field]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a table written by {@link #writeTo}, sized up front so it never resizes while loading.
+     */
+    static DocumentTable readFrom(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        int capacity = 1024;
+        while ((count + 1) * 4L > capacity * 3L) {
+            capacity *= 2;
+        }
+        DocumentTable table = new DocumentTable(capacity);
+        int[] lengths = new int[FIELDS];
+        for (int i = 0; i < count; i++) {
+            long id = buffer.getLong();
+            long createdAtMicros = buffer.getLong();
+            for (int field = 0; field < FIELDS; field++) {
+                lengths[field] = buffer.getInt();
+            }
+            table.add(id, createdAtMicros, lengths);
+        }
+        return table;
+    }
+
+    private static int slotOf(long[] table, long id) {
+        int mask = table.length - 1;
+        int slot = Long.hashCode(id * 0x9E3779B97F4A7C15L) & mask;
+        while (table[slot] != EMPTY && table[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        long[] oldIds = ids;
+        long[] oldCreatedAt = createdAt;
+        int[] oldFieldLengths = fieldLengths;
+        ids = new long[capacity];
+        createdAt = new long[capacity];
+        fieldLengths = new int[capacity * FIELDS];
+        Arrays.fill(ids, EMPTY);
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != EMPTY) {
+                int slot = slotOf(ids, oldIds[i]);
+                ids[slot] = oldIds[i];
+                createdAt[slot] = oldCreatedAt[i];
+                System.arraycopy(oldFieldLengths, i * FIELDS, fieldLengths, slot * FIELDS, FIELDS);
+            }
+        }
+    }
+}
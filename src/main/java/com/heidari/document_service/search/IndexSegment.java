@@ -0,0 +1,123 @@
+package com.heidari.document_service.search;
+
+import com.heidari.document_service.search.InvertedIndex.Field;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The posting lists of the documents in one id range of an {@link InvertedIndex}.
+ * <p>
+ * A segment only holds postings: the dictionary of terms (for prefix expansion and document
+ * frequencies), the document table, trigrams and tag bitmaps stay global. A segment therefore looks
+ * terms up exactly, in a hash map, after the index has expanded the query's prefixes once.
+ * <p>
+ * Segments cover consecutive, disjoint id ranges: this one holds the documents from {@link #firstId()}
+ * up to the first id of the next segment. Ids grow with time, so new documents go to the last segment,
+ * and only the rare late commit lands in an older one.
+ * <p>
+ * Not thread-safe; {@link InvertedIndex} guards it with its read/write lock.
+ */
+final class IndexSegment {
+
+    private final long firstId;
+    private final Map<Field, Map<String, PostingList>> fields = new EnumMap<>(Field.class);
+    private int size;
+    private long maxId;
+
+    IndexSegment(long firstId) {
+        this.firstId = firstId;
+        this.maxId = firstId - 1;
+        for (Field field : Field.values()) {
+            fields.put(field, new HashMap<>());
+        }
+    }
+
+    /** @return The lowest id this segment may hold. */
+    long firstId() { return firstId; }
+
+    /** @return The highest id added, or firstId - 1 if empty. */
+    long maxId() { return maxId; }
+
+    /** @return The number of documents. */
+    int size() { return size; }
+
+    /**
+     * Adds the terms of a document that is not in the segment yet.
+     */
+    void add(long docId, Map<Field, Map<String, Integer>> termsByField) {
+        termsByField.forEach((field, terms) -> {
+            Map<String, PostingList> dictionary = fields.get(field);
+            terms.forEach((term, frequency) ->
+                    dictionary.computeIfAbsent(term, t -> new PostingList()).add(docId, frequency));
+        });
+        size++;
+        maxId = Math.max(maxId, docId);
+    }
+
+    /** @return The postings of a term in a field, or null if no document of this segment has it. */
+    PostingList postings(Field field, String term) {
+        return fields.get(field).get(term);
+    }
+
+    /**
+     * Moves every posting of the next segment (higher ids) into this one; the next segment is left empty.
+     * Its ids are all higher, so the posting lists are appended to, never re-encoded.
+     */
+    void absorb(IndexSegment next) {
+        for (Field field : Field.values()) {
+            Map<String, PostingList> dictionary = fields.get(field);
+            next.fields.get(field).forEach((term, postings) -> {
+                PostingList target = dictionary.computeIfAbsent(term, t -> new PostingList());
+                postings.forEach(target::add);
+            });
+            next.fields.get(field).clear();
+        }
+        size += next.size;
+        maxId = Math.max(maxId, next.maxId);
+        next.size = 0;
+    }
+
+    /** @return The encoded size of the posting lists, in bytes. */
+    long postingBytes() {
+        long bytes = 0;
+        for (Map<String, PostingList> dictionary : fields.values()) {
+            for (PostingList postings : dictionary.values()) {
+                bytes += postings.byteSize();
+            }
+        }
+        return bytes;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(firstId);
+        out.writeInt(size);
+        out.writeLong(maxId);
+        for (Field field : Field.values()) {
+            Map<String, PostingList> dictionary = fields.get(field);
+            out.writeInt(dictionary.size());
+            for (Map.Entry<String, PostingList> entry : dictionary.entrySet()) {
+                IndexSnapshot.writeString(out, entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+        }
+    }
+
+    static IndexSegment readFrom(ByteBuffer buffer) {
+        IndexSegment segment = new IndexSegment(buffer.getLong());
+        segment.size = buffer.getInt();
+        segment.maxId = buffer.getLong();
+        for (Field field : Field.values()) {
+            Map<String, PostingList> dictionary = segment.fields.get(field);
+            int terms = buffer.getInt();
+            for (int i = 0; i < terms; i++) {
+                dictionary.put(IndexSnapshot.readString(buffer), PostingList.readFrom(buffer));
+            }
+        }
+        return segment;
+    }
+}
@@ -0,0 +1,159 @@
+package com.heidari.document_service.search;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes the search index to snapshot files and reads it back, so a restart does not have to scan
+ * and tokenize the whole "document" table.
+ * <p>
+ * Educational Note on the file format:
+ * A snapshot is written once and never modified: it goes to a temporary file, is forced to disk, and
+ * is then renamed to {@code index-<high-water mark>.snapshot} in one atomic step, so readers see
+ * either the complete file or none. The high-water mark is the highest document id in the snapshot;
+ * documents above it (and recent stragglers, see {@link DocumentIndex}) are replayed from the database.
+ * <pre>
+ * int     magic "DSIX"
+ * int     format version
+ * ...     the index ({@link InvertedIndex#writeTo}): documents, dictionaries, segments, trigrams, tag bitmaps,
+ *         title and tag suggestions
+ * long    CRC32C of everything above
+ * </pre>
+ * Reading maps the file into memory instead of streaming it through a heap buffer: the checksum and
+ * the parser run directly over the page cache, and posting lists are copied out as encoded bytes.
+ * Loading therefore costs about one sequential read of the file, with no database access and no
+ * tokenization. A file with a bad checksum, an unknown version or a different layout is rejected,
+ * and the caller falls back to an older snapshot or a full rebuild.
+ * <p>
+ * Bump {@link #FORMAT_VERSION} whenever the layout or the tokenization changes.
+ */
+final class IndexSnapshot {
+
+    static final int FORMAT_VERSION = 5;
+
+    private static final int MAGIC = 0x44534958; // "DSIX"
+    private static final Pattern FILE_NAME = Pattern.compile("index-\\d{20}\\.snapshot");
+
+    private IndexSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of the index into the directory, then deletes all but the newest "retain" snapshots.
+     *
+     * @return The new snapshot file.
+     */
+    static Path write(InvertedIndex index, Path directory, int retain) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(String.format("index-%020d.snapshot", index.maxDocumentId()));
+        Path temporary = Files.createTempFile(directory, "index-", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                CheckedOutputStream checked =
+                        new CheckedOutputStream(Channels.newOutputStream(channel), new CRC32C());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                index.writeTo(out);
+                out.flush();
+                out.writeLong(checked.getChecksum().getValue());
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+
+        List<Path> snapshots = list(directory);
+        for (Path old : snapshots.subList(Math.min(retain, snapshots.size()), snapshots.size())) {
+            Files.deleteIfExists(old);
+        }
+        return target;
+    }
+
+    /**
+     * @return The snapshot files of the directory, highest high-water mark first (empty if there is none).
+     */
+    static List<Path> list(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            // The zero-padded mark makes the name order the numeric order
+            return files.filter(file -> FILE_NAME.matcher(file.getFileName().toString()).matches())
+                    .sorted(Comparator.comparing((Path file) -> file.getFileName().toString()).reversed())
+                    .toList();
+        }
+    }
+
+    /**
+     * Maps a snapshot file and rebuilds the index from it.
+     *
+     * @throws IOException If the file cannot be read, or is corrupt or of another format version.
+     */
+    static InvertedIndex read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot is too large to map (" + size + " bytes)");
+            }
+            if (size < 16) {
+                throw new IOException("Snapshot is truncated");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int end = (int) size - Long.BYTES;
+
+            CRC32C checksum = new CRC32C();
+            checksum.update(mapped.slice(0, end));
+            if (checksum.getValue() != mapped.getLong(end)) {
+                throw new IOException("Snapshot checksum mismatch");
+            }
+            ByteBuffer buffer = mapped.slice(0, end);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a search index snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot version " + version
+                        + " (expected " + FORMAT_VERSION + ")");
+            }
+            InvertedIndex index = InvertedIndex.readFrom(buffer);
+            if (buffer.hasRemaining()) {
+                throw new IOException("Snapshot has " + buffer.remaining() + " unexpected trailing bytes");
+            }
+            return index;
+        } catch (RuntimeException e) {
+            // Underflows, negative sizes, invalid bitmaps: the content does not match the format
+            throw new IOException("Snapshot is corrupt: " + e, e);
+        }
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
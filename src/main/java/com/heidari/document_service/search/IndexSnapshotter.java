@@ -0,0 +1,91 @@
+package com.heidari.document_service.search;
+
+import com.heidari.document_service.config.SearchProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes index snapshots in the background every "document.search.snapshot.interval", and once more
+ * at shutdown, so the next start only has to replay what was committed since (see {@link DocumentIndex}).
+ * <p>
+ * It stops after the other lifecycle beans, so documents still being drained by the asynchronous
+ * ingestion are part of the final snapshot.
+ */
+@Component
+public class IndexSnapshotter implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexSnapshotter.class);
+
+    private final DocumentIndex documentIndex;
+    private final SearchProperties searchProperties;
+
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    public IndexSnapshotter(DocumentIndex documentIndex, SearchProperties searchProperties) {
+        this.documentIndex = documentIndex;
+        this.searchProperties = searchProperties;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        SearchProperties.Snapshot settings = searchProperties.getSnapshot();
+        if (!settings.isEnabled() || searchProperties.getEngine() != SearchProperties.Engine.INDEX) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "index-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = settings.getInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::snapshot, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            // Let a snapshot that is being written finish rather than leave a temporary file behind
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+        if (searchProperties.getSnapshot().isWriteOnShutdown()) {
+            snapshot();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Lower phases stop later: after the ingestion workers (default phase) have drained their queue
+        return DEFAULT_PHASE - 1;
+    }
+
+    private void snapshot() {
+        try {
+            documentIndex.writeSnapshot();
+        } catch (IOException | RuntimeException e) {
+            // Keep the schedule alive; the previous snapshots are still valid
+            log.warn("Could not write a search index snapshot: {}", e.toString());
+        }
+    }
+}
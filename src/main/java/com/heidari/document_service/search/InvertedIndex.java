@@ -0,0 +1,1027 @@
+package com.heidari.document_service.search;
+
+import com.heidari.document_service.dto.Suggestion;
+import com.heidari.document_service.dto.TagFacets;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * A tokenized inverted index over document titles, contents and tag names.
+ * <p>
+ * Educational Note:
+ * An inverted index maps every term to the list of documents containing it ("posting list").
+ * Answering a query means looking up a handful of posting lists and intersecting them,
+ * instead of scanning every row with {@code LIKE '%q%'} as the Specification path does.
+ * <p>
+ * Matching rules:
+ * - Each query term matches any indexed term it is a prefix of ("jav" matches "javascript").
+ * - A document matches when every query term matches somewhere in the searched fields.
+ * <p>
+ * Matches can be ordered newest first ({@link #searchPage}) or by relevance ({@link #searchRanked}).
+ * <p>
+ * A {@link TrigramIndex} over the same fields narrows substring and typo-tolerant searches down to
+ * candidates, which the caller verifies against the text ({@link #substringCandidates}).
+ * <p>
+ * A bitmap per tag name ({@link TagBitmaps}) restricts searches to a boolean {@link TagExpression}
+ * and counts tags over the matches ({@link #facets}).
+ * <p>
+ * Two {@link SuggestionTrie}s count the titles and tag names of the documents, for type-ahead ({@link #suggest}).
+ * <p>
+ * The whole index can be written to and restored from a snapshot file (see {@link IndexSnapshot}).
+ * <p>
+ * Educational Note on segments:
+ * The posting lists are split by id range into {@link IndexSegment}s, while the dictionary (terms and
+ * their document frequencies) stays global. A query expands its prefixes once in the dictionary, then
+ * every segment finds its matches and its own best page (newest first, or top k by BM25 with the global
+ * statistics), and the small per-segment pages are merged. With a {@link Parallelism} pool the segments
+ * are searched on several cores at once ("scatter-gather"), so latency stops growing with the corpus
+ * as long as cores are available; the result is the same as a search over one segment.
+ * New documents fill the last segment up to a target size, then open a new one. The target grows with
+ * the corpus (about two segments per task a query may use), and adjacent segments that fit in it
+ * together are merged, so their number stays bounded and each task gets a similar share of the work.
+ * <p>
+ * Thread-safety: a single read/write lock; many searches run in parallel, indexing is exclusive.
+ * The caller of a search holds the read lock while the segment tasks run; the tasks themselves take no
+ * lock (a read lock requested by a pool thread could wait behind a queued writer, which waits for the caller).
+ */
+public class InvertedIndex {
+
+    /**
+     * The indexed fields of a document.
+     */
+    public enum Field { TITLE, CONTENT, TAG }
+
+    /**
+     * BM25 parameters of {@link #searchRanked}.
+     *
+     * @param k1           Term frequency saturation: how quickly repeated occurrences stop adding to the score.
+     * @param b            Length normalization: 0 ignores the field length, 1 normalizes fully.
+     * @param titleBoost   Weight of a match in the title.
+     * @param contentBoost Weight of a match in the content.
+     * @param tagBoost     Weight of a match in a tag name.
+     */
+    public record Scoring(double k1, double b, double titleBoost, double contentBoost, double tagBoost) {
+
+        /** The usual BM25 defaults, with title and tag matches counting more than content matches. */
+        public static final Scoring DEFAULT = new Scoring(1.2, 0.75, 2.0, 1.0, 1.5);
+
+        double boost(Field field) {
+            return switch (field) {
+                case TITLE -> titleBoost;
+                case CONTENT -> contentBoost;
+                case TAG -> tagBoost;
+            };
+        }
+    }
+
+    /**
+     * Where and how widely segments are searched in parallel.
+     *
+     * @param pool           The pool running segment tasks, or null to search the segments on the caller's thread.
+     * @param maxTasks       The most tasks one query is split into (its parallelism limit).
+     * @param minSegmentSize The fewest documents per segment before a new one is started.
+     */
+    public record Parallelism(ForkJoinPool pool, int maxTasks, int minSegmentSize) {
+
+        /** One task on the caller's thread, segments of 64K documents. */
+        public static final Parallelism SERIAL = new Parallelism(null, 1, 65_536);
+
+        public Parallelism {
+            if (maxTasks < 1 || minSegmentSize < 1) {
+                throw new IllegalArgumentException("maxTasks and minSegmentSize must be positive");
+            }
+        }
+    }
+
+    // A dictionary entry: the number of documents containing the term, across all segments
+    private static final class Term {
+        int documents;
+    }
+
+    // A term of the dictionary that a query term expands to, with its document frequency
+    private record ExpandedTerm(Field field, String term, int documentFrequency) {}
+
+    // One segment's best matches, best first, with their BM25 scores
+    private record Scored(long[] ids, double[] scores) {}
+
+    private final Map<Field, NavigableMap<String, Term>> dictionaries;
+    private final List<IndexSegment> segments;
+    private final DocumentTable documents;
+    // Sum of the field lengths (in terms) of all documents, kept up to date by add() for the average length
+    private final long[] totalFieldLengths;
+    private final TrigramIndex trigrams;
+    private final TagBitmaps tagBitmaps;
+    private final SuggestionTrie titleSuggestions;
+    private final SuggestionTrie tagSuggestions;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Parallelism parallelism = Parallelism.SERIAL;
+
+    /**
+     * Creates an index whose trigrams may use 256 MB, from fields of up to 64K characters.
+     */
+    public InvertedIndex() {
+        this(256L * 1024 * 1024, 64 * 1024);
+    }
+
+    /**
+     * @param trigramMaxBytes       Memory budget of the trigram index (see {@link TrigramIndex}).
+     * @param trigramMaxFieldLength Longest field (in characters) whose trigrams are indexed.
+     */
+    public InvertedIndex(long trigramMaxBytes, int trigramMaxFieldLength) {
+        this(emptyDictionaries(), new ArrayList<>(List.of(new IndexSegment(0))), new DocumentTable(),
+                new long[Field.values().length], new TrigramIndex(trigramMaxBytes, trigramMaxFieldLength),
+                new TagBitmaps(), new SuggestionTrie(), new SuggestionTrie());
+    }
+
+    private InvertedIndex(Map<Field, NavigableMap<String, Term>> dictionaries, List<IndexSegment> segments,
+                          DocumentTable documents, long[] totalFieldLengths, TrigramIndex trigrams,
+                          TagBitmaps tagBitmaps, SuggestionTrie titleSuggestions, SuggestionTrie tagSuggestions) {
+        this.dictionaries = dictionaries;
+        this.segments = segments;
+        this.documents = documents;
+        this.totalFieldLengths = totalFieldLengths;
+        this.trigrams = trigrams;
+        this.tagBitmaps = tagBitmaps;
+        this.titleSuggestions = titleSuggestions;
+        this.tagSuggestions = tagSuggestions;
+    }
+
+    /**
+     * Adds a document to the index. Adding the same document twice is harmless.
+     *
+     * @param docId           The document id.
+     * @param createdAtMicros The creation time (see {@link SearchCursor#toMicros}).
+     * @param title           The title (may be null).
+     * @param content         The content (may be null).
+     * @param tagNames        The names of the document's tags.
+     */
+    public void add(long docId, long createdAtMicros, String title, String content, Collection<String> tagNames) {
+        add(docId, createdAtMicros, title, countTerms(Tokenizer.tokenize(content)), content, false, tagNames);
+    }
+
+    /**
+     * Same as {@link #add(long, long, String, String, Collection)}, with the content already reduced to
+     * term frequencies (see {@link Tokenizer#countTerms}), so large bodies never need to be a String.
+     * Such content has no trigrams: it is recorded as unfiltered, so substring and fuzzy searches always
+     * verify it.
+     */
+    public void add(long docId, long createdAtMicros, String title, Map<String, Integer> contentTerms,
+                    Collection<String> tagNames) {
+        add(docId, createdAtMicros, title, contentTerms, null, true, tagNames);
+    }
+
+    private void add(long docId, long createdAtMicros, String title, Map<String, Integer> contentTerms,
+                     String content, boolean contentAbsent, Collection<String> tagNames) {
+        Map<Field, Map<String, Integer>> termsByField = new EnumMap<>(Field.class);
+        termsByField.put(Field.TITLE, countTerms(Tokenizer.tokenize(title)));
+        termsByField.put(Field.CONTENT, contentTerms);
+        termsByField.put(Field.TAG, countTerms(tagNames.stream()
+                .flatMap(name -> Tokenizer.tokenize(name).stream())
+                .toList()));
+
+        int[] lengths = new int[Field.values().length];
+        termsByField.forEach((field, terms) ->
+                lengths[field.ordinal()] = terms.values().stream().mapToInt(Integer::intValue).sum());
+
+        lock.writeLock().lock();
+        try {
+            if (!documents.add(docId, createdAtMicros, lengths)) {
+                return;
+            }
+            for (int i = 0; i < lengths.length; i++) {
+                totalFieldLengths[i] += lengths[i];
+            }
+            Map<Field, List<String>> texts = new EnumMap<>(Field.class);
+            texts.put(Field.TITLE, Collections.singletonList(title));
+            texts.put(Field.CONTENT, Collections.singletonList(content));
+            texts.put(Field.TAG, List.copyOf(tagNames));
+            trigrams.add(docId, texts, contentAbsent ? 1 << Field.CONTENT.ordinal() : 0);
+            tagBitmaps.add(docId, tagNames);
+            titleSuggestions.add(title);
+            tagNames.forEach(tagSuggestions::add);
+            termsByField.forEach((field, terms) -> {
+                NavigableMap<String, Term> dictionary = dictionaries.get(field);
+                terms.keySet().forEach(term -> dictionary.computeIfAbsent(term, t -> new Term()).documents++);
+            });
+            IndexSegment last = segments.get(segments.size() - 1);
+            if (docId > last.maxId() && last.size() >= targetSegmentSize()) {
+                segments.add(new IndexSegment(docId));
+                rebalance();
+            }
+            segmentOf(docId).add(docId, termsByField);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets where segments are searched, and merges segments that are smaller than the new target size.
+     * Applies to the searches that start afterwards.
+     */
+    public void setParallelism(Parallelism parallelism) {
+        lock.writeLock().lock();
+        try {
+            this.parallelism = parallelism;
+            rebalance();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the documents matching every term of the query in the fields selected by the mode.
+     *
+     * @param query The raw query text.
+     * @param mode  The search scope.
+     * @return Matching document ids in ascending order.
+     */
+    public long[] search(String query, SearchMode mode) {
+        LinkedHashSet<String> queryTerms = new LinkedHashSet<>(Tokenizer.tokenize(query));
+        if (queryTerms.isEmpty()) {
+            return new long[0];
+        }
+
+        // Re-entrant: searchAll() and facets() already hold the read lock when they call us
+        lock.readLock().lock();
+        try {
+            List<List<ExpandedTerm>> expanded = expand(queryTerms, fieldsOf(mode));
+            if (expanded == null) {
+                return new long[0];
+            }
+            // Segments cover ascending id ranges, so their ascending matches concatenate in order
+            List<long[]> perSegment = scatter(segment -> segmentMatches(segment, expanded, null));
+            long[] result = new long[perSegment.stream().mapToInt(ids -> ids.length).sum()];
+            int n = 0;
+            for (long[] ids : perSegment) {
+                System.arraycopy(ids, 0, result, n, ids.length);
+                n += ids.length;
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns one page of matches, newest first, using keyset pagination.
+     * <p>
+     * Only the ids of the page are selected (with a bounded heap of size limit per segment), so the cost
+     * depends on the number of matches, not on how deep the page is.
+     *
+     * @param query The raw query text.
+     * @param mode  The search scope.
+     * @param after The cursor of the previous page, or null for the first page.
+     * @param limit The maximum number of ids to return.
+     * @return Matching ids ordered by (createdAt DESC, id DESC).
+     */
+    public long[] searchPage(String query, SearchMode mode, SearchCursor after, int limit) {
+        return searchPage(query, mode, null, after, limit);
+    }
+
+    /**
+     * Same as {@link #searchPage(String, SearchMode, SearchCursor, int)}, restricted to the documents
+     * matching a tag expression. With tags, a query without terms matches every document.
+     *
+     * @param tags The tag expression, or null for no restriction.
+     */
+    public long[] searchPage(String query, SearchMode mode, TagExpression tags, SearchCursor after, int limit) {
+        LinkedHashSet<String> queryTerms = new LinkedHashSet<>(Tokenizer.tokenize(query));
+
+        lock.readLock().lock();
+        try {
+            if (queryTerms.isEmpty()) {
+                // Without terms, only a tag expression selects documents: straight from its bitmap
+                long[] tagged = (tags != null) ? tagBitmaps.evaluate(tags).toArray() : new long[0];
+                return newestPage(tagged, after, limit);
+            }
+            List<List<ExpandedTerm>> expanded = expand(queryTerms, fieldsOf(mode));
+            if (expanded == null) {
+                return new long[0];
+            }
+            Roaring64Bitmap allowed = (tags != null) ? tagBitmaps.evaluate(tags) : null;
+            List<long[]> pages = scatter(segment ->
+                    newestPage(segmentMatches(segment, expanded, allowed), after, limit));
+
+            // Gather: the newest "limit" of the segments' pages
+            long[] candidates = pages.stream().flatMapToLong(Arrays::stream).toArray();
+            long[] page = newestFirst(candidates, null);
+            return (page.length > limit) ? Arrays.copyOf(page, limit) : page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the k most relevant matches, best first, scored with BM25.
+     * <p>
+     * Educational Note on BM25:
+     * A matching term adds idf * tf * (k1 + 1) / (tf + k1 * (1 - b + b * length / averageLength)):
+     * - idf = ln(1 + (N - df + 0.5) / (df + 0.5)) favours rare terms over common ones,
+     * - the tf fraction grows with the number of occurrences but saturates (k1),
+     * - and a match in a short field counts more than one in a long field (b).
+     * Each field is scored on its own statistics and weighted by its boost; the fields and the terms
+     * a query term expands to (prefix matching) are summed. N, df (kept in the dictionary), tf and the
+     * field lengths are all maintained by {@link #add}, so a query only reads them.
+     * <p>
+     * The set of matches is the same as {@link #search}. Each segment keeps only its best k, in a min-heap
+     * of size k whose root is the weakest of them, so ordering costs O(matches * log k) and no full sort;
+     * the best k of those are the best k overall, since every segment scores with the same statistics.
+     *
+     * @param query   The raw query text.
+     * @param mode    The search scope.
+     * @param k       The maximum number of ids to return.
+     * @param scoring The BM25 parameters and field boosts.
+     * @return Matching ids by descending score; equal scores are ordered by descending id.
+     */
+    public long[] searchRanked(String query, SearchMode mode, int k, Scoring scoring) {
+        return searchRanked(query, mode, null, k, scoring);
+    }
+
+    /**
+     * Same as {@link #searchRanked(String, SearchMode, int, Scoring)}, restricted to the documents matching
+     * a tag expression (null for no restriction). Only query terms contribute to the score.
+     */
+    public long[] searchRanked(String query, SearchMode mode, TagExpression tags, int k, Scoring scoring) {
+        LinkedHashSet<String> queryTerms = new LinkedHashSet<>(Tokenizer.tokenize(query));
+
+        lock.readLock().lock();
+        try {
+            if (k <= 0) {
+                return new long[0];
+            }
+            if (queryTerms.isEmpty()) {
+                // Nothing to score: every tagged match scores 0, and equal scores go by descending id
+                long[] tagged = (tags != null) ? tagBitmaps.evaluate(tags).toArray() : new long[0];
+                long[] best = new long[Math.min(k, tagged.length)];
+                for (int i = 0; i < best.length; i++) {
+                    best[i] = tagged[tagged.length - 1 - i];
+                }
+                return best;
+            }
+            List<Field> searchFields = fieldsOf(mode);
+            List<List<ExpandedTerm>> expanded = expand(queryTerms, searchFields);
+            if (expanded == null) {
+                return new long[0];
+            }
+            Roaring64Bitmap allowed = (tags != null) ? tagBitmaps.evaluate(tags) : null;
+            int documentCount = documents.size();
+            List<Scored> perSegment = scatter(segment -> {
+                long[] matches = segmentMatches(segment, expanded, allowed);
+                return best(matches, score(segment, matches, expanded, searchFields, documentCount, scoring), k);
+            });
+
+            // Gather: the best k of the segments' best k
+            int candidates = perSegment.stream().mapToInt(scored -> scored.ids().length).sum();
+            long[] ids = new long[candidates];
+            double[] scores = new double[candidates];
+            int n = 0;
+            for (Scored scored : perSegment) {
+                System.arraycopy(scored.ids(), 0, ids, n, scored.ids().length);
+                System.arraycopy(scored.scores(), 0, scores, n, scored.scores().length);
+                n += scored.ids().length;
+            }
+            return best(ids, scores, k).ids();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns every match, newest first (the same order as {@link #searchPage}).
+     * Used for streaming, where the caller wants all results but loads them in chunks.
+     *
+     * @return Matching ids ordered by (createdAt DESC, id DESC).
+     */
+    public long[] searchAll(String query, SearchMode mode) {
+        lock.readLock().lock();
+        try {
+            return newestFirst(search(query, mode), null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the documents that may contain the query as a substring ({@code LIKE '%query%'}, case-insensitive)
+     * in the fields of the mode. Every real match is among them; the caller must verify each candidate
+     * against its text, e.g. with {@link TrigramIndex#containsApproximately} and a distance of 0.
+     *
+     * @param query The text to find, as typed (not tokenized).
+     * @param mode  The search scope.
+     * @param after The cursor of the previous page, or null for the first page.
+     * @return Candidate ids ordered by (createdAt DESC, id DESC), or null if the query is shorter than
+     *         three characters and cannot be narrowed down.
+     */
+    public long[] substringCandidates(String query, SearchMode mode, SearchCursor after) {
+        lock.readLock().lock();
+        try {
+            long[] candidates = trigrams.substringCandidates(query.toLowerCase(Locale.ROOT), fieldMask(mode));
+            return (candidates != null) ? newestFirst(candidates, after) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Like {@link #substringCandidates}, for documents that may contain the query with up to "distance"
+     * typos (Levenshtein edits).
+     *
+     * @return Candidate ids ordered by (createdAt DESC, id DESC), or null if the query is shorter than
+     *         3 * (distance + 1) characters and cannot be narrowed down.
+     */
+    public long[] fuzzyCandidates(String query, int distance, SearchMode mode, SearchCursor after) {
+        lock.readLock().lock();
+        try {
+            long[] candidates = trigrams.fuzzyCandidates(query.toLowerCase(Locale.ROOT), distance, fieldMask(mode));
+            return (candidates != null) ? newestFirst(candidates, after) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the tags of every document matching the query and the tag expression.
+     *
+     * @param query The raw query text; without terms, every document matches.
+     * @param mode  The search scope of the query.
+     * @param tags  The tag expression, or null for no restriction.
+     * @param limit The maximum number of tags to return.
+     * @return The number of matches and their most frequent tags.
+     */
+    public TagFacets facets(String query, SearchMode mode, TagExpression tags, int limit) {
+        lock.readLock().lock();
+        try {
+            Roaring64Bitmap within;
+            if (hasTerms(query)) {
+                within = toBitmap(search(query, mode));
+                if (tags != null) {
+                    within.and(tagBitmaps.evaluate(tags));
+                }
+            } else {
+                within = (tags != null) ? tagBitmaps.evaluate(tags) : tagBitmaps.all();
+            }
+            return new TagFacets(within.getLongCardinality(), tagBitmaps.facets(within, limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the most frequent titles and tag names starting with a prefix, for type-ahead.
+     * A title counts the documents carrying exactly that title, a tag the documents carrying the tag.
+     *
+     * @param prefix        The typed prefix (case-insensitive).
+     * @param mode          TITLE, TAG, or ALL for both; CONTENT has no suggestions.
+     * @param limit         The maximum number of suggestions.
+     * @param maxExpansions The most trie nodes one lookup may open (see {@link SuggestionTrie#top}).
+     * @return Suggestions by descending count; ties are ordered by text.
+     */
+    public List<Suggestion> suggest(String prefix, SearchMode mode, int limit, int maxExpansions) {
+        lock.readLock().lock();
+        try {
+            List<Suggestion> suggestions = new ArrayList<>();
+            for (Field field : fieldsOf(mode)) {
+                SuggestionTrie trie = switch (field) {
+                    case TITLE -> titleSuggestions;
+                    case TAG -> tagSuggestions;
+                    case CONTENT -> null;
+                };
+                if (trie == null) {
+                    continue;
+                }
+                String type = field.name().toLowerCase(Locale.ROOT);
+                for (SuggestionTrie.Phrase phrase : trie.top(prefix, limit, maxExpansions)) {
+                    suggestions.add(new Suggestion(phrase.text(), type, phrase.count()));
+                }
+            }
+            suggestions.sort(Suggestion.BY_COUNT);
+            return (suggestions.size() > limit) ? List.copyOf(suggestions.subList(0, limit)) : suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return The number of indexed documents. */
+    public int documentCount() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return True if the document has been added. */
+    public boolean contains(long docId) {
+        lock.readLock().lock();
+        try {
+            return documents.contains(docId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return The highest indexed document id, or 0 if the index is empty. */
+    public long maxDocumentId() {
+        lock.readLock().lock();
+        try {
+            return documents.maxId();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return The latest creation time of an indexed document (epoch microseconds), or Long.MIN_VALUE. */
+    public long maxCreatedAtMicros() {
+        lock.readLock().lock();
+        try {
+            return documents.maxCreatedAt();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return True if the trigram index was created with these limits. */
+    public boolean hasTrigramSettings(long trigramMaxBytes, int trigramMaxFieldLength) {
+        return trigrams.hasSettings(trigramMaxBytes, trigramMaxFieldLength);
+    }
+
+    /**
+     * Writes the whole index: documents, dictionaries, segments with their encoded posting lists, trigrams,
+     * tag bitmaps and suggestions (see {@link #readFrom}). The read lock is held throughout, so the snapshot is consistent;
+     * searches continue meanwhile, while documents committed during the write wait for it to finish.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        lock.readLock().lock();
+        try {
+            documents.writeTo(out);
+            for (long total : totalFieldLengths) {
+                out.writeLong(total);
+            }
+            for (Field field : Field.values()) {
+                NavigableMap<String, Term> dictionary = dictionaries.get(field);
+                out.writeInt(dictionary.size());
+                for (Map.Entry<String, Term> entry : dictionary.entrySet()) {
+                    IndexSnapshot.writeString(out, entry.getKey());
+                    out.writeInt(entry.getValue().documents);
+                }
+            }
+            out.writeInt(segments.size());
+            for (IndexSegment segment : segments) {
+                segment.writeTo(out);
+            }
+            trigrams.writeTo(out);
+            tagBitmaps.writeTo(out);
+            titleSuggestions.writeTo(out);
+            tagSuggestions.writeTo(out);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #writeTo}. Nothing is tokenized: posting lists are copied as encoded
+     * bytes, and terms arrive in dictionary order. The index is searched serially until
+     * {@link #setParallelism} is called.
+     *
+     * @throws IOException If the bytes do not form a valid index.
+     */
+    static InvertedIndex readFrom(ByteBuffer buffer) throws IOException {
+        DocumentTable documents = DocumentTable.readFrom(buffer);
+        long[] totalFieldLengths = new long[Field.values().length];
+        for (int i = 0; i < totalFieldLengths.length; i++) {
+            totalFieldLengths[i] = buffer.getLong();
+        }
+        Map<Field, NavigableMap<String, Term>> dictionaries = emptyDictionaries();
+        for (Field field : Field.values()) {
+            NavigableMap<String, Term> dictionary = dictionaries.get(field);
+            int terms = buffer.getInt();
+            for (int i = 0; i < terms; i++) {
+                Term term = new Term();
+                dictionary.put(IndexSnapshot.readString(buffer), term);
+                term.documents = buffer.getInt();
+            }
+        }
+        int segmentCount = buffer.getInt();
+        if (segmentCount < 1) {
+            throw new IOException("Invalid segment count " + segmentCount);
+        }
+        List<IndexSegment> segments = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            segments.add(IndexSegment.readFrom(buffer));
+        }
+        TrigramIndex trigrams = TrigramIndex.readFrom(buffer);
+        TagBitmaps tagBitmaps = TagBitmaps.readFrom(buffer);
+        SuggestionTrie titleSuggestions = SuggestionTrie.readFrom(buffer);
+        SuggestionTrie tagSuggestions = SuggestionTrie.readFrom(buffer);
+        return new InvertedIndex(dictionaries, segments, documents, totalFieldLengths, trigrams, tagBitmaps,
+                titleSuggestions, tagSuggestions);
+    }
+
+    /** @return The number of distinct terms across all fields. */
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return dictionaries.values().stream().mapToInt(Map::size).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return The approximate memory used by the trigram index, in bytes. */
+    public long trigramBytes() {
+        lock.readLock().lock();
+        try {
+            return trigrams.byteSize();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return The number of documents with a field too long, or added past the budget, for the trigram index. */
+    public int trigramUnfilteredCount() {
+        lock.readLock().lock();
+        try {
+            return trigrams.unfilteredCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return The encoded size of all posting lists, in bytes. */
+    public long postingBytes() {
+        lock.readLock().lock();
+        try {
+            return segments.stream().mapToLong(IndexSegment::postingBytes).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return The number of segments the posting lists are split into. */
+    public int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return The serialized size of the tag bitmaps, in bytes. */
+    public long tagBitmapBytes() {
+        lock.readLock().lock();
+        try {
+            return tagBitmaps.byteSize();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Map<Field, NavigableMap<String, Term>> emptyDictionaries() {
+        Map<Field, NavigableMap<String, Term>> dictionaries = new EnumMap<>(Field.class);
+        for (Field field : Field.values()) {
+            dictionaries.put(field, new TreeMap<>());
+        }
+        return dictionaries;
+    }
+
+    static List<Field> fieldsOf(SearchMode mode) {
+        return switch (mode) {
+            case TITLE -> List.of(Field.TITLE);
+            case CONTENT -> List.of(Field.CONTENT);
+            case TAG -> List.of(Field.TAG);
+            case ALL -> List.of(Field.TITLE, Field.CONTENT, Field.TAG);
+        };
+    }
+
+    private static boolean hasTerms(String query) {
+        return !Tokenizer.tokenize(query).isEmpty();
+    }
+
+    private static Roaring64Bitmap toBitmap(long[] ids) {
+        return Roaring64Bitmap.bitmapOf(ids);
+    }
+
+    private static int fieldMask(SearchMode mode) {
+        int mask = 0;
+        for (Field field : fieldsOf(mode)) {
+            mask |= 1 << field.ordinal();
+        }
+        return mask;
+    }
+
+    // Sorts ids by (createdAt DESC, id DESC), keeping only those after the cursor (if any)
+    private long[] newestFirst(long[] ids, SearchCursor after) {
+        long[][] keyed = new long[ids.length][];
+        int n = 0;
+        for (long id : ids) {
+            long createdAt = documents.createdAt(id);
+            if (after == null || after.precedes(createdAt, id)) {
+                keyed[n++] = new long[]{createdAt, id};
+            }
+        }
+        Arrays.sort(keyed, 0, n, (a, b) -> a[0] != b[0] ? Long.compare(b[0], a[0]) : Long.compare(b[1], a[1]));
+
+        long[] ordered = new long[n];
+        for (int i = 0; i < n; i++) {
+            ordered[i] = keyed[i][1];
+        }
+        return ordered;
+    }
+
+    // --- Segments: sizing, and the per-segment half of each search ---
+
+    // Documents per segment: enough for about two segments per task, never fewer than the minimum
+    private int targetSegmentSize() {
+        Parallelism current = parallelism;
+        long perTask = ((long) documents.size() + 2L * current.maxTasks() - 1) / (2L * current.maxTasks());
+        return (int) Math.max(current.minSegmentSize(), perTask);
+    }
+
+    // Merges adjacent segments that fit in the target size together; the last one (still filling) is left alone
+    private void rebalance() {
+        int target = targetSegmentSize();
+        int i = 0;
+        while (i + 2 < segments.size()) {
+            IndexSegment segment = segments.get(i);
+            IndexSegment next = segments.get(i + 1);
+            if ((long) segment.size() + next.size() <= target) {
+                segment.absorb(next);
+                segments.remove(i + 1);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    // The segment whose id range holds the id: the last one starting at or below it
+    private IndexSegment segmentOf(long docId) {
+        int low = 0, high = segments.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (segments.get(middle).firstId() <= docId) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return segments.get(low);
+    }
+
+    /**
+     * Runs a task on every segment, on the parallelism pool if there is one, and returns the results in
+     * segment order. The caller holds the read lock, which keeps the segments unchanged until all tasks are done.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> scatter(Function<IndexSegment, T> task) {
+        IndexSegment[] targets = segments.toArray(new IndexSegment[0]);
+        Object[] results = new Object[targets.length];
+        Parallelism current = parallelism;
+        int tasks = Math.min(current.maxTasks(), targets.length);
+        SegmentTask segmentTask = new SegmentTask(targets, task, results, 0, targets.length, tasks);
+        if (current.pool() == null || tasks <= 1) {
+            segmentTask.compute();
+        } else {
+            current.pool().invoke(segmentTask);
+        }
+        return (List<T>) Arrays.asList(results);
+    }
+
+    // Splits a range of segments in two until each half is one task's share, then searches it
+    private static final class SegmentTask extends RecursiveAction {
+
+        private final IndexSegment[] segments;
+        private final Function<IndexSegment, ?> task;
+        private final Object[] results;
+        private final int from;
+        private final int to;
+        private final int tasks;
+
+        SegmentTask(IndexSegment[] segments, Function<IndexSegment, ?> task, Object[] results,
+                    int from, int to, int tasks) {
+            this.segments = segments;
+            this.task = task;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute() {
+            if (tasks <= 1) {
+                for (int i = from; i < to; i++) {
+                    results[i] = task.apply(segments[i]);
+                }
+                return;
+            }
+            int leftTasks = tasks / 2;
+            int middle = from + (int) ((long) (to - from) * leftTasks / tasks);
+            invokeAll(new SegmentTask(segments, task, results, from, middle, leftTasks),
+                    new SegmentTask(segments, task, results, middle, to, tasks - leftTasks));
+        }
+    }
+
+    // The dictionary terms each query term is a prefix of, by field then term; null if one has none
+    private List<List<ExpandedTerm>> expand(Collection<String> queryTerms, List<Field> searchFields) {
+        List<List<ExpandedTerm>> expanded = new ArrayList<>(queryTerms.size());
+        for (String prefix : queryTerms) {
+            List<ExpandedTerm> terms = new ArrayList<>();
+            for (Field field : searchFields) {
+                // Every key in [prefix, prefix + MAX_VALUE) starts with the prefix
+                dictionaries.get(field).subMap(prefix, prefix + Character.MAX_VALUE).forEach((term, entry) ->
+                        terms.add(new ExpandedTerm(field, term, entry.documents)));
+            }
+            if (terms.isEmpty()) {
+                return null;
+            }
+            expanded.add(terms);
+        }
+        return expanded;
+    }
+
+    // The ids of a segment matching every query term (and the tag bitmap, if any), ascending
+    private static long[] segmentMatches(IndexSegment segment, List<List<ExpandedTerm>> expanded,
+                                         Roaring64Bitmap allowed) {
+        long[] result = null;
+        for (List<ExpandedTerm> terms : expanded) {
+            long[] ids = new long[16];
+            int count = 0;
+            for (ExpandedTerm term : terms) {
+                PostingList postings = segment.postings(term.field(), term.term());
+                if (postings == null) {
+                    continue;
+                }
+                long[] docIds = postings.docIds();
+                if (count + docIds.length > ids.length) {
+                    ids = Arrays.copyOf(ids, Math.max(ids.length * 2, count + docIds.length));
+                }
+                System.arraycopy(docIds, 0, ids, count, docIds.length);
+                count += docIds.length;
+            }
+            long[] matches = sortedUnique(ids, count);
+            result = (result == null) ? matches : intersect(result, matches);
+            if (result.length == 0) {
+                return result;
+            }
+        }
+        if (allowed == null) {
+            return result;
+        }
+        return Arrays.stream(result)
+                .filter(allowed::contains)
+                .toArray();
+    }
+
+    // The newest "limit" of ascending ids after the cursor (if any), newest first, with a bounded heap
+    private long[] newestPage(long[] ids, SearchCursor after, int limit) {
+        // Min-heap on (createdAt, id): the root is the "oldest" of the newest 'limit' matches
+        PriorityQueue<long[]> newest = new PriorityQueue<>(limit + 1, (a, b) ->
+                a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        // Ids grow with time, so walking them backwards fills the heap with good candidates early
+        for (int i = ids.length - 1; i >= 0; i--) {
+            long id = ids[i];
+            long createdAt = documents.createdAt(id);
+            if (after != null && !after.precedes(createdAt, id)) {
+                continue;
+            }
+            if (newest.size() < limit) {
+                newest.add(new long[]{createdAt, id});
+            } else {
+                long[] oldest = newest.peek();
+                if (createdAt > oldest[0] || (createdAt == oldest[0] && id > oldest[1])) {
+                    newest.poll();
+                    newest.add(new long[]{createdAt, id});
+                }
+            }
+        }
+
+        long[] page = new long[newest.size()];
+        for (int i = page.length - 1; i >= 0; i--) {
+            page[i] = newest.poll()[1];
+        }
+        return page;
+    }
+
+    // BM25 scores of a segment's matches, with the statistics of the whole index (see searchRanked)
+    private double[] score(IndexSegment segment, long[] matches, List<List<ExpandedTerm>> expanded,
+                           List<Field> searchFields, int documentCount, Scoring scoring) {
+        double[] scores = new double[matches.length];
+        if (matches.length == 0) {
+            return scores;
+        }
+        for (Field field : searchFields) {
+            double boost = scoring.boost(field);
+            if (boost == 0) {
+                continue;
+            }
+            int fieldIndex = field.ordinal();
+            double averageLength = Math.max(1.0, (double) totalFieldLengths[fieldIndex] / documentCount);
+            for (List<ExpandedTerm> terms : expanded) {
+                for (ExpandedTerm term : terms) {
+                    PostingList postings = (term.field() == field) ? segment.postings(field, term.term()) : null;
+                    if (postings == null) {
+                        continue;
+                    }
+                    int df = term.documentFrequency();
+                    double idf = Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+                    postings.forEach((docId, frequency) -> {
+                        int i = Arrays.binarySearch(matches, docId);
+                        if (i < 0) {
+                            return; // contains this term, but not every other one
+                        }
+                        double lengthRatio = documents.fieldLength(docId, fieldIndex) / averageLength;
+                        double norm = scoring.k1() * (1 - scoring.b() + scoring.b() * lengthRatio);
+                        scores[i] += boost * idf * frequency * (scoring.k1() + 1) / (frequency + norm);
+                    });
+                }
+            }
+        }
+        return scores;
+    }
+
+    // The best k ids by (score DESC, id DESC), with their scores
+    private static Scored best(long[] ids, double[] scores, int k) {
+        // Min-heap of positions on (score, id): the root is the weakest of the best k
+        PriorityQueue<Integer> best = new PriorityQueue<>(k + 1, (a, b) ->
+                scores[a] != scores[b] ? Double.compare(scores[a], scores[b]) : Long.compare(ids[a], ids[b]));
+        for (int i = 0; i < ids.length; i++) {
+            if (best.size() < k) {
+                best.add(i);
+            } else {
+                int weakest = best.peek();
+                if (scores[i] > scores[weakest] || (scores[i] == scores[weakest] && ids[i] > ids[weakest])) {
+                    best.poll();
+                    best.add(i);
+                }
+            }
+        }
+
+        long[] rankedIds = new long[best.size()];
+        double[] rankedScores = new double[best.size()];
+        for (int i = rankedIds.length - 1; i >= 0; i--) {
+            int position = best.poll();
+            rankedIds[i] = ids[position];
+            rankedScores[i] = scores[position];
+        }
+        return new Scored(rankedIds, rankedScores);
+    }
+
+    private static long[] sortedUnique(long[] ids, int count) {
+        Arrays.sort(ids, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || ids[unique - 1] != ids[i]) {
+                ids[unique++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, unique);
+    }
+
+    private static long[] intersect(long[] a, long[] b) {
+        long[] out = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static Map<String, Integer> countTerms(List<String> terms) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String term : terms) {
+            counts.merge(term, 1, Integer::sum);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,164 @@
+package com.heidari.document_service.search;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A compact, append-mostly list of (document id, term frequency) pairs for a single term.
+ * <p>
+ * Educational Note:
+ * Document ids are kept in ascending order and stored as the gap to the previous id,
+ * written with variable-byte encoding (7 bits per byte, high bit = "more bytes follow").
+ * Because ids are handed out in increasing order, most gaps are tiny and a posting usually
+ * costs 2 bytes instead of the 12 bytes of a raw (long, int) pair.
+ * <p>
+ * This class is not thread-safe; {@link InvertedIndex} guards it with its read/write lock.
+ */
+public class PostingList {
+
+    private byte[] bytes = new byte[8];
+    private int length;
+    private int size;
+    private long lastDocId = -1;
+
+    /**
+     * Receives postings in ascending document order.
+     */
+    @FunctionalInterface
+    public interface PostingConsumer {
+        void accept(long docId, int frequency);
+    }
+
+    /**
+     * Records that a document contains the term.
+     * Re-adding a document that is already present is a no-op, so indexing is idempotent.
+     *
+     * @param docId     The document id (non-negative).
+     * @param frequency How many times the term occurs in the document.
+     */
+    public void add(long docId, int frequency) {
+        if (docId > lastDocId) {
+            writeVarLong(lastDocId < 0 ? docId : docId - lastDocId);
+            writeVarLong(frequency);
+            lastDocId = docId;
+            size++;
+            return;
+        }
+        if (docId == lastDocId || contains(docId)) {
+            return;
+        }
+        insertOutOfOrder(docId, frequency);
+    }
+
+    /** @return The number of documents in this list (the term's document frequency). */
+    public int size() { return size; }
+
+    /** @return The number of encoded bytes, useful for memory accounting. */
+    public int byteSize() { return length; }
+
+    /**
+     * Walks the postings in ascending document order.
+     */
+    public void forEach(PostingConsumer consumer) {
+        int pos = 0;
+        long docId = 0;
+        boolean first = true;
+        while (pos < length) {
+            long gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[pos++];
+                gap |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+
+            int frequency = 0;
+            shift = 0;
+            do {
+                b = bytes[pos++];
+                frequency |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+
+            docId = first ? gap : docId + gap;
+            first = false;
+            consumer.accept(docId, frequency);
+        }
+    }
+
+    /**
+     * Writes the list in its encoded form (see {@link #readFrom}).
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        out.writeLong(lastDocId);
+        out.writeInt(length);
+        out.write(bytes, 0, length);
+    }
+
+    /**
+     * Reads a list written by {@link #writeTo}. The postings are copied as encoded bytes, not decoded.
+     */
+    static PostingList readFrom(ByteBuffer buffer) {
+        PostingList list = new PostingList();
+        list.size = buffer.getInt();
+        list.lastDocId = buffer.getLong();
+        list.length = buffer.getInt();
+        list.bytes = new byte[Math.max(list.length, 8)];
+        buffer.get(list.bytes, 0, list.length);
+        return list;
+    }
+
+    /** @return The document ids in ascending order. */
+    public long[] docIds() {
+        long[] ids = new long[size];
+        int[] next = {0};
+        forEach((docId, frequency) -> ids[next[0]++] = docId);
+        return ids;
+    }
+
+    private boolean contains(long docId) {
+        return Arrays.binarySearch(docIds(), docId) >= 0;
+    }
+
+    /*
+     * Concurrent transactions can commit slightly out of id order. That is rare, so instead of
+     * complicating the encoding we simply decode, insert and re-encode the whole list.
+     */
+    private void insertOutOfOrder(long docId, int frequency) {
+        long[] ids = new long[size + 1];
+        int[] frequencies = new int[size + 1];
+        int[] next = {0};
+        boolean[] inserted = {false};
+        forEach((id, freq) -> {
+            if (!inserted[0] && docId < id) {
+                ids[next[0]] = docId;
+                frequencies[next[0]++] = frequency;
+                inserted[0] = true;
+            }
+            ids[next[0]] = id;
+            frequencies[next[0]++] = freq;
+        });
+
+        length = 0;
+        size = 0;
+        lastDocId = -1;
+        for (int i = 0; i < ids.length; i++) {
+            add(ids[i], frequencies[i]);
+        }
+    }
+
+    private void writeVarLong(long value) {
+        if (length + 10 > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 10));
+        }
+        while ((value & ~0x7FL) != 0) {
+            bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[length++] = (byte) value;
+    }
+}
@@ -0,0 +1,111 @@
+package com.heidari.document_service.search;
+
+import com.heidari.document_service.config.SearchProperties;
+import com.heidari.document_service.metrics.DocumentMetrics;
+import com.heidari.document_service.metrics.DocumentMetrics.Coalescing;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs identical concurrent searches once ("single flight"): the first caller of a key runs the search,
+ * and callers that arrive with the same key while it is running wait for its result instead of running
+ * the same scan again. Used by {@link SearchResultCache} on a miss, so a burst of identical requests that
+ * all miss the cache (e.g. right after a commit invalidated it) costs one database query instead of one
+ * per request.
+ * <p>
+ * Educational Note on slow and failing searches:
+ * The search runs on the first caller's thread, in its transaction; the others wait without holding
+ * a connection. A waiting caller gives up after "max-wait" and runs the search itself, so one slow
+ * execution (a lock wait, a stalled connection) delays the others by at most that much. Giving up,
+ * or being interrupted, does not cancel the flight: the first caller and the other waiters are unaffected.
+ * If the search fails, the waiters do not inherit the failure, which may be the first caller's own
+ * (its transaction timed out, its thread was interrupted): they start a new flight, and only if that
+ * one fails as well do they give up with its exception.
+ * <p>
+ * The result is shared as is: it must not be modified by its receivers (as with cached pages).
+ */
+@Component
+public class SearchCoalescer {
+
+    private final SearchProperties.Coalescing settings;
+    private final DocumentMetrics metrics;
+    private final ConcurrentMap<Object, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+
+    public SearchCoalescer(SearchProperties searchProperties, DocumentMetrics metrics) {
+        this.settings = searchProperties.getCoalescing();
+        this.metrics = metrics;
+    }
+
+    /**
+     * Runs the search, or waits for the identical one in progress.
+     *
+     * @param key    Identifies the search; equal keys must mean equal results.
+     * @param search Runs the search.
+     * @return The result, possibly shared with other callers.
+     */
+    public <T> T execute(Object key, Supplier<T> search) {
+        if (!settings.isEnabled()) {
+            return search.get();
+        }
+        return execute(key, search, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T execute(Object key, Supplier<T> search, boolean retryOnFailure) {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = flights.putIfAbsent(key, flight);
+        if (running == null) {
+            return lead(key, flight, search);
+        }
+        try {
+            T result = (T) running.get(settings.getMaxWait().toNanos(), TimeUnit.NANOSECONDS);
+            metrics.recordCoalescing(Coalescing.SHARED);
+            return result;
+        } catch (TimeoutException e) {
+            metrics.recordCoalescing(Coalescing.ABANDONED);
+            return search.get();
+        } catch (ExecutionException e) {
+            if (retryOnFailure) {
+                return execute(key, search, false);
+            }
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an identical search", e);
+        }
+    }
+
+    private <T> T lead(Object key, CompletableFuture<Object> flight, Supplier<T> search) {
+        metrics.recordCoalescing(Coalescing.EXECUTED);
+        T result;
+        try {
+            result = search.get();
+        } catch (RuntimeException | Error e) {
+            // Removed before the waiters wake up, so their retry starts a new flight instead of rejoining this one
+            flights.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        // Later callers start a new flight (or, normally, find the result in the cache)
+        flights.remove(key, flight);
+        flight.complete(result);
+        return result;
+    }
+
+    private static RuntimeException rethrow(Throwable failure) {
+        if (failure instanceof Error error) {
+            throw error;
+        }
+        if (failure instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        return new IllegalStateException(failure);
+    }
+}
@@ -0,0 +1,86 @@
+package com.heidari.document_service.search;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * Position of the last item of a search page, used for keyset ("seek") pagination.
+ * <p>
+ * Educational Note:
+ * OFFSET pagination makes the database produce and discard every row before the requested
+ * page, so page 1000 costs 1000 times page 1. Keyset pagination instead remembers where the
+ * previous page ended and asks for rows strictly after it:
+ * WHERE (created_at &lt; :createdAt) OR (created_at = :createdAt AND id &lt; :id)
+ * ORDER BY created_at DESC, id DESC LIMIT :n
+ * which costs the same for every page. The id breaks ties between equal timestamps.
+ * <p>
+ * Clients see the cursor only as an opaque, URL-safe token.
+ *
+ * @param createdAtMicros Creation time of the last item, in microseconds since the epoch (UTC).
+ * @param id              Id of the last item.
+ */
+public record SearchCursor(long createdAtMicros, long id) {
+
+    /**
+     * Builds the cursor that points just after the given item.
+     */
+    public static SearchCursor of(LocalDateTime createdAt, long id) {
+        return new SearchCursor(toMicros(createdAt), id);
+    }
+
+    /**
+     * @return The token handed to clients as "nextCursor".
+     */
+    public String encode() {
+        String raw = createdAtMicros + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses a token produced by {@link #encode()}.
+     *
+     * @throws IllegalArgumentException If the token was not produced by this service.
+     */
+    public static SearchCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            return new SearchCursor(Long.parseLong(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid search cursor: " + token);
+        }
+    }
+
+    /**
+     * @return True if an item sorts after this cursor in (createdAt DESC, id DESC) order.
+     */
+    public boolean precedes(long itemCreatedAtMicros, long itemId) {
+        return itemCreatedAtMicros < createdAtMicros
+                || (itemCreatedAtMicros == createdAtMicros && itemId < id);
+    }
+
+    /** @return The creation time as stored in the database. */
+    public LocalDateTime createdAt() {
+        return fromMicros(createdAtMicros);
+    }
+
+    /**
+     * Converts a timestamp to microseconds (the precision of PostgreSQL's "timestamp" type).
+     * A missing timestamp sorts as the oldest possible value.
+     */
+    public static long toMicros(LocalDateTime time) {
+        if (time == null) {
+            return Long.MIN_VALUE;
+        }
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1_000;
+    }
+
+    /** Converts microseconds (see {@link #toMicros}) back to a timestamp. */
+    public static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,48 @@
+package com.heidari.document_service.search;
+
+import com.heidari.document_service.changes.ChangeListener;
+import com.heidari.document_service.model.ChangeType;
+import com.heidari.document_service.model.DocumentChange;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Adds created documents to the search index from the change feed.
+ * <p>
+ * With "document.search.index-on-commit=false" this is how new documents become searchable: the write
+ * path only records the change, and tokenization happens here, off the request thread. Otherwise the
+ * documents are normally indexed already and this listener only fills holes, e.g. a document whose
+ * after-commit callback was lost, or one committed after the snapshot the index was restored from.
+ * Documents that are in the index already are skipped, so a redelivered batch does no harm.
+ */
+@Component
+public class SearchIndexChangeListener implements ChangeListener {
+
+    private final DocumentIndex documentIndex;
+    private final SearchResultCache searchResultCache;
+
+    public SearchIndexChangeListener(DocumentIndex documentIndex, SearchResultCache searchResultCache) {
+        this.documentIndex = documentIndex;
+        this.searchResultCache = searchResultCache;
+    }
+
+    @Override
+    public String name() {
+        return "search-index";
+    }
+
+    /**
+     * @throws IllegalStateException While the index is being rebuilt: the batch is delivered again later.
+     */
+    @Override
+    public void apply(List<DocumentChange> changes) {
+        List<Long> created = changes.stream()
+                .filter(change -> change.getChangeType() == ChangeType.CREATED)
+                .map(DocumentChange::getDocumentId)
+                .toList();
+        if (documentIndex.indexMissing(created) > 0) {
+            searchResultCache.invalidateAfterCommit();
+        }
+    }
+}
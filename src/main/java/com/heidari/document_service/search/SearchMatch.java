@@ -0,0 +1,34 @@
+package com.heidari.document_service.search;
+
+import java.util.Locale;
+
+/**
+ * How a query is matched against the text of a document.
+ */
+public enum SearchMatch {
+
+    /** Every query term is a prefix of a term of the document (the inverted index). */
+    TERMS,
+    /** The whole query occurs in a field, like {@code LIKE '%query%'} (case-insensitive). */
+    SUBSTRING,
+    /** The whole query occurs in a field with at most "distance" typos (Levenshtein edits). */
+    FUZZY;
+
+    /**
+     * Parses the "match" request parameter; a missing value means {@link #TERMS} (the search endpoint picks
+     * its own default, see DocumentController#searchDocuments).
+     *
+     * @throws IllegalArgumentException If the value is not a known match type.
+     */
+    public static SearchMatch from(String match) {
+        if (match == null) {
+            return TERMS;
+        }
+        return switch (match.toLowerCase(Locale.ROOT)) {
+            case "terms" -> TERMS;
+            case "substring" -> SUBSTRING;
+            case "fuzzy" -> FUZZY;
+            default -> throw new IllegalArgumentException("Unknown match type: " + match);
+        };
+    }
+}
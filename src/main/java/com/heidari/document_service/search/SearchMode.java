@@ -0,0 +1,33 @@
+package com.heidari.document_service.search;
+
+import java.util.Locale;
+
+/**
+ * The scope of a search request: which fields of a document a query is matched against.
+ */
+public enum SearchMode {
+
+    TITLE,
+    CONTENT,
+    TAG,
+    ALL;
+
+    /**
+     * Parses the "mode" request parameter.
+     * Mirrors {@code DocumentSpecification}: a missing or unknown mode falls back to {@link #ALL}.
+     *
+     * @param mode The raw mode string (e.g., "title").
+     * @return The matching mode, never null.
+     */
+    public static SearchMode from(String mode) {
+        if (mode == null) {
+            return ALL;
+        }
+        return switch (mode.toLowerCase(Locale.ROOT)) {
+            case "title" -> TITLE;
+            case "content" -> CONTENT;
+            case "tag" -> TAG;
+            default -> ALL;
+        };
+    }
+}
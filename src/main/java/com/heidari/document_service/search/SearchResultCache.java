@@ -0,0 +1,174 @@
+package com.heidari.document_service.search;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.heidari.document_service.config.ReadConsistency;
+import com.heidari.document_service.config.SearchProperties;
+import com.heidari.document_service.dto.SearchPage;
+import com.heidari.document_service.model.ContentStorage;
+import com.heidari.document_service.model.Document;
+import com.heidari.document_service.model.Tag;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of search result pages, invalidated whenever documents are committed.
+ * <p>
+ * Educational Note on invalidation with a generation counter:
+ * A new document can appear in the results of almost any query, so rather than working out which
+ * entries it affects, every commit increments a "generation" and entries of older generations are
+ * treated as misses. The generation is read BEFORE a search runs and stored with its result; a
+ * search that overlapped a commit is therefore stamped with the old generation and can never serve
+ * a result that misses the new document.
+ * <p>
+ * Eviction: Caffeine bounds the total weight (approximate bytes) and the age of the entries;
+ * single pages heavier than "maximum-entry-weight" are not cached at all, nor are pages read from a
+ * replica that was behind the primary (see {@link ReadConsistency#isStaleRead()}).
+ * <p>
+ * Misses are run through the {@link SearchCoalescer}, so identical concurrent misses run one search.
+ * The flight is keyed by the page and the generation: a caller that arrives after a commit never
+ * receives the result of a search that started before it. Callers that require a replica position
+ * (see {@link ReadConsistency#isPositionRequired()}) run their own search. The result is cached once,
+ * by the caller that ran it.
+ * <p>
+ * Hit, miss and eviction counts are published as "cache.*" meters (name=documentSearch)
+ * under /actuator/metrics.
+ */
+@Component
+public class SearchResultCache {
+
+    public static final String CACHE_NAME = "documentSearch";
+
+    /**
+     * Identifies a page: the normalized query, the mode, the cursor and the page size.
+     * "indexed" separates the index path (term matching) from the LIKE path, which can match differently;
+     * "ranked" separates relevance order from newest-first order; "match" and "distance" separate
+     * substring and fuzzy searches (see {@link SearchMatch}) from the others; "tags" is the parsed
+     * tag expression, or null.
+     */
+    public record Key(String query, SearchMode mode, String cursor, int pageSize, boolean indexed, boolean ranked,
+                      SearchMatch match, int distance, TagExpression tags) {}
+
+    private record Entry(long generation, SearchPage<Document> page, int weight) {}
+
+    // Identical searches of the same generation are run once
+    private record Flight(Key key, long generation) {}
+
+    private final SearchProperties.Cache settings;
+    private final Cache<Key, Entry> cache;
+    private final AtomicLong generation = new AtomicLong();
+    private final SearchCoalescer coalescer;
+
+    public SearchResultCache(SearchProperties searchProperties, MeterRegistry meterRegistry,
+                             SearchCoalescer coalescer) {
+        this.settings = searchProperties.getCache();
+        this.coalescer = coalescer;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(settings.getMaximumWeight())
+                .weigher((Key key, Entry entry) -> entry.weight())
+                .expireAfterWrite(settings.getTimeToLive())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Returns the cached page for the key, or runs the search (once for identical concurrent callers)
+     * and caches its result.
+     *
+     * @param key    The normalized request.
+     * @param search Runs the search on a miss.
+     * @return The page (possibly shared with other callers; do not modify it).
+     */
+    public SearchPage<Document> get(Key key, Supplier<SearchPage<Document>> search) {
+        long current = generation.get();
+        if (settings.isEnabled()) {
+            Entry cached = cache.getIfPresent(key);
+            if (cached != null && cached.generation() == current) {
+                return cached.page();
+            }
+        }
+
+        if (ReadConsistency.isPositionRequired()) {
+            return load(key, current, search);
+        }
+        return coalescer.execute(new Flight(key, current), () -> load(key, current, search));
+    }
+
+    private SearchPage<Document> load(Key key, long current, Supplier<SearchPage<Document>> search) {
+        SearchPage<Document> page = search.get();
+        if (!settings.isEnabled()) {
+            return page;
+        }
+        int weight = weigh(key, page);
+        // A page read from a lagging replica may miss commits that the generation already covers
+        if (weight <= settings.getMaximumEntryWeight() && !ReadConsistency.isStaleRead()) {
+            cache.asMap().merge(key, new Entry(current, page, weight),
+                    (old, fresh) -> old.generation() > fresh.generation() ? old : fresh);
+        }
+        return page;
+    }
+
+    /**
+     * Invalidates all cached pages once the current transaction commits (immediately without one).
+     * Rolled-back writes leave the cache untouched.
+     */
+    public void invalidateAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate();
+                }
+            });
+        } else {
+            invalidate();
+        }
+    }
+
+    /** @return The current generation (incremented on every invalidation). */
+    public long generation() {
+        return generation.get();
+    }
+
+    /** @return The approximate number of cached pages. */
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private void invalidate() {
+        generation.incrementAndGet();
+        // Entries of older generations are already ignored; dropping them just frees the memory early
+        cache.invalidateAll();
+    }
+
+    // Rough heap footprint in bytes: two bytes per char plus a fixed overhead per object
+    private static int weigh(Key key, SearchPage<Document> page) {
+        long weight = 64L + 2L * key.query().length();
+        for (Document document : page.items()) {
+            weight += 96 + 2L * length(document.getTitle()) + contentWeight(document);
+            for (Tag tag : document.getTags()) {
+                weight += 48 + 2L * length(tag.getName());
+            }
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    // A compressed body is weighed as decoded (without decoding it): serializing the page will decode it
+    private static long contentWeight(Document document) {
+        if (document.getContentStorage() == ContentStorage.COMPRESSED) {
+            return document.getCompressedContent().length + 2L * document.getContentLength();
+        }
+        return 2L * length(document.getContent());
+    }
+
+    private static int length(String value) {
+        return (value != null) ? value.length() : 0;
+    }
+}
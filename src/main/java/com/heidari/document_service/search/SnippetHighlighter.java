@@ -0,0 +1,126 @@
+package com.heidari.document_service.search;
+
+import org.springframework.web.util.HtmlUtils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Marks query terms inside a content excerpt.
+ * <p>
+ * The excerpt itself is cut by the database (see DocumentRepository#findSummariesWithSnippetByIdIn),
+ * so only a few hundred characters of each body ever leave PostgreSQL. Bodies the database does not
+ * hold as text (e.g. in a file) are cut by {@link #excerpt} instead, with the same window.
+ */
+public final class SnippetHighlighter {
+
+    private static final String OPEN = "<em>";
+    private static final String CLOSE = "</em>";
+
+    private SnippetHighlighter() {}
+
+    /**
+     * Picks the term to center the excerpt on: the longest one, which is usually the most selective.
+     *
+     * @return The term, or the empty string if there are no terms.
+     */
+    public static String anchorTerm(Collection<String> terms) {
+        return terms.stream().max(Comparator.comparingInt(String::length)).orElse("");
+    }
+
+    /**
+     * Cuts an excerpt from a body read as a stream, like the database does for inline bodies:
+     * "length" characters starting "before" characters ahead of the first case-insensitive occurrence
+     * of the term (1-based, as SQL LOCATE counts), or the beginning of the body if there is none.
+     * Only the window around the match is kept in memory; reading stops once it is complete.
+     *
+     * @param text   The body.
+     * @param term   The lower-cased anchor term (see {@link #anchorTerm}); empty for the beginning.
+     * @param before Characters ahead of the match, counted like the SQL excerpt.
+     * @param length The length of the excerpt.
+     * @return The excerpt (empty for an empty body).
+     */
+    public static String excerpt(Reader text, String term, int before, int length) throws IOException {
+        // The last "lead + term" characters read, and the first "length" ones in case the term never occurs
+        int lead = Math.max(before - 1, 0);
+        StringBuilder window = new StringBuilder();
+        StringBuilder head = new StringBuilder();
+        int c;
+        while ((c = text.read()) >= 0) {
+            if (head.length() < length) {
+                head.append((char) c);
+            }
+            window.append((char) c);
+            if (window.length() > lead + term.length()) {
+                window.deleteCharAt(0);
+            }
+            if (endsWith(window, term)) {
+                // The window now holds the lead and the term: read the rest of the excerpt
+                while (window.length() < length && (c = text.read()) >= 0) {
+                    window.append((char) c);
+                }
+                return window.length() > length ? window.substring(0, length) : window.toString();
+            }
+        }
+        return head.toString();
+    }
+
+    /**
+     * HTML-escapes the excerpt and wraps every case-insensitive occurrence of a term in &lt;em&gt;.
+     * Escaping happens first, so document text can never inject markup into the response.
+     *
+     * @param excerpt The raw excerpt (may be null).
+     * @param terms   Lower-cased query terms.
+     * @return The highlighted, escaped excerpt, or null if there was no excerpt.
+     */
+    public static String highlight(String excerpt, Collection<String> terms) {
+        if (excerpt == null) {
+            return null;
+        }
+        String lower = excerpt.toLowerCase(Locale.ROOT);
+        if (lower.length() != excerpt.length()) {
+            // A few characters change length when lower-cased; offsets would no longer line up
+            return HtmlUtils.htmlEscape(excerpt);
+        }
+        StringBuilder out = new StringBuilder(excerpt.length() + 16);
+        int i = 0;
+        while (i < excerpt.length()) {
+            int matchLength = longestMatchAt(lower, i, terms);
+            if (matchLength > 0) {
+                out.append(OPEN).append(HtmlUtils.htmlEscape(excerpt.substring(i, i + matchLength))).append(CLOSE);
+                i += matchLength;
+            } else {
+                out.append(HtmlUtils.htmlEscape(excerpt.substring(i, i + 1)));
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    // Whether the window ends with the lower-cased term, compared case-insensitively without copying
+    private static boolean endsWith(StringBuilder window, String term) {
+        int offset = window.length() - term.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < term.length(); i++) {
+            if (Character.toLowerCase(window.charAt(offset + i)) != term.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int longestMatchAt(String lower, int offset, Collection<String> terms) {
+        int longest = 0;
+        for (String term : terms) {
+            if (term.length() > longest && lower.startsWith(term, offset)) {
+                longest = term.length();
+            }
+        }
+        return longest;
+    }
+}
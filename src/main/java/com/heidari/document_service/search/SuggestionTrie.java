@@ -0,0 +1,256 @@
+package com.heidari.document_service.search;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+/**
+ * A compact (radix) trie of phrases with their frequencies, answering "the most frequent phrases starting
+ * with this prefix" for type-ahead.
+ * <p>
+ * Educational Note:
+ * A plain trie has one node per character; a radix trie merges every chain of single-child nodes
+ * into one edge labelled with the whole run of characters, so there are at most two nodes per phrase
+ * and most lookups touch a handful of nodes. Each node also remembers the highest frequency in its
+ * subtree. The top k under a prefix are then found best-first: a priority queue holds subtrees by
+ * that bound and phrases by their frequency, and the phrase at its head is always the next best one.
+ * Popular prefixes ("a") cost about as much as rare ones, since nothing below the k-th best bound is
+ * ever opened, and a lookup expands at most "maxExpansions" nodes, so its allocations are bounded too.
+ * <p>
+ * Phrases are matched case-insensitively, with runs of whitespace counted as one space; each one is
+ * returned as it was first added. Frequencies only grow (the index never removes documents).
+ * <p>
+ * Not thread-safe; {@link InvertedIndex} guards it with its read/write lock.
+ */
+final class SuggestionTrie {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    /**
+     * A suggested phrase.
+     *
+     * @param text  The phrase, as first added.
+     * @param count The number of times it was added.
+     */
+    record Phrase(String text, long count) {}
+
+    private static final class Node {
+        char[] label;
+        Node[] children = NO_CHILDREN; // sorted by the first character of their label
+        String text;                   // the phrase ending here, or null
+        long count;                    // its frequency (0 if no phrase ends here)
+        long best;                     // the highest frequency in this subtree
+
+        Node(char[] label) {
+            this.label = label;
+        }
+    }
+
+    // A queue entry: a subtree (by its bound) or a phrase (by its count); "path" orders equal priorities
+    private record Candidate(Node node, String path, long priority, boolean phrase) {}
+
+    private final Node root = new Node(new char[0]);
+    private int size;
+
+    /** @return The number of distinct phrases. */
+    int size() { return size; }
+
+    /**
+     * Counts one more occurrence of a phrase. Blank phrases are ignored.
+     */
+    void add(String text) {
+        add(text, 1);
+    }
+
+    private void add(String text, long count) {
+        if (text == null || text.isBlank()) {
+            return;
+        }
+        String key = normalize(text.strip());
+        Node node = root;
+        int position = 0;
+        while (position < key.length()) {
+            int index = childIndex(node, key.charAt(position));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(position).toCharArray());
+                insertChild(node, -index - 1, leaf);
+                node = leaf;
+                break;
+            }
+            Node child = node.children[index];
+            int common = commonLength(child.label, key, position);
+            if (common < child.label.length) {
+                // The phrase leaves the edge midway: split it at the last shared character
+                Node middle = new Node(Arrays.copyOf(child.label, common));
+                child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+                middle.children = new Node[]{child};
+                middle.best = child.best;
+                node.children[index] = middle;
+                child = middle;
+            }
+            node = child;
+            position += common;
+        }
+        if (node.text == null) {
+            node.text = text.strip();
+            size++;
+        }
+        node.count += count;
+        propagate(key, node.count);
+    }
+
+    /**
+     * Returns the most frequent phrases starting with the prefix, by descending count (ties by phrase).
+     *
+     * @param prefix        The typed prefix (case-insensitive; leading whitespace is ignored).
+     * @param limit         The maximum number of suggestions.
+     * @param maxExpansions The most nodes to open; when reached, the suggestions found so far are returned
+     *                      (still the best ones, in order, but possibly fewer than limit).
+     */
+    List<Phrase> top(String prefix, int limit, int maxExpansions) {
+        String key = normalize(prefix.stripLeading());
+        List<Phrase> suggestions = new ArrayList<>(Math.min(limit, 16));
+        if (limit <= 0) {
+            return suggestions;
+        }
+
+        // Walk down to the node whose path first covers the prefix
+        Node node = root;
+        int position = 0;
+        StringBuilder path = new StringBuilder(key.length() + 16);
+        while (position < key.length()) {
+            int index = childIndex(node, key.charAt(position));
+            if (index < 0) {
+                return suggestions;
+            }
+            Node child = node.children[index];
+            int common = commonLength(child.label, key, position);
+            if (common < child.label.length && position + common < key.length()) {
+                return suggestions; // diverges from the prefix inside the edge
+            }
+            path.append(child.label);
+            position += common;
+            node = child;
+        }
+
+        PriorityQueue<Candidate> queue = new PriorityQueue<>((a, b) -> {
+            if (a.priority() != b.priority()) {
+                return Long.compare(b.priority(), a.priority());
+            }
+            int byPath = a.path().compareTo(b.path());
+            if (byPath != 0) {
+                return byPath;
+            }
+            // A phrase comes before the subtree it ends: everything below it is longer
+            return Boolean.compare(b.phrase(), a.phrase());
+        });
+        queue.add(new Candidate(node, path.toString(), node.best, false));
+        int expansions = 0;
+        while (!queue.isEmpty() && suggestions.size() < limit) {
+            Candidate candidate = queue.poll();
+            Node current = candidate.node();
+            if (candidate.phrase()) {
+                suggestions.add(new Phrase(current.text, current.count));
+                continue;
+            }
+            if (++expansions > maxExpansions) {
+                break;
+            }
+            if (current.text != null) {
+                queue.add(new Candidate(current, candidate.path(), current.count, true));
+            }
+            for (Node child : current.children) {
+                queue.add(new Candidate(child, candidate.path() + new String(child.label), child.best, false));
+            }
+        }
+        return suggestions;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        List<Node> phrases = new ArrayList<>(size);
+        collect(root, phrases);
+        for (Node node : phrases) {
+            IndexSnapshot.writeString(out, node.text);
+            out.writeLong(node.count);
+        }
+    }
+
+    static SuggestionTrie readFrom(ByteBuffer buffer) throws IOException {
+        SuggestionTrie trie = new SuggestionTrie();
+        int phrases = buffer.getInt();
+        if (phrases < 0) {
+            throw new IOException("Invalid suggestion count " + phrases);
+        }
+        for (int i = 0; i < phrases; i++) {
+            trie.add(IndexSnapshot.readString(buffer), buffer.getLong());
+        }
+        return trie;
+    }
+
+    private static String normalize(String text) {
+        return WHITESPACE.matcher(text).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    // Raises the subtree bounds along the path of the key to the new count of its phrase
+    private void propagate(String key, long count) {
+        Node node = root;
+        node.best = Math.max(node.best, count);
+        int position = 0;
+        while (position < key.length()) {
+            node = node.children[childIndex(node, key.charAt(position))];
+            node.best = Math.max(node.best, count);
+            position += node.label.length;
+        }
+    }
+
+    // Binary search on the first label character; (-(insertion point) - 1) if absent
+    private static int childIndex(Node node, char first) {
+        int low = 0, high = node.children.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char c = node.children[middle].label[0];
+            if (c < first) {
+                low = middle + 1;
+            } else if (c > first) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static void insertChild(Node node, int at, Node child) {
+        Node[] children = new Node[node.children.length + 1];
+        System.arraycopy(node.children, 0, children, 0, at);
+        children[at] = child;
+        System.arraycopy(node.children, at, children, at + 1, node.children.length - at);
+        node.children = children;
+    }
+
+    private static int commonLength(char[] label, String key, int from) {
+        int max = Math.min(label.length, key.length() - from);
+        int i = 0;
+        while (i < max && label[i] == key.charAt(from + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static void collect(Node node, List<Node> phrases) {
+        if (node.text != null) {
+            phrases.add(node);
+        }
+        for (Node child : node.children) {
+            collect(child, phrases);
+        }
+    }
+}
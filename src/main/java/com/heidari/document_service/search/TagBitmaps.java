@@ -0,0 +1,169 @@
+package com.heidari.document_service.search;
+
+import com.heidari.document_service.dto.TagFacets;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * One compressed bitmap of document ids per tag, for boolean tag queries and facet counts.
+ * <p>
+ * Educational Note on Roaring bitmaps:
+ * A bitmap answers "tagged A AND B but NOT C" with word-wide AND / AND-NOT operations instead of
+ * joins, and a facet count is the population count of an intersection. Roaring splits the id space
+ * into chunks of 65536 and stores each chunk as a sorted array (sparse), a plain bitset (dense) or
+ * runs, whichever is smallest, so a rare tag costs a few bytes and a common one about 1 bit per
+ * document. {@link Roaring64Bitmap#andCardinality} counts an intersection without materializing it,
+ * which keeps facets cheap over millions of documents.
+ * <p>
+ * Document ids are longs: the 64-bit variant keys its chunks by the high 48 bits of the id in a radix
+ * tree, so ids beyond 2^31 - 1 cost the same as small ones.
+ * <p>
+ * Not thread-safe; guarded by the owning {@link InvertedIndex}'s lock.
+ */
+class TagBitmaps {
+
+    private final Map<String, Roaring64Bitmap> byTag = new HashMap<>();
+    private final Roaring64Bitmap all = new Roaring64Bitmap();
+
+    /**
+     * Records the tags of a document.
+     */
+    void add(long docId, Collection<String> tagNames) {
+        all.addLong(docId);
+        for (String name : tagNames) {
+            byTag.computeIfAbsent(name, n -> new Roaring64Bitmap()).addLong(docId);
+        }
+    }
+
+    /** @return A bitmap of every document (a copy the caller may modify). */
+    Roaring64Bitmap all() {
+        return all.clone();
+    }
+
+    /**
+     * @return The documents matching the expression (a new bitmap the caller may modify).
+     */
+    Roaring64Bitmap evaluate(TagExpression expression) {
+        if (expression instanceof TagExpression.Tag tag) {
+            Roaring64Bitmap bitmap = byTag.get(tag.name());
+            return (bitmap != null) ? bitmap.clone() : new Roaring64Bitmap();
+        }
+        if (expression instanceof TagExpression.Not not) {
+            return Roaring64Bitmap.andNot(all, evaluate(not.operand()));
+        }
+        if (expression instanceof TagExpression.Or or) {
+            Roaring64Bitmap result = new Roaring64Bitmap();
+            for (TagExpression operand : or.operands()) {
+                result.or(evaluate(operand));
+            }
+            return result;
+        }
+        // AND: intersect the positive operands, then subtract the negated ones ("A AND NOT C" = A - C),
+        // so the complement of C is never built
+        TagExpression.And and = (TagExpression.And) expression;
+        Roaring64Bitmap result = null;
+        List<TagExpression> negated = new ArrayList<>();
+        for (TagExpression operand : and.operands()) {
+            if (operand instanceof TagExpression.Not not) {
+                negated.add(not.operand());
+            } else {
+                Roaring64Bitmap bitmap = evaluate(operand);
+                result = (result == null) ? bitmap : Roaring64Bitmap.and(result, bitmap);
+            }
+        }
+        if (result == null) {
+            result = all.clone();
+        }
+        for (TagExpression operand : negated) {
+            result.andNot(evaluate(operand));
+        }
+        return result;
+    }
+
+    /**
+     * Counts, for each tag, how many of the given documents carry it.
+     *
+     * @param within The documents to count.
+     * @param limit  The maximum number of tags to return.
+     * @return The most frequent tags, by descending count then name; tags with no document are omitted.
+     */
+    List<TagFacets.Facet> facets(Roaring64Bitmap within, int limit) {
+        Comparator<TagFacets.Facet> weakestFirst = Comparator.comparingLong(TagFacets.Facet::count)
+                .thenComparing(TagFacets.Facet::name, Comparator.reverseOrder());
+        // Bounded min-heap: the root is the weakest of the best "limit" tags
+        PriorityQueue<TagFacets.Facet> best = new PriorityQueue<>(limit + 1, weakestFirst);
+        byTag.forEach((name, bitmap) -> {
+            long count = Roaring64Bitmap.andCardinality(bitmap, within);
+            if (count > 0) {
+                best.add(new TagFacets.Facet(name, count));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        });
+        List<TagFacets.Facet> facets = new ArrayList<>(best);
+        facets.sort(weakestFirst.reversed());
+        return facets;
+    }
+
+    /**
+     * Writes every bitmap in Roaring's serialized form (see {@link #readFrom}).
+     */
+    void writeTo(DataOutput out) throws IOException {
+        writeBitmap(out, all);
+        out.writeInt(byTag.size());
+        for (Map.Entry<String, Roaring64Bitmap> entry : byTag.entrySet()) {
+            IndexSnapshot.writeString(out, entry.getKey());
+            writeBitmap(out, entry.getValue());
+        }
+    }
+
+    /**
+     * Reads the bitmaps written by {@link #writeTo}.
+     */
+    static TagBitmaps readFrom(ByteBuffer buffer) throws IOException {
+        TagBitmaps bitmaps = new TagBitmaps();
+        readBitmap(buffer, bitmaps.all);
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            String name = IndexSnapshot.readString(buffer);
+            Roaring64Bitmap bitmap = new Roaring64Bitmap();
+            readBitmap(buffer, bitmap);
+            bitmaps.byTag.put(name, bitmap);
+        }
+        return bitmaps;
+    }
+
+    /** @return The number of distinct tags. */
+    int size() {
+        return byTag.size();
+    }
+
+    /** @return The serialized size of all bitmaps, in bytes (close to their heap footprint). */
+    long byteSize() {
+        return all.getLongSizeInBytes()
+                + byTag.values().stream().mapToLong(Roaring64Bitmap::getLongSizeInBytes).sum();
+    }
+
+    private static void writeBitmap(DataOutput out, Roaring64Bitmap bitmap) throws IOException {
+        out.writeInt(Math.toIntExact(bitmap.serializedSizeInBytes()));
+        bitmap.serialize(out);
+    }
+
+    // The bitmap is read from a view of its own bytes, then the buffer is moved past them
+    private static void readBitmap(ByteBuffer buffer, Roaring64Bitmap bitmap) throws IOException {
+        int size = buffer.getInt();
+        bitmap.deserialize(buffer.slice(buffer.position(), size));
+        buffer.position(buffer.position() + size);
+    }
+}
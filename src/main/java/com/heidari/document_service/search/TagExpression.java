@@ -0,0 +1,43 @@
+package com.heidari.document_service.search;
+
+import java.util.List;
+
+/**
+ * A boolean expression over tag names, such as {@code java AND (spring OR boot) AND NOT legacy}.
+ * <p>
+ * Syntax: tag names combined with AND, OR and NOT (case-insensitive keywords) and parentheses.
+ * NOT binds tightest, then AND, then OR; AND may be left out ({@code java spring} means both).
+ * Tag names are matched exactly; quote names containing spaces, parentheses or keywords
+ * ({@code "machine learning"}).
+ * <p>
+ * The expression is evaluated with bitmaps by the search index, or translated to EXISTS subqueries
+ * on the Specification path; both give the same result.
+ */
+public sealed interface TagExpression {
+
+    /** Documents carrying the tag. */
+    record Tag(String name) implements TagExpression {}
+
+    /** Documents not matching the operand. */
+    record Not(TagExpression operand) implements TagExpression {}
+
+    /** Documents matching every operand. */
+    record And(List<TagExpression> operands) implements TagExpression {}
+
+    /** Documents matching at least one operand. */
+    record Or(List<TagExpression> operands) implements TagExpression {}
+
+    /**
+     * Parses the "tags" request parameter.
+     *
+     * @param text The expression (may be null or blank).
+     * @return The parsed expression, or null if there is none.
+     * @throws IllegalArgumentException If the text is not a valid expression.
+     */
+    static TagExpression parse(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        return new TagExpressionParser(text).parse();
+    }
+}
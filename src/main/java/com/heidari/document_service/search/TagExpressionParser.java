@@ -0,0 +1,136 @@
+package com.heidari.document_service.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recursive-descent parser of {@link TagExpression}s, one method per precedence level:
+ * <pre>
+ * or    := and ("OR" and)*
+ * and   := unary (["AND"] unary)*
+ * unary := "NOT" unary | "(" or ")" | name
+ * </pre>
+ */
+final class TagExpressionParser {
+
+    private final String text;
+    private int pos;
+
+    TagExpressionParser(String text) {
+        this.text = text;
+    }
+
+    TagExpression parse() {
+        TagExpression expression = or();
+        skipWhitespace();
+        if (pos < text.length()) {
+            throw error("unexpected '" + text.charAt(pos) + "'");
+        }
+        return expression;
+    }
+
+    private TagExpression or() {
+        List<TagExpression> operands = new ArrayList<>(List.of(and()));
+        while (keyword("OR")) {
+            operands.add(and());
+        }
+        return operands.size() == 1 ? operands.get(0) : new TagExpression.Or(List.copyOf(operands));
+    }
+
+    private TagExpression and() {
+        List<TagExpression> operands = new ArrayList<>(List.of(unary()));
+        while (true) {
+            if (keyword("AND")) {
+                operands.add(unary());
+            } else if (startsOperand()) {
+                operands.add(unary()); // implicit AND
+            } else {
+                break;
+            }
+        }
+        return operands.size() == 1 ? operands.get(0) : new TagExpression.And(List.copyOf(operands));
+    }
+
+    private TagExpression unary() {
+        if (keyword("NOT")) {
+            return new TagExpression.Not(unary());
+        }
+        skipWhitespace();
+        if (pos < text.length() && text.charAt(pos) == '(') {
+            pos++;
+            TagExpression inner = or();
+            skipWhitespace();
+            if (pos >= text.length() || text.charAt(pos) != ')') {
+                throw error("missing ')'");
+            }
+            pos++;
+            return inner;
+        }
+        return new TagExpression.Tag(name());
+    }
+
+    private String name() {
+        skipWhitespace();
+        if (pos >= text.length()) {
+            throw error("a tag name is missing");
+        }
+        if (text.charAt(pos) == '"') {
+            int end = text.indexOf('"', pos + 1);
+            if (end < 0) {
+                throw error("missing closing quote");
+            }
+            String name = text.substring(pos + 1, end);
+            pos = end + 1;
+            return name;
+        }
+        int start = pos;
+        while (pos < text.length() && isNameChar(text.charAt(pos))) {
+            pos++;
+        }
+        if (start == pos) {
+            throw error("unexpected '" + text.charAt(pos) + "'");
+        }
+        String name = text.substring(start, pos);
+        if (name.equalsIgnoreCase("AND") || name.equalsIgnoreCase("OR")) {
+            throw error("a tag name is missing before '" + name + "' (quote tags named like a keyword)");
+        }
+        return name;
+    }
+
+    // Consumes the keyword if it comes next as a whole word
+    private boolean keyword(String keyword) {
+        skipWhitespace();
+        int end = pos + keyword.length();
+        if (end <= text.length() && text.regionMatches(true, pos, keyword, 0, keyword.length())
+                && (end == text.length() || !isNameChar(text.charAt(end)))) {
+            pos = end;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean startsOperand() {
+        skipWhitespace();
+        if (pos >= text.length() || text.charAt(pos) == ')') {
+            return false;
+        }
+        int saved = pos;
+        boolean isOr = keyword("OR");
+        pos = saved;
+        return !isOr;
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private static boolean isNameChar(char c) {
+        return !Character.isWhitespace(c) && c != '(' && c != ')' && c != '"';
+    }
+
+    private IllegalArgumentException error(String problem) {
+        return new IllegalArgumentException("Invalid tag expression at position " + pos + ": " + problem);
+    }
+}
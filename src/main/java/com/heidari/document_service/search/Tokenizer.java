@@ -0,0 +1,78 @@
+package com.heidari.document_service.search;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Splits text into lower-cased terms for the search index.
+ * <p>
+ * A term is a maximal run of letters or digits; everything else (whitespace, punctuation)
+ * is a separator. The same rules are applied to documents and to queries, so a query
+ * term always lines up with the terms that were indexed.
+ */
+public final class Tokenizer {
+
+    private Tokenizer() {}
+
+    /**
+     * @param text The text to split (may be null).
+     * @return The terms in order of appearance, duplicates included.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+
+        int start = -1;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isLetterOrDigit(text.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            terms.add(text.substring(start).toLowerCase(Locale.ROOT));
+        }
+        return terms;
+    }
+
+    /**
+     * Streaming variant of {@link #tokenize(String)}: reads the text in small chunks and keeps only
+     * the distinct terms, so memory depends on the vocabulary rather than on the length of the text.
+     *
+     * @param text The text to split; read to the end but not closed.
+     * @return Term frequencies.
+     * @throws IOException If reading fails.
+     */
+    public static Map<String, Integer> countTerms(Reader text) throws IOException {
+        Map<String, Integer> counts = new HashMap<>();
+        StringBuilder term = new StringBuilder();
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = text.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                if (Character.isLetterOrDigit(c)) {
+                    term.append(c);
+                } else if (!term.isEmpty()) {
+                    counts.merge(term.toString().toLowerCase(Locale.ROOT), 1, Integer::sum);
+                    term.setLength(0);
+                }
+            }
+        }
+        if (!term.isEmpty()) {
+            counts.merge(term.toString().toLowerCase(Locale.ROOT), 1, Integer::sum);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,365 @@
+package com.heidari.document_service.search;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An index of the trigrams (three-character sequences) of document titles, contents and tag names,
+ * used to answer substring ({@code %q%}) and typo-tolerant queries without scanning every row.
+ * <p>
+ * Educational Note on trigram filtering:
+ * A B-tree cannot serve {@code LIKE '%q%'}: the match may start anywhere. But any text containing
+ * "spring" must contain each of its trigrams "spr", "pri", "rin", "ing". Intersecting those four
+ * posting lists gives a small set of CANDIDATES; the candidates are then VERIFIED against the real
+ * text, because having all the trigrams does not guarantee they are adjacent ("sprint ring").
+ * The filter never loses a match, so filter + verification returns exactly what a scan would.
+ * <p>
+ * Typo tolerance uses the pigeonhole principle: if a text contains q with at most d edits, then
+ * cutting q into d + 1 pieces leaves at least one piece untouched, which therefore occurs exactly.
+ * The candidates are the documents containing any piece (each piece needs at least three characters).
+ * <p>
+ * Memory: one posting list per distinct trigram, delta + variable-byte encoded ({@link PostingList});
+ * the "frequency" slot holds the bit mask of the fields that contain the trigram. The index stops
+ * growing at a fixed budget. Fields it cannot afford to index (past the budget, or longer than the
+ * per-field limit) are recorded as UNFILTERED: such documents are always candidates for that field,
+ * so results stay correct and only verification gets more expensive.
+ * <p>
+ * Not thread-safe; guarded by the owning {@link InvertedIndex}'s lock.
+ */
+public class TrigramIndex {
+
+    // Rough heap cost of a dictionary entry: boxed key, map node, PostingList and its array headers
+    private static final int ENTRY_OVERHEAD = 112;
+
+    private final Map<Long, PostingList> postings;
+    private final PostingList unfiltered;
+    private final long maxBytes;
+    private final int maxFieldLength;
+    private long bytes;
+
+    /**
+     * @param maxBytes       Approximate memory budget of the posting lists and their dictionary.
+     * @param maxFieldLength Fields longer than this (in characters) are not indexed but always verified.
+     */
+    public TrigramIndex(long maxBytes, int maxFieldLength) {
+        this(maxBytes, maxFieldLength, new HashMap<>(), new PostingList());
+    }
+
+    private TrigramIndex(long maxBytes, int maxFieldLength, Map<Long, PostingList> postings,
+                         PostingList unfiltered) {
+        this.maxBytes = maxBytes;
+        this.maxFieldLength = maxFieldLength;
+        this.postings = postings;
+        this.unfiltered = unfiltered;
+    }
+
+    /**
+     * Indexes the trigrams of a document whose fields are all passed. Must be called once per document.
+     */
+    void add(long docId, Map<InvertedIndex.Field, ? extends Iterable<String>> fields) {
+        add(docId, fields, 0);
+    }
+
+    /**
+     * Indexes the trigrams of a document's fields. Must be called once per document.
+     *
+     * @param docId  The document id.
+     * @param fields The text of each field (null entries are skipped); tag names are separate entries
+     *               of the TAG field so that no trigram spans two tags.
+     * @param absent Bit mask of fields that have text which is not passed (e.g. a body kept in a file):
+     *               they are recorded as unfiltered.
+     */
+    void add(long docId, Map<InvertedIndex.Field, ? extends Iterable<String>> fields, int absent) {
+        Map<Long, Integer> masks = new HashMap<>();
+        int skipped = absent;
+        for (Map.Entry<InvertedIndex.Field, ? extends Iterable<String>> field : fields.entrySet()) {
+            int bit = 1 << field.getKey().ordinal();
+            for (String text : field.getValue()) {
+                if (text == null) {
+                    continue;
+                }
+                if (text.length() > maxFieldLength || bytes >= maxBytes) {
+                    skipped |= bit;
+                    continue;
+                }
+                for (long trigram : trigrams(text.toLowerCase(Locale.ROOT))) {
+                    masks.merge(trigram, bit, (a, b) -> a | b);
+                }
+            }
+        }
+
+        masks.forEach((trigram, mask) -> {
+            PostingList list = postings.get(trigram);
+            if (list == null) {
+                list = new PostingList();
+                postings.put(trigram, list);
+                bytes += ENTRY_OVERHEAD;
+            }
+            int before = list.byteSize();
+            list.add(docId, mask);
+            bytes += list.byteSize() - before;
+        });
+        if (skipped != 0) {
+            unfiltered.add(docId, skipped);
+        }
+    }
+
+    /**
+     * Finds the documents that may contain the text in one of the fields.
+     *
+     * @param text   The lower-cased text to find.
+     * @param fields Bit mask of the fields to search.
+     * @return Candidate ids in ascending order, or null if the text is too short to filter (under 3 chars).
+     */
+    long[] substringCandidates(String text, int fields) {
+        if (text.length() < 3) {
+            return null;
+        }
+        return union(containing(text, fields), unfiltered(fields));
+    }
+
+    /**
+     * Finds the documents that may contain the text with at most "distance" edits in one of the fields.
+     *
+     * @param text     The lower-cased text to find.
+     * @param distance The maximum edit distance.
+     * @param fields   Bit mask of the fields to search.
+     * @return Candidate ids in ascending order, or null if the text is too short to filter
+     *         (under 3 characters per piece, i.e. 3 * (distance + 1)).
+     */
+    long[] fuzzyCandidates(String text, int distance, int fields) {
+        int pieces = distance + 1;
+        if (text.length() < 3 * pieces) {
+            return null;
+        }
+        long[] candidates = unfiltered(fields);
+        for (int i = 0; i < pieces; i++) {
+            String piece = text.substring(i * text.length() / pieces, (i + 1) * text.length() / pieces);
+            candidates = union(candidates, containing(piece, fields));
+        }
+        return candidates;
+    }
+
+    /** @return The number of distinct trigrams. */
+    int size() {
+        return postings.size();
+    }
+
+    /** @return The approximate memory used by the posting lists and their dictionary. */
+    long byteSize() {
+        return bytes + unfiltered.byteSize();
+    }
+
+    /** @return The number of documents with at least one field that could not be indexed. */
+    int unfilteredCount() {
+        return unfiltered.size();
+    }
+
+    /** @return True if the index was created with these limits. */
+    boolean hasSettings(long maxBytes, int maxFieldLength) {
+        return this.maxBytes == maxBytes && this.maxFieldLength == maxFieldLength;
+    }
+
+    /**
+     * Writes the limits, the posting lists and the unfiltered documents (see {@link #readFrom}).
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(maxBytes);
+        out.writeInt(maxFieldLength);
+        out.writeLong(bytes);
+        unfiltered.writeTo(out);
+        out.writeInt(postings.size());
+        for (Map.Entry<Long, PostingList> entry : postings.entrySet()) {
+            out.writeLong(entry.getKey());
+            entry.getValue().writeTo(out);
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #writeTo}.
+     */
+    static TrigramIndex readFrom(ByteBuffer buffer) {
+        long maxBytes = buffer.getLong();
+        int maxFieldLength = buffer.getInt();
+        long bytes = buffer.getLong();
+        PostingList unfiltered = PostingList.readFrom(buffer);
+        int count = buffer.getInt();
+        Map<Long, PostingList> postings = new HashMap<>(count * 4 / 3 + 1);
+        for (int i = 0; i < count; i++) {
+            postings.put(buffer.getLong(), PostingList.readFrom(buffer));
+        }
+        TrigramIndex index = new TrigramIndex(maxBytes, maxFieldLength, postings, unfiltered);
+        index.bytes = bytes;
+        return index;
+    }
+
+    /**
+     * Checks whether the text contains the pattern with at most "distance" edits
+     * (insertions, deletions or substitutions). Both must already be lower-cased.
+     * <p>
+     * Educational Note: this is Sellers' variant of the Levenshtein dynamic program. Row 0 is all
+     * zeros, so a match may start at any position of the text; one column of pattern.length() + 1
+     * cells is kept, and the scan stops at the first position where the whole pattern fits.
+     */
+    public static boolean containsApproximately(String text, String pattern, int distance) {
+        if (distance == 0) {
+            return text.contains(pattern);
+        }
+        int m = pattern.length();
+        if (m <= distance) {
+            return true;
+        }
+        int[] column = new int[m + 1];
+        for (int i = 0; i <= m; i++) {
+            column[i] = i;
+        }
+        for (int j = 0; j < text.length(); j++) {
+            char c = text.charAt(j);
+            int diagonal = 0; // column[0] of the previous position: a match may start anywhere
+            for (int i = 1; i <= m; i++) {
+                int above = column[i];
+                int cost = (pattern.charAt(i - 1) == c) ? 0 : 1;
+                column[i] = Math.min(Math.min(above + 1, column[i - 1] + 1), diagonal + cost);
+                diagonal = above;
+            }
+            if (column[m] <= distance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same as {@link #containsApproximately(String, String, int)} for a text read as a stream (e.g. a body
+     * kept in a file), lower-cased one character at a time, so it is never held in memory as a whole.
+     */
+    public static boolean containsApproximately(Reader text, String pattern, int distance) throws IOException {
+        int m = pattern.length();
+        if (m <= distance) {
+            return true;
+        }
+        int[] column = new int[m + 1];
+        for (int i = 0; i <= m; i++) {
+            column[i] = i;
+        }
+        char[] buffer = new char[8192];
+        for (int read = text.read(buffer); read >= 0; read = text.read(buffer)) {
+            for (int j = 0; j < read; j++) {
+                char c = Character.toLowerCase(buffer[j]);
+                int diagonal = 0;
+                for (int i = 1; i <= m; i++) {
+                    int above = column[i];
+                    int cost = (pattern.charAt(i - 1) == c) ? 0 : 1;
+                    column[i] = Math.min(Math.min(above + 1, column[i - 1] + 1), diagonal + cost);
+                    diagonal = above;
+                }
+                if (column[m] <= distance) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Ids of documents that have every trigram of the text in one and the same searched field
+    private long[] containing(String text, int fields) {
+        long[] trigrams = trigrams(text);
+        PostingList[] lists = new PostingList[trigrams.length];
+        for (int i = 0; i < trigrams.length; i++) {
+            lists[i] = postings.get(trigrams[i]);
+            if (lists[i] == null) {
+                return new long[0];
+            }
+        }
+        // Start from the shortest list: the intersection can only shrink
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+
+        long[] ids = new long[lists[0].size()];
+        int[] masks = new int[ids.length];
+        int[] count = {0};
+        lists[0].forEach((docId, mask) -> {
+            if ((mask & fields) != 0) {
+                ids[count[0]] = docId;
+                masks[count[0]++] = mask & fields;
+            }
+        });
+        int n = count[0];
+        for (int l = 1; l < lists.length && n > 0; l++) {
+            int[] next = {0};
+            int size = n;
+            lists[l].forEach((docId, mask) -> {
+                // Both sides are sorted: advance through the current candidates
+                while (next[0] < size && ids[next[0]] < docId) {
+                    masks[next[0]++] = 0;
+                }
+                if (next[0] < size && ids[next[0]] == docId) {
+                    masks[next[0]] &= mask;
+                    next[0]++;
+                }
+            });
+            for (int i = next[0]; i < size; i++) {
+                masks[i] = 0;
+            }
+            n = 0;
+            for (int i = 0; i < size; i++) {
+                if (masks[i] != 0) {
+                    ids[n] = ids[i];
+                    masks[n++] = masks[i];
+                }
+            }
+        }
+        return Arrays.copyOf(ids, n);
+    }
+
+    private long[] unfiltered(int fields) {
+        long[] ids = new long[unfiltered.size()];
+        int[] count = {0};
+        unfiltered.forEach((docId, mask) -> {
+            if ((mask & fields) != 0) {
+                ids[count[0]++] = docId;
+            }
+        });
+        return Arrays.copyOf(ids, count[0]);
+    }
+
+    // Distinct trigrams of the text, each packed into a long (three 16-bit chars), in ascending order
+    private static long[] trigrams(String text) {
+        if (text.length() < 3) {
+            return new long[0];
+        }
+        long[] trigrams = new long[text.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        Arrays.sort(trigrams);
+        int unique = 0;
+        for (int i = 0; i < trigrams.length; i++) {
+            if (unique == 0 || trigrams[unique - 1] != trigrams[i]) {
+                trigrams[unique++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, unique);
+    }
+
+    private static long[] union(long[] a, long[] b) {
+        long[] out = new long[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                out[n++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                out[n++] = b[j++];
+            } else {
+                out[n++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
@@ -0,0 +1,208 @@
+package com.heidari.document_service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.heidari.document_service.config.IngestProperties;
+import com.heidari.document_service.dto.CreateDocumentRequest;
+import com.heidari.document_service.dto.IngestTicket;
+import com.heidari.document_service.metrics.DocumentMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Accepts single documents into a bounded queue and writes them in the background, in group commits.
+ * <p>
+ * Educational Note on group commit:
+ * The synchronous POST /documents holds a request thread and a database connection for a whole
+ * transaction per document; a burst of writes can take every pooled connection and stall searches.
+ * Here a request only enqueues the document and returns a ticket. A small, fixed number of workers
+ * drain whatever has accumulated (up to "max-batch-size") and commit it as ONE transaction with
+ * batched INSERTs (see {@link BulkIngestService#writeCommitted}), so writes never use more than
+ * "workers" connections, and the cost of a commit is shared by every document in it.
+ * <p>
+ * Backpressure: the queue is bounded; when it is full, {@link #submit} fails immediately
+ * (HTTP 429) instead of letting memory or latency grow without limit.
+ * Durability: a ticket becomes DURABLE only after its transaction has committed.
+ */
+@Service
+public class AsyncIngestService implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncIngestService.class);
+
+    private record Pending(String ticketId, CreateDocumentRequest request, long acceptedNanos) {}
+
+    private final BulkIngestService bulkIngestService;
+    private final IngestProperties.Async settings;
+    private final DocumentMetrics metrics;
+    private final BlockingQueue<Pending> queue;
+    private final Cache<String, IngestTicket> tickets;
+    private final List<Thread> workers = new ArrayList<>();
+    // Submitters share it around the "running" check and the offer; stop() takes it exclusively
+    private final ReadWriteLock admission = new ReentrantReadWriteLock();
+
+    private volatile boolean running;
+
+    public AsyncIngestService(BulkIngestService bulkIngestService, IngestProperties ingestProperties,
+                              DocumentMetrics metrics) {
+        this.bulkIngestService = bulkIngestService;
+        this.settings = ingestProperties.getAsync();
+        this.metrics = metrics;
+        this.queue = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+        // Finished tickets are kept for a while so clients can poll them, then dropped
+        this.tickets = Caffeine.newBuilder().expireAfterWrite(settings.getTicketRetention()).build();
+        metrics.bindIngestQueue(queue);
+    }
+
+    /**
+     * Enqueues a document.
+     *
+     * @param request The document to store.
+     * @return A QUEUED ticket to poll with {@link #ticket}.
+     * @throws IngestQueueFullException If the queue is full (or the service is shutting down).
+     */
+    public IngestTicket submit(CreateDocumentRequest request) {
+        IngestTicket ticket = IngestTicket.queued(UUID.randomUUID().toString());
+        // Register the ticket first: a worker may finish the document before offer() returns
+        tickets.put(ticket.ticketId(), ticket);
+        boolean accepted;
+        admission.readLock().lock();
+        try {
+            accepted = running && queue.offer(new Pending(ticket.ticketId(), request, System.nanoTime()));
+        } finally {
+            admission.readLock().unlock();
+        }
+        if (!accepted) {
+            tickets.invalidate(ticket.ticketId());
+            metrics.recordIngestRejected();
+            throw new IngestQueueFullException(settings.getQueueCapacity(), settings.getRetryAfterSeconds());
+        }
+        return ticket;
+    }
+
+    /**
+     * @param ticketId The id returned by {@link #submit}.
+     * @return The current state of the ticket, or empty if it is unknown or has expired.
+     */
+    public Optional<IngestTicket> ticket(String ticketId) {
+        return Optional.ofNullable(tickets.getIfPresent(ticketId));
+    }
+
+    /** @return The number of documents waiting for a worker. */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    // --- Lifecycle: workers start with the application context and drain the queue on shutdown ---
+
+    @Override
+    public void start() {
+        running = true;
+        for (int i = 0; i < settings.getWorkers(); i++) {
+            Thread worker = new Thread(this::drainLoop, "ingest-worker-" + (i + 1));
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    @Override
+    public void stop() {
+        // Refuse new documents (waiting for submissions past the check), then let the workers commit
+        // what was already accepted
+        admission.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            admission.writeLock().unlock();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        workers.clear();
+        // Whatever the workers did not get to (no workers, or the join timed out) will never be written
+        List<Pending> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        if (!abandoned.isEmpty()) {
+            log.warn("Async ingestion stopped with {} documents still queued; their tickets are failed",
+                    abandoned.size());
+            abandoned.forEach(pending -> tickets.asMap().computeIfPresent(pending.ticketId(),
+                    (id, ticket) -> ticket.failed("Ingestion stopped before the document was written")));
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void drainLoop() {
+        List<Pending> batch = new ArrayList<>(settings.getMaxBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                // Group commit: take everything that queued up meanwhile, without waiting for more
+                batch.add(first);
+                queue.drainTo(batch, settings.getMaxBatchSize() - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        long started = System.nanoTime();
+        try {
+            List<Long> ids = bulkIngestService.writeCommitted(batch.stream().map(Pending::request).toList());
+            long committed = System.nanoTime();
+            metrics.recordIngestBatch(batch.size(), committed - started);
+            for (int i = 0; i < batch.size(); i++) {
+                complete(batch.get(i), ids.get(i), committed);
+            }
+        } catch (RuntimeException e) {
+            // One bad document must not fail the others: retry them one transaction each
+            log.warn("Async ingestion batch of {} documents failed, retrying individually: {}", batch.size(), e.toString());
+            for (Pending pending : batch) {
+                writeAlone(pending);
+            }
+        }
+    }
+
+    private void writeAlone(Pending pending) {
+        try {
+            List<Long> ids = bulkIngestService.writeCommitted(List.of(pending.request()));
+            complete(pending, ids.get(0), System.nanoTime());
+        } catch (RuntimeException e) {
+            log.warn("Async ingestion of ticket {} failed: {}", pending.ticketId(), e.toString());
+            tickets.asMap().computeIfPresent(pending.ticketId(), (id, ticket) -> ticket.failed(e.getMessage()));
+        }
+    }
+
+    private void complete(Pending pending, Long documentId, long committedNanos) {
+        metrics.recordIngestDurable(committedNanos - pending.acceptedNanos());
+        tickets.asMap().computeIfPresent(pending.ticketId(), (id, ticket) -> ticket.durable(documentId));
+    }
+}
@@ -0,0 +1,364 @@
+package com.heidari.document_service.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heidari.document_service.changes.ChangeLog;
+import com.heidari.document_service.config.IngestProperties;
+import com.heidari.document_service.dto.BulkIngestReport;
+import com.heidari.document_service.dto.BulkIngestReport.BatchReport;
+import com.heidari.document_service.dto.CreateDocumentRequest;
+import com.heidari.document_service.dto.ExportedDocument;
+import com.heidari.document_service.dto.ImportReport;
+import com.heidari.document_service.model.Document;
+import com.heidari.document_service.model.ImportCheckpoint;
+import com.heidari.document_service.model.Tag;
+import com.heidari.document_service.repository.ImportCheckpointRepository;
+import com.heidari.document_service.search.DocumentIndex;
+import com.heidari.document_service.search.SearchResultCache;
+import com.heidari.document_service.storage.ContentPlacement;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Imports large numbers of documents with batched inserts.
+ * <p>
+ * Compared to calling {@link DocumentService#createDocument} once per document:
+ * 1. The input is parsed as a stream, so only one batch is held in memory at a time (at most "batch-size"
+ *    documents and "max-batch-characters" of bodies).
+ * 2. All distinct tag names of a batch are resolved through the {@link TagDictionary}: known names
+ *    from memory, the rest with one multi-row upsert plus one query, instead of one SELECT
+ *    (and possibly one INSERT) per tag.
+ * 3. Documents and their "document_tags" rows are sent as JDBC batches
+ *    (see hibernate.jdbc.batch_size), and the persistence context is cleared after every batch.
+ * 4. A transaction covers "commitInterval" batches rather than a single document.
+ * 5. The batch is recorded in the change log with one multi-row INSERT (see {@link ChangeLog}).
+ * <p>
+ * Bodies are stored as {@link DocumentService#createDocument} stores them (see {@link ContentPlacement}):
+ * those over "document.storage.inline-threshold" go to files, whichever endpoint they came through.
+ */
+@Service
+public class BulkIngestService {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkIngestService.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TagDictionary tagDictionary;
+    private final DocumentIndex documentIndex;
+    private final SearchResultCache searchResultCache;
+    private final IngestProperties ingestProperties;
+    private final ObjectMapper objectMapper;
+    private final ContentPlacement contentPlacement;
+    private final ChangeLog changeLog;
+    private final ImportCheckpointRepository importCheckpointRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public BulkIngestService(TagDictionary tagDictionary,
+                             DocumentIndex documentIndex,
+                             SearchResultCache searchResultCache,
+                             IngestProperties ingestProperties,
+                             ObjectMapper objectMapper,
+                             ContentPlacement contentPlacement,
+                             ChangeLog changeLog,
+                             ImportCheckpointRepository importCheckpointRepository,
+                             PlatformTransactionManager transactionManager) {
+        this.tagDictionary = tagDictionary;
+        this.documentIndex = documentIndex;
+        this.searchResultCache = searchResultCache;
+        this.ingestProperties = ingestProperties;
+        this.objectMapper = objectMapper;
+        this.contentPlacement = contentPlacement;
+        this.changeLog = changeLog;
+        this.importCheckpointRepository = importCheckpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Reads documents from the stream and writes them in batches.
+     * <p>
+     * Accepted formats: a JSON array of {@link CreateDocumentRequest} objects, or NDJSON
+     * (one object per line). Jackson's MappingIterator unwraps a root-level array and also reads
+     * a sequence of root-level values, so both formats share the same code path.
+     *
+     * @param input The request body.
+     * @return Totals and per-batch throughput.
+     * @throws IOException If the input is not valid JSON.
+     */
+    public BulkIngestReport ingest(InputStream input) throws IOException {
+        long started = System.nanoTime();
+        List<BatchReport> reports = new ArrayList<>();
+
+        try (MappingIterator<CreateDocumentRequest> requests =
+                     objectMapper.readerFor(CreateDocumentRequest.class).readValues(input)) {
+            boolean more = true;
+            while (more) {
+                // One transaction per "commitInterval" batches
+                more = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                    for (int i = 0; i < ingestProperties.getCommitInterval(); i++) {
+                        List<CreateDocumentRequest> batch = nextBatch(requests);
+                        if (batch.isEmpty()) {
+                            return false;
+                        }
+                        reports.add(writeBatch(reports.size() + 1, batch));
+                    }
+                    return true;
+                }));
+            }
+        }
+
+        long documents = reports.stream().mapToLong(BatchReport::documents).sum();
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        BulkIngestReport report = new BulkIngestReport(documents, elapsedMillis,
+                perSecond(documents, elapsedMillis), reports);
+        log.info("Bulk ingest finished: {} documents in {} batches, {} ms ({} docs/s)",
+                documents, reports.size(), elapsedMillis, Math.round(report.documentsPerSecond()));
+        return report;
+    }
+
+    /**
+     * Imports a corpus export (see GET /documents/export): NDJSON lines of {@link ExportedDocument}.
+     * Documents get new ids, in the order of the input; tags are matched by name. They keep their exported
+     * creation time, and with it their place in the newest-first search order, unless "keepCreatedAt" is false
+     * (or the line has none): then they are created now.
+     * <p>
+     * Educational Note on restartable imports:
+     * With a checkpoint name, every transaction also stores the export id of its last document in
+     * "import_checkpoint", so the checkpoint commits or rolls back with the documents it describes.
+     * If the import fails (a dropped connection, a bad line, a restart), sending the same export again
+     * (or only its rest, GET /documents/export?afterId=&lt;lastSourceId&gt;) with the same name skips what
+     * is already committed: nothing is lost or written twice. This needs ascending ids, as in exports.
+     * <p>
+     * Two imports under the same name at once would both resume from the same id. The checkpoint is
+     * versioned, and created up front, so the second one to commit a transaction fails instead: that
+     * transaction rolls back, and the request ends with {@link ImportConflictException}.
+     *
+     * @param input      The request body.
+     * @param checkpoint    The checkpoint name, or null to import everything without one.
+     * @param keepCreatedAt Keep the exported creation times (false: the import time).
+     * @return Totals and throughput of this request.
+     * @throws IOException If the input is not valid JSON.
+     * @throws IllegalArgumentException If a checkpointed input lacks an id or is not in ascending id order.
+     * @throws ImportConflictException If another import has moved the checkpoint meanwhile.
+     */
+    public ImportReport importDocuments(InputStream input, String checkpoint, boolean keepCreatedAt)
+            throws IOException {
+        long started = System.nanoTime();
+        // Read in a read-write transaction: with a replica, read-only ones would not see the latest checkpoint
+        ImportCheckpoint progress = (checkpoint == null) ? new ImportCheckpoint(null) : startCheckpoint(checkpoint);
+        long documentsBefore = progress.getDocuments();
+        ImportCursor cursor = new ImportCursor(checkpoint != null ? progress.getLastSourceId() : null,
+                ingestProperties);
+
+        try (MappingIterator<ExportedDocument> documents =
+                     objectMapper.readerFor(ExportedDocument.class).readValues(input)) {
+            boolean more = true;
+            while (more) {
+                // One transaction per "commitInterval" batches, together with the checkpoint
+                more = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                    for (int i = 0; i < ingestProperties.getCommitInterval(); i++) {
+                        List<ExportedDocument> batch = cursor.nextBatch(documents);
+                        if (batch.isEmpty()) {
+                            saveCheckpoint(progress);
+                            return false;
+                        }
+                        List<CreateDocumentRequest> requests = batch.stream()
+                                .map(ExportedDocument::toCreateRequest)
+                                .toList();
+                        List<LocalDateTime> createdAt = keepCreatedAt
+                                ? batch.stream().map(ExportedDocument::createdAt).toList() : null;
+                        persistBatch(requests, resolveTags(requests), createdAt);
+                        Long lastId = batch.get(batch.size() - 1).id();
+                        progress.setLastSourceId(lastId != null ? lastId : progress.getLastSourceId());
+                        progress.setDocuments(progress.getDocuments() + batch.size());
+                    }
+                    saveCheckpoint(progress);
+                    return true;
+                }));
+                log.info("Import {}: {} documents written, last source id {}",
+                        checkpoint, progress.getDocuments(), progress.getLastSourceId());
+            }
+        }
+
+        long imported = progress.getDocuments() - documentsBefore;
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        ImportReport report = new ImportReport(checkpoint, imported, cursor.skipped, progress.getLastSourceId(),
+                elapsedMillis, perSecond(imported, elapsedMillis));
+        log.info("Import finished: {} documents ({} skipped) in {} ms ({} docs/s)",
+                imported, cursor.skipped, elapsedMillis, Math.round(report.documentsPerSecond()));
+        return report;
+    }
+
+    // Creates a new checkpoint right away, so that a concurrent first import of the same name conflicts on its key
+    private ImportCheckpoint startCheckpoint(String checkpoint) {
+        try {
+            return transactionTemplate.execute(status -> importCheckpointRepository.findById(checkpoint)
+                    .orElseGet(() -> importCheckpointRepository.saveAndFlush(new ImportCheckpoint(checkpoint))));
+        } catch (DataIntegrityViolationException e) {
+            throw new ImportConflictException(checkpoint, e);
+        }
+    }
+
+    private void saveCheckpoint(ImportCheckpoint progress) {
+        if (progress.getName() != null) {
+            progress.setUpdatedAt(LocalDateTime.now());
+            try {
+                // Flushed here, so a stale version fails now and the whole transaction rolls back
+                ImportCheckpoint saved = importCheckpointRepository.saveAndFlush(progress);
+                progress.setVersion(saved.getVersion());
+            } catch (OptimisticLockingFailureException e) {
+                throw new ImportConflictException(progress.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Reads the input of an import in batches, skipping what the checkpoint covers.
+     */
+    private static final class ImportCursor {
+
+        private final Long resumeAfter;   // null: no checkpoint
+        private final IngestProperties limits;
+        private long previousId;
+        private long skipped;
+
+        ImportCursor(Long resumeAfter, IngestProperties limits) {
+            this.resumeAfter = resumeAfter;
+            this.limits = limits;
+        }
+
+        List<ExportedDocument> nextBatch(MappingIterator<ExportedDocument> documents) {
+            List<ExportedDocument> batch = new ArrayList<>(limits.getBatchSize());
+            long characters = 0;
+            while (batch.size() < limits.getBatchSize() && characters < limits.getMaxBatchCharacters()
+                    && documents.hasNext()) {
+                ExportedDocument document = documents.next();
+                if (resumeAfter != null) {
+                    if (document.id() == null || document.id() <= previousId) {
+                        throw new IllegalArgumentException("A checkpointed import needs ascending ids, as in exports: "
+                                + document.id() + " after " + previousId);
+                    }
+                    previousId = document.id();
+                    if (document.id() <= resumeAfter) {
+                        skipped++;
+                        continue;
+                    }
+                }
+                batch.add(document);
+                characters += length(document.content());
+            }
+            return batch;
+        }
+    }
+
+    private List<CreateDocumentRequest> nextBatch(MappingIterator<CreateDocumentRequest> requests) {
+        List<CreateDocumentRequest> batch = new ArrayList<>(ingestProperties.getBatchSize());
+        long characters = 0;
+        while (batch.size() < ingestProperties.getBatchSize()
+                && characters < ingestProperties.getMaxBatchCharacters() && requests.hasNext()) {
+            CreateDocumentRequest request = requests.next();
+            batch.add(request);
+            characters += length(request.getContent());
+        }
+        return batch;
+    }
+
+    private static int length(String content) {
+        return (content != null) ? content.length() : 0;
+    }
+
+    /**
+     * Writes one batch in its own transaction (group commit for {@link AsyncIngestService}).
+     *
+     * @param batch The documents; at most "batchSize" of them are sent per JDBC batch.
+     * @return The ids of the new documents, in input order, once the transaction has committed.
+     */
+    public List<Long> writeCommitted(List<CreateDocumentRequest> batch) {
+        return transactionTemplate.execute(status -> persistBatch(batch, resolveTags(batch)));
+    }
+
+    private BatchReport writeBatch(int batchNumber, List<CreateDocumentRequest> batch) {
+        long started = System.nanoTime();
+
+        Map<String, Long> tagIds = resolveTags(batch);
+        persistBatch(batch, tagIds);
+
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        BatchReport report = new BatchReport(batchNumber, batch.size(), tagIds.size(), elapsedMillis,
+                perSecond(batch.size(), elapsedMillis));
+        log.info("Bulk ingest batch {}: {} documents, {} tags in {} ms ({} docs/s)",
+                batchNumber, batch.size(), tagIds.size(), elapsedMillis, Math.round(report.documentsPerSecond()));
+        return report;
+    }
+
+    private List<Long> persistBatch(List<CreateDocumentRequest> batch, Map<String, Long> tagIds) {
+        return persistBatch(batch, tagIds, null);
+    }
+
+    // Must run inside a transaction; returns the new ids in input order.
+    // "createdAt" (null: now) holds the creation time of each document, null elements meaning now
+    private List<Long> persistBatch(List<CreateDocumentRequest> batch, Map<String, Long> tagIds,
+                                    List<LocalDateTime> createdAt) {
+        List<Long> ids = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            CreateDocumentRequest request = batch.get(i);
+            List<String> tagNames = distinctTagNames(request);
+
+            Document document = new Document();
+            document.setTitle(request.getTitle());
+            document.setCreatedAt(createdAt != null ? createdAt.get(i) : null);
+            // getReference() creates a proxy from the id alone; no SELECT is issued
+            document.setTags(tagNames.stream()
+                    .map(name -> entityManager.getReference(Tag.class, tagIds.get(name)))
+                    .toList());
+            contentPlacement.persist(document, request.getContent(), created -> {
+                entityManager.persist(created);
+                return created;
+            });
+            ids.add(document.getId());
+        }
+        // Only the ids wait for the commit; the documents are read back for indexing afterwards
+        documentIndex.indexCommittedAfterCommit(ids);
+        searchResultCache.invalidateAfterCommit();
+
+        // Send the queued INSERTs as JDBC batches, then drop the entities so the heap stays flat
+        entityManager.flush();
+        entityManager.clear();
+        changeLog.recordCreated(ids);
+        return ids;
+    }
+
+    private Map<String, Long> resolveTags(List<CreateDocumentRequest> batch) {
+        Set<String> names = new LinkedHashSet<>();
+        batch.forEach(request -> names.addAll(distinctTagNames(request)));
+        return tagDictionary.resolve(names);
+    }
+
+    private static List<String> distinctTagNames(CreateDocumentRequest request) {
+        if (request.getTags() == null) {
+            return List.of();
+        }
+        return request.getTags().stream().filter(Objects::nonNull).distinct().toList();
+    }
+
+    private static double perSecond(long count, long elapsedMillis) {
+        return elapsedMillis == 0 ? count * 1000.0 : count * 1000.0 / elapsedMillis;
+    }
+}
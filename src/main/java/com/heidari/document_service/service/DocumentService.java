@@ -1,31 +1,119 @@
 package com.heidari.document_service.service;
 
+import com.heidari.document_service.changes.ChangeLog;
+import com.heidari.document_service.config.SearchProperties;
+import com.heidari.document_service.config.SqlStatementCounter;
 import com.heidari.document_service.dto.CreateDocumentRequest;
+import com.heidari.document_service.dto.DocumentSummary;
+import com.heidari.document_service.dto.SearchPage;
+import com.heidari.document_service.dto.Suggestion;
+import com.heidari.document_service.dto.TagFacets;
+import com.heidari.document_service.metrics.DocumentMetrics;
+import com.heidari.document_service.metrics.DocumentMetrics.CreatePhase;
+import com.heidari.document_service.metrics.DocumentMetrics.SearchPhase;
+import com.heidari.document_service.model.ContentStorage;
 import com.heidari.document_service.model.Document;
 import com.heidari.document_service.model.Tag;
 import com.heidari.document_service.repository.DocumentRepository;
 import com.heidari.document_service.repository.DocumentSpecification;
 import com.heidari.document_service.repository.TagRepository;
+import com.heidari.document_service.search.DocumentIndex;
+import com.heidari.document_service.search.SearchCoalescer;
+import com.heidari.document_service.search.SearchCursor;
+import com.heidari.document_service.search.SearchMatch;
+import com.heidari.document_service.search.SearchMode;
+import com.heidari.document_service.search.SearchResultCache;
+import com.heidari.document_service.search.SnippetHighlighter;
+import com.heidari.document_service.search.TagExpression;
+import com.heidari.document_service.search.Tokenizer;
+import com.heidari.document_service.search.TrigramIndex;
+import com.heidari.document_service.storage.ContentBody;
+import com.heidari.document_service.storage.ContentPlacement;
+import com.heidari.document_service.storage.ContentStore;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class DocumentService {
 
+    private static final Logger log = LoggerFactory.getLogger(DocumentService.class);
+
+    // Keyset order of search results; the id breaks ties between equal timestamps
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
+    // Snippet window: characters kept before the first match, and total excerpt length
+    private static final int SNIPPET_LEAD = 60;
+    private static final int SNIPPET_LENGTH = 200;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     private final DocumentRepository documentRepository;
     private final TagRepository tagRepository;
+    private final TagDictionary tagDictionary;
+    private final DocumentIndex documentIndex;
+    private final SearchProperties searchProperties;
+    private final SqlStatementCounter statementCounter;
+    private final SearchResultCache searchResultCache;
+    private final DocumentMetrics metrics;
+    private final ContentStore contentStore;
+    private final ContentPlacement contentPlacement;
+    private final ChangeLog changeLog;
+    private final TransactionTemplate readOnlyTransaction;
 
     /*
      * Educational Note:
      * As of Spring 4.3+, classes with a single constructor use "Implicit Constructor Injection".
      * The @Autowired annotation is optional. Using 'final' fields promotes immutability and testability.
      */
-    public DocumentService(DocumentRepository documentRepository, TagRepository tagRepository) {
+    public DocumentService(DocumentRepository documentRepository, TagRepository tagRepository,
+                           TagDictionary tagDictionary, DocumentIndex documentIndex,
+                           SearchProperties searchProperties, SqlStatementCounter statementCounter,
+                           SearchResultCache searchResultCache, DocumentMetrics metrics,
+                           ContentStore contentStore, ContentPlacement contentPlacement, ChangeLog changeLog,
+                           PlatformTransactionManager transactionManager) {
         this.documentRepository = documentRepository;
         this.tagRepository = tagRepository;
+        this.tagDictionary = tagDictionary;
+        this.documentIndex = documentIndex;
+        this.searchProperties = searchProperties;
+        this.statementCounter = statementCounter;
+        this.searchResultCache = searchResultCache;
+        this.metrics = metrics;
+        this.contentStore = contentStore;
+        this.contentPlacement = contentPlacement;
+        this.changeLog = changeLog;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     /**
@@ -33,47 +121,742 @@ public class DocumentService {
      * Educational Note on @Transactional:
      * This annotation guarantees Atomicity. If the document save fails, any changes made to Tags
      * within this method will be rolled back, preventing orphaned data or inconsistencies.
+     * Brand-new tags are inserted by the TagDictionary in this same transaction, so they roll back too.
+     *
+     * <p>
+     * Bodies longer than "document.storage.inline-threshold" are written to the {@link ContentStore}
+     * instead of the "content" column (the file is removed again if the transaction rolls back);
+     * shorter ones may be compressed (see {@link ContentPlacement}, shared with the bulk paths).
+     * The creation is recorded in the change log in the same transaction (see {@link ChangeLog}).
      *
      * @param request The DTO containing document details.
      * @return The ID of the persisted document.
      */
     @Transactional
     public Long createDocument(CreateDocumentRequest request) {
+        long statementsBefore = statementCounter.currentThreadCount();
+        Map<String, Long> tagIds = resolveTags(request.getTags());
+        String content = request.getContent();
+        Document document = newDocument(request.getTitle(), tagIds);
 
+        // Flushing here (instead of at commit) makes the INSERTs part of the measured phase
+        Document savedDoc = metrics.createPhase(CreatePhase.INSERT).record(() -> {
+            // The id is assigned by save() (sequence), so a body file exists before the row is inserted
+            Document saved = contentPlacement.persist(document, content, documentRepository::save);
+            documentRepository.flush();
+            changeLog.recordCreated(List.of(saved.getId()));
+            return saved;
+        });
+        documentIndex.indexAfterCommit(savedDoc.getId(), savedDoc.getCreatedAt(),
+                request.getTitle(), content, new ArrayList<>(tagIds.keySet()));
+        searchResultCache.invalidateAfterCommit();
+
+        metrics.recordCreateStatements(statementCounter.currentThreadCount() - statementsBefore);
+        return savedDoc.getId();
+    }
+
+    /**
+     * Creates a document whose body is read from a stream (e.g. a raw HTTP request body) straight
+     * into the {@link ContentStore}, whatever its size: the body never exists as a String.
+     *
+     * @param title   The title.
+     * @param tags    Tag names (may be null).
+     * @param content The body as UTF-8 bytes; read to the end but not closed.
+     * @return The ID of the persisted document.
+     * @throws IOException If reading the body or writing its file fails (nothing is stored then).
+     */
+    @Transactional(rollbackFor = IOException.class)
+    public Long createDocument(String title, List<String> tags, InputStream content) throws IOException {
+        long statementsBefore = statementCounter.currentThreadCount();
+        Map<String, Long> tagIds = resolveTags(tags);
+
+        Document saved = documentRepository.save(newDocument(title, tagIds));
+        contentPlacement.writeFile(saved, content);
+        metrics.createPhase(CreatePhase.INSERT).record(() -> {
+            documentRepository.flush();
+            changeLog.recordCreated(List.of(saved.getId()));
+        });
+
+        documentIndex.indexFileAfterCommit(saved.getId(), saved.getCreatedAt(), title,
+                new ArrayList<>(tagIds.keySet()));
+        searchResultCache.invalidateAfterCommit();
+
+        metrics.recordCreateStatements(statementCounter.currentThreadCount() - statementsBefore);
+        return saved.getId();
+    }
+
+    // Resolves names to ids from the dictionary; only unknown names reach the database.
+    // Duplicates in the input (e.g. ["Java", "Java"]) are collapsed by the dictionary.
+    private Map<String, Long> resolveTags(List<String> tags) {
+        return metrics.createPhase(CreatePhase.TAGS).record(() ->
+                (tags != null) ? tagDictionary.resolve(tags) : Map.<String, Long>of());
+    }
+
+    private Document newDocument(String title, Map<String, Long> tagIds) {
+        // getReferenceById() builds a proxy from the id alone, without a SELECT
         List<Tag> finalTags = new ArrayList<>();
+        tagIds.values().forEach(id -> finalTags.add(tagRepository.getReferenceById(id)));
 
-        if (request.getTags() != null) {
-            for (String tagName : request.getTags()) {
+        Document document = new Document();
+        document.setTitle(title);
+        document.setTags(finalTags);
+        return document;
+    }
+
+    /**
+     * Performs advanced search based on query and mode, one page at a time.
+     * <p>
+     * By default the query is answered by the in-memory search index, and only the rows of the
+     * requested page are loaded by id. The Specification (LIKE) path is used when it is configured
+     * ("document.search.engine=specification"), while the index is still being built,
+     * or for an empty query (which matches everything).
+     * <p>
+     * Results are ordered newest first and paginated with a keyset cursor (see {@link SearchCursor}),
+     * so every page costs the same, however deep it is.
+     * <p>
+     * Educational Note on two-phase execution:
+     * Phase 1 selects only the ids of the page (no JOIN, no DISTINCT over wide rows; tag matches
+     * are EXISTS subqueries). Phase 2 loads exactly those ids with their tags fetched in the same
+     * query. A page therefore costs a constant number of statements, whatever its size, instead of
+     * one extra query per result when the lazy "tags" collection is serialized.
+     * <p>
+     * Pages are cached (see {@link SearchResultCache}) until the next document is committed.
+     * <p>
+     * Identical concurrent searches that miss the cache run once (see {@link SearchCoalescer}). The read-only
+     * transaction (which a configured read replica serves, see
+     * {@link com.heidari.document_service.config.ReplicaRoutingDataSource}) is therefore begun only by the
+     * caller that runs the search: callers waiting for its result, or served from the cache, hold no connection.
+     *
+     * @param query  The text to search for.
+     * @param mode   The search scope (title, content, tag, all).
+     * @param cursor The "nextCursor" of the previous page, or null for the first page.
+     * @param limit  The requested page size (null for the default; clamped to the maximum).
+     * @return One page of matching documents.
+     */
+    public SearchPage<Document> searchDocuments(String query, String mode, String cursor, Integer limit) {
+        return searchDocuments(query, mode, null, cursor, limit, false);
+    }
+
+    /**
+     * Like {@link #searchDocuments(String, String, String, Integer)}, with two options:
+     * <p>
+     * "tags" restricts the results to a boolean tag expression such as {@code java AND NOT legacy}
+     * (see {@link TagExpression}); with tags, an empty query matches every document. The index evaluates
+     * it on tag bitmaps, the Specification path with EXISTS subqueries.
+     * <p>
+     * With "ranked", the result is instead the single page of the "limit" most relevant matches, best first
+     * (BM25, see {@link com.heidari.document_service.search.InvertedIndex#searchRanked}), without a next cursor.
+     * Relevance needs the index: on the Specification path a ranked search returns the newest matches.
+     *
+     * @param tags The tag expression (null or blank for none).
+     * @throws IllegalArgumentException If the tag expression is invalid, or a cursor is passed to a ranked search.
+     */
+    public SearchPage<Document> searchDocuments(String query, String mode, String tags, String cursor, Integer limit,
+                                                boolean ranked) {
+        requireNoCursorWhenRanked(cursor, ranked);
+        TagExpression tagExpression = TagExpression.parse(tags);
+        return search(query, mode, tagExpression, cursor, limit, useIndex(query, tagExpression), ranked);
+    }
 
-                // Logic: Retrieve existing tag by name OR create a new one if it doesn't exist.
-                Tag tag = tagRepository.findByName(tagName)
-                        .orElseGet(() -> tagRepository.save(new Tag(tagName)));
+    // The caller decides the path once, so the cache key and the search always agree on it
+    private SearchPage<Document> search(String query, String mode, TagExpression tags, String cursor, Integer limit,
+                                        boolean indexed, boolean ranked) {
+        SearchResultCache.Key key = new SearchResultCache.Key(normalize(query, indexed), SearchMode.from(mode),
+                StringUtils.hasText(cursor) ? cursor : null, pageSize(limit), indexed, ranked, SearchMatch.TERMS, 0,
+                tags);
+        return searchResultCache.get(key, () -> readOnlyTransaction.execute(status ->
+                searchUncached(query, mode, tags, cursor, limit, indexed, ranked)));
+    }
+
+    private SearchPage<Document> searchUncached(String query, String mode, TagExpression tags, String cursor,
+                                                Integer limit, boolean indexed, boolean ranked) {
+        long statementsBefore = statementCounter.currentThreadCount();
+        SearchMode searchMode = SearchMode.from(mode);
+        SearchCursor after = StringUtils.hasText(cursor) ? SearchCursor.decode(cursor) : null;
+        int pageSize = pageSize(limit);
+
+        // Phase 1: ids of the page. Fetch one extra id: if it exists, there is a next page
+        long[] ids;
+        if (indexed) {
+            ids = metrics.searchPhase(searchMode, SearchPhase.INDEX).record(() -> ranked
+                    ? documentIndex.searchRanked(query, searchMode, tags, pageSize)
+                    : documentIndex.searchPage(query, searchMode, tags, after, pageSize + 1));
+        } else {
+            Specification<Document> filters = metrics.searchPhase(searchMode, SearchPhase.BUILD).record(() ->
+                    DocumentSpecification.matchesTags(tags).and(DocumentSpecification.afterCursor(after)));
+            ids = metrics.searchPhase(searchMode, SearchPhase.IDS).record(() ->
+                    findVerifiedIds(query, mode, filters, ranked ? pageSize : pageSize + 1));
+        }
+
+        // Phase 2: the rows themselves, tags included
+        List<Document> documents = metrics.searchPhase(searchMode, SearchPhase.HYDRATE).record(() -> findAllInOrder(ids));
+
+        long statements = statementCounter.currentThreadCount() - statementsBefore;
+        metrics.recordSearchStatements(searchMode, statements);
+        log.debug("Search query='{}' mode={} returned {} rows with {} SQL statements",
+                query, mode, documents.size(), statements);
 
-                // Prevent duplicates if the input list contains the same tag twice (e.g. ["Java", "Java"])
-                if (!finalTags.contains(tag)) {
-                    finalTags.add(tag);
+        if (ranked) {
+            return new SearchPage<>(documents, null);
+        }
+        return page(documents, pageSize);
+    }
+
+    /**
+     * Finds documents whose fields contain the query as a whole, case-insensitively: exactly
+     * ({@code distance} 0, the semantics of the Specification path's {@code LIKE '%query%'}) or with up to
+     * {@code distance} typos (insertions, deletions or substitutions). Pages are newest first, with the
+     * same keyset cursor as {@link #searchDocuments}.
+     * <p>
+     * Educational Note on filter and verify:
+     * The trigram index (see {@link com.heidari.document_service.search.TrigramIndex}) returns candidates:
+     * a superset of the matches, newest first. Candidates are loaded in growing chunks and checked against
+     * their text until the page is full, so a page costs a few chunks however many documents exist.
+     * Verification sees every body: compressed ones are decoded, file-backed ones (which have no trigrams and
+     * are therefore always candidates of content searches) are streamed from their file.
+     * <p>
+     * Exact queries the trigram index cannot narrow down (under three characters, or with the trigram
+     * index disabled or still being built) are answered by the Specification path.
+     *
+     * @param query    The text to find (not tokenized; "%" and "_" are literal characters).
+     * @param mode     The search scope (title, content, tag, all).
+     * @param distance The maximum number of typos, from 0 to "document.search.trigram.max-distance".
+     * @param cursor   The "nextCursor" of the previous page, or null for the first page.
+     * @param limit    The requested page size (null for the default; clamped to the maximum).
+     * @return One page of matching documents.
+     * @throws IllegalArgumentException If the distance is out of range, or a fuzzy query is too short
+     *                                  (3 * (distance + 1) characters) or cannot be served.
+     */
+    public SearchPage<Document> searchSubstring(String query, String mode, int distance, String cursor,
+                                                Integer limit) {
+        int maxDistance = searchProperties.getTrigram().getMaxDistance();
+        if (distance < 0 || distance > maxDistance) {
+            throw new IllegalArgumentException("distance must be between 0 and " + maxDistance);
+        }
+        boolean trigrams = documentIndex.isTrigramReady() && StringUtils.hasText(query);
+        if (!trigrams || (distance == 0 && query.length() < 3)) {
+            if (distance > 0) {
+                throw new IllegalArgumentException("Fuzzy search is not available for this query");
+            }
+            return search(query, mode, null, cursor, limit, false, false);
+        }
+        if (query.length() < 3 * (distance + 1)) {
+            throw new IllegalArgumentException("Fuzzy queries with distance " + distance + " need at least "
+                    + 3 * (distance + 1) + " characters");
+        }
+
+        SearchResultCache.Key key = new SearchResultCache.Key(query.toLowerCase(Locale.ROOT), SearchMode.from(mode),
+                StringUtils.hasText(cursor) ? cursor : null, pageSize(limit), true, false,
+                distance == 0 ? SearchMatch.SUBSTRING : SearchMatch.FUZZY, distance, null);
+        return searchResultCache.get(key, () -> readOnlyTransaction.execute(status ->
+                searchTrigrams(query, mode, distance, cursor, limit)));
+    }
+
+    private SearchPage<Document> searchTrigrams(String query, String mode, int distance, String cursor,
+                                                Integer limit) {
+        long statementsBefore = statementCounter.currentThreadCount();
+        SearchMode searchMode = SearchMode.from(mode);
+        SearchCursor after = StringUtils.hasText(cursor) ? SearchCursor.decode(cursor) : null;
+        int pageSize = pageSize(limit);
+        String pattern = query.toLowerCase(Locale.ROOT);
+
+        long[] candidates = metrics.searchPhase(searchMode, SearchPhase.INDEX).record(() -> distance == 0
+                ? documentIndex.substringCandidates(query, searchMode, after)
+                : documentIndex.fuzzyCandidates(query, distance, searchMode, after));
+
+        // Verify: one extra match tells whether there is a next page
+        List<Document> matches = metrics.searchPhase(searchMode, SearchPhase.HYDRATE).record(() -> {
+            List<Document> verified = new ArrayList<>(pageSize + 1);
+            int chunk = pageSize + 1;
+            for (int from = 0; from < candidates.length && verified.size() <= pageSize; from += chunk, chunk *= 2) {
+                for (Document document : findAllInOrder(
+                        Arrays.copyOfRange(candidates, from, Math.min(from + chunk, candidates.length)))) {
+                    if (verified.size() <= pageSize && containsText(document, searchMode, pattern, distance)) {
+                        verified.add(document);
+                    }
                 }
             }
+            return verified;
+        });
+
+        long statements = statementCounter.currentThreadCount() - statementsBefore;
+        metrics.recordSearchStatements(searchMode, statements);
+        log.debug("Substring search query='{}' mode={} distance={} verified {} of {} candidates with {} SQL statements",
+                query, mode, distance, matches.size(), candidates.length, statements);
+        return page(matches, pageSize);
+    }
+
+    // Turns "pageSize + 1" results into a page, with a cursor if the extra one exists
+    private static SearchPage<Document> page(List<Document> documents, int pageSize) {
+        if (documents.size() <= pageSize) {
+            return new SearchPage<>(documents, null);
         }
+        List<Document> items = documents.subList(0, pageSize);
+        Document last = items.get(pageSize - 1);
+        return new SearchPage<>(List.copyOf(items), SearchCursor.of(last.getCreatedAt(), last.getId()).encode());
+    }
 
-        Document document = new Document();
-        document.setTitle(request.getTitle());
-        document.setContent(request.getContent());
-        document.setTags(finalTags);
+    private boolean containsText(Document document, SearchMode mode, String pattern, int distance) {
+        boolean content = mode == SearchMode.CONTENT || mode == SearchMode.ALL;
+        return titleOrTagsContainText(document, mode, pattern, distance)
+                || (content && contentContainsText(document, pattern, distance));
+    }
 
-        Document savedDoc = documentRepository.save(document);
+    private static boolean titleOrTagsContainText(Document document, SearchMode mode, String pattern, int distance) {
+        boolean title = mode == SearchMode.TITLE || mode == SearchMode.ALL;
+        boolean tags = mode == SearchMode.TAG || mode == SearchMode.ALL;
+        return (title && containsText(document.getTitle(), pattern, distance))
+                || (tags && document.getTags().stream().anyMatch(tag -> containsText(tag.getName(), pattern, distance)));
+    }
 
-        return savedDoc.getId();
+    // A file-backed body is streamed from its file; any other is in the entity (decoded if compressed)
+    private boolean contentContainsText(Document document, String pattern, int distance) {
+        if (document.getContentStorage() != ContentStorage.FILE) {
+            return containsText(document.getContent(), pattern, distance);
+        }
+        try (Reader reader = contentStore.openReader(document.getId())) {
+            return TrigramIndex.containsApproximately(reader, pattern, distance);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean containsText(String text, String pattern, int distance) {
+        return text != null && TrigramIndex.containsApproximately(text.toLowerCase(Locale.ROOT), pattern, distance);
+    }
+
+    /**
+     * Same search and paging as {@link #searchDocuments}, but returns lightweight summaries.
+     * <p>
+     * Educational Note on projections:
+     * Loading entities selects every column, including the (potentially huge) "content" TEXT column.
+     * Here the page is resolved in three small queries instead: matching ids (from the index, or an
+     * id-only query), the summary columns, and the tag names. When snippets are requested, the
+     * database cuts a short excerpt around the first match, so the body still never leaves it in full.
+     *
+     * @param query    The text to search for.
+     * @param mode     The search scope (title, content, tag, all).
+     * @param cursor   The "nextCursor" of the previous page, or null for the first page.
+     * @param limit    The requested page size (null for the default; clamped to the maximum).
+     * @param snippets Whether to include a highlighted content excerpt per result.
+     * @return One page of summaries.
+     */
+    @Transactional(readOnly = true)
+    public SearchPage<DocumentSummary> searchSummaries(String query, String mode, String cursor, Integer limit,
+                                                       boolean snippets) {
+        return searchSummaries(query, mode, null, cursor, limit, snippets, false);
+    }
+
+    /**
+     * Like {@link #searchSummaries(String, String, String, Integer, boolean)}, with the tag expression and
+     * ranking options of {@link #searchDocuments(String, String, String, String, Integer, boolean)}.
+     */
+    @Transactional(readOnly = true)
+    public SearchPage<DocumentSummary> searchSummaries(String query, String mode, String tags, String cursor,
+                                                       Integer limit, boolean snippets, boolean ranked) {
+        requireNoCursorWhenRanked(cursor, ranked);
+        TagExpression tagExpression = TagExpression.parse(tags);
+        SearchCursor after = StringUtils.hasText(cursor) ? SearchCursor.decode(cursor) : null;
+        int pageSize = pageSize(limit);
+
+        List<Long> ids;
+        if (useIndex(query, tagExpression)) {
+            SearchMode searchMode = SearchMode.from(mode);
+            ids = Arrays.stream(ranked
+                            ? documentIndex.searchRanked(query, searchMode, tagExpression, pageSize)
+                            : documentIndex.searchPage(query, searchMode, tagExpression, after, pageSize + 1))
+                    .boxed().toList();
+        } else {
+            Specification<Document> filters = DocumentSpecification.matchesTags(tagExpression)
+                    .and(DocumentSpecification.afterCursor(after));
+            ids = Arrays.stream(findVerifiedIds(query, mode, filters, ranked ? pageSize : pageSize + 1))
+                    .boxed().toList();
+        }
+
+        List<DocumentSummary> summaries = findSummariesInOrder(ids, snippets ? Tokenizer.tokenize(query) : null);
+        if (ranked || summaries.size() <= pageSize) {
+            return new SearchPage<>(summaries, null);
+        }
+        List<DocumentSummary> items = List.copyOf(summaries.subList(0, pageSize));
+        DocumentSummary last = items.get(pageSize - 1);
+        return new SearchPage<>(items, SearchCursor.of(last.createdAt(), last.id()).encode());
+    }
+
+    /**
+     * Counts the tags of ALL documents matching a search, for facet navigation ("java (120), spring (45)").
+     * <p>
+     * On the index, the matches become a bitmap and each tag is counted with one bitmap intersection
+     * (see {@link com.heidari.document_service.search.TagBitmaps}); no query reaches the database.
+     * On the Specification path it is one GROUP BY query plus a COUNT; documents whose body LIKE cannot see
+     * (see {@link DocumentSpecification#OUT_OF_ROW}) are checked in memory and added to the counts.
+     *
+     * @param query The text to search for (may be empty: every document matches).
+     * @param mode  The search scope (title, content, tag, all).
+     * @param tags  A tag expression restricting the matches (null or blank for none).
+     * @param limit The maximum number of tags (null for the default page size; clamped to the maximum).
+     * @return The number of matches and their most frequent tags.
+     * @throws IllegalArgumentException If the tag expression is invalid.
+     */
+    @Transactional(readOnly = true)
+    public TagFacets findTagFacets(String query, String mode, String tags, Integer limit) {
+        TagExpression tagExpression = TagExpression.parse(tags);
+        int facetLimit = pageSize(limit);
+        if (searchProperties.getEngine() == SearchProperties.Engine.INDEX && documentIndex.isReady()) {
+            return documentIndex.facets(query, SearchMode.from(mode), tagExpression, facetLimit);
+        }
+        Specification<Document> spec = DocumentSpecification.searchByMode(query, mode)
+                .and(DocumentSpecification.matchesTags(tagExpression));
+        List<List<String>> outOfRowMatches = findOutOfRowContentMatches(query, mode,
+                DocumentSpecification.matchesTags(tagExpression));
+        if (outOfRowMatches.isEmpty()) {
+            List<TagFacets.Facet> facets = documentRepository.countTags(spec, facetLimit).entrySet().stream()
+                    .map(entry -> new TagFacets.Facet(entry.getKey(), entry.getValue()))
+                    .toList();
+            return new TagFacets(documentRepository.count(spec), facets);
+        }
+        // Every count is needed: the extra matches may lift a tag into the top "limit"
+        Map<String, Long> counts = new HashMap<>(documentRepository.countTags(spec, Integer.MAX_VALUE));
+        outOfRowMatches.forEach(tagNames -> tagNames.forEach(name -> counts.merge(name, 1L, Long::sum)));
+        List<TagFacets.Facet> facets = counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(facetLimit)
+                .map(entry -> new TagFacets.Facet(entry.getKey(), entry.getValue()))
+                .toList();
+        return new TagFacets(documentRepository.count(spec) + outOfRowMatches.size(), facets);
+    }
+
+    // The tag names of the documents that match only through a body LIKE cannot see, read in chunks
+    private List<List<String>> findOutOfRowContentMatches(String query, String mode, Specification<Document> filters) {
+        if (!DocumentSpecification.needsVerification(query, mode)) {
+            return List.of();
+        }
+        SearchMode searchMode = SearchMode.from(mode);
+        String pattern = query.toLowerCase(Locale.ROOT);
+        List<Long> ids = documentRepository.findIds(DocumentSpecification.storedOutOfRow().and(filters),
+                NEWEST_FIRST, Integer.MAX_VALUE);
+        int chunkSize = searchProperties.getStreamFetchSize();
+        List<List<String>> matches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            for (Document document : documentRepository.findWithTagsByIdIn(
+                    ids.subList(from, Math.min(from + chunkSize, ids.size())))) {
+                if (!titleOrTagsContainText(document, searchMode, pattern, 0)
+                        && contentContainsText(document, pattern, 0)) {
+                    matches.add(document.getTags().stream().map(Tag::getName).toList());
+                }
+            }
+            entityManager.clear();
+        }
+        return matches;
     }
 
     /**
-     * Performs advanced search based on query and mode.
+     * Suggests titles and tag names starting with a prefix, most frequent first, for type-ahead.
+     * <p>
+     * On the index, each keystroke is a lookup in an in-memory trie (see
+     * {@link com.heidari.document_service.search.SuggestionTrie}) that is updated as documents are indexed,
+     * new tags included; no query reaches the database. On the Specification path it is one
+     * {@code LIKE 'prefix%'} GROUP BY query per type.
+     *
+     * @param prefix The typed text (case-insensitive).
+     * @param mode   "title", "tag" or "all" (both); "content" has no suggestions.
+     * @param limit  The maximum number of suggestions (null for the default; clamped to the maximum page size).
+     * @return Suggestions by descending count; ties are ordered by text.
+     */
+    @Transactional(readOnly = true)
+    public List<Suggestion> suggest(String prefix, String mode, Integer limit) {
+        int requested = (limit != null) ? limit : searchProperties.getSuggest().getDefaultLimit();
+        int suggestionLimit = Math.max(1, Math.min(requested, searchProperties.getMaxPageSize()));
+        SearchMode searchMode = SearchMode.from(mode);
+        if (searchProperties.getEngine() == SearchProperties.Engine.INDEX && documentIndex.isReady()) {
+            return documentIndex.suggest(prefix, searchMode, suggestionLimit);
+        }
+        String pattern = prefix.stripLeading().toLowerCase(Locale.ROOT) + "%";
+        List<Suggestion> suggestions = new ArrayList<>();
+        if (searchMode == SearchMode.TITLE || searchMode == SearchMode.ALL) {
+            documentRepository.suggestTitles(pattern, Limit.of(suggestionLimit)).forEach(row ->
+                    suggestions.add(new Suggestion(row.getText(), "title", row.getCount())));
+        }
+        if (searchMode == SearchMode.TAG || searchMode == SearchMode.ALL) {
+            documentRepository.suggestTags(pattern, Limit.of(suggestionLimit)).forEach(row ->
+                    suggestions.add(new Suggestion(row.getText(), "tag", row.getCount())));
+        }
+        suggestions.sort(Suggestion.BY_COUNT);
+        return (suggestions.size() > suggestionLimit) ? List.copyOf(suggestions.subList(0, suggestionLimit)) : suggestions;
+    }
+
+    /**
+     * @param id The document id.
+     * @return The document with its tags, if it exists.
+     */
+    @Transactional(readOnly = true)
+    public Optional<Document> findDocument(Long id) {
+        return documentRepository.findWithTagsById(id);
+    }
+
+    /**
+     * @param id The document id.
+     * @return Only the body of the document (its bytes, or where its file is), if it exists.
+     */
+    @Transactional(readOnly = true)
+    public Optional<ContentBody> findContent(Long id) {
+        return documentRepository.findContentById(id).map(row -> switch (contentStorage(row)) {
+            case FILE -> ContentBody.file(id, row.getContentLength(), row.getContentChecksum());
+            // Decoded straight to bytes: the text never exists as a String
+            case COMPRESSED -> ContentBody.inline(id, row.getContentCodec()
+                    .decompress(row.getCompressedContent(), Math.toIntExact(row.getContentLength())));
+            case INLINE -> ContentBody.inline(id, row.getContent());
+        });
+    }
+
+    /**
+     * Streams every matching document to the sink, newest first, with flat memory usage.
+     * <p>
+     * Rows are read in chunks of "document.search.stream-fetch-size": from a server-side JDBC
+     * cursor on the Specification path, or by id on the index path. Each entity is detached once the
+     * sink has consumed it, so the persistence context never accumulates the whole result.
+     * The sink is called inside the (read-only) transaction, so lazy associations can be read.
+     *
      * @param query The text to search for.
-     * @param mode The search scope (title, content, tag, all).
-     * @return List of matching documents.
+     * @param mode  The search scope (title, content, tag, all).
+     * @param sink  Receives each document (e.g. writes it to the HTTP response).
+     * @return The number of documents streamed.
      */
-    public List<Document> searchDocuments(String query, String mode) {
-        Specification<Document> spec = DocumentSpecification.searchByMode(query, mode);
-        return documentRepository.findAll(spec);
+    @Transactional(readOnly = true)
+    public long streamDocuments(String query, String mode, Consumer<Document> sink) {
+        int fetchSize = searchProperties.getStreamFetchSize();
+        long count = 0;
+
+        if (useIndex(query)) {
+            long[] ids = documentIndex.searchAll(query, SearchMode.from(mode));
+            for (int from = 0; from < ids.length; from += fetchSize) {
+                List<Document> chunk = findAllInOrder(Arrays.copyOfRange(ids, from, Math.min(from + fetchSize, ids.length)));
+                chunk.forEach(sink);
+                count += chunk.size();
+                entityManager.clear();
+            }
+            return count;
+        }
+
+        // Bodies LIKE cannot see are candidates, checked here before they reach the sink
+        Specification<Document> spec = DocumentSpecification.searchCandidates(query, mode);
+        boolean verify = DocumentSpecification.needsVerification(query, mode);
+        SearchMode searchMode = SearchMode.from(mode);
+        String pattern = verify ? query.toLowerCase(Locale.ROOT) : null;
+        try (Stream<Document> documents = documentRepository.streamAll(spec, NEWEST_FIRST, fetchSize)) {
+            Iterator<Document> iterator = documents.iterator();
+            while (iterator.hasNext()) {
+                Document document = iterator.next();
+                if (!verify || !DocumentSpecification.OUT_OF_ROW.contains(document.getContentStorage())
+                        || containsText(document, searchMode, pattern, 0)) {
+                    sink.accept(document);
+                    count++;
+                }
+                entityManager.detach(document);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Streams the whole corpus to the sink in ascending id order, with the tag names of every document
+     * (the source of GET /documents/export).
+     * <p>
+     * Documents are read from a server-side cursor (see {@link DocumentRepository#streamAll}) in chunks of
+     * "document.search.stream-fetch-size"; the tags of a chunk are read with one query, rather than one per
+     * document or a JOIN that would repeat every body once per tag. Each chunk is detached once the sink has
+     * consumed it, so memory stays flat for any corpus size. A FILE body is not loaded: the sink reads it
+     * from the {@link ContentStore} (it is called inside the read-only transaction).
+     *
+     * @param afterId Only documents with a greater id (0 for all): resumes an interrupted export.
+     * @param sink    Receives each document and its tag names.
+     * @return The number of documents streamed.
+     */
+    @Transactional(readOnly = true)
+    public long exportDocuments(long afterId, BiConsumer<Document, List<String>> sink) {
+        int fetchSize = searchProperties.getStreamFetchSize();
+        long started = System.nanoTime();
+        long count = 0;
+
+        try (Stream<Document> documents = documentRepository.streamAll(
+                DocumentSpecification.idAfter(afterId), Sort.by("id"), fetchSize)) {
+            Iterator<Document> iterator = documents.iterator();
+            List<Document> chunk = new ArrayList<>(fetchSize);
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == fetchSize || !iterator.hasNext()) {
+                    exportChunk(chunk, sink);
+                    count += chunk.size();
+                    chunk.clear();
+                }
+            }
+        }
+
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        log.info("Export finished: {} documents after id {} in {} ms ({} docs/s)", count, afterId, elapsedMillis,
+                Math.round(elapsedMillis == 0 ? count * 1000.0 : count * 1000.0 / elapsedMillis));
+        return count;
+    }
+
+    private void exportChunk(List<Document> chunk, BiConsumer<Document, List<String>> sink) {
+        Map<Long, List<String>> tagNames = new HashMap<>();
+        for (DocumentRepository.TagNameRow row : documentRepository.findTagNamesByDocumentIdIn(
+                chunk.stream().map(Document::getId).toList())) {
+            tagNames.computeIfAbsent(row.getDocumentId(), id -> new ArrayList<>()).add(row.getName());
+        }
+        for (Document document : chunk) {
+            sink.accept(document, tagNames.getOrDefault(document.getId(), List.of()));
+            entityManager.detach(document);
+        }
+    }
+
+    // Rows written before the column existed have no storage kind: their body is inline
+    private static ContentStorage contentStorage(DocumentRepository.ContentRow row) {
+        return (row.getContentStorage() != null) ? row.getContentStorage() : ContentStorage.INLINE;
+    }
+
+    // A ranked result is a single page: there is no "after" in an order that changes with every commit
+    private static void requireNoCursorWhenRanked(String cursor, boolean ranked) {
+        if (ranked && StringUtils.hasText(cursor)) {
+            throw new IllegalArgumentException("Ranked searches return a single page; cursor is not supported");
+        }
+    }
+
+    private boolean useIndex(String query) {
+        return useIndex(query, null);
+    }
+
+    // A tag expression alone (no text) is also answered by the index, from its tag bitmaps
+    private boolean useIndex(String query, TagExpression tags) {
+        return searchProperties.getEngine() == SearchProperties.Engine.INDEX
+                && documentIndex.isReady()
+                && (StringUtils.hasText(query) || tags != null);
+    }
+
+    // Cache key form of the query: the index only sees terms, the LIKE path sees the lower-cased text
+    private static String normalize(String query, boolean indexed) {
+        if (query == null) {
+            return "";
+        }
+        return indexed ? String.join(" ", Tokenizer.tokenize(query)) : query.toLowerCase(Locale.ROOT);
+    }
+
+    private int pageSize(Integer limit) {
+        int requested = (limit != null) ? limit : searchProperties.getDefaultPageSize();
+        return Math.max(1, Math.min(requested, searchProperties.getMaxPageSize()));
+    }
+
+    /*
+     * Phase 1 of the Specification path: ids of matches, newest first.
+     * LIKE cannot see bodies kept outside the "content" column (see DocumentSpecification#OUT_OF_ROW), so for
+     * content searches such documents are candidates: those among the ids are loaded and checked in memory
+     * (inline matches cost no extra statement), and more ids are fetched (twice as many each round) until
+     * "limit" matches are found or the candidates run out.
+     */
+    private long[] findVerifiedIds(String query, String mode, Specification<Document> filters, int limit) {
+        Specification<Document> spec = DocumentSpecification.searchCandidates(query, mode).and(filters);
+        if (!DocumentSpecification.needsVerification(query, mode)) {
+            return documentRepository.findIds(spec, NEWEST_FIRST, limit).stream().mapToLong(Long::longValue).toArray();
+        }
+        SearchMode searchMode = SearchMode.from(mode);
+        String pattern = query.toLowerCase(Locale.ROOT);
+        Set<Long> checked = new HashSet<>();
+        Set<Long> rejected = new HashSet<>();
+        for (int fetch = limit; ; fetch = (int) Math.min(2L * fetch, Integer.MAX_VALUE)) {
+            Map<Long, ContentStorage> candidates = documentRepository.findIdsWithStorage(spec, NEWEST_FIRST, fetch);
+            List<Long> unchecked = candidates.entrySet().stream()
+                    .filter(entry -> DocumentSpecification.OUT_OF_ROW.contains(entry.getValue()))
+                    .map(Map.Entry::getKey)
+                    .filter(id -> !checked.contains(id))
+                    .toList();
+            if (!unchecked.isEmpty()) {
+                for (Document document : documentRepository.findWithTagsByIdInAndContentStorageIn(unchecked,
+                        DocumentSpecification.OUT_OF_ROW)) {
+                    if (!containsText(document, searchMode, pattern, 0)) {
+                        rejected.add(document.getId());
+                    }
+                }
+                checked.addAll(unchecked);
+            }
+            long[] verified = candidates.keySet().stream().filter(id -> !rejected.contains(id))
+                    .mapToLong(Long::longValue).limit(limit).toArray();
+            if (verified.length >= limit || candidates.size() < fetch) {
+                return verified;
+            }
+        }
+    }
+
+    // Builds summaries for the ids, in the same order; "terms" is null when no snippet is wanted
+    private List<DocumentSummary> findSummariesInOrder(List<Long> ids, List<String> terms) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, List<String>> tagsById = new HashMap<>();
+        for (DocumentRepository.TagNameRow row : documentRepository.findTagNamesByDocumentIdIn(ids)) {
+            tagsById.computeIfAbsent(row.getDocumentId(), key -> new ArrayList<>()).add(row.getName());
+        }
+
+        Map<Long, DocumentSummary> byId = new HashMap<>();
+        if (terms == null) {
+            for (DocumentRepository.SummaryRow row : documentRepository.findSummariesByIdIn(ids)) {
+                byId.put(row.getId(), summary(row, tagsById, null));
+            }
+        } else {
+            String anchor = SnippetHighlighter.anchorTerm(terms);
+            for (DocumentRepository.SnippetRow row :
+                    documentRepository.findSummariesWithSnippetByIdIn(ids, anchor, SNIPPET_LEAD, SNIPPET_LENGTH)) {
+                // The database can only cut inline bodies; the others are cut here, from the body itself
+                String excerpt = DocumentSpecification.OUT_OF_ROW.contains(row.getContentStorage())
+                        ? excerpt(row.getId(), row.getContentStorage(), anchor)
+                        : row.getSnippet();
+                byId.put(row.getId(), summary(row, tagsById, SnippetHighlighter.highlight(excerpt, terms)));
+            }
+        }
+
+        List<DocumentSummary> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            DocumentSummary summary = byId.get(id);
+            if (summary != null) {
+                ordered.add(summary);
+            }
+        }
+        return ordered;
+    }
+
+    private String excerpt(Long id, ContentStorage storage, String anchor) {
+        try (Reader reader = (storage == ContentStorage.FILE)
+                ? contentStore.openReader(id)
+                : new StringReader(documentRepository.findContentById(id).map(row -> row.getContentCodec()
+                        .decompressString(row.getCompressedContent(), Math.toIntExact(row.getContentLength())))
+                        .orElse(""))) {
+            return SnippetHighlighter.excerpt(reader, anchor, SNIPPET_LEAD, SNIPPET_LENGTH);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static DocumentSummary summary(DocumentRepository.SummaryRow row, Map<Long, List<String>> tagsById,
+                                           String snippet) {
+        return new DocumentSummary(row.getId(), row.getTitle(), row.getCreatedAt(),
+                tagsById.getOrDefault(row.getId(), List.of()), snippet);
+    }
+
+    // Loads the ids (with tags) in one query; the database returns rows in arbitrary order, so restore ours
+    private List<Document> findAllInOrder(long[] ids) {
+        if (ids.length == 0) {
+            return List.of();
+        }
+        Map<Long, Document> byId = new HashMap<>();
+        for (Document document : documentRepository.findWithTagsByIdIn(Arrays.stream(ids).boxed().toList())) {
+            byId.put(document.getId(), document);
+        }
+        List<Document> ordered = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            Document document = byId.get(id);
+            if (document != null) {
+                ordered.add(document);
+            }
+        }
+        return ordered;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,13 @@
+package com.heidari.document_service.service;
+
+/**
+ * Thrown when another import has moved a checkpoint since this one read it, i.e. two imports run under
+ * the same name. Mapped to 409 Conflict; the transaction that detected it has been rolled back.
+ */
+public class ImportConflictException extends RuntimeException {
+
+    public ImportConflictException(String checkpoint, Throwable cause) {
+        super("Another import is running under checkpoint '" + checkpoint + "'; retry once it has finished",
+                cause);
+    }
+}
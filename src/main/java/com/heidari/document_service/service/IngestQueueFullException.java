@@ -0,0 +1,17 @@
+package com.heidari.document_service.service;
+
+/**
+ * Thrown when the asynchronous ingestion queue cannot take another document.
+ * Mapped to 429 Too Many Requests; the client should retry after a short delay.
+ */
+public class IngestQueueFullException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public IngestQueueFullException(int capacity, int retryAfterSeconds) {
+        super("Ingestion queue is full (" + capacity + " documents); retry later");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() { return retryAfterSeconds; }
+}
@@ -0,0 +1,179 @@
+package com.heidari.document_service.service;
+
+import com.heidari.document_service.model.Tag;
+import com.heidari.document_service.repository.TagRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A process-wide cache of tag name to tag id.
+ * <p>
+ * Tags are a small, hot and append-only set, so after warm-up almost every lookup is
+ * answered from memory and creating a document with known tags needs no tag query at all.
+ * <p>
+ * Educational Note on concurrency:
+ * - Reads are lock-free ({@link ConcurrentHashMap#get}).
+ * - Unknown names are inserted with {@code INSERT ... ON CONFLICT DO NOTHING} followed by a SELECT,
+ *   so two writers (even in different JVMs) racing on the same new name can no longer fail on
+ *   the UNIQUE constraint, as the old "findByName, then save" sequence did.
+ * - Inside a transaction, unknown names are inserted in that transaction, and their ids reach the
+ *   cache only after it commits (until then they are kept with the transaction, so its later batches
+ *   do not upsert them again). A rollback takes the new tags with it, and the cache only ever holds
+ *   ids of committed rows. The upsert must not run in a transaction of its own (REQUIRES_NEW): that
+ *   would take a second pooled connection while the caller holds its first, and N concurrent writers
+ *   with a pool of N connections would all wait for one another until the connection timeout.
+ *   A writer racing on a name another open transaction has inserted waits for that transaction in
+ *   the database. Each upsert inserts its names in sorted order, so two writers of the same new names
+ *   lock them in the same order; writers whose transactions span several upserts can still deadlock,
+ *   which the database detects by aborting one of them.
+ * - Outside a transaction, the upsert gets its own, and inserts are serialized per lock stripe
+ *   (name hash), so concurrent requests for the same new tag produce one upsert instead of many.
+ */
+@Component
+public class TagDictionary implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(TagDictionary.class);
+    private static final int STRIPES = 64;
+
+    private final ConcurrentHashMap<String, Long> idsByName = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    private final TagRepository tagRepository;
+    private final TransactionTemplate transaction;
+
+    public TagDictionary(TagRepository tagRepository, PlatformTransactionManager transactionManager) {
+        this.tagRepository = tagRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Warms the cache from the "tag" table at startup.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (Tag tag : tagRepository.findAll()) {
+            idsByName.put(tag.getName(), tag.getId());
+        }
+        log.info("Tag dictionary warmed with {} tags", idsByName.size());
+    }
+
+    /**
+     * Resolves tag names to ids, creating the tags that do not exist yet.
+     * Known names cost no database access; all unknown names share one upsert and one query.
+     *
+     * @param names Tag names (nulls and duplicates are ignored).
+     * @return Name to id, in the order the names were given.
+     */
+    public Map<String, Long> resolve(Collection<String> names) {
+        Map<String, Long> resolved = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String name : names) {
+            if (name == null || resolved.containsKey(name)) {
+                continue;
+            }
+            Long id = idsByName.get(name);
+            resolved.put(name, id);
+            if (id == null) {
+                missing.add(name);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            Map<String, Long> inserted = insertIfAbsent(missing);
+            missing.forEach(name -> resolved.put(name, inserted.get(name)));
+        }
+        return resolved;
+    }
+
+    /** @return The number of cached tags. */
+    public int size() {
+        return idsByName.size();
+    }
+
+    private Map<String, Long> insertIfAbsent(List<String> names) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isSynchronizationActive()) {
+            return insertInTransaction(names);
+        }
+
+        // Lock the stripes in ascending order so that two callers can never deadlock
+        TreeSet<Integer> stripeIndexes = new TreeSet<>();
+        names.forEach(name -> stripeIndexes.add(stripeOf(name)));
+        stripeIndexes.forEach(i -> stripes[i].lock());
+        try {
+            // Another thread may have inserted some of the names while we were waiting
+            List<String> stillMissing = names.stream().filter(name -> !idsByName.containsKey(name)).toList();
+            if (!stillMissing.isEmpty()) {
+                List<Tag> tags = transaction.execute(status -> upsert(stillMissing));
+                Objects.requireNonNull(tags).forEach(tag -> idsByName.put(tag.getName(), tag.getId()));
+            }
+
+            Map<String, Long> ids = new LinkedHashMap<>();
+            names.forEach(name -> ids.put(name, idsByName.get(name)));
+            return ids;
+        } finally {
+            stripeIndexes.descendingSet().forEach(i -> stripes[i].unlock());
+        }
+    }
+
+    // Upserts in the caller's transaction; the ids are cached once it has committed
+    private Map<String, Long> insertInTransaction(List<String> names) {
+        PendingTags pending = TransactionSynchronizationManager.getSynchronizations().stream()
+                .filter(synchronization -> synchronization instanceof PendingTags)
+                .map(PendingTags.class::cast)
+                .findFirst()
+                .orElseGet(() -> {
+                    PendingTags registered = new PendingTags();
+                    TransactionSynchronizationManager.registerSynchronization(registered);
+                    return registered;
+                });
+
+        List<String> stillMissing = names.stream().filter(name -> !pending.idsByName.containsKey(name)).toList();
+        if (!stillMissing.isEmpty()) {
+            upsert(stillMissing).forEach(tag -> pending.idsByName.put(tag.getName(), tag.getId()));
+        }
+        Map<String, Long> ids = new LinkedHashMap<>();
+        names.forEach(name -> ids.put(name, pending.idsByName.get(name)));
+        return ids;
+    }
+
+    private List<Tag> upsert(List<String> names) {
+        tagRepository.insertMissing(names.stream().sorted().toList());
+        return tagRepository.findByNameIn(names);
+    }
+
+    // The tags a transaction has inserted (or found), published to the cache when it commits
+    private final class PendingTags implements TransactionSynchronization {
+
+        private final Map<String, Long> idsByName = new HashMap<>();
+
+        @Override
+        public void afterCommit() {
+            TagDictionary.this.idsByName.putAll(idsByName);
+        }
+    }
+
+    private static int stripeOf(String name) {
+        return Math.floorMod(name.hashCode(), STRIPES);
+    }
+}
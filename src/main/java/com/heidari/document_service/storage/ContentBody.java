@@ -0,0 +1,34 @@
+package com.heidari.document_service.storage;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The body of one document, as needed to send it: either its bytes (inline or compressed content) or the size
+ * and checksum of its file in the {@link ContentStore}.
+ *
+ * @param documentId The document id.
+ * @param inline     The UTF-8 bytes of an inline body, or null if the body is in a file.
+ * @param length     Size in bytes.
+ * @param checksum   SHA-256 of a file-backed body (null for inline bodies).
+ */
+public record ContentBody(long documentId, byte[] inline, long length, String checksum) {
+
+    public static ContentBody inline(long documentId, String content) {
+        byte[] bytes = (content != null) ? content.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        return new ContentBody(documentId, bytes, bytes.length, null);
+    }
+
+    /** An inline body given as its UTF-8 bytes (e.g. just decompressed). */
+    public static ContentBody inline(long documentId, byte[] bytes) {
+        return new ContentBody(documentId, bytes, bytes.length, null);
+    }
+
+    public static ContentBody file(long documentId, long length, String checksum) {
+        return new ContentBody(documentId, null, length, checksum);
+    }
+
+    /** @return True if the bytes are held here rather than in a file. */
+    public boolean isInline() {
+        return inline != null;
+    }
+}
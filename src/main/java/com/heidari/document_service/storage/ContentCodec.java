@@ -0,0 +1,148 @@
+package com.heidari.document_service.storage;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression codecs for document bodies stored in the "compressed_content" column.
+ * <p>
+ * Educational Note on the trade-off:
+ * LZ4 only looks for repeated byte sequences, without entropy coding: it compresses at hundreds of
+ * MB/s and decompresses several times faster, at a moderate ratio. Deflate adds Huffman coding on top,
+ * which roughly halves the result again on our text, but costs about four times more CPU per byte.
+ * {@link ContentCompressor} therefore uses LZ4 for medium bodies (read often, small gain) and
+ * Deflate for large ones (where the bytes saved matter most).
+ * <p>
+ * To add a codec, add a constant: the name is what is stored in the "content_codec" column,
+ * so existing constants must never be renamed.
+ */
+public enum ContentCodec {
+
+    /** LZ4 block format (native implementation when available; input is always bounds-checked on decode). */
+    LZ4 {
+        @Override
+        protected byte[] encode(byte[] raw) {
+            return Lz4.COMPRESSOR.compress(raw);
+        }
+
+        @Override
+        protected byte[] decode(byte[] encoded, int rawLength) {
+            byte[] raw = new byte[rawLength];
+            int length = Lz4.DECOMPRESSOR.decompress(encoded, 0, encoded.length, raw, 0, rawLength);
+            if (length != rawLength) {
+                throw new IllegalStateException("Corrupt LZ4 content: " + length + " bytes instead of " + rawLength);
+            }
+            return raw;
+        }
+    },
+
+    /**
+     * Deflate in the zlib format (with an Adler-32 checksum), at BEST_SPEED: on our text the default
+     * level 6 took six times longer for a ratio only a fifth better (0.18 instead of 0.23).
+     */
+    DEFLATE {
+        @Override
+        protected byte[] encode(byte[] raw) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(raw);
+                deflater.finish();
+                ByteArrayOutputStream encoded = new ByteArrayOutputStream(raw.length / 4 + 64);
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    encoded.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return encoded.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        protected byte[] decode(byte[] encoded, int rawLength) {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(encoded);
+                byte[] raw = new byte[rawLength];
+                int length = 0;
+                while (length < rawLength && !inflater.finished()) {
+                    int inflated = inflater.inflate(raw, length, rawLength - length);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    length += inflated;
+                }
+                if (length != rawLength || !inflater.finished()) {
+                    throw new IllegalStateException("Corrupt Deflate content: " + length + " bytes instead of " + rawLength);
+                }
+                return raw;
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Corrupt Deflate content", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    };
+
+    /**
+     * Receives the duration of every encode and decode (see DocumentMetrics).
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void onCodec(ContentCodec codec, boolean encode, int rawBytes, int encodedBytes, long nanos);
+    }
+
+    // Bodies are decoded lazily by Document.getContent(), outside of any Spring bean, hence a static hook
+    private static volatile Listener listener = (codec, encode, rawBytes, encodedBytes, nanos) -> {};
+
+    /** Installs the listener of all codecs (replacing the previous one). */
+    public static void setListener(Listener codecListener) {
+        listener = codecListener;
+    }
+
+    /**
+     * @param raw The bytes to compress.
+     * @return The encoded bytes.
+     */
+    public byte[] compress(byte[] raw) {
+        long started = System.nanoTime();
+        byte[] encoded = encode(raw);
+        listener.onCodec(this, true, raw.length, encoded.length, System.nanoTime() - started);
+        return encoded;
+    }
+
+    /**
+     * @param encoded   Bytes produced by {@link #compress} of this codec.
+     * @param rawLength The length of the original bytes.
+     * @return The original bytes.
+     * @throws IllegalStateException If the input is corrupt.
+     */
+    public byte[] decompress(byte[] encoded, int rawLength) {
+        long started = System.nanoTime();
+        byte[] raw = decode(encoded, rawLength);
+        listener.onCodec(this, false, raw.length, encoded.length, System.nanoTime() - started);
+        return raw;
+    }
+
+    /** @return The original text of a body compressed from its UTF-8 bytes. */
+    public String decompressString(byte[] encoded, int rawLength) {
+        return new String(decompress(encoded, rawLength), StandardCharsets.UTF_8);
+    }
+
+    protected abstract byte[] encode(byte[] raw);
+
+    protected abstract byte[] decode(byte[] encoded, int rawLength);
+
+    // Created on first use of the LZ4 codec (enum constants are initialized before static fields)
+    private static final class Lz4 {
+        static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+        static final LZ4SafeDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().safeDecompressor();
+    }
+}
@@ -0,0 +1,89 @@
+package com.heidari.document_service.storage;
+
+import com.heidari.document_service.config.SearchProperties;
+import com.heidari.document_service.config.StorageProperties;
+import com.heidari.document_service.model.ContentStorage;
+import com.heidari.document_service.model.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Decides, per document, whether and how an inline body is compressed (see {@link ContentCodec}).
+ * <p>
+ * Policy ("document.storage.compression.*"):
+ * - shorter than "min-size" characters: stored as plain text (compression would save little,
+ *   and short bodies stay visible to LIKE searches and database-side snippets);
+ * - shorter than "deflate-min-size": LZ4;
+ * - longer: Deflate.
+ * A result that does not save at least an eighth of the bytes is discarded and the text stored as is.
+ * <p>
+ * A compressed body has no "content" column, so LIKE cannot see it: the Specification path would have to
+ * decode every compressed row to answer a content search. Bodies are therefore compressed only while content
+ * searches are served by the indexes (the inverted index, and the trigram index for substrings), which
+ * tokenize a body once when it is written. With "document.search.engine=specification" or the trigram index
+ * disabled, new bodies stay plain text; rows compressed earlier are still decoded and verified.
+ */
+@Component
+public class ContentCompressor {
+
+    private static final Logger log = LoggerFactory.getLogger(ContentCompressor.class);
+
+    /**
+     * An encoded body.
+     *
+     * @param codec     The codec used.
+     * @param encoded   The encoded bytes.
+     * @param rawLength The length of the UTF-8 bytes it decodes to.
+     */
+    public record Compressed(ContentCodec codec, byte[] encoded, int rawLength) {}
+
+    private final StorageProperties.Compression settings;
+    private final boolean enabled;
+
+    public ContentCompressor(StorageProperties storageProperties, SearchProperties searchProperties) {
+        this.settings = storageProperties.getCompression();
+        boolean indexed = searchProperties.getEngine() == SearchProperties.Engine.INDEX
+                && searchProperties.getTrigram().isEnabled();
+        this.enabled = settings.isEnabled() && indexed;
+        if (settings.isEnabled() && !indexed) {
+            log.warn("Content compression is off: content searches are not served by the search indexes");
+        }
+    }
+
+    /**
+     * @param content The body.
+     * @return The body compressed with the codec its size calls for, or empty if it is stored as text.
+     */
+    public Optional<Compressed> compress(String content) {
+        if (!enabled || content == null || content.length() < settings.getMinSize()) {
+            return Optional.empty();
+        }
+        ContentCodec codec = (content.length() >= settings.getDeflateMinSize()) ? ContentCodec.DEFLATE : ContentCodec.LZ4;
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = codec.compress(raw);
+        if (encoded.length > raw.length - raw.length / 8) {
+            return Optional.empty();
+        }
+        return Optional.of(new Compressed(codec, encoded, raw.length));
+    }
+
+    /**
+     * Sets the body of a new document: compressed if {@link #compress} says so, as plain text otherwise.
+     */
+    public void setContent(Document document, String content) {
+        Optional<Compressed> compressed = compress(content);
+        if (compressed.isEmpty()) {
+            document.setContent(content);
+            return;
+        }
+        document.setContent(null);
+        document.setContentStorage(ContentStorage.COMPRESSED);
+        document.setContentCodec(compressed.get().codec());
+        document.setCompressedContent(compressed.get().encoded());
+        document.setContentLength((long) compressed.get().rawLength());
+    }
+}
@@ -0,0 +1,93 @@
+package com.heidari.document_service.storage;
+
+import com.heidari.document_service.config.StorageProperties;
+import com.heidari.document_service.model.ContentStorage;
+import com.heidari.document_service.model.Document;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.function.UnaryOperator;
+
+/**
+ * Decides where the body of a new document is kept, and puts it there. Every write path (single
+ * creates, streamed uploads, bulk, asynchronous and corpus imports) goes through here, so where a
+ * body is stored depends on its size only, never on the endpoint that created it:
+ * - longer than "document.storage.inline-threshold" characters: a file in the {@link ContentStore};
+ * - otherwise the "content" column, possibly compressed (see {@link ContentCompressor}).
+ * <p>
+ * A file needs the document id, which is assigned when the document is persisted; the file is
+ * written before the row is flushed, and removed again if the transaction rolls back.
+ */
+@Component
+public class ContentPlacement {
+
+    private final StorageProperties storageProperties;
+    private final ContentCompressor contentCompressor;
+    private final ContentStore contentStore;
+
+    public ContentPlacement(StorageProperties storageProperties, ContentCompressor contentCompressor,
+                            ContentStore contentStore) {
+        this.storageProperties = storageProperties;
+        this.contentCompressor = contentCompressor;
+        this.contentStore = contentStore;
+    }
+
+    /**
+     * @return True if the body is stored in a file.
+     */
+    public boolean inFile(String content) {
+        return content != null && content.length() > storageProperties.getInlineThreshold();
+    }
+
+    /**
+     * Persists a new document together with its body. Must run inside a transaction.
+     *
+     * @param document The new document, without a body.
+     * @param content  The body (may be null).
+     * @param persist  Assigns the id and queues the insert (e.g. a repository's save); returns the document
+     *                 to keep working with.
+     * @return What "persist" returned.
+     * @throws UncheckedIOException If the file could not be written.
+     */
+    public Document persist(Document document, String content, UnaryOperator<Document> persist) {
+        if (!inFile(content)) {
+            contentCompressor.setContent(document, content);
+            return persist.apply(document);
+        }
+        Document saved = persist.apply(document);
+        store(saved, () -> contentStore.write(saved.getId(), new StringReader(content)));
+        return saved;
+    }
+
+    /**
+     * Writes a body of unknown size to the {@link ContentStore}, whatever its size (streamed uploads).
+     *
+     * @param document A persisted document (with its id), not flushed yet.
+     * @param content  The body as UTF-8 bytes; read to the end but not closed.
+     * @throws UncheckedIOException If reading the body or writing its file fails.
+     */
+    public void writeFile(Document document, InputStream content) {
+        store(document, () -> contentStore.write(document.getId(), content));
+    }
+
+    private interface ContentWrite {
+        StoredContent write() throws IOException;
+    }
+
+    // Writes the body file of a (not yet inserted) document and records its size and checksum on it
+    private void store(Document document, ContentWrite write) {
+        contentStore.deleteOnRollback(document.getId());
+        StoredContent stored;
+        try {
+            stored = write.write();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        document.setContentStorage(ContentStorage.FILE);
+        document.setContentLength(stored.length());
+        document.setContentChecksum(stored.checksum());
+    }
+}
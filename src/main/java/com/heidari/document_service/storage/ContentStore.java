@@ -0,0 +1,251 @@
+package com.heidari.document_service.storage;
+
+import com.heidari.document_service.config.StorageProperties;
+import com.heidari.document_service.search.Tokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * Keeps large document bodies in files instead of the "content" column.
+ * <p>
+ * Educational Note on streaming storage:
+ * A TEXT column is read and written as one String: Hibernate loads it whole into every entity,
+ * and a multi-megabyte body means multi-megabyte allocations (twice, as bytes and as chars) on
+ * every access. Here a body is one file per document, "root/&lt;id mod 256, hex&gt;/&lt;id&gt;.txt":
+ * <p>
+ * - Writes stream through a small buffer into a temporary file, computing the SHA-256 on the way,
+ *   then fsync and atomically rename it, so a reader never sees a half-written file.
+ * - Downloads use {@link FileChannel#transferTo}: the kernel copies from the page cache to the
+ *   target (with sendfile(2) when the target is a socket); the bytes never enter the Java heap.
+ * - Indexing reads the file through memory-mapped windows, one page-cache view at a time.
+ * <p>
+ * The database row keeps only the length and checksum (see {@link com.heidari.document_service.model.Document}).
+ */
+@Component
+public class ContentStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ContentStore.class);
+
+    // Largest region mapped at once while reading; keeps the virtual address space used per reader bounded
+    private static final long MAP_WINDOW = 16L * 1024 * 1024;
+
+    private final Path root;
+
+    public ContentStore(StorageProperties storageProperties) {
+        this.root = storageProperties.getRoot().toAbsolutePath().normalize();
+    }
+
+    /**
+     * Writes (or replaces) the body of a document from a stream of UTF-8 bytes.
+     *
+     * @param documentId The document id.
+     * @param content    The body; read to the end but not closed.
+     * @return The size and checksum of what was written.
+     * @throws IOException If reading the input or writing the file fails (no file is left behind).
+     */
+    public StoredContent write(long documentId, InputStream content) throws IOException {
+        return write(documentId, out -> content.transferTo(out));
+    }
+
+    /**
+     * Writes (or replaces) the body of a document from characters, encoded as UTF-8.
+     */
+    public StoredContent write(long documentId, Reader content) throws IOException {
+        return write(documentId, out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            content.transferTo(writer);
+            writer.flush();
+        });
+    }
+
+    /**
+     * Copies a byte range of a body to the target channel without passing it through the heap.
+     *
+     * @param documentId The document id.
+     * @param position   First byte to send.
+     * @param count      Number of bytes to send.
+     * @param target     E.g. a socket, or {@link Channels#newChannel(OutputStream)} of a response.
+     * @return The number of bytes sent (less than "count" only if the file is shorter).
+     */
+    public long transferTo(long documentId, long position, long count, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(path(documentId), StandardOpenOption.READ)) {
+            long sent = 0;
+            while (sent < count) {
+                long transferred = channel.transferTo(position + sent, count - sent, target);
+                if (transferred <= 0) {
+                    break; // end of file
+                }
+                sent += transferred;
+            }
+            return sent;
+        }
+    }
+
+    /**
+     * Opens a body for reading as characters, through memory-mapped windows of the file.
+     */
+    public Reader openReader(long documentId) throws IOException {
+        return new InputStreamReader(new MappedInputStream(path(documentId)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The term frequencies of a body (see {@link Tokenizer#countTerms(Reader)}).
+     */
+    public Map<String, Integer> countTerms(long documentId) throws IOException {
+        try (Reader reader = openReader(documentId)) {
+            return Tokenizer.countTerms(reader);
+        }
+    }
+
+    /**
+     * @return The file holding the body of a document (which may not exist).
+     */
+    public Path path(long documentId) {
+        return root.resolve(String.format("%02x", documentId & 0xff)).resolve(documentId + ".txt");
+    }
+
+    public boolean exists(long documentId) {
+        return Files.exists(path(documentId));
+    }
+
+    public void delete(long documentId) throws IOException {
+        Files.deleteIfExists(path(documentId));
+    }
+
+    /**
+     * Deletes the body of a document if the current transaction rolls back, so a failed insert
+     * leaves no orphaned file. Without a transaction, this does nothing.
+     */
+    public void deleteOnRollback(long documentId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    return;
+                }
+                try {
+                    delete(documentId);
+                } catch (IOException e) {
+                    log.warn("Could not delete the content file of rolled-back document {}: {}", documentId, e.toString());
+                }
+            }
+        });
+    }
+
+    private interface BodyWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private StoredContent write(long documentId, BodyWriter body) throws IOException {
+        Path target = path(documentId);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), documentId + "-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            long length;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                OutputStream out = new DigestOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024), digest);
+                body.writeTo(out);
+                out.flush();
+                channel.force(true);
+                length = channel.size();
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return new StoredContent(length, HexFormat.of().formatHex(digest.digest()));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Reads a file through successive read-only mappings of at most {@link #MAP_WINDOW} bytes.
+     */
+    private static final class MappedInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private final long size;
+        private long mapped;
+        private MappedByteBuffer window;
+
+        MappedInputStream(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.size = channel.size();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return nextWindow() ? window.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!nextWindow()) {
+                return -1;
+            }
+            int read = Math.min(length, window.remaining());
+            window.get(buffer, offset, read);
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        // Ensures the current window has bytes left, mapping the next one if needed
+        private boolean nextWindow() throws IOException {
+            if (window != null && window.hasRemaining()) {
+                return true;
+            }
+            if (mapped >= size) {
+                return false;
+            }
+            long length = Math.min(MAP_WINDOW, size - mapped);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, mapped, length);
+            mapped += length;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.heidari.document_service.storage;
+
+/**
+ * What {@link ContentStore} recorded about a body it has written.
+ *
+ * @param length   Size in bytes.
+ * @param checksum SHA-256 of the bytes, hex-encoded.
+ */
+public record StoredContent(long length, String checksum) {}
@@ -0,0 +1,219 @@
+package com.heidari.document_service.changes;
+
+import com.heidari.document_service.dto.CreateDocumentRequest;
+import com.heidari.document_service.model.ChangeType;
+import com.heidari.document_service.model.DocumentChange;
+import com.heidari.document_service.repository.ChangeCheckpointRepository;
+import com.heidari.document_service.repository.DocumentChangeRepository;
+import com.heidari.document_service.search.DocumentIndex;
+import com.heidari.document_service.search.SearchMode;
+import com.heidari.document_service.service.BulkIngestService;
+import com.heidari.document_service.service.DocumentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Integration Tests of the change log and the change feed.
+ * <p>
+ * Educational Note:
+ * "index-on-commit" is off here, so new documents only become searchable through the feed.
+ * The tests drive the feed with {@link ChangeFeed#pollOnce()} instead of waiting for its thread
+ * (both are serialized, so the thread cannot interleave with a test's poll). Rolled-back entries leave
+ * gaps in the ids, hence the short "gap-timeout".
+ */
+@SpringBootTest(properties = {
+        "document.search.index-on-commit=false",
+        "document.changes.poll-interval=50ms",
+        "document.changes.gap-timeout=200ms",
+        "document.changes.max-retry-delay=100ms"
+})
+class ChangeFeedIntegrationTest {
+
+    @TestConfiguration
+    static class RecordingListenerConfig {
+
+        @Bean
+        RecordingListener recordingListener() {
+            return new RecordingListener();
+        }
+    }
+
+    /** Remembers every change it receives; fails while "failing" is set. */
+    static class RecordingListener implements ChangeListener {
+
+        final List<DocumentChange> received = new CopyOnWriteArrayList<>();
+        volatile boolean failing;
+
+        @Override
+        public String name() {
+            return "recording";
+        }
+
+        @Override
+        public void apply(List<DocumentChange> changes) {
+            if (failing) {
+                throw new IllegalStateException("listener down");
+            }
+            received.addAll(changes);
+        }
+    }
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private BulkIngestService bulkIngestService;
+
+    @Autowired
+    private ChangeFeed changeFeed;
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    @Autowired
+    private RecordingListener listener;
+
+    @Autowired
+    private DocumentChangeRepository documentChangeRepository;
+
+    @Autowired
+    private ChangeCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private DocumentIndex documentIndex;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void tearDown() {
+        listener.failing = false;
+    }
+
+    @Test
+    void createdDocuments_ShouldBeDeliveredInOrder_AndCheckpointed() throws Exception {
+        // --- Arrange ---
+        Long single = create("Feed single");
+        String ndjson = """
+                {"title": "Feed bulk one", "content": "x"}
+                {"title": "Feed bulk two", "content": "y"}
+                """;
+        bulkIngestService.ingest(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        // --- Act ---
+        drain();
+
+        // --- Assert ---
+        List<Long> documentIds = listener.received.stream().map(DocumentChange::getDocumentId).toList();
+        assertThat(documentIds).contains(single);
+        assertThat(listener.received).extracting(DocumentChange::getChangeType).containsOnly(ChangeType.CREATED);
+        assertThat(listener.received).extracting(DocumentChange::getId).isSorted().doesNotHaveDuplicates();
+
+        long last = listener.received.get(listener.received.size() - 1).getId();
+        assertThat(changeFeed.checkpoint("recording")).isEqualTo(last);
+        assertThat(checkpointRepository.findById("recording").orElseThrow().getLastChangeId()).isEqualTo(last);
+    }
+
+    @Test
+    void searchIndex_ShouldCatchUpFromTheFeed_WhenNotIndexedOnCommit() throws InterruptedException {
+        Long id = create("Asynchronously indexed zeppelin");
+        assertThat(documentIndex.searchAll("zeppelin", SearchMode.TITLE)).as("not indexed by the write").isEmpty();
+
+        drain();
+
+        assertThat(documentIndex.searchAll("zeppelin", SearchMode.TITLE)).containsExactly(id);
+        assertThat(changeFeed.checkpoint("search-index")).isEqualTo(documentChangeRepository.findMaxId());
+    }
+
+    @Test
+    void failingListener_ShouldKeepItsCheckpoint_UntilItRecovers() throws InterruptedException {
+        drain();
+        long before = changeFeed.checkpoint("recording");
+        listener.failing = true;
+
+        Long id = create("Feed retried");
+        changeFeed.pollOnce();
+
+        assertThat(changeFeed.checkpoint("recording")).isEqualTo(before);
+        assertThat(meterRegistry.get("document.changes.failures").tag("consumer", "recording").counter().count())
+                .isGreaterThanOrEqualTo(1);
+        assertThat(meterRegistry.get("document.changes.lag").tag("consumer", "recording").gauge().value())
+                .isGreaterThanOrEqualTo(1);
+
+        listener.failing = false;
+        Thread.sleep(150); // past the retry delay
+        drain();
+
+        assertThat(listener.received).extracting(DocumentChange::getDocumentId).contains(id);
+        assertThat(changeFeed.checkpoint("recording")).isGreaterThan(before);
+        assertThat(meterRegistry.get("document.changes.lag").tag("consumer", "recording").gauge().value())
+                .isZero();
+        assertThat(meterRegistry.get("document.changes.applied").tag("consumer", "search-index").counter().count())
+                .isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    void changeLog_ShouldOnlyBeWrittenInsideATransaction_AndRollBackWithIt() {
+        long head = documentChangeRepository.findMaxId();
+
+        assertThatThrownBy(() -> changeLog.recordCreated(List.of(1L))).isInstanceOf(RuntimeException.class);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            changeLog.recordCreated(List.of(1L, 2L));
+            status.setRollbackOnly();
+        });
+        assertThat(documentChangeRepository.findByIdGreaterThanOrderByIdAsc(head, Limit.of(10))).isEmpty();
+    }
+
+    @Test
+    void consecutive_ShouldStopAtTheFirstMissingId() {
+        List<DocumentChange> changes = List.of(change(5), change(6), change(8));
+
+        assertThat(ChangeFeed.consecutive(4, changes)).isEqualTo(2);
+        assertThat(ChangeFeed.consecutive(3, changes)).isZero();
+        assertThat(ChangeFeed.consecutive(7, List.of(change(8)))).isEqualTo(1);
+    }
+
+    // Polls until every consumer has applied the whole log (failures back off, so a few rounds may be needed)
+    private void drain() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        long head = documentChangeRepository.findMaxId();
+        while (changeFeed.checkpoint("recording") < head || changeFeed.checkpoint("search-index") < head) {
+            assertThat(System.currentTimeMillis()).as("feed caught up in time").isLessThan(deadline);
+            if (!changeFeed.pollOnce()) {
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    private Long create(String title) {
+        CreateDocumentRequest request = new CreateDocumentRequest();
+        request.setTitle(title);
+        request.setContent("change feed test");
+        request.setTags(List.of("feed"));
+        return documentService.createDocument(request);
+    }
+
+    private static DocumentChange change(long id) {
+        return new DocumentChange(id, id, ChangeType.CREATED, null);
+    }
+}
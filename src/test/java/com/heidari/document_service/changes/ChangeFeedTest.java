@@ -0,0 +1,131 @@
+package com.heidari.document_service.changes;
+
+import com.heidari.document_service.config.ChangeFeedProperties;
+import com.heidari.document_service.config.ReadConsistency;
+import com.heidari.document_service.config.ReplicaLagMonitor;
+import com.heidari.document_service.metrics.DocumentMetrics;
+import com.heidari.document_service.model.ChangeCheckpoint;
+import com.heidari.document_service.model.ChangeType;
+import com.heidari.document_service.model.DocumentChange;
+import com.heidari.document_service.repository.ChangeCheckpointRepository;
+import com.heidari.document_service.repository.DocumentChangeRepository;
+import com.heidari.document_service.repository.DocumentChangeRepositoryCustom.TransactionHorizon;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Limit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit Tests for how the change feed treats a missing change id when the database reports transaction ids.
+ * The repositories are mocked; the background thread only polls an empty log.
+ */
+@ExtendWith(MockitoExtension.class)
+class ChangeFeedTest {
+
+    @Mock
+    private DocumentChangeRepository documentChangeRepository;
+
+    @Mock
+    private ChangeCheckpointRepository checkpointRepository;
+
+    @Mock
+    private ObjectProvider<ReplicaLagMonitor> lagMonitor;
+
+    private final ChangeFeedProperties properties = new ChangeFeedProperties();
+    private final List<Long> applied = new ArrayList<>();
+    private ChangeFeed feed;
+
+    @AfterEach
+    void tearDown() {
+        feed.stop();
+    }
+
+    @Test
+    void missingChange_ShouldBeSkipped_OnlyOnceEveryWriterThatMayHaveDrawnItHasEnded() {
+        // --- Arrange: change 1 is missing, change 2 is committed; the timeout alone must not skip it ---
+        properties.setGapTimeout(Duration.ZERO);
+        start();
+        when(documentChangeRepository.findMaxId()).thenReturn(2L);
+        when(documentChangeRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(properties.getBatchSize())))
+                .thenReturn(List.of(change(2)));
+        when(documentChangeRepository.transactionHorizon()).thenReturn(
+                new TransactionHorizon(100, 105),  // the gap is seen: writers of change 1 are below 105
+                new TransactionHorizon(103, 110),  // transaction 103 still runs
+                new TransactionHorizon(105, 112)); // all of them have ended: change 1 rolled back
+
+        // --- Act & Assert ---
+        feed.pollOnce();
+        feed.pollOnce();
+        assertThat(applied).isEmpty();
+
+        feed.pollOnce();
+        assertThat(applied).containsExactly(2L);
+        assertThat(feed.checkpoint("test")).isEqualTo(2);
+    }
+
+    @Test
+    void missingChange_ShouldBeDelivered_WhenItsTransactionCommitsLate() {
+        // --- Arrange ---
+        properties.setGapTimeout(Duration.ZERO);
+        start();
+        when(documentChangeRepository.findMaxId()).thenReturn(2L);
+        when(documentChangeRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(properties.getBatchSize())))
+                .thenReturn(List.of(change(2)))
+                .thenReturn(List.of(change(2)))
+                .thenReturn(List.of(change(1), change(2)));
+        when(documentChangeRepository.transactionHorizon()).thenReturn(
+                new TransactionHorizon(100, 105),
+                new TransactionHorizon(101, 110),
+                new TransactionHorizon(105, 112)); // the writer of change 1 committed before the log was read
+
+        // --- Act ---
+        feed.pollOnce();
+        feed.pollOnce();
+        feed.pollOnce();
+
+        // --- Assert ---
+        assertThat(applied).containsExactly(1L, 2L);
+    }
+
+    private void start() {
+        properties.setPollInterval(Duration.ofMillis(10));
+        ChangeListener listener = new ChangeListener() {
+            @Override
+            public String name() {
+                return "test";
+            }
+
+            @Override
+            public void apply(List<DocumentChange> changes) {
+                changes.forEach(change -> applied.add(change.getId()));
+            }
+        };
+        when(checkpointRepository.findById("test")).thenReturn(Optional.of(new ChangeCheckpoint("test", 0)));
+        lenient().when(checkpointRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        feed = new ChangeFeed(List.of(listener), documentChangeRepository, checkpointRepository, properties,
+                new DocumentMetrics(new SimpleMeterRegistry()), new ReadConsistency(lagMonitor));
+        // Until the test stubs the log, the background thread sees it empty
+        lenient().when(documentChangeRepository.findMaxId()).thenReturn(0L);
+        feed.start();
+        feed.stop();
+    }
+
+    private static DocumentChange change(long id) {
+        return new DocumentChange(id, id, ChangeType.CREATED, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,171 @@
+package com.heidari.document_service.config;
+
+import com.heidari.document_service.dto.CreateDocumentRequest;
+import com.heidari.document_service.model.Document;
+import com.heidari.document_service.service.DocumentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Integration Tests of read replica routing, with two in-memory H2 databases.
+ * <p>
+ * Educational Note:
+ * H2 has no replication, so {@link #replicate()} copies the primary into the replica (SCRIPT, then
+ * RUNSCRIPT statement by statement). Between two copies the replica is "behind" by exactly the documents
+ * created since, which makes lag, fallback and consistency tokens deterministic. The lag check interval
+ * is long; the tests call {@link ReplicaLagMonitor#refresh()} themselves.
+ */
+@SpringBootTest(properties = {
+        "document.datasource.replica.enabled=true",
+        "document.datasource.replica.url=jdbc:h2:mem:replica-${random.uuid};MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "document.datasource.replica.username=sa",
+        "document.datasource.replica.password=",
+        "document.datasource.replica.max-lag=5",
+        "document.datasource.replica.lag-check-interval=1h",
+        "document.search.engine=specification",
+        "document.search.cache.enabled=false"
+})
+class ReplicaRoutingIntegrationTest {
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private ReplicaLagMonitor lagMonitor;
+
+    @Autowired
+    private ReadConsistency readConsistency;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    @BeforeEach
+    void setUp() {
+        replicate();
+    }
+
+    @AfterEach
+    void tearDown() {
+        readConsistency.clear();
+    }
+
+    @Test
+    void searches_ShouldBeServedByTheReplica_UntilItLagsTooFarBehind() {
+        // --- Arrange: the replica is one document behind, within "max-lag" ---
+        Long first = create("Replicated walrus");
+        replicate();
+        Long unreplicated = create("Replicated walrus");
+        lagMonitor.refresh();
+        assertThat(lagMonitor.lag()).isEqualTo(1);
+
+        // --- Act & Assert: the replica answers, so the newest document is not visible yet ---
+        double replicaReads = routeCount("replica");
+        assertThat(search("walrus")).contains(first).doesNotContain(unreplicated);
+        assertThat(routeCount("replica")).isGreaterThan(replicaReads);
+        assertThat(ReadConsistency.isStaleRead()).isTrue();
+
+        // --- Act & Assert: beyond "max-lag" the primary answers ---
+        for (int i = 0; i < 5; i++) {
+            create("Replicated walrus");
+        }
+        lagMonitor.refresh();
+        double laggingReads = routeCount("primary_lagging");
+        assertThat(search("walrus")).contains(first, unreplicated).hasSize(7);
+        assertThat(routeCount("primary_lagging")).isGreaterThan(laggingReads);
+        assertThat(ReadConsistency.isStaleRead()).isFalse();
+        assertThat(meterRegistry.get("document.datasource.replica.lag").gauge().value()).isEqualTo(6);
+    }
+
+    @Test
+    void consistencyToken_ShouldSendReadsToThePrimary_UntilTheReplicaHasCaughtUp() {
+        Long id = create("Tokenized narwhal");
+        long token = readConsistency.tokenAfterWrite().orElseThrow();
+        lagMonitor.refresh();
+
+        // Within "max-lag", but behind the caller's own write
+        readConsistency.require(token);
+        double tokenReads = routeCount("primary_for_token");
+        assertThat(search("narwhal")).containsExactly(id);
+        assertThat(routeCount("primary_for_token")).isGreaterThan(tokenReads);
+
+        replicate();
+        lagMonitor.refresh();
+        double replicaReads = routeCount("replica");
+        assertThat(search("narwhal")).containsExactly(id);
+        assertThat(routeCount("replica")).isGreaterThan(replicaReads);
+    }
+
+    @Test
+    void unavailableReplica_ShouldFallBackToThePrimary() {
+        new JdbcTemplate(replicaDataSource).execute("DROP ALL OBJECTS");
+        lagMonitor.refresh();
+        Long id = create("Unreplicated dugong");
+
+        assertThat(lagMonitor.isAvailable()).isFalse();
+        assertThat(meterRegistry.get("document.datasource.replica.lag").gauge().value()).isEqualTo(-1);
+        double unavailableReads = routeCount("primary_unavailable");
+        assertThat(search("dugong")).containsExactly(id);
+        assertThat(routeCount("primary_unavailable")).isGreaterThan(unavailableReads);
+    }
+
+    @Test
+    void replicaLagMonitor_ShouldRefuseToStart_WithoutTheChangeLog() {
+        ChangeFeedProperties changes = new ChangeFeedProperties();
+        changes.setEnabled(false);
+
+        assertThatThrownBy(() -> new ReplicaDataSourceConfiguration().replicaLagMonitor(
+                primaryDataSource, replicaDataSource, new ReplicaProperties(), changes))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("document.changes.enabled=true");
+    }
+
+    // "Replicates" the primary: the replica becomes an exact copy of it
+    private void replicate() {
+        List<String> script = new JdbcTemplate(primaryDataSource)
+                .queryForList("SCRIPT NOPASSWORDS NOSETTINGS", String.class);
+        JdbcTemplate replica = new JdbcTemplate(replicaDataSource);
+        replica.execute("DROP ALL OBJECTS");
+        for (String statement : script) {
+            replica.execute(statement);
+        }
+        lagMonitor.refresh();
+    }
+
+    private List<Long> search(String query) {
+        return documentService.searchDocuments(query, "title", null, 50).items().stream()
+                .map(Document::getId)
+                .toList();
+    }
+
+    private double routeCount(String route) {
+        return meterRegistry.get("document.datasource.route").tag("route", route).counter().count();
+    }
+
+    private Long create(String title) {
+        CreateDocumentRequest request = new CreateDocumentRequest();
+        request.setTitle(title);
+        request.setContent("replica test");
+        request.setTags(List.of("replica"));
+        return documentService.createDocument(request);
+    }
+}
@@ -0,0 +1,206 @@
+package com.heidari.document_service.controller;
+
+import com.heidari.document_service.config.AdmissionProperties;
+import com.heidari.document_service.metrics.DocumentMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit Tests for admission control in front of the controller.
+ * <p>
+ * Educational Note:
+ * Requests are "in flight" while the filter chain runs, so concurrency is simulated without threads:
+ * the chain of one request sends the next one through the filter before it returns.
+ */
+class AdmissionControlFilterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AdmissionProperties properties = new AdmissionProperties();
+    private final List<Integer> statuses = new ArrayList<>();
+
+    @Test
+    void filter_ShouldShedExpensiveReadsFirst_AndKeepWritesApart() throws Exception {
+        properties.getRead().setInitialLimit(2); // Expensive reads get half: one slot
+        AdmissionControlFilter filter = new AdmissionControlFilter(properties, new DocumentMetrics(registry));
+
+        send(filter, get("/documents/search", "q", "spring"), (req, res) -> {
+            send(filter, get("/documents/search", "q", "boot", "mode", "title", "match", "fuzzy"), null);
+            send(filter, get("/documents/search", "q", "boot", "mode", "tag"), (req2, res2) -> {
+                send(filter, get("/documents/42"), null);
+                send(filter, new MockHttpServletRequest("POST", "/documents"), null);
+                send(filter, get("/actuator/health"), null);
+            });
+        });
+
+        // Inner requests complete first
+        assertThat(statuses).containsExactly(503, 503, 200, 200, 200, 200);
+        assertThat(rejected("read", "expensive")).isEqualTo(1);
+        assertThat(rejected("read", "cheap")).isEqualTo(1);
+        assertThat(rejected("write", "cheap")).isZero();
+        assertThat(registry.get("document.admission.limit").tag("budget", "read").gauge().value()).isEqualTo(2);
+        assertThat(registry.get("document.admission.inflight").tag("budget", "read").gauge().value()).isZero();
+    }
+
+    @Test
+    void filter_ShouldRejectWithServiceUnavailable_AndRetryAfter() throws Exception {
+        properties.getRead().setMinLimit(1);
+        properties.getRead().setInitialLimit(1);
+        properties.setRetryAfterSeconds(3);
+        AdmissionControlFilter filter = new AdmissionControlFilter(properties, new DocumentMetrics(registry));
+        List<MockHttpServletResponse> rejections = new ArrayList<>();
+
+        send(filter, get("/documents/suggest", "prefix", "sp"), (req, res) -> {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(get("/documents/suggest", "prefix", "spr"), response, (r, s) -> { });
+            rejections.add(response);
+        });
+
+        MockHttpServletResponse rejected = rejections.get(0);
+        assertThat(rejected.getStatus()).isEqualTo(503);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("3");
+        assertThat(rejected.getContentType()).startsWith("application/problem+json");
+        assertThat(rejected.getContentAsString()).contains("\"status\":503", "Too many concurrent reads");
+    }
+
+    @Test
+    void cost_ShouldTreatContentSearchesExportsAndImportsAsExpensive() {
+        assertThat(cost(get("/documents/search", "q", "x"))).isEqualTo("EXPENSIVE"); // Mode defaults to all
+        assertThat(cost(get("/documents/facets", "q", "x", "mode", "content"))).isEqualTo("EXPENSIVE");
+        assertThat(cost(get("/documents/search", "q", "x", "mode", "title", "ranked", "true"))).isEqualTo("EXPENSIVE");
+        MockHttpServletRequest export = get("/documents/search", "q", "x", "mode", "tag");
+        export.addHeader("Accept", "application/x-ndjson");
+        assertThat(cost(export)).isEqualTo("EXPENSIVE");
+        assertThat(cost(new MockHttpServletRequest("POST", "/documents/bulk"))).isEqualTo("EXPENSIVE");
+        assertThat(cost(get("/documents/export"))).isEqualTo("EXPENSIVE");
+        assertThat(cost(new MockHttpServletRequest("POST", "/documents/import"))).isEqualTo("EXPENSIVE");
+
+        assertThat(cost(get("/documents/search", "q", "x", "mode", "title"))).isEqualTo("CHEAP");
+        assertThat(cost(get("/documents/7/content"))).isEqualTo("CHEAP");
+        assertThat(cost(new MockHttpServletRequest("POST", "/documents"))).isEqualTo("CHEAP");
+    }
+
+    @Test
+    void filter_ShouldNotShrinkTheLimit_ForLongRunningRequests() throws Exception {
+        properties.getWrite().setLatencyThreshold(Duration.ofMillis(1));
+        AdmissionControlFilter filter = new AdmissionControlFilter(properties, new DocumentMetrics(registry));
+        double initial = writeLimit();
+
+        // A bulk upload and a streamed upload run far beyond the threshold: no signal
+        send(filter, new MockHttpServletRequest("POST", "/documents/bulk"), (req, res) -> pause());
+        send(filter, new MockHttpServletRequest("POST", "/documents/stream"), (req, res) -> pause());
+        assertThat(writeLimit()).isEqualTo(initial);
+        assertThat(registry.get("document.admission.inflight").tag("budget", "write").gauge().value()).isZero();
+
+        // A single create that slow is one
+        send(filter, new MockHttpServletRequest("POST", "/documents"), (req, res) -> pause());
+        assertThat(writeLimit()).isLessThan(initial);
+    }
+
+    @Test
+    void filter_ShouldNotShrinkTheReadLimit_ForSlowBodyDownloads() throws Exception {
+        properties.getRead().setLatencyThreshold(Duration.ofMillis(1));
+        AdmissionControlFilter filter = new AdmissionControlFilter(properties, new DocumentMetrics(registry));
+        double initial = readLimit();
+
+        // A large body sent to a slow client: no signal
+        MockHttpServletRequest download = get("/documents/42");
+        download.addHeader("Accept", "text/plain");
+        send(filter, download, (req, res) -> pause());
+        assertThat(readLimit()).isEqualTo(initial);
+
+        // The same document as JSON is one
+        send(filter, get("/documents/42"), (req, res) -> pause());
+        assertThat(readLimit()).isLessThan(initial);
+    }
+
+    @Test
+    void longRunning_ShouldCoverUploadsTransfersAndStreamedSearches() {
+        MockHttpServletRequest ndjson = get("/documents/search", "q", "x");
+        ndjson.addHeader("Accept", "application/x-ndjson");
+        assertThat(AdmissionControlFilter.longRunning(ndjson)).isTrue();
+        assertThat(AdmissionControlFilter.longRunning(new MockHttpServletRequest("POST", "/documents/bulk"))).isTrue();
+        assertThat(AdmissionControlFilter.longRunning(new MockHttpServletRequest("POST", "/documents/stream"))).isTrue();
+        assertThat(AdmissionControlFilter.longRunning(get("/documents/export"))).isTrue();
+        assertThat(AdmissionControlFilter.longRunning(new MockHttpServletRequest("POST", "/documents/import"))).isTrue();
+        MockHttpServletRequest body = get("/documents/42");
+        body.addHeader("Accept", "text/plain");
+        assertThat(AdmissionControlFilter.longRunning(body)).isTrue();
+
+        assertThat(AdmissionControlFilter.longRunning(get("/documents/search", "q", "x"))).isFalse();
+        assertThat(AdmissionControlFilter.longRunning(new MockHttpServletRequest("POST", "/documents"))).isFalse();
+        assertThat(AdmissionControlFilter.longRunning(get("/documents/42"))).isFalse();
+    }
+
+    @Test
+    void properties_ShouldBindNestedBudgets() {
+        Map<String, String> source = Map.of(
+                "document.admission.read.initial-limit", "64",
+                "document.admission.write.latency-threshold", "250ms",
+                "document.admission.expensive-share", "0.25");
+
+        AdmissionProperties bound = new Binder(new MapConfigurationPropertySource(source))
+                .bind("document.admission", AdmissionProperties.class).get();
+
+        assertThat(bound.getRead().getInitialLimit()).isEqualTo(64);
+        assertThat(bound.getRead().getMaxLimit()).isEqualTo(200);
+        assertThat(bound.getWrite().getLatencyThreshold()).isEqualTo(Duration.ofMillis(250));
+        assertThat(bound.getExpensiveShare()).isEqualTo(0.25);
+    }
+
+    private void send(AdmissionControlFilter filter, MockHttpServletRequest request, FilterChain inner)
+            throws ServletException, IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> {
+            if (inner != null) {
+                inner.doFilter(req, res);
+            }
+        });
+        statuses.add(response.getStatus());
+    }
+
+    private double readLimit() {
+        return registry.get("document.admission.limit").tag("budget", "read").gauge().value();
+    }
+
+    private double writeLimit() {
+        return registry.get("document.admission.limit").tag("budget", "write").gauge().value();
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static MockHttpServletRequest get(String path, String... parameters) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        for (int i = 0; i < parameters.length; i += 2) {
+            request.addParameter(parameters[i], parameters[i + 1]);
+        }
+        return request;
+    }
+
+    private static String cost(MockHttpServletRequest request) {
+        return AdmissionControlFilter.cost(request).name();
+    }
+
+    private double rejected(String budget, String cost) {
+        return registry.get("document.admission.rejected").tags("budget", budget, "cost", cost).counter().count();
+    }
+}
@@ -0,0 +1,108 @@
+package com.heidari.document_service.controller;
+
+import com.heidari.document_service.config.AdmissionProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit Tests for the AIMD concurrency limit.
+ * <p>
+ * Educational Note:
+ * Time is passed in explicitly (nanoseconds), so "slow" and "fast" requests need no sleeping.
+ */
+class AdmissionLimiterTest {
+
+    private static final long MS = 1_000_000L;
+
+    private final AdmissionLimiter limiter =
+            new AdmissionLimiter(new AdmissionProperties.Budget(4, 2, 6, Duration.ofMillis(100)));
+
+    @Test
+    void tryAcquire_ShouldAdmitUpToTheShareOfTheLimit() {
+        assertThat(limiter.tryAcquire(0.5)).isTrue();
+        assertThat(limiter.tryAcquire(0.5)).isTrue();
+        assertThat(limiter.tryAcquire(0.5)).isFalse(); // 2 of 4 in use: the expensive share is full
+        assertThat(limiter.tryAcquire(1)).isTrue();
+        assertThat(limiter.tryAcquire(1)).isTrue();
+        assertThat(limiter.tryAcquire(1)).isFalse();
+        assertThat(limiter.inflight()).isEqualTo(4);
+
+        limiter.release(0, 10 * MS, false);
+
+        assertThat(limiter.inflight()).isEqualTo(3);
+        assertThat(limiter.tryAcquire(1)).isTrue();
+    }
+
+    @Test
+    void release_ShouldGrowTheLimitAdditively_WhileItIsInUse() {
+        // Idle: fast requests with nothing else in flight prove nothing
+        for (int i = 0; i < 20; i++) {
+            limiter.tryAcquire(1);
+            limiter.release(0, MS, false);
+        }
+        assertThat(limiter.limit()).isEqualTo(4);
+
+        // Saturated: about one more slot per limit's worth of fast requests, up to the maximum
+        fill(4);
+        for (int i = 0; i < 5; i++) {
+            limiter.release(0, MS, false);
+            limiter.tryAcquire(1);
+        }
+        assertThat(limiter.limit()).isEqualTo(5);
+        for (int i = 0; i < 100; i++) {
+            limiter.release(0, MS, false);
+            limiter.tryAcquire(1);
+        }
+        assertThat(limiter.limit()).isEqualTo(6);
+    }
+
+    @Test
+    void release_ShouldShrinkTheLimitMultiplicatively_OncePerThreshold() {
+        AdmissionLimiter wide = new AdmissionLimiter(new AdmissionProperties.Budget(50, 2, 100, Duration.ofMillis(100)));
+        for (int i = 0; i < 10; i++) {
+            wide.tryAcquire(1);
+        }
+
+        // A burst of slow responses within one threshold period counts once
+        wide.release(0, 200 * MS, false);
+        wide.release(10 * MS, 210 * MS, false);
+        wide.release(20 * MS, 220 * MS, true);
+        assertThat(wide.limit()).isEqualTo(45);
+
+        // A failure a threshold later counts again
+        wide.release(300 * MS, 310 * MS, true);
+        assertThat(wide.limit()).isEqualTo(40); // 50 * 0.9 * 0.9 = 40.5
+
+        assertThat(wide.inflight()).isEqualTo(6);
+    }
+
+    @Test
+    void release_ShouldNotShrinkTheLimitBelowTheMinimum() {
+        for (int i = 0; i < 20; i++) {
+            assertThat(limiter.tryAcquire(1)).isTrue();
+            limiter.release(0, 100L * (i + 1) * MS, true);
+        }
+
+        assertThat(limiter.limit()).isEqualTo(2);
+        assertThat(limiter.tryAcquire(0.1)).isTrue(); // Always at least one slot
+    }
+
+    @Test
+    void releaseWithoutSample_ShouldFreeTheSlot_AndLeaveTheLimit() {
+        fill(4);
+
+        limiter.release();
+
+        assertThat(limiter.inflight()).isEqualTo(3);
+        assertThat(limiter.limit()).isEqualTo(4);
+    }
+
+    private void fill(int requests) {
+        for (int i = 0; i < requests; i++) {
+            assertThat(limiter.tryAcquire(1)).isTrue();
+        }
+    }
+}
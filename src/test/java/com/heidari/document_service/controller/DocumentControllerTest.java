@@ -1,21 +1,52 @@
 package com.heidari.document_service.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heidari.document_service.config.AdmissionProperties;
+import com.heidari.document_service.config.ReadConsistency;
+import com.heidari.document_service.dto.BulkIngestReport;
 import com.heidari.document_service.dto.CreateDocumentRequest;
+import com.heidari.document_service.dto.DocumentSummary;
+import com.heidari.document_service.dto.IngestTicket;
+import com.heidari.document_service.dto.SearchPage;
+import com.heidari.document_service.dto.Suggestion;
+import com.heidari.document_service.dto.TagFacets;
+import com.heidari.document_service.metrics.DocumentMetrics;
 import com.heidari.document_service.model.Document;
+import com.heidari.document_service.service.AsyncIngestService;
+import com.heidari.document_service.service.BulkIngestService;
+import com.heidari.document_service.service.IngestQueueFullException;
 import com.heidari.document_service.service.DocumentService;
+import com.heidari.document_service.storage.ContentBody;
+import com.heidari.document_service.storage.ContentStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -30,6 +61,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  * This makes the test faster and focused solely on HTTP request/response logic.
  */
 @WebMvcTest(DocumentController.class)
+@Import({DocumentMetrics.class, SimpleMeterRegistry.class}) // Real meters, kept in memory
+@EnableConfigurationProperties(AdmissionProperties.class) // Default admission limits, far above these tests
 class DocumentControllerTest {
 
     @Autowired
@@ -38,6 +71,18 @@ class DocumentControllerTest {
     @MockitoBean// Replaces the real DocumentService bean in the Spring Context with a Mockito mock
     private DocumentService documentService;
 
+    @MockitoBean
+    private BulkIngestService bulkIngestService;
+
+    @MockitoBean
+    private AsyncIngestService asyncIngestService;
+
+    @MockitoBean
+    private ContentStore contentStore;
+
+    @MockitoBean
+    private ReadConsistency readConsistency;
+
     @Autowired
     private ObjectMapper objectMapper; // Utility to serialize objects into JSON strings
 
@@ -63,6 +108,78 @@ class DocumentControllerTest {
                 .andExpect(content().string("100"));  // Verify response body matches expected ID
     }
 
+    /**
+     * Test Case: With a read replica, a write returns a consistency token, and a token sent back
+     * with a read is applied to it (a malformed one is rejected).
+     */
+    @Test
+    void consistencyToken_ShouldBeReturnedByWrites_AndAppliedToReads() throws Exception {
+        CreateDocumentRequest request = new CreateDocumentRequest();
+        request.setTitle("New Doc");
+        when(documentService.createDocument(any(CreateDocumentRequest.class))).thenReturn(100L);
+        when(readConsistency.tokenAfterWrite()).thenReturn(OptionalLong.of(42));
+        when(documentService.findDocument(100L)).thenReturn(Optional.of(new Document()));
+
+        mockMvc.perform(post("/documents")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ReadConsistency.HEADER, "42"));
+
+        mockMvc.perform(get("/documents/100").header(ReadConsistency.HEADER, "42"))
+                .andExpect(status().isOk());
+        verify(readConsistency).require(42);
+        verify(readConsistency).clear();
+
+        mockMvc.perform(get("/documents/100").header(ReadConsistency.HEADER, "latest"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test Case: An async submission is acknowledged with 202 and a ticket to poll.
+     */
+    @Test
+    void createDocumentAsync_ShouldReturnAccepted_WithTicketLocation() throws Exception {
+        when(asyncIngestService.submit(any(CreateDocumentRequest.class))).thenReturn(IngestTicket.queued("t-1"));
+
+        mockMvc.perform(post("/documents/async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Queued\"}"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/documents/tickets/t-1"))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+    }
+
+    /**
+     * Test Case: A full queue is reported as 429 with a Retry-After hint.
+     */
+    @Test
+    void createDocumentAsync_ShouldReturnTooManyRequests_WhenQueueIsFull() throws Exception {
+        when(asyncIngestService.submit(any(CreateDocumentRequest.class)))
+                .thenThrow(new IngestQueueFullException(10, 2));
+
+        mockMvc.perform(post("/documents/async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Rejected\"}"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "2"));
+    }
+
+    /**
+     * Test Case: Ticket status is served as JSON; unknown tickets are 404.
+     */
+    @Test
+    void getTicket_ShouldReturnStatus_OrNotFound() throws Exception {
+        when(asyncIngestService.ticket("t-1")).thenReturn(Optional.of(IngestTicket.queued("t-1").durable(7L)));
+        when(asyncIngestService.ticket("missing")).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/documents/tickets/t-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("DURABLE"))
+                .andExpect(jsonPath("$.documentId").value(7));
+        mockMvc.perform(get("/documents/tickets/missing")).andExpect(status().isNotFound());
+    }
+
     /**
      * Test Case: Verifies the search endpoint and JSON structure.
      * usage of 'JsonPath' to inspect specific fields in the response.
@@ -73,9 +190,9 @@ class DocumentControllerTest {
         Document doc = new Document();
         doc.setTitle("Search Result");
 
-        // Stubbing: Return a list containing one document for any string inputs
-        when(documentService.searchDocuments(anyString(), anyString()))
-                .thenReturn(List.of(doc));
+        // Stubbing: Return a page containing one document (and a cursor to the next page)
+        when(documentService.searchSubstring(anyString(), anyString(), eq(0), any(), any()))
+                .thenReturn(new SearchPage<>(List.of(doc), "next-token"));
 
         // --- Act & Assert ---
         mockMvc.perform(get("/documents/search")
@@ -83,7 +200,319 @@ class DocumentControllerTest {
                         .param("mode", "title"))
                 .andExpect(status().isOk())
                 // JsonPath syntax allows navigating the JSON structure (like XPath for XML)
-                // $ represents the root array, [0] is the first element
-                .andExpect(jsonPath("$[0].title").value("Search Result"));
+                // $ represents the root object, items[0] is the first element of the page
+                .andExpect(jsonPath("$.items[0].title").value("Search Result"))
+                .andExpect(jsonPath("$.nextCursor").value("next-token"));
+    }
+
+    /**
+     * Test Case: Without "match", a plain search keeps the endpoint's original substring semantics
+     * ("ava" finds "Java"); match=terms opts into term matching.
+     */
+    @Test
+    void searchDocuments_ShouldMatchSubstrings_ByDefault() throws Exception {
+        Document doc = new Document();
+        doc.setTitle("Java Basics");
+        when(documentService.searchSubstring("ava", "all", 0, null, null))
+                .thenReturn(new SearchPage<>(List.of(doc), null));
+        when(documentService.searchDocuments("ava", "all", null, null, null, false))
+                .thenReturn(new SearchPage<>(List.of(), null));
+
+        mockMvc.perform(get("/documents/search").param("query", "ava"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].title").value("Java Basics"));
+        mockMvc.perform(get("/documents/search").param("query", "ava").param("match", "terms"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items").isEmpty());
+    }
+
+    /**
+     * Test Case: Clients such as curl accept any media type; they must get the paginated JSON, not the stream.
+     */
+    @Test
+    void searchDocuments_ShouldReturnJsonPage_ForWildcardAccept() throws Exception {
+        when(documentService.searchSubstring(anyString(), anyString(), eq(0), any(), any()))
+                .thenReturn(new SearchPage<>(List.of(), null));
+
+        mockMvc.perform(get("/documents/search")
+                        .param("query", "Java")
+                        .accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    /**
+     * Test Case: view=summary returns summaries (no content field) with the requested snippets.
+     */
+    @Test
+    void searchDocuments_ShouldReturnSummaries_ForSummaryView() throws Exception {
+        DocumentSummary summary = new DocumentSummary(7L, "Java Basics", LocalDateTime.now(),
+                List.of("Coding"), "learn <em>java</em>");
+        when(documentService.searchSummaries(anyString(), anyString(), any(), any(), any(), eq(true), eq(false)))
+                .thenReturn(new SearchPage<>(List.of(summary), null));
+
+        mockMvc.perform(get("/documents/search")
+                        .param("query", "Java")
+                        .param("view", "summary")
+                        .param("snippets", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(7))
+                .andExpect(jsonPath("$.items[0].tags[0]").value("Coding"))
+                .andExpect(jsonPath("$.items[0].snippet").value("learn <em>java</em>"))
+                .andExpect(jsonPath("$.items[0].content").doesNotExist());
+    }
+
+    /**
+     * Test Case: ranked=true asks the service for the relevance-ranked page.
+     */
+    @Test
+    void searchDocuments_ShouldPassRankedOption() throws Exception {
+        Document doc = new Document();
+        doc.setTitle("Best Match");
+        when(documentService.searchDocuments(eq("Java"), eq("all"), any(), any(), eq(5), eq(true)))
+                .thenReturn(new SearchPage<>(List.of(doc), null));
+
+        mockMvc.perform(get("/documents/search")
+                        .param("query", "Java")
+                        .param("limit", "5")
+                        .param("ranked", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].title").value("Best Match"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    /**
+     * Test Case: match=fuzzy is served by the substring search with the requested distance.
+     */
+    @Test
+    void searchDocuments_ShouldRunFuzzySearch_ForFuzzyMatch() throws Exception {
+        Document doc = new Document();
+        doc.setTitle("Kubernetes");
+        when(documentService.searchSubstring("kubernates", "all", 2, null, null))
+                .thenReturn(new SearchPage<>(List.of(doc), null));
+
+        mockMvc.perform(get("/documents/search")
+                        .param("query", "kubernates")
+                        .param("match", "fuzzy")
+                        .param("distance", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].title").value("Kubernetes"));
+
+        mockMvc.perform(get("/documents/search")
+                        .param("query", "kubernates")
+                        .param("match", "fuzzy")
+                        .param("ranked", "true"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test Case: The tag expression is passed through to the search, and facets are served as JSON.
+     */
+    @Test
+    void searchDocuments_ShouldPassTagExpression_AndReturnFacets() throws Exception {
+        when(documentService.searchDocuments("", "all", "java AND NOT legacy", null, null, false))
+                .thenReturn(new SearchPage<>(List.of(), null));
+        when(documentService.findTagFacets("spring", "all", "java", 3))
+                .thenReturn(new TagFacets(12, List.of(new TagFacets.Facet("java", 12), new TagFacets.Facet("jpa", 4))));
+
+        mockMvc.perform(get("/documents/search")
+                        .param("query", "")
+                        .param("tags", "java AND NOT legacy"))
+                .andExpect(status().isOk());
+        verify(documentService).searchDocuments("", "all", "java AND NOT legacy", null, null, false);
+
+        mockMvc.perform(get("/documents/facets")
+                        .param("query", "spring")
+                        .param("tags", "java")
+                        .param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(12))
+                .andExpect(jsonPath("$.tags[1].name").value("jpa"))
+                .andExpect(jsonPath("$.tags[1].count").value(4));
+
+        mockMvc.perform(get("/documents/search")
+                        .param("query", "kubernetes")
+                        .param("match", "substring")
+                        .param("tags", "java"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test Case: Autocomplete returns the suggestions as JSON, with the type of each one.
+     */
+    @Test
+    void suggest_ShouldReturnSuggestions() throws Exception {
+        when(documentService.suggest("jav", "all", null)).thenReturn(List.of(
+                new Suggestion("java", "tag", 42), new Suggestion("Java Basics", "title", 3)));
+
+        mockMvc.perform(get("/documents/suggest").param("prefix", "jav"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].text").value("java"))
+                .andExpect(jsonPath("$[0].type").value("tag"))
+                .andExpect(jsonPath("$[0].count").value(42))
+                .andExpect(jsonPath("$[1].type").value("title"));
+    }
+
+    /**
+     * Test Case: The plain-text body honors HTTP range requests.
+     */
+    @Test
+    void getDocumentContent_ShouldReturnPartialContent_ForRangeRequest() throws Exception {
+        when(documentService.findContent(42L)).thenReturn(Optional.of(ContentBody.inline(42L, "0123456789")));
+
+        MvcResult result = mockMvc.perform(get("/documents/42")
+                        .accept(MediaType.TEXT_PLAIN)
+                        .header("Range", "bytes=2-5"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 2-5/10"))
+                .andExpect(content().string("2345"));
+    }
+
+    /**
+     * Test Case: A file-backed body is copied from the content store, with its checksum as ETag.
+     */
+    @Test
+    void getDocumentContent_ShouldTransferFileBackedBody() throws Exception {
+        when(documentService.findContent(42L)).thenReturn(Optional.of(ContentBody.file(42L, 10, "abc123")));
+        when(contentStore.transferTo(eq(42L), eq(4L), eq(6L), any())).thenAnswer(invocation -> {
+            WritableByteChannel target = invocation.getArgument(3);
+            return (long) target.write(ByteBuffer.wrap("456789".getBytes(StandardCharsets.UTF_8)));
+        });
+
+        MvcResult result = mockMvc.perform(get("/documents/42")
+                        .accept(MediaType.TEXT_PLAIN)
+                        .header("Range", "bytes=4-"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 4-9/10"))
+                .andExpect(header().string("ETag", "\"abc123\""))
+                .andExpect(content().string("456789"));
+    }
+
+    /**
+     * Test Case: A range beyond the end of the body is rejected with 416.
+     */
+    @Test
+    void getDocumentContent_ShouldRejectUnsatisfiableRange() throws Exception {
+        when(documentService.findContent(42L)).thenReturn(Optional.of(ContentBody.inline(42L, "0123456789")));
+
+        mockMvc.perform(get("/documents/42")
+                        .accept(MediaType.TEXT_PLAIN)
+                        .header("Range", "bytes=10-20"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */10"));
+    }
+
+    /**
+     * Test Case: The streaming upload hands the raw request body to the service.
+     */
+    @Test
+    void createDocumentFromStream_ShouldPassRequestBody() throws Exception {
+        when(documentService.createDocument(eq("Big"), eq(List.of("Java")), any())).thenAnswer(invocation -> {
+            InputStream body = invocation.getArgument(2);
+            assertEquals("a very long body", new String(body.readAllBytes(), StandardCharsets.UTF_8));
+            return 5L;
+        });
+
+        mockMvc.perform(post("/documents/stream")
+                        .param("title", "Big")
+                        .param("tags", "Java")
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .content("a very long body"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("5"));
+    }
+
+    /**
+     * Test Case: Unknown ids are reported as 404 on both representations.
+     */
+    @Test
+    void getDocument_ShouldReturnNotFound_ForUnknownId() throws Exception {
+        when(documentService.findDocument(anyLong())).thenReturn(Optional.empty());
+        when(documentService.findContent(anyLong())).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/documents/404")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/documents/404").accept(MediaType.TEXT_PLAIN)).andExpect(status().isNotFound());
+    }
+
+    /**
+     * Test Case: A malformed cursor is a client error, not a server error.
+     */
+    @Test
+    void searchDocuments_ShouldReturnBadRequest_ForInvalidCursor() throws Exception {
+        when(documentService.searchSubstring(anyString(), anyString(), eq(0), any(), any()))
+                .thenThrow(new IllegalArgumentException("Invalid search cursor: ???"));
+
+        mockMvc.perform(get("/documents/search")
+                        .param("query", "Java")
+                        .param("cursor", "???"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.detail").value("Invalid search cursor: ???"));
+    }
+
+    /**
+     * Test Case: Verifies that NDJSON bodies are accepted by the bulk endpoint
+     * and the ingestion report is returned.
+     */
+    @Test
+    void bulkCreateDocuments_ShouldAcceptNdjson_AndReturnReport() throws Exception {
+        // --- Arrange ---
+        BulkIngestReport report = new BulkIngestReport(2, 10, 200.0,
+                List.of(new BulkIngestReport.BatchReport(1, 2, 1, 10, 200.0)));
+        when(bulkIngestService.ingest(any())).thenReturn(report);
+
+        // --- Act & Assert ---
+        mockMvc.perform(post("/documents/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("""
+                                {"title":"A","tags":["x"]}
+                                {"title":"B","tags":["x"]}
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.documents").value(2))
+                .andExpect(jsonPath("$.batches[0].documentsPerSecond").value(200.0));
+    }
+
+    /**
+     * Test Case: With "Accept: application/x-ndjson" the search streams one JSON object per line.
+     * Educational Note: StreamingResponseBody is written asynchronously, so MockMvc needs an
+     * explicit asyncDispatch() to collect the body.
+     */
+    @Test
+    void streamSearchResults_ShouldWriteOneJsonObjectPerLine() throws Exception {
+        // --- Arrange: the service pushes two documents into the sink ---
+        when(documentService.streamDocuments(anyString(), anyString(), any())).thenAnswer(i -> {
+            Consumer<Document> sink = i.getArgument(2);
+            for (String title : List.of("First", "Second")) {
+                Document doc = new Document();
+                doc.setTitle(title);
+                sink.accept(doc);
+            }
+            return 2L;
+        });
+
+        // --- Act ---
+        MvcResult started = mockMvc.perform(get("/documents/search")
+                        .param("query", "Java")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // --- Assert ---
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        List<String> lines = body.lines().toList();
+        assertEquals(2, lines.size());
+        assertEquals("First", objectMapper.readTree(lines.get(0)).get("title").asText());
+        assertEquals("Second", objectMapper.readTree(lines.get(1)).get("title").asText());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+package com.heidari.document_service.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * End-to-end check that the hot-path meters reach the Prometheus scrape endpoint.
+ * <p>
+ * Educational Note:
+ * Spring Boot replaces metric exporters with no-ops in tests; @AutoConfigureObservability
+ * brings back the Prometheus registry so /actuator/prometheus can be scraped.
+ */
+@SpringBootTest(properties = {
+        "document.search.engine=specification",
+        "management.endpoints.web.exposure.include=prometheus"
+})
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class MetricsEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void prometheus_ShouldExposeSearchAndCreateMeters() throws Exception {
+        // --- Arrange: one document, created and then found through the API ---
+        mockMvc.perform(post("/documents")
+                        .contentType("application/json")
+                        .content("{\"title\":\"Metrics Doc\",\"content\":\"Body\",\"tags\":[\"metrics\"]}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/documents/search").param("query", "metrics").param("mode", "title"))
+                .andExpect(status().isOk());
+
+        // --- Act & Assert ---
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("document_search_latency_seconds_bucket{mode=\"title\"")))
+                .andExpect(content().string(containsString("document_search_phase_seconds_count{mode=\"title\",phase=\"ids\"} 1")))
+                .andExpect(content().string(containsString("document_search_response_size_bytes_count{mode=\"title\"} 1")))
+                .andExpect(content().string(containsString("document_search_statements_sum{mode=\"title\"} 2")))
+                .andExpect(content().string(containsString("document_create_phase_seconds_count{phase=\"insert\"} 1")))
+                .andExpect(content().string(containsString("document_create_latency_seconds_count 1")));
+    }
+}
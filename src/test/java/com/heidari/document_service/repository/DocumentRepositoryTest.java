@@ -2,12 +2,15 @@ package com.heidari.document_service.repository;
 
 import com.heidari.document_service.model.Document;
 import com.heidari.document_service.model.Tag;
+import com.heidari.document_service.search.SearchCursor;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -50,8 +53,81 @@ class DocumentRepositoryTest {
         assertThat(results.get(0).getTags().get(0).getName()).isEqualTo("Spring");
     }
 
+    @Test
+    void afterCursor_ShouldPageThroughResultsNewestFirst() {
+        // Arrange
+        Document first = createDoc("Java 1", "Content", "Paging 1");
+        Document second = createDoc("Java 2", "Content", "Paging 2");
+        Document third = createDoc("Java 3", "Content", "Paging 3");
+        Sort newestFirst = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
+        // Act: first page of two, then everything after its last row
+        Specification<Document> titleMatch = DocumentSpecification.searchByMode("Java", "title");
+        List<Document> page1 = documentRepository.findBy(titleMatch,
+                q -> q.sortBy(newestFirst).limit(2).all());
+        Document last = page1.get(1);
+        List<Document> page2 = documentRepository.findBy(
+                titleMatch.and(DocumentSpecification.afterCursor(SearchCursor.of(last.getCreatedAt(), last.getId()))),
+                q -> q.sortBy(newestFirst).limit(2).all());
+
+        // Assert
+        assertThat(page1).extracting(Document::getId).containsExactly(third.getId(), second.getId());
+        assertThat(page2).extracting(Document::getId).containsExactly(first.getId());
+    }
+
+    @Test
+    void streamAll_ShouldStreamMatchesInTheRequestedOrder() {
+        // Arrange
+        Document older = createDoc("Stream A", "Content", "Stream 1");
+        Document newer = createDoc("Stream B", "Content", "Stream 2");
+        createDoc("Other", "Content", "Stream 3");
+        Sort newestFirst = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
+        // Act: a fetch size of 1 forces one round trip per row on a real cursor
+        List<Long> ids;
+        try (Stream<Document> stream = documentRepository.streamAll(
+                DocumentSpecification.searchByMode("Stream", "title"), newestFirst, 1)) {
+            ids = stream.map(Document::getId).toList();
+        }
+
+        // Assert
+        assertThat(ids).containsExactly(newer.getId(), older.getId());
+    }
+
+    @Test
+    void findIds_ShouldReturnOnlyIdsInSortOrder() {
+        // Arrange
+        Document older = createDoc("Ids A", "Content", "Ids 1");
+        Document newer = createDoc("Ids B", "Content", "Ids 2");
+        Sort newestFirst = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
+        // Act: "all" mode uses DISTINCT over a join, which requires the sort columns in the select list
+        List<Long> ids = documentRepository.findIds(DocumentSpecification.searchByMode("Ids", "all"), newestFirst, 10);
+
+        // Assert
+        assertThat(ids).containsExactly(newer.getId(), older.getId());
+    }
+
+    @Test
+    void findSummariesWithSnippet_ShouldCutTheExcerptAroundTheTerm() {
+        // Arrange: the match sits far from the beginning of the body
+        String content = "x".repeat(500) + " the Needle is here " + "y".repeat(500);
+        Document doc = createDoc("Haystack", content, "Snippet");
+
+        // Act
+        List<DocumentRepository.SnippetRow> rows =
+                documentRepository.findSummariesWithSnippetByIdIn(List.of(doc.getId()), "needle", 10, 40);
+        List<DocumentRepository.TagNameRow> tags = documentRepository.findTagNamesByDocumentIdIn(List.of(doc.getId()));
+
+        // Assert
+        assertThat(rows).hasSize(1);
+        assertThat(rows.get(0).getTitle()).isEqualTo("Haystack");
+        assertThat(rows.get(0).getSnippet()).hasSize(40).contains("Needle");
+        assertThat(tags).extracting(DocumentRepository.TagNameRow::getName).containsExactly("Snippet");
+    }
+
     // Helper method to create data easily
-    private void createDoc(String title, String content, String tagName) {
+    private Document createDoc(String title, String content, String tagName) {
         Tag tag = new Tag(tagName);
         tagRepository.save(tag);
 
@@ -59,6 +135,6 @@ class DocumentRepositoryTest {
         doc.setTitle(title);
         doc.setContent(content);
         doc.setTags(List.of(tag));
-        documentRepository.save(doc);
+        return documentRepository.save(doc);
     }
 }
\ No newline at end of file
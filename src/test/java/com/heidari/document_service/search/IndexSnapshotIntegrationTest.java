@@ -0,0 +1,108 @@
+package com.heidari.document_service.search;
+
+import com.heidari.document_service.config.SearchProperties;
+import com.heidari.document_service.dto.CreateDocumentRequest;
+import com.heidari.document_service.model.Document;
+import com.heidari.document_service.repository.DocumentRepository;
+import com.heidari.document_service.service.DocumentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration Tests of restoring the index from a snapshot and replaying what it is missing.
+ * <p>
+ * Educational Note:
+ * A "restart" is simulated by restoring the snapshot into the running application. The database
+ * holds documents the snapshot cannot know about: documents created after it (above the high-water
+ * mark), and one saved behind the index's back before it was written (below the mark, like a
+ * transaction that committed late). All of them must be searchable after the restore.
+ */
+@SpringBootTest(properties = {
+        "document.search.snapshot.enabled=true",
+        "document.search.snapshot.directory=target/test-snapshots/${random.uuid}",
+        "document.search.snapshot.interval=1h",
+        "document.search.snapshot.write-on-shutdown=false"
+})
+class IndexSnapshotIntegrationTest {
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentIndex documentIndex;
+
+    @Autowired
+    private SearchProperties searchProperties;
+
+    @Test
+    void restoreSnapshot_ShouldReplayDocumentsMissingFromTheSnapshot() throws IOException {
+        // --- Arrange: a late committer, indexed documents, and a snapshot of them ---
+        Document late = new Document();
+        late.setTitle("Replay straggler");
+        late.setContent("committed late");
+        documentRepository.save(late);
+        for (int i = 0; i < 5; i++) {
+            create("Replay before " + i, List.of("old"));
+        }
+        assertThat(documentIndex.searchAll("straggler", SearchMode.TITLE)).isEmpty();
+
+        assertThat(documentIndex.writeSnapshot()).isTrue();
+        assertThat(documentIndex.writeSnapshot()).as("nothing changed").isFalse();
+        Path directory = Path.of(searchProperties.getSnapshot().getDirectory());
+        assertThat(IndexSnapshot.list(directory)).isNotEmpty();
+
+        for (int i = 0; i < 3; i++) {
+            create("Replay after " + i, List.of("new"));
+        }
+
+        // --- Act ---
+        boolean restored = documentIndex.restoreSnapshot();
+
+        // --- Assert ---
+        assertThat(restored).isTrue();
+        assertThat(documentIndex.isReady()).isTrue();
+        assertThat(documentIndex.searchAll("replay", SearchMode.TITLE)).hasSize(9);
+        assertThat(documentIndex.searchAll("straggler", SearchMode.TITLE)).containsExactly(late.getId());
+        assertThat(documentIndex.facets("", SearchMode.ALL, TagExpression.parse("old OR new"), 5).total())
+                .isEqualTo(8);
+
+        // Documents committed after the restore keep being indexed
+        create("Replay later", List.of("new"));
+        assertThat(documentIndex.searchAll("replay", SearchMode.TITLE)).hasSize(10);
+    }
+
+    @Test
+    void restoreSnapshot_ShouldSkipUnreadableSnapshots() throws IOException {
+        Path directory = Path.of(searchProperties.getSnapshot().getDirectory());
+        Files.createDirectories(directory);
+        Path bogus = Files.writeString(directory.resolve("index-99999999999999999999.snapshot"), "not a snapshot");
+        try {
+            create("Fallback", List.of());
+            documentIndex.writeSnapshot();
+
+            assertThat(documentIndex.restoreSnapshot()).isTrue();
+            assertThat(documentIndex.searchAll("fallback", SearchMode.TITLE)).hasSize(1);
+        } finally {
+            Files.delete(bogus);
+        }
+    }
+
+    private void create(String title, List<String> tags) {
+        CreateDocumentRequest request = new CreateDocumentRequest();
+        request.setTitle(title);
+        request.setContent("snapshot test");
+        request.setTags(tags);
+        documentService.createDocument(request);
+    }
+}
@@ -0,0 +1,107 @@
+package com.heidari.document_service.search;
+
+import com.heidari.document_service.dto.TagFacets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit Tests for writing the index to a snapshot file and mapping it back.
+ */
+class IndexSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    private InvertedIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new InvertedIndex(1024 * 1024, 40);
+        index.add(1, 100, "Java Basics", "Variables and loops", List.of("Coding"));
+        index.add(2, 200, "Python Intro", "Scripting with Java-like syntax", List.of("Scripting", "Java"));
+        index.add(3, 300, "Spring Boot", "Dependency injection for über-long contents", List.of("Java", "Spring"));
+        index.add(70_000, 400, "Kubernetes", "Containers and pods", List.of());
+    }
+
+    @Test
+    void read_ShouldRestoreAnIndexAnsweringLikeTheOriginal() throws IOException {
+        Path file = IndexSnapshot.write(index, directory, 2);
+        InvertedIndex restored = IndexSnapshot.read(file);
+
+        assertThat(file.getFileName().toString()).isEqualTo("index-00000000000000070000.snapshot");
+        assertThat(restored.documentCount()).isEqualTo(index.documentCount());
+        assertThat(restored.termCount()).isEqualTo(index.termCount());
+        assertThat(restored.postingBytes()).isEqualTo(index.postingBytes());
+        assertThat(restored.trigramBytes()).isEqualTo(index.trigramBytes());
+        assertThat(restored.maxDocumentId()).isEqualTo(70_000);
+        assertThat(restored.maxCreatedAtMicros()).isEqualTo(400);
+        assertThat(restored.hasTrigramSettings(1024 * 1024, 40)).isTrue();
+        for (String query : List.of("java", "spr", "über", "containers pods", "missing")) {
+            assertThat(restored.searchPage(query, SearchMode.ALL, null, 10))
+                    .isEqualTo(index.searchPage(query, SearchMode.ALL, null, 10));
+            assertThat(restored.searchRanked(query, SearchMode.ALL, 10, InvertedIndex.Scoring.DEFAULT))
+                    .isEqualTo(index.searchRanked(query, SearchMode.ALL, 10, InvertedIndex.Scoring.DEFAULT));
+        }
+        assertThat(restored.substringCandidates("ubern", SearchMode.ALL, null))
+                .isEqualTo(index.substringCandidates("ubern", SearchMode.ALL, null));
+        assertThat(restored.suggest("j", SearchMode.ALL, 5, 100))
+                .isEqualTo(index.suggest("j", SearchMode.ALL, 5, 100))
+                .hasSize(2);
+        TagExpression notCoding = TagExpression.parse("NOT Coding");
+        assertThat(restored.facets("", SearchMode.ALL, notCoding, 5))
+                .isEqualTo(index.facets("", SearchMode.ALL, notCoding, 5));
+    }
+
+    @Test
+    void read_ShouldReturnAnIndexThatKeepsGrowing() throws IOException {
+        InvertedIndex restored = IndexSnapshot.read(IndexSnapshot.write(index, directory, 2));
+
+        restored.add(70_001, 500, "Java Streams", "Collectors", List.of("Java"));
+
+        assertThat(restored.searchPage("java", SearchMode.TITLE, null, 10)).containsExactly(70_001, 1);
+        assertThat(restored.facets("", SearchMode.ALL, TagExpression.parse("Java"), 5))
+                .isEqualTo(new TagFacets(3, List.of(new TagFacets.Facet("Java", 3),
+                        new TagFacets.Facet("Scripting", 1), new TagFacets.Facet("Spring", 1))));
+    }
+
+    @Test
+    void read_ShouldRejectCorruptFiles() throws IOException {
+        Path file = IndexSnapshot.write(index, directory, 2);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x10;
+        Files.write(file, bytes);
+
+        assertThatThrownBy(() -> IndexSnapshot.read(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("checksum");
+    }
+
+    @Test
+    void write_ShouldKeepOnlyTheNewestSnapshots() throws IOException {
+        for (long id = 10; id <= 13; id++) {
+            index.add(id, id, "Note " + id, "", List.of());
+            IndexSnapshot.write(index, directory, 2);
+        }
+
+        assertThat(IndexSnapshot.list(directory)).extracting(file -> file.getFileName().toString())
+                .containsExactly("index-00000000000000070000.snapshot");
+
+        InvertedIndex small = new InvertedIndex();
+        small.add(5, 5, "Old", "", List.of());
+        IndexSnapshot.write(small, directory, 2);
+        assertThat(IndexSnapshot.list(directory)).extracting(file -> file.getFileName().toString())
+                .containsExactly("index-00000000000000070000.snapshot", "index-00000000000000000005.snapshot");
+        try (var files = Files.list(directory)) {
+            assertThat(files.filter(file -> file.toString().endsWith(".tmp"))).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.heidari.document_service.search;
+
+import com.heidari.document_service.dto.TagFacets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit Tests for the in-memory inverted index (no Spring context, no database).
+ */
+class InvertedIndexTest {
+
+    private InvertedIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new InvertedIndex();
+        index.add(1, 100, "Java Basics", "Variables and loops", List.of("Coding"));
+        index.add(2, 200, "Python Intro", "Scripting with Java-like syntax", List.of("Scripting"));
+        index.add(3, 200, "Spring Boot", "Dependency injection", List.of("Java", "Spring"));
+    }
+
+    @Test
+    void search_ShouldRestrictToTheFieldsOfTheMode() {
+        assertThat(index.search("java", SearchMode.TITLE)).containsExactly(1);
+        assertThat(index.search("java", SearchMode.CONTENT)).containsExactly(2);
+        assertThat(index.search("java", SearchMode.TAG)).containsExactly(3);
+        assertThat(index.search("java", SearchMode.ALL)).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void search_ShouldMatchTermPrefixesCaseInsensitively() {
+        assertThat(index.search("SCRIPT", SearchMode.ALL)).containsExactly(2);
+    }
+
+    @Test
+    void search_ShouldRequireEveryQueryTerm() {
+        assertThat(index.search("spring boot", SearchMode.ALL)).containsExactly(3);
+        assertThat(index.search("spring python", SearchMode.ALL)).isEmpty();
+    }
+
+    @Test
+    void search_ShouldReturnNothing_ForQueriesWithoutTerms() {
+        assertThat(index.search("  --  ", SearchMode.ALL)).isEmpty();
+    }
+
+    @Test
+    void searchPage_ShouldReturnNewestFirst_AndContinueAfterTheCursor() {
+        // Documents 2 and 3 share a timestamp; the id breaks the tie
+        long[] first = index.searchPage("java", SearchMode.ALL, null, 2);
+        assertThat(first).containsExactly(3, 2);
+
+        long[] second = index.searchPage("java", SearchMode.ALL, new SearchCursor(200, 2), 2);
+        assertThat(second).containsExactly(1);
+    }
+
+    @Test
+    void searchRanked_ShouldOrderByRelevance_AndKeepOnlyTheTopK() {
+        // "java" is in the title of 1 (boosted), the content of 2, and a short tag of 3
+        assertThat(index.searchRanked("java", SearchMode.ALL, 3, InvertedIndex.Scoring.DEFAULT))
+                .containsExactly(1, 3, 2);
+        assertThat(index.searchRanked("java", SearchMode.ALL, 1, InvertedIndex.Scoring.DEFAULT))
+                .containsExactly(1);
+
+        // With the content boosted instead, the content match wins
+        InvertedIndex.Scoring contentFirst = new InvertedIndex.Scoring(1.2, 0.75, 0.1, 5.0, 0.1);
+        assertThat(index.searchRanked("java", SearchMode.ALL, 1, contentFirst)).containsExactly(2);
+    }
+
+    @Test
+    void searchRanked_ShouldFavourRepeatedTermsAndShortFields() {
+        InvertedIndex ranked = new InvertedIndex();
+        ranked.add(1, 100, "Notes", "cache misses and other things worth measuring here", List.of());
+        ranked.add(2, 100, "Notes", "cache cache cache", List.of());
+        ranked.add(3, 100, "Notes", "cache", List.of());
+
+        assertThat(ranked.searchRanked("cache", SearchMode.CONTENT, 3, InvertedIndex.Scoring.DEFAULT))
+                .containsExactly(2, 3, 1);
+    }
+
+    @Test
+    void searchRanked_ShouldMatchTheSameDocumentsAsSearch() {
+        assertThat(index.searchRanked("spring boot", SearchMode.ALL, 10, InvertedIndex.Scoring.DEFAULT))
+                .containsExactly(3);
+        assertThat(index.searchRanked("spring python", SearchMode.ALL, 10, InvertedIndex.Scoring.DEFAULT))
+                .isEmpty();
+    }
+
+    @Test
+    void searchPage_ShouldFilterByTagExpression() {
+        TagExpression javaNotSpring = TagExpression.parse("Java AND NOT Spring");
+        assertThat(index.searchPage("java", SearchMode.ALL, javaNotSpring, null, 10)).isEmpty();
+        assertThat(index.searchPage("java", SearchMode.ALL, TagExpression.parse("Coding OR Spring"), null, 10))
+                .containsExactly(3, 1);
+        // Without query terms, the expression alone selects the documents
+        assertThat(index.searchPage("", SearchMode.ALL, TagExpression.parse("NOT Coding"), null, 10))
+                .containsExactly(3, 2);
+        assertThat(index.searchRanked("java", SearchMode.ALL, TagExpression.parse("Scripting"), 10,
+                InvertedIndex.Scoring.DEFAULT)).containsExactly(2);
+    }
+
+    @Test
+    void facets_ShouldCountTheTagsOfAllMatches() {
+        index.add(4, 300, "Spring Data", "Repositories", List.of("Spring", "JPA"));
+
+        TagFacets facets = index.facets("spring", SearchMode.ALL, null, 10);
+        assertThat(facets.total()).isEqualTo(2);
+        assertThat(facets.tags()).containsExactly(new TagFacets.Facet("Spring", 2),
+                new TagFacets.Facet("JPA", 1), new TagFacets.Facet("Java", 1));
+
+        assertThat(index.facets("", SearchMode.ALL, TagExpression.parse("NOT Spring"), 1).tags())
+                .containsExactly(new TagFacets.Facet("Coding", 1));
+    }
+
+    @Test
+    void tagsAndFacets_ShouldHandleIdsBeyondTheIntRange() {
+        long big = Integer.MAX_VALUE + 10L;
+        index.add(big, 400, "Spring Batch", "Jobs", List.of("Spring", "Batch"));
+        index.add(1L << 40, 500, "Spring Cloud", "Config", List.of("Spring"));
+
+        assertThat(index.searchPage("spring", SearchMode.ALL, TagExpression.parse("Spring AND NOT Java"), null, 10))
+                .containsExactly(1L << 40, big);
+        TagFacets facets = index.facets("spring", SearchMode.ALL, null, 10);
+        assertThat(facets.total()).isEqualTo(3);
+        assertThat(facets.tags()).containsExactly(new TagFacets.Facet("Spring", 3),
+                new TagFacets.Facet("Batch", 1), new TagFacets.Facet("Java", 1));
+    }
+
+    @Test
+    void add_ShouldIgnoreDocumentsThatAreAlreadyIndexed() {
+        index.add(1, 100, "Java Basics", "Variables and loops", List.of("Coding"));
+
+        assertThat(index.documentCount()).isEqualTo(3);
+        assertThat(index.search("java", SearchMode.TITLE)).containsExactly(1);
+    }
+
+    @Test
+    void cursor_ShouldSurviveEncoding() {
+        SearchCursor cursor = new SearchCursor(1_700_000_000_123_456L, 42);
+
+        assertThat(SearchCursor.decode(cursor.encode())).isEqualTo(cursor);
+        assertThat(SearchCursor.toMicros(cursor.createdAt())).isEqualTo(cursor.createdAtMicros());
+    }
+
+    @Test
+    void postingList_ShouldKeepIdsSortedAndUnique_WhenAddedOutOfOrder() {
+        PostingList postings = new PostingList();
+        postings.add(10, 1);
+        postings.add(300, 2);
+        postings.add(5, 3);
+        postings.add(300, 2);
+
+        assertThat(postings.docIds()).containsExactly(5, 10, 300);
+        assertThat(postings.size()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,168 @@
+package com.heidari.document_service.search;
+
+import com.heidari.document_service.config.SearchProperties;
+import com.heidari.document_service.metrics.DocumentMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit Tests for the single-flight execution of identical searches.
+ * <p>
+ * Educational Note:
+ * To make a burst deterministic, the first caller's search does not finish before every other caller
+ * is parked waiting for it (their threads are then in the TIMED_WAITING state).
+ */
+class SearchCoalescerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SearchProperties properties = new SearchProperties();
+    private final SearchCoalescer coalescer = new SearchCoalescer(properties, new DocumentMetrics(meterRegistry));
+
+    @Test
+    void burstOfIdenticalSearches_ShouldRunOnce_AndShareTheResult() throws InterruptedException {
+        int callers = 16;
+        AtomicInteger searches = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        List<Object> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            threads.add(new Thread(() -> {
+                Object result = coalescer.execute("java", () -> {
+                    searches.incrementAndGet();
+                    awaitOthersWaiting(threads);
+                    return new Object();
+                });
+                synchronized (results) {
+                    results.add(result);
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        assertThat(searches).hasValue(1);
+        assertThat(results).hasSize(callers).containsOnly(results.get(0));
+        assertThat(count("executed")).isEqualTo(1);
+        assertThat(count("shared")).isEqualTo(callers - 1);
+        assertThat(meterRegistry.get("document.search.coalescing.ratio").gauge().value())
+                .isEqualTo((callers - 1) / (double) callers);
+    }
+
+    @Test
+    void differentKeys_ShouldNotBeCoalesced() {
+        AtomicInteger searches = new AtomicInteger();
+
+        coalescer.execute("java", searches::incrementAndGet);
+        coalescer.execute("spring", searches::incrementAndGet);
+        coalescer.execute("java", searches::incrementAndGet);
+
+        assertThat(searches).hasValue(3);
+        assertThat(count("shared")).isZero();
+    }
+
+    @Test
+    void slowSearch_ShouldOnlyDelayTheOthers_UpToMaxWait() throws InterruptedException {
+        properties.getCoalescing().setMaxWait(Duration.ofMillis(50));
+        CountDownLatch release = new CountDownLatch(1);
+        Thread leader = new Thread(() -> coalescer.execute("java", () -> {
+            await(release);
+            return "slow";
+        }));
+        leader.start();
+        awaitWaiting(leader);
+
+        long started = System.nanoTime();
+        String result = coalescer.execute("java", () -> "own");
+
+        assertThat(result).isEqualTo("own");
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(5));
+        assertThat(count("abandoned")).isEqualTo(1);
+        assertThat(leader.isAlive()).as("the slow search is not cancelled").isTrue();
+
+        release.countDown();
+        leader.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @Test
+    void failedSearch_ShouldBeRetriedByTheWaitingCallers() throws InterruptedException {
+        AtomicInteger searches = new AtomicInteger();
+        Map<Thread, Object> outcomes = new ConcurrentHashMap<>();
+        AtomicReference<Thread> follower = new AtomicReference<>();
+        Thread leader = new Thread(() -> {
+            try {
+                coalescer.execute("java", () -> {
+                    searches.incrementAndGet();
+                    follower.get().start();
+                    awaitWaiting(follower.get());
+                    throw new IllegalStateException("leader's transaction timed out");
+                });
+            } catch (IllegalStateException e) {
+                outcomes.put(Thread.currentThread(), e);
+            }
+        });
+        follower.set(new Thread(() -> outcomes.put(Thread.currentThread(),
+                coalescer.execute("java", () -> "retried " + searches.incrementAndGet()))));
+
+        leader.start();
+        leader.join(TimeUnit.SECONDS.toMillis(10));
+        follower.get().join(TimeUnit.SECONDS.toMillis(10));
+
+        assertThat(outcomes.get(leader)).isInstanceOf(IllegalStateException.class);
+        assertThat(outcomes.get(follower.get())).isEqualTo("retried 2");
+        assertThat(count("executed")).isEqualTo(2);
+    }
+
+    @Test
+    void disabled_ShouldRunEverySearch() {
+        properties.getCoalescing().setEnabled(false);
+        AtomicInteger searches = new AtomicInteger();
+
+        coalescer.execute("java", searches::incrementAndGet);
+        coalescer.execute("java", searches::incrementAndGet);
+
+        assertThat(searches).hasValue(2);
+        assertThat(count("executed")).isZero();
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.get("document.search.coalescing").tag("outcome", outcome).counter().count();
+    }
+
+    // Waits until every thread but the current one is parked in a timed wait (for the flight)
+    private static void awaitOthersWaiting(List<Thread> threads) {
+        for (Thread thread : threads) {
+            if (thread != Thread.currentThread()) {
+                awaitWaiting(thread);
+            }
+        }
+    }
+
+    private static void awaitWaiting(Thread thread) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (thread.getState() != Thread.State.TIMED_WAITING && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
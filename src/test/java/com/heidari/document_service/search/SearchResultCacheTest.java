@@ -0,0 +1,57 @@
+package com.heidari.document_service.search;
+
+import com.heidari.document_service.config.SearchProperties;
+import com.heidari.document_service.dto.SearchPage;
+import com.heidari.document_service.metrics.DocumentMetrics;
+import com.heidari.document_service.model.Document;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit Tests for the generation-based search result cache.
+ */
+class SearchResultCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SearchProperties properties = new SearchProperties();
+    private final SearchResultCache cache = new SearchResultCache(properties, meterRegistry,
+            new SearchCoalescer(properties, new DocumentMetrics(meterRegistry)));
+    private final SearchResultCache.Key key = new SearchResultCache.Key("java", SearchMode.ALL, null, 20, true, false,
+            SearchMatch.TERMS, 0, null);
+
+    @Test
+    void get_ShouldRunTheSearchOnce_AndPublishStatistics() {
+        AtomicInteger searches = new AtomicInteger();
+
+        cache.get(key, () -> page(searches));
+        cache.get(key, () -> page(searches));
+
+        assertThat(searches).hasValue(1);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void get_ShouldNotServeAResultComputedWhileAWriteCommitted() {
+        AtomicInteger searches = new AtomicInteger();
+
+        // The write commits after the search has read the database, but before the result is cached
+        cache.get(key, () -> {
+            SearchPage<Document> stale = page(searches);
+            cache.invalidateAfterCommit();
+            return stale;
+        });
+        cache.get(key, () -> page(searches));
+
+        assertThat(searches).hasValue(2);
+    }
+
+    private static SearchPage<Document> page(AtomicInteger searches) {
+        searches.incrementAndGet();
+        return new SearchPage<>(List.of(new Document()), null);
+    }
+}
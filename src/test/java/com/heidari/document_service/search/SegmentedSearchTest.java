@@ -0,0 +1,161 @@
+package com.heidari.document_service.search;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit Tests checking the parallel search of many index segments against a single segment.
+ * <p>
+ * Educational Note:
+ * Both indexes receive the same random corpus. The serial one keeps it in one segment (the minimum
+ * segment size is far above the corpus); the parallel one splits it into segments of a few dozen
+ * documents searched on a pool. Pages, rankings (scores included, through the order of ties), plain
+ * matches and facets must be identical. Some documents arrive late, below ids already indexed,
+ * as they do when transactions commit out of order.
+ */
+class SegmentedSearchTest {
+
+    private static final String[] WORDS = {"java", "javascript", "spring", "index", "segment", "query",
+            "cache", "stream", "merge", "heap"};
+    private static final String[] TAGS = {"backend", "frontend", "legacy", "cloud"};
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(21);
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private InvertedIndex serial;
+    private InvertedIndex parallel;
+
+    @BeforeEach
+    void setUp() {
+        serial = new InvertedIndex();
+        parallel = new InvertedIndex();
+        parallel.setParallelism(new InvertedIndex.Parallelism(pool, 3, 16));
+
+        List<Long> late = new ArrayList<>();
+        for (long id = 1; id <= 600; id++) {
+            if (random.nextInt(20) == 0) {
+                late.add(id);
+            } else {
+                add(id);
+            }
+        }
+        late.forEach(this::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void searches_ShouldMatchASingleSegment() {
+        assertThat(parallel.segmentCount()).isGreaterThan(1);
+
+        List<String> queries = List.of("java", "jav", "spring index", "s", "cache stream merge", "missing");
+        List<TagExpression> tagExpressions = new ArrayList<>();
+        tagExpressions.add(null);
+        tagExpressions.add(TagExpression.parse("backend"));
+        tagExpressions.add(TagExpression.parse("cloud OR NOT legacy"));
+        for (String query : queries) {
+            for (SearchMode mode : SearchMode.values()) {
+                assertThat(parallel.search(query, mode)).isEqualTo(serial.search(query, mode));
+                assertThat(parallel.searchAll(query, mode)).isEqualTo(serial.searchAll(query, mode));
+            }
+            for (TagExpression tags : tagExpressions) {
+                String description = "query '" + query + "' with tags " + tags;
+                assertThat(allPages(parallel, query, tags)).as(description).isEqualTo(allPages(serial, query, tags));
+                for (int k : new int[]{1, 10, 1000}) {
+                    assertThat(parallel.searchRanked(query, SearchMode.ALL, tags, k, InvertedIndex.Scoring.DEFAULT))
+                            .as(description)
+                            .isEqualTo(serial.searchRanked(query, SearchMode.ALL, tags, k, InvertedIndex.Scoring.DEFAULT));
+                }
+                assertThat(parallel.facets(query, SearchMode.ALL, tags, 3))
+                        .isEqualTo(serial.facets(query, SearchMode.ALL, tags, 3));
+            }
+        }
+        assertThat(parallel.termCount()).isEqualTo(serial.termCount());
+    }
+
+    @Test
+    void segments_ShouldBeMergedAsTheCorpusGrows() {
+        for (long id = 601; id <= 3000; id++) {
+            add(id);
+        }
+
+        // Adjacent segments are merged while they fit in the target size (about two per task)
+        assertThat(parallel.segmentCount()).isBetween(2, 4 * 3 + 1);
+
+        // A lower parallelism limit means fewer, larger segments
+        parallel.setParallelism(new InvertedIndex.Parallelism(pool, 1, 16));
+        assertThat(parallel.segmentCount()).isLessThanOrEqualTo(4);
+        assertThat(parallel.searchPage("java", SearchMode.ALL, null, 50))
+                .isEqualTo(serial.searchPage("java", SearchMode.ALL, null, 50));
+    }
+
+    @Test
+    void snapshot_ShouldRestoreTheSegments() throws IOException {
+        InvertedIndex restored = IndexSnapshot.read(IndexSnapshot.write(parallel, directory, 1));
+
+        assertThat(restored.segmentCount()).isEqualTo(parallel.segmentCount());
+        assertThat(restored.postingBytes()).isEqualTo(parallel.postingBytes());
+        restored.setParallelism(new InvertedIndex.Parallelism(pool, 3, 16));
+        assertThat(restored.searchRanked("java spring", SearchMode.ALL, 20, InvertedIndex.Scoring.DEFAULT))
+                .isEqualTo(serial.searchRanked("java spring", SearchMode.ALL, 20, InvertedIndex.Scoring.DEFAULT));
+    }
+
+    private void add(long id) {
+        StringBuilder title = new StringBuilder();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1 + random.nextInt(3); i++) {
+            title.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        for (int i = 0; i < 3 + random.nextInt(12); i++) {
+            content.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        List<String> tags = new ArrayList<>();
+        for (String tag : TAGS) {
+            if (random.nextInt(3) == 0) {
+                tags.add(tag);
+            }
+        }
+        // A few documents share a creation time, so ties are ordered by id
+        long createdAt = (id / 3) * 1000;
+        String titleText = title.toString();
+        String contentText = content.toString();
+        serial.add(id, createdAt, titleText, contentText, tags);
+        parallel.add(id, createdAt, titleText, contentText, tags);
+    }
+
+    private static List<Long> allPages(InvertedIndex index, String query, TagExpression tags) {
+        List<Long> ids = new ArrayList<>();
+        SearchCursor after = null;
+        while (true) {
+            long[] page = index.searchPage(query, SearchMode.ALL, tags, after, 7);
+            for (long id : page) {
+                ids.add(id);
+            }
+            if (page.length < 7) {
+                return ids;
+            }
+            long last = page[page.length - 1];
+            after = new SearchCursor(createdAtOf(last), last);
+        }
+    }
+
+    private static long createdAtOf(long id) {
+        return (id / 3) * 1000;
+    }
+}
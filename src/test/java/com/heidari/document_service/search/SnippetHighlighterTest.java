@@ -0,0 +1,31 @@
+package com.heidari.document_service.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit Tests for snippet highlighting.
+ */
+class SnippetHighlighterTest {
+
+    @Test
+    void highlight_ShouldWrapTermsCaseInsensitively() {
+        assertThat(SnippetHighlighter.highlight("Learn Java and javascript", List.of("java")))
+                .isEqualTo("Learn <em>Java</em> and <em>java</em>script");
+    }
+
+    @Test
+    void highlight_ShouldEscapeDocumentMarkup() {
+        assertThat(SnippetHighlighter.highlight("<b>java</b>", List.of("java")))
+                .isEqualTo("&lt;b&gt;<em>java</em>&lt;/b&gt;");
+    }
+
+    @Test
+    void anchorTerm_ShouldPreferTheLongestTerm() {
+        assertThat(SnippetHighlighter.anchorTerm(List.of("go", "spring", "java"))).isEqualTo("spring");
+        assertThat(SnippetHighlighter.anchorTerm(List.of())).isEmpty();
+    }
+}
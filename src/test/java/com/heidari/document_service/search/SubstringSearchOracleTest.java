@@ -0,0 +1,133 @@
+package com.heidari.document_service.search;
+
+import com.heidari.document_service.dto.CreateDocumentRequest;
+import com.heidari.document_service.dto.SearchPage;
+import com.heidari.document_service.model.Document;
+import com.heidari.document_service.repository.DocumentRepository;
+import com.heidari.document_service.repository.DocumentSpecification;
+import com.heidari.document_service.service.DocumentService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration Tests checking the trigram-accelerated substring search against the Specification path.
+ * <p>
+ * Educational Note:
+ * {@link DocumentSpecification#searchByMode} is the reference implementation of {@code %q%}: simple and
+ * obviously right, but a full scan. The filter-and-verify path must return exactly the same documents
+ * in the same order, for random queries over a random corpus. Some contents are longer than the
+ * per-field limit, so the unfiltered path is exercised as well.
+ */
+@SpringBootTest(properties = {
+        "document.storage.compression.enabled=false",
+        "document.search.trigram.max-field-length=300"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SubstringSearchOracleTest {
+
+    private static final String[] WORDS = {"spring", "sprint", "string", "ring", "boot", "booth", "java",
+            "javascript", "kotlin", "index", "indexer", "trigram", "gram", "cache", "cached", "query"};
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    private final Random random = new Random(42);
+    private final List<String> samples = new ArrayList<>();
+
+    @BeforeAll
+    void createCorpus() {
+        for (int i = 0; i < 120; i++) {
+            CreateDocumentRequest request = new CreateDocumentRequest();
+            request.setTitle(sentence(2 + random.nextInt(3)));
+            request.setContent(sentence(5 + random.nextInt(60)));
+            request.setTags(List.of(WORDS[random.nextInt(WORDS.length)], WORDS[random.nextInt(WORDS.length)] + i % 3));
+            documentService.createDocument(request);
+            samples.add(request.getTitle() + " " + request.getContent());
+        }
+    }
+
+    @Test
+    void substringSearch_ShouldMatchTheSpecificationPath() {
+        List<String> queries = new ArrayList<>(List.of("spring", "RING", "g b", "x", "ja", "zzz", "kotlin index"));
+        for (int i = 0; i < 40; i++) {
+            // Random slices, often spanning word boundaries
+            String sample = samples.get(random.nextInt(samples.size()));
+            int start = random.nextInt(sample.length() - 8);
+            queries.add(sample.substring(start, start + 3 + random.nextInt(6)));
+        }
+
+        int matched = 0;
+        for (String query : queries) {
+            for (String mode : List.of("title", "content", "tag", "all")) {
+                List<Long> expected = documentRepository.findIds(
+                        DocumentSpecification.searchByMode(query, mode), NEWEST_FIRST, 10_000);
+                assertThat(allPages(query, mode, 0)).as("query '%s' in %s", query, mode).isEqualTo(expected);
+                matched += expected.size();
+            }
+        }
+        assertThat(matched).as("the queries must not all be misses").isGreaterThan(1000);
+    }
+
+    @Test
+    @Transactional
+    void fuzzySearch_ShouldMatchABruteForceScan() {
+        List<Document> all = documentRepository.findAll();
+        all.sort(Comparator.comparing(Document::getCreatedAt).thenComparing(Document::getId).reversed());
+
+        int matched = 0;
+        for (String query : List.of("sprnig", "javascrpt", "trigrma", "indexr boot", "kotlim")) {
+            String pattern = query.toLowerCase(Locale.ROOT);
+            List<Long> expected = all.stream()
+                    .filter(document -> contains(document.getTitle(), pattern)
+                            || contains(document.getContent(), pattern)
+                            || document.getTags().stream().anyMatch(tag -> contains(tag.getName(), pattern)))
+                    .map(Document::getId)
+                    .toList();
+            assertThat(allPages(query, "all", 1)).as("query '%s'", query).isEqualTo(expected);
+            matched += expected.size();
+        }
+        assertThat(matched).isGreaterThan(100);
+    }
+
+    private List<Long> allPages(String query, String mode, int distance) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            SearchPage<Document> page = documentService.searchSubstring(query, mode, distance, cursor, 7);
+            page.items().forEach(document -> ids.add(document.getId()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private static boolean contains(String text, String pattern) {
+        return text != null && TrigramIndex.containsApproximately(text.toLowerCase(Locale.ROOT), pattern, 1);
+    }
+
+    private String sentence(int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            text.append(i == 0 ? word.substring(0, 1).toUpperCase(Locale.ROOT) + word.substring(1) : word)
+                    .append(random.nextInt(8) == 0 ? ", " : " ");
+        }
+        return text.toString().trim();
+    }
+}
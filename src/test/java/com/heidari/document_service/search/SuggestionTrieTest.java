@@ -0,0 +1,105 @@
+package com.heidari.document_service.search;
+
+import com.heidari.document_service.search.SuggestionTrie.Phrase;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit Tests for the type-ahead trie.
+ * <p>
+ * Educational Note:
+ * The reference is a brute-force scan over every distinct phrase: filter by prefix, sort by count and
+ * phrase. Random phrases from a small alphabet share long prefixes, so edges are split and merged often.
+ */
+class SuggestionTrieTest {
+
+    private final SuggestionTrie trie = new SuggestionTrie();
+
+    @Test
+    void top_ShouldReturnTheMostFrequentPhrases_WithThePrefix() {
+        for (String tag : List.of("java", "java", "java", "javascript", "jakarta", "jakarta", "kotlin", "Java")) {
+            trie.add(tag);
+        }
+
+        assertThat(trie.top("ja", 10, 100)).containsExactly(
+                new Phrase("java", 4), new Phrase("jakarta", 2), new Phrase("javascript", 1));
+        assertThat(trie.top("JAV", 1, 100)).containsExactly(new Phrase("java", 4));
+        assertThat(trie.top("javas", 10, 100)).containsExactly(new Phrase("javascript", 1));
+        assertThat(trie.top("jax", 10, 100)).isEmpty();
+        assertThat(trie.top("javascripts", 10, 100)).isEmpty();
+        assertThat(trie.top("", 2, 100)).containsExactly(new Phrase("java", 4), new Phrase("jakarta", 2));
+        assertThat(trie.size()).isEqualTo(4);
+    }
+
+    @Test
+    void top_ShouldTreatWhitespaceRunsAsOneSpace() {
+        trie.add("  Spring   Boot in Action ");
+        trie.add("spring boot in action");
+        trie.add("Spring");
+
+        assertThat(trie.top("spring b", 10, 100)).containsExactly(new Phrase("Spring   Boot in Action", 2));
+        assertThat(trie.top("   spring  ", 10, 100)).containsExactly(new Phrase("Spring   Boot in Action", 2));
+        assertThat(trie.top("spr", 10, 100)).containsExactly(
+                new Phrase("Spring   Boot in Action", 2), new Phrase("Spring", 1));
+    }
+
+    @Test
+    void top_ShouldMatchABruteForceScan() throws IOException {
+        Random random = new Random(22);
+        Map<String, Long> counts = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder phrase = new StringBuilder();
+            for (int j = 0; j < 1 + random.nextInt(6); j++) {
+                phrase.append((char) ('a' + random.nextInt(3)));
+            }
+            trie.add(phrase.toString());
+            counts.merge(phrase.toString(), 1L, Long::sum);
+        }
+
+        SuggestionTrie restored = roundTrip(trie);
+        for (String prefix : List.of("", "a", "ab", "cab", "bbbb", "ccccc", "abcabc", "d")) {
+            List<Phrase> expected = counts.entrySet().stream()
+                    .filter(entry -> entry.getKey().startsWith(prefix))
+                    .map(entry -> new Phrase(entry.getKey(), entry.getValue()))
+                    .sorted(Comparator.comparingLong(Phrase::count).reversed().thenComparing(Phrase::text))
+                    .limit(7)
+                    .toList();
+            assertThat(trie.top(prefix, 7, 10_000)).as("prefix '%s'", prefix).isEqualTo(expected);
+            assertThat(restored.top(prefix, 7, 10_000)).as("restored, prefix '%s'", prefix).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void top_ShouldStopAtTheExpansionBudget_WithTheBestSoFar() {
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j <= i % 7; j++) {
+                trie.add(String.format(Locale.ROOT, "tag-%03d", i));
+            }
+        }
+        List<Phrase> unbounded = trie.top("tag", 20, 100_000);
+
+        List<Phrase> bounded = trie.top("tag", 20, 5);
+
+        assertThat(unbounded).hasSize(20);
+        assertThat(bounded).hasSizeLessThan(20);
+        assertThat(unbounded).startsWith(bounded.toArray(new Phrase[0]));
+    }
+
+    private static SuggestionTrie roundTrip(SuggestionTrie trie) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        trie.writeTo(new DataOutputStream(bytes));
+        return SuggestionTrie.readFrom(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+}
@@ -0,0 +1,48 @@
+package com.heidari.document_service.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit Tests for the tag expression syntax.
+ */
+class TagExpressionTest {
+
+    private static TagExpression tag(String name) {
+        return new TagExpression.Tag(name);
+    }
+
+    @Test
+    void parse_ShouldApplyPrecedence_NotThenAndThenOr() {
+        assertThat(TagExpression.parse("a OR b and not c")).isEqualTo(new TagExpression.Or(List.of(
+                tag("a"), new TagExpression.And(List.of(tag("b"), new TagExpression.Not(tag("c")))))));
+        assertThat(TagExpression.parse("(a OR b) c")).isEqualTo(new TagExpression.And(List.of(
+                new TagExpression.Or(List.of(tag("a"), tag("b"))), tag("c"))));
+    }
+
+    @Test
+    void parse_ShouldKeepQuotedNamesVerbatim() {
+        assertThat(TagExpression.parse("\"machine learning\" AND \"or\"")).isEqualTo(new TagExpression.And(List.of(
+                tag("machine learning"), tag("or"))));
+        assertThat(TagExpression.parse("C++")).isEqualTo(tag("C++"));
+    }
+
+    @Test
+    void parse_ShouldReturnNull_ForBlankText() {
+        assertThat(TagExpression.parse(null)).isNull();
+        assertThat(TagExpression.parse("   ")).isNull();
+    }
+
+    @Test
+    void parse_ShouldRejectMalformedExpressions() {
+        for (String text : List.of("a AND", "(a OR b", "a)", "NOT", "\"open", "a OR OR b")) {
+            assertThatThrownBy(() -> TagExpression.parse(text))
+                    .as(text)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+}
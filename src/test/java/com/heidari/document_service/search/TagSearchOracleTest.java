@@ -0,0 +1,136 @@
+package com.heidari.document_service.search;
+
+import com.heidari.document_service.dto.CreateDocumentRequest;
+import com.heidari.document_service.dto.SearchPage;
+import com.heidari.document_service.dto.Suggestion;
+import com.heidari.document_service.dto.TagFacets;
+import com.heidari.document_service.model.Document;
+import com.heidari.document_service.repository.DocumentRepository;
+import com.heidari.document_service.repository.DocumentSpecification;
+import com.heidari.document_service.service.DocumentService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration Tests checking the tag bitmaps of the index against the Specification path.
+ * <p>
+ * Educational Note:
+ * The EXISTS subqueries of {@link DocumentSpecification#matchesTags} and the GROUP BY of
+ * {@link DocumentRepository#countTags} are the reference: every random tag expression must select
+ * the same documents through the bitmaps, and the bitmap facets must report the same counts.
+ * The queries are single whole words, on which term matching and LIKE agree.
+ * Type-ahead suggestions from the index tries are checked against the GROUP BY queries of the
+ * Specification path the same way.
+ */
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class TagSearchOracleTest {
+
+    private static final String[] TAGS = {"java", "spring", "kotlin", "legacy", "cloud", "ml", "search", "jpa"};
+    private static final String[] WORDS = {"service", "index", "bitmap", "query", "cache", "stream"};
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    private final Random random = new Random(7);
+
+    @BeforeAll
+    void createCorpus() {
+        for (int i = 0; i < 150; i++) {
+            List<String> tags = new ArrayList<>();
+            for (String tag : TAGS) {
+                if (random.nextInt(4) == 0) {
+                    tags.add(tag);
+                }
+            }
+            CreateDocumentRequest request = new CreateDocumentRequest();
+            request.setTitle(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]);
+            request.setContent("Notes about " + WORDS[random.nextInt(WORDS.length)]);
+            request.setTags(tags);
+            documentService.createDocument(request);
+        }
+    }
+
+    @Test
+    void tagSearch_ShouldMatchTheSpecificationPath() {
+        List<String> expressions = new ArrayList<>(List.of("java", "NOT legacy", "java spring",
+                "java OR kotlin", "(java OR kotlin) AND NOT (legacy OR ml)", "unknown", "NOT unknown"));
+        for (int i = 0; i < 30; i++) {
+            expressions.add(randomExpression(3));
+        }
+
+        int matched = 0;
+        for (String expression : expressions) {
+            for (String query : List.of("", "index", "cache")) {
+                Specification<Document> spec = DocumentSpecification.searchByMode(query, "all")
+                        .and(DocumentSpecification.matchesTags(TagExpression.parse(expression)));
+                List<Long> expected = documentRepository.findIds(spec, NEWEST_FIRST, 10_000);
+                assertThat(allPages(query, expression))
+                        .as("query '%s' with tags '%s'", query, expression)
+                        .isEqualTo(expected);
+                matched += expected.size();
+
+                TagFacets facets = documentService.findTagFacets(query, "all", expression, 5);
+                List<TagFacets.Facet> expectedFacets = documentRepository.countTags(spec, 5).entrySet().stream()
+                        .map(entry -> new TagFacets.Facet(entry.getKey(), entry.getValue()))
+                        .toList();
+                assertThat(facets).isEqualTo(new TagFacets(expected.size(), expectedFacets));
+            }
+        }
+        assertThat(matched).as("the expressions must not all be misses").isGreaterThan(1000);
+    }
+
+    @Test
+    void suggestions_ShouldMatchTheSpecificationPath() {
+        for (String prefix : List.of("", "s", "se", "SERVICE ", "ca", "j", "k", "x")) {
+            List<Suggestion> expected = new ArrayList<>();
+            String pattern = prefix.stripLeading().toLowerCase() + "%";
+            documentRepository.suggestTitles(pattern, Limit.of(8)).forEach(row ->
+                    expected.add(new Suggestion(row.getText(), "title", row.getCount())));
+            documentRepository.suggestTags(pattern, Limit.of(8)).forEach(row ->
+                    expected.add(new Suggestion(row.getText(), "tag", row.getCount())));
+            expected.sort(Suggestion.BY_COUNT);
+
+            assertThat(documentService.suggest(prefix, "all", 8))
+                    .as("prefix '%s'", prefix)
+                    .isEqualTo(expected.subList(0, Math.min(8, expected.size())));
+        }
+        assertThat(documentService.suggest("s", "tag", 3)).extracting(Suggestion::text).containsExactly("search", "spring");
+    }
+
+    private List<Long> allPages(String query, String tags) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            SearchPage<Document> page = documentService.searchDocuments(query, "all", tags, cursor, 9, false);
+            page.items().forEach(document -> ids.add(document.getId()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private String randomExpression(int depth) {
+        if (depth == 0 || random.nextInt(3) == 0) {
+            String tag = TAGS[random.nextInt(TAGS.length)];
+            return random.nextInt(4) == 0 ? "NOT " + tag : tag;
+        }
+        String operator = random.nextBoolean() ? " AND " : " OR ";
+        return "(" + randomExpression(depth - 1) + operator + randomExpression(depth - 1) + ")";
+    }
+}
@@ -0,0 +1,72 @@
+package com.heidari.document_service.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit Tests for the trigram index and its verification (no Spring context, no database).
+ */
+class TrigramIndexTest {
+
+    private static final int ALL_FIELDS = 0b111;
+    private static final int TAG_ONLY = 1 << InvertedIndex.Field.TAG.ordinal();
+
+    @Test
+    void substringCandidates_ShouldRequireEveryTrigramInTheSameField() {
+        TrigramIndex index = new TrigramIndex(Long.MAX_VALUE, 1000);
+        index.add(1, fields("Spring Boot", "dependency injection", List.of("java")));
+        index.add(2, fields("Sprint review", "a ring of bells", List.of()));
+        index.add(3, fields("Notes", "nothing here", List.of("spring", "boot")));
+
+        // Document 2 has every trigram of "spring", but spread over its title and its content
+        assertThat(index.substringCandidates("spring", ALL_FIELDS)).containsExactly(1, 3);
+        assertThat(index.substringCandidates("spring", TAG_ONLY)).containsExactly(3);
+        // "g b" spans two tags of document 3, but never occurs inside one
+        assertThat(index.substringCandidates("g b", TAG_ONLY)).isEmpty();
+        assertThat(index.substringCandidates("sp", ALL_FIELDS)).isNull();
+    }
+
+    @Test
+    void candidates_ShouldIncludeUnfilteredDocuments_WhenOverBudget() {
+        TrigramIndex index = new TrigramIndex(0, 1000);
+        index.add(1, fields("Spring Boot", null, List.of()));
+
+        assertThat(index.byteSize()).isLessThan(100);
+        assertThat(index.unfilteredCount()).isEqualTo(1);
+        assertThat(index.substringCandidates("zzz", ALL_FIELDS)).containsExactly(1);
+        assertThat(index.substringCandidates("zzz", TAG_ONLY)).isEmpty();
+    }
+
+    @Test
+    void fuzzyCandidates_ShouldFindTextWithTypos() {
+        TrigramIndex index = new TrigramIndex(Long.MAX_VALUE, 1000);
+        index.add(1, fields("Kubernetes operators", null, List.of()));
+        index.add(2, fields("Unrelated", null, List.of()));
+
+        assertThat(index.fuzzyCandidates("kubernates", 1, ALL_FIELDS)).containsExactly(1);
+        assertThat(index.fuzzyCandidates("kubrnetes", 2, ALL_FIELDS)).containsExactly(1);
+        assertThat(index.fuzzyCandidates("kuber", 1, ALL_FIELDS)).isNull();
+    }
+
+    @Test
+    void containsApproximately_ShouldCountEdits() {
+        assertThat(TrigramIndex.containsApproximately("learn kubernetes today", "kubernetes", 0)).isTrue();
+        assertThat(TrigramIndex.containsApproximately("learn kubernetes today", "kubernates", 0)).isFalse();
+        assertThat(TrigramIndex.containsApproximately("learn kubernetes today", "kubernates", 1)).isTrue();  // substitution
+        assertThat(TrigramIndex.containsApproximately("learn kubernetes today", "kubrnetes", 1)).isTrue();   // insertion
+        assertThat(TrigramIndex.containsApproximately("learn kubernetes today", "kubbernetes", 1)).isTrue(); // deletion
+        assertThat(TrigramIndex.containsApproximately("learn kubernetes today", "kbrnetes", 1)).isFalse();
+        assertThat(TrigramIndex.containsApproximately("learn kubernetes today", "kbrnetes", 2)).isTrue();
+    }
+
+    private static Map<InvertedIndex.Field, List<String>> fields(String title, String content, List<String> tags) {
+        return Map.of(InvertedIndex.Field.TITLE, Collections.singletonList(title),
+                InvertedIndex.Field.CONTENT, Collections.singletonList(content),
+                InvertedIndex.Field.TAG, tags);
+    }
+}
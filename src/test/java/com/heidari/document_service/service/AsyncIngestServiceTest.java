@@ -0,0 +1,140 @@
+package com.heidari.document_service.service;
+
+import com.heidari.document_service.config.IngestProperties;
+import com.heidari.document_service.dto.CreateDocumentRequest;
+import com.heidari.document_service.dto.IngestTicket;
+import com.heidari.document_service.metrics.DocumentMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit Tests for the asynchronous ingestion pipeline.
+ * The writer is mocked, so these tests cover queueing, backpressure and ticket bookkeeping only.
+ */
+@ExtendWith(MockitoExtension.class)
+class AsyncIngestServiceTest {
+
+    @Mock
+    private BulkIngestService bulkIngestService;
+
+    private final IngestProperties properties = new IngestProperties();
+    private AsyncIngestService service;
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    void submit_ShouldRejectWithQueueFull_WhenNoCapacityIsLeft() {
+        // --- Arrange: no workers, so nothing is ever taken off the queue ---
+        properties.getAsync().setQueueCapacity(2);
+        properties.getAsync().setWorkers(0);
+        start();
+
+        // --- Act ---
+        service.submit(request("A"));
+        service.submit(request("B"));
+
+        // --- Assert ---
+        assertThatThrownBy(() -> service.submit(request("C"))).isInstanceOf(IngestQueueFullException.class);
+        assertThat(service.queueDepth()).isEqualTo(2);
+    }
+
+    @Test
+    void workers_ShouldCommitQueuedDocuments_AndMarkTicketsDurable() {
+        // --- Arrange: the writer hands out consecutive ids ---
+        AtomicLong nextId = new AtomicLong(100);
+        when(bulkIngestService.writeCommitted(anyList())).thenAnswer(invocation -> {
+            List<?> batch = invocation.getArgument(0);
+            return batch.stream().map(request -> nextId.getAndIncrement()).toList();
+        });
+        start();
+
+        // --- Act ---
+        List<IngestTicket> submitted = List.of(service.submit(request("A")), service.submit(request("B")));
+
+        // --- Assert ---
+        for (IngestTicket ticket : submitted) {
+            IngestTicket done = awaitCompletion(ticket.ticketId());
+            assertThat(done.status()).isEqualTo(IngestTicket.Status.DURABLE);
+            assertThat(done.documentId()).isBetween(100L, 101L);
+        }
+    }
+
+    @Test
+    void workers_ShouldIsolateAFailingDocument_FromTheRestOfItsBatch() {
+        // --- Arrange: any batch containing "Bad" fails ---
+        when(bulkIngestService.writeCommitted(anyList())).thenAnswer(invocation -> {
+            List<CreateDocumentRequest> batch = invocation.getArgument(0);
+            if (batch.stream().anyMatch(request -> request.getTitle().equals("Bad"))) {
+                throw new IllegalStateException("constraint violated");
+            }
+            return batch.stream().map(request -> 1L).toList();
+        });
+        start();
+
+        // --- Act ---
+        IngestTicket good = service.submit(request("Good"));
+        IngestTicket bad = service.submit(request("Bad"));
+
+        // --- Assert ---
+        assertThat(awaitCompletion(good.ticketId()).status()).isEqualTo(IngestTicket.Status.DURABLE);
+        IngestTicket failed = awaitCompletion(bad.ticketId());
+        assertThat(failed.status()).isEqualTo(IngestTicket.Status.FAILED);
+        assertThat(failed.error()).isEqualTo("constraint violated");
+    }
+
+    @Test
+    void stop_ShouldFailTicketsLeftInTheQueue_AndRejectLaterSubmissions() {
+        // --- Arrange: no workers, so the queued documents are never written ---
+        properties.getAsync().setWorkers(0);
+        start();
+        IngestTicket queued = service.submit(request("A"));
+
+        // --- Act ---
+        service.stop();
+
+        // --- Assert ---
+        IngestTicket abandoned = service.ticket(queued.ticketId()).orElseThrow();
+        assertThat(abandoned.status()).isEqualTo(IngestTicket.Status.FAILED);
+        assertThat(service.queueDepth()).isZero();
+        assertThatThrownBy(() -> service.submit(request("B"))).isInstanceOf(IngestQueueFullException.class);
+    }
+
+    private void start() {
+        service = new AsyncIngestService(bulkIngestService, properties, new DocumentMetrics(new SimpleMeterRegistry()));
+        service.start();
+    }
+
+    private IngestTicket awaitCompletion(String ticketId) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (System.nanoTime() < deadline) {
+            IngestTicket ticket = service.ticket(ticketId).orElseThrow();
+            if (ticket.status() != IngestTicket.Status.QUEUED) {
+                return ticket;
+            }
+            Thread.onSpinWait();
+        }
+        throw new AssertionError("Ticket " + ticketId + " was not processed in time");
+    }
+
+    private static CreateDocumentRequest request(String title) {
+        CreateDocumentRequest request = new CreateDocumentRequest();
+        request.setTitle(title);
+        return request;
+    }
+}
@@ -0,0 +1,160 @@
+package com.heidari.document_service.service;
+
+import com.heidari.document_service.dto.BulkIngestReport;
+import com.heidari.document_service.dto.CreateDocumentRequest;
+import com.heidari.document_service.model.ContentStorage;
+import com.heidari.document_service.model.Document;
+import com.heidari.document_service.model.Tag;
+import com.heidari.document_service.repository.DocumentRepository;
+import com.heidari.document_service.repository.TagRepository;
+import com.heidari.document_service.search.DocumentIndex;
+import com.heidari.document_service.search.SearchMode;
+import com.heidari.document_service.storage.ContentStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration Tests for bulk ingestion against the H2 test database.
+ * <p>
+ * Educational Note:
+ * BulkIngestService manages its own transactions (one per commit interval), so this test
+ * deliberately is NOT @Transactional: the rows it writes are really committed.
+ * The test configuration uses small batches (3 documents, 2 batches per commit)
+ * so that a handful of documents exercises several batches and commits.
+ */
+@SpringBootTest
+class BulkIngestServiceTest {
+
+    @Autowired
+    private BulkIngestService bulkIngestService;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private DocumentIndex documentIndex;
+
+    @Autowired
+    private ContentStore contentStore;
+
+    @Test
+    void ingest_ShouldWriteNdjsonInBatches_AndShareTags() throws Exception {
+        // --- Arrange: 7 documents -> batches of 3 + 3 + 1 ---
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 1; i <= 7; i++) {
+            ndjson.append("{\"title\":\"Bulk ").append(i)
+                    .append("\",\"content\":\"Body\",\"tags\":[\"bulk-shared\",\"bulk-").append(i % 2).append("\"]}\n");
+        }
+
+        // --- Act ---
+        BulkIngestReport report = bulkIngestService.ingest(stream(ndjson.toString()));
+
+        // --- Assert ---
+        assertThat(report.documents()).isEqualTo(7);
+        assertThat(report.batches()).extracting(BulkIngestReport.BatchReport::documents).containsExactly(3, 3, 1);
+        assertThat(tagRepository.findByNameIn(List.of("bulk-shared", "bulk-0", "bulk-1"))).hasSize(3);
+        assertThat(titlesTagged("bulk-shared")).hasSize(7);
+    }
+
+    @Test
+    void ingest_ShouldAcceptJsonArray_AndReuseExistingTags() throws Exception {
+        // --- Arrange ---
+        tagRepository.save(new Tag("array-existing"));
+        String json = """
+                [{"title":"Array 1","tags":["array-existing","array-new"]},
+                 {"title":"Array 2","tags":["array-existing","array-existing"]}]
+                """;
+
+        // --- Act ---
+        BulkIngestReport report = bulkIngestService.ingest(stream(json));
+
+        // --- Assert ---
+        assertThat(report.documents()).isEqualTo(2);
+        assertThat(tagRepository.findByNameIn(List.of("array-existing"))).hasSize(1);
+        assertThat(titlesTagged("array-existing")).containsExactlyInAnyOrder("Array 1", "Array 2");
+    }
+
+    @Test
+    void writeCommitted_ShouldReturnIdsInInputOrder() {
+        // --- Arrange ---
+        CreateDocumentRequest first = new CreateDocumentRequest();
+        first.setTitle("Committed 1");
+        first.setTags(List.of("committed"));
+        CreateDocumentRequest second = new CreateDocumentRequest();
+        second.setTitle("Committed 2");
+
+        // --- Act ---
+        List<Long> ids = bulkIngestService.writeCommitted(List.of(first, second));
+
+        // --- Assert: the rows are committed and the ids line up with the input ---
+        assertThat(documentRepository.findById(ids.get(0))).get().extracting(Document::getTitle).isEqualTo("Committed 1");
+        assertThat(documentRepository.findById(ids.get(1))).get().extracting(Document::getTitle).isEqualTo("Committed 2");
+        assertThat(titlesTagged("committed")).containsExactly("Committed 1");
+    }
+
+    @Test
+    void ingest_ShouldIndexEveryDocument_AfterTheirTransactionsCommit() throws Exception {
+        // --- Arrange: 8 documents -> two transactions (6 + 2) ---
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 1; i <= 8; i++) {
+            ndjson.append("{\"title\":\"Indexed ").append(i)
+                    .append("\",\"content\":\"bulkindexedword\",\"tags\":[\"bulk-indexed\"]}\n");
+        }
+
+        // --- Act ---
+        bulkIngestService.ingest(stream(ndjson.toString()));
+
+        // --- Assert: read back from the table, content and tags included ---
+        assertThat(documentIndex.searchAll("bulkindexedword", SearchMode.CONTENT)).hasSize(8);
+        assertThat(documentIndex.searchAll("bulk-indexed", SearchMode.TAG)).hasSize(8);
+    }
+
+    @Test
+    void ingest_ShouldStoreBodiesOverTheInlineThresholdInFiles() throws Exception {
+        // --- Arrange: one body above the default threshold (64K characters), one below ---
+        String large = "bulkfilebody ".repeat(6000); // 78K characters
+        String ndjson = "{\"title\":\"Bulk large\",\"content\":\"" + large + "\"}\n"
+                + "{\"title\":\"Bulk small\",\"content\":\"bulkfilebody\"}\n";
+
+        // --- Act ---
+        bulkIngestService.ingest(stream(ndjson));
+
+        // --- Assert: stored as a single create would store them, and both searchable ---
+        long[] ids = documentIndex.searchAll("bulkfilebody", SearchMode.CONTENT);
+        assertThat(ids).hasSize(2);
+        Map<String, Document> byTitle = Arrays.stream(ids)
+                .mapToObj(id -> documentRepository.findById(id).orElseThrow())
+                .collect(Collectors.toMap(Document::getTitle, document -> document));
+        Document file = byTitle.get("Bulk large");
+        assertThat(file.getContentStorage()).isEqualTo(ContentStorage.FILE);
+        assertThat(file.getContent()).isNull();
+        assertThat(file.getContentLength()).isEqualTo(large.length());
+        assertThat(contentStore.exists(file.getId())).isTrue();
+        assertThat(byTitle.get("Bulk small").getContent()).isEqualTo("bulkfilebody");
+    }
+
+    private List<String> titlesTagged(String tagName) {
+        // This repository method JOIN FETCHes the tags, so they are readable outside a transaction
+        return documentRepository.findByIdBetweenOrderByIdAsc(1L, Long.MAX_VALUE).stream()
+                .filter(document -> document.getTags().stream().anyMatch(tag -> tag.getName().equals(tagName)))
+                .map(Document::getTitle)
+                .toList();
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,265 @@
+package com.heidari.document_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heidari.document_service.dto.CreateDocumentRequest;
+import com.heidari.document_service.dto.ExportedDocument;
+import com.heidari.document_service.dto.ImportReport;
+import com.heidari.document_service.model.ContentStorage;
+import com.heidari.document_service.model.ImportCheckpoint;
+import com.heidari.document_service.repository.DocumentRepository;
+import com.heidari.document_service.repository.ImportCheckpointRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * End-to-end tests of corpus export and import over a real Tomcat.
+ * <p>
+ * Educational Note:
+ * The inline threshold is lowered to 1 KB so that one exported body is file-backed. With the test settings
+ * (batches of 3, two batches per transaction), an import commits every 6 documents, so a failure on the
+ * 9th line leaves exactly one committed transaction, and its checkpoint, behind. Batches also end at 4K
+ * body characters, i.e. after two bodies of 2.4 KB.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"document.storage.inline-threshold=1024", "document.ingest.max-batch-characters=4096"})
+class CorpusTransferIntegrationTest {
+
+    private static final LocalDateTime EXPORTED_AT = LocalDateTime.of(2020, 1, 1, 12, 0);
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private BulkIngestService bulkIngestService;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private ImportCheckpointRepository importCheckpointRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void export_ShouldStreamEveryDocumentWithTags_InIdOrder_Gzipped() throws IOException {
+        String large = "export body ".repeat(200); // 2.4 KB: stored in a file
+        long small = create("export-small", "short body", List.of("export", "small"));
+        long file = create("export-large", large, List.of("export"));
+        long untagged = create("export-untagged", "no tags", List.of());
+        assertThat(documentRepository.findById(file).orElseThrow().getContentStorage()).isEqualTo(ContentStorage.FILE);
+
+        // --- Act: full export, compressed ---
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        ResponseEntity<byte[]> response = restTemplate.exchange("/documents/export", HttpMethod.GET,
+                new HttpEntity<>(headers), byte[].class);
+
+        // --- Assert ---
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        List<ExportedDocument> exported = parse(gunzip(response.getBody()));
+        assertThat(exported).extracting(ExportedDocument::id).isSorted().contains(small, file, untagged);
+        ExportedDocument largeLine = exported.stream().filter(line -> line.id() == file).findFirst().orElseThrow();
+        assertThat(largeLine.content()).isEqualTo(large);
+        assertThat(largeLine.tags()).containsExactly("export");
+        assertThat(largeLine.createdAt()).isNotNull();
+        ExportedDocument smallLine = exported.stream().filter(line -> line.id() == small).findFirst().orElseThrow();
+        assertThat(smallLine.content()).isEqualTo("short body");
+        assertThat(smallLine.tags()).containsExactlyInAnyOrder("export", "small");
+
+        // Resumed after the first document, uncompressed
+        ResponseEntity<byte[]> rest = restTemplate.getForEntity("/documents/export?afterId=" + small, byte[].class);
+        assertThat(rest.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+        List<ExportedDocument> resumed = parse(rest.getBody());
+        assertThat(resumed).extracting(ExportedDocument::id).contains(file, untagged).doesNotContain(small);
+        assertThat(resumed.stream().filter(line -> line.id() == untagged).findFirst().orElseThrow().tags()).isEmpty();
+    }
+
+    @Test
+    void import_ShouldResumeFromCheckpoint_AfterAFailedAttempt() {
+        List<ExportedDocument> corpus = new ArrayList<>();
+        for (long id = 1; id <= 10; id++) {
+            corpus.add(new ExportedDocument(id * 10, "imported-" + id, "imported body " + id,
+                    List.of("imported", "batch-" + (id % 3)), EXPORTED_AT.plusDays(id)));
+        }
+
+        // --- Attempt 1: the 9th line goes back in id order, after one transaction (6 documents) committed ---
+        List<ExportedDocument> broken = new ArrayList<>(corpus.subList(0, 8));
+        broken.add(corpus.get(2));
+        ResponseEntity<String> failed = importGzipped(broken, "restart-test", String.class);
+
+        assertThat(failed.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        ImportCheckpoint checkpoint = importCheckpointRepository.findById("restart-test").orElseThrow();
+        assertThat(checkpoint.getLastSourceId()).isEqualTo(60);
+        assertThat(checkpoint.getDocuments()).isEqualTo(6);
+        assertThat(countImported()).isEqualTo(6);
+
+        // --- Attempt 2: the whole export again ---
+        ResponseEntity<ImportReport> resumed = importGzipped(corpus, "restart-test", ImportReport.class);
+
+        assertThat(resumed.getStatusCode()).isEqualTo(HttpStatus.OK);
+        ImportReport report = resumed.getBody();
+        assertThat(report.imported()).isEqualTo(4);
+        assertThat(report.skipped()).isEqualTo(6);
+        assertThat(report.lastSourceId()).isEqualTo(100);
+        assertThat(countImported()).isEqualTo(10);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(DISTINCT title) FROM document WHERE title LIKE 'imported-%'", Long.class)).isEqualTo(10);
+        assertThat(documentService.searchDocuments("imported", "tag", null, null).items()).isNotEmpty();
+        assertThat(importCheckpointRepository.findById("restart-test").orElseThrow().getDocuments()).isEqualTo(10);
+        // The exported creation times are kept, so the documents keep their place in the search order
+        assertThat(jdbcTemplate.queryForObject("SELECT created_at FROM document WHERE title = 'imported-7'",
+                LocalDateTime.class)).isEqualTo(EXPORTED_AT.plusDays(7));
+    }
+
+    @Test
+    void import_ShouldStoreLargeBodiesInFiles_AndEndBatchesAtTheCharacterLimit() {
+        String large = "imported file body ".repeat(130); // 2.5 KB: stored in a file
+        List<ExportedDocument> corpus = new ArrayList<>();
+        for (long id = 1; id <= 4; id++) {
+            corpus.add(new ExportedDocument(id, "large-" + id, large, List.of(), null));
+        }
+        // Out of id order: fails the third batch, after two batches of two (one transaction) committed
+        corpus.add(new ExportedDocument(2L, "large-5", large, List.of(), null));
+
+        ResponseEntity<String> response = importGzipped(corpus, "large-test", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(importCheckpointRepository.findById("large-test").orElseThrow().getDocuments()).isEqualTo(4);
+        assertThat(jdbcTemplate.queryForList(
+                "SELECT content_storage FROM document WHERE title LIKE 'large-%'", String.class))
+                .hasSize(4).containsOnly(ContentStorage.FILE.name());
+    }
+
+    @Test
+    void import_ShouldFail_WhenAnotherImportMovesTheCheckpointMeanwhile() {
+        List<ExportedDocument> corpus = new ArrayList<>();
+        for (long id = 1; id <= 4; id++) {
+            corpus.add(new ExportedDocument(id, "concurrent-" + id, "concurrent body " + id, List.of(), null));
+        }
+        byte[] ndjson = ndjson(corpus);
+
+        // --- Act: the first import has read the checkpoint; a second one runs to completion before it writes ---
+        InputStream first = new FilterInputStream(new ByteArrayInputStream(ndjson)) {
+            private boolean started;
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (!started) {
+                    started = true;
+                    CompletableFuture.runAsync(() -> importQuietly(ndjson)).join();
+                }
+                return super.read(buffer, offset, length);
+            }
+        };
+
+        // --- Assert: the stale import rolls back instead of writing the documents again ---
+        assertThatThrownBy(() -> bulkIngestService.importDocuments(first, "concurrent-test", true))
+                .isInstanceOf(ImportConflictException.class);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM document WHERE title LIKE 'concurrent-%'", Long.class)).isEqualTo(4);
+        ImportCheckpoint checkpoint = importCheckpointRepository.findById("concurrent-test").orElseThrow();
+        assertThat(checkpoint.getLastSourceId()).isEqualTo(4);
+        assertThat(checkpoint.getDocuments()).isEqualTo(4);
+    }
+
+    private void importQuietly(byte[] ndjson) {
+        try {
+            bulkIngestService.importDocuments(new ByteArrayInputStream(ndjson), "concurrent-test", true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long create(String title, String content, List<String> tags) {
+        CreateDocumentRequest request = new CreateDocumentRequest();
+        request.setTitle(title);
+        request.setContent(content);
+        request.setTags(tags);
+        return documentService.createDocument(request);
+    }
+
+    private <T> ResponseEntity<T> importGzipped(List<ExportedDocument> documents, String checkpoint, Class<T> type) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_NDJSON);
+        headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return restTemplate.postForEntity("/documents/import?checkpoint=" + checkpoint,
+                new HttpEntity<>(gzip(documents), headers), type);
+    }
+
+    private long countImported() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM document WHERE title LIKE 'imported-%'", Long.class);
+    }
+
+    private byte[] gzip(List<ExportedDocument> documents) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(ndjson(documents));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] ndjson(List<ExportedDocument> documents) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            for (ExportedDocument document : documents) {
+                bytes.write(objectMapper.writeValueAsBytes(document));
+                bytes.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] body) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private List<ExportedDocument> parse(byte[] ndjson) throws IOException {
+        List<ExportedDocument> documents = new ArrayList<>();
+        for (String line : new String(ndjson, StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isBlank()) {
+                documents.add(objectMapper.readValue(line, ExportedDocument.class));
+            }
+        }
+        return documents;
+    }
+}
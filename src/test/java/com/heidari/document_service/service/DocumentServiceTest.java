@@ -1,24 +1,49 @@
 package com.heidari.document_service.service;
 
+import com.heidari.document_service.changes.ChangeLog;
+import com.heidari.document_service.config.SearchProperties;
+import com.heidari.document_service.config.SqlStatementCounter;
+import com.heidari.document_service.config.StorageProperties;
 import com.heidari.document_service.dto.CreateDocumentRequest;
+import com.heidari.document_service.dto.SearchPage;
+import com.heidari.document_service.metrics.DocumentMetrics;
+import com.heidari.document_service.model.ContentStorage;
 import com.heidari.document_service.model.Document;
 import com.heidari.document_service.model.Tag;
 import com.heidari.document_service.repository.DocumentRepository;
 import com.heidari.document_service.repository.TagRepository;
+import com.heidari.document_service.search.DocumentIndex;
+import com.heidari.document_service.search.SearchCoalescer;
+import com.heidari.document_service.search.SearchCursor;
+import com.heidari.document_service.search.SearchMode;
+import com.heidari.document_service.search.SearchResultCache;
+import com.heidari.document_service.storage.ContentCompressor;
+import com.heidari.document_service.storage.ContentPlacement;
+import com.heidari.document_service.storage.ContentStore;
+import com.heidari.document_service.storage.StoredContent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.io.Reader;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -38,6 +63,41 @@ class DocumentServiceTest {
     @Mock
     private TagRepository tagRepository;
 
+    @Mock
+    private TagDictionary tagDictionary;
+
+    @Mock
+    private DocumentIndex documentIndex;
+
+    @Spy // A real properties object (defaults: index engine) that tests may reconfigure
+    private SearchProperties searchProperties = new SearchProperties();
+
+    @Spy
+    private SqlStatementCounter statementCounter = new SqlStatementCounter();
+
+    @Spy
+    private DocumentMetrics metrics = new DocumentMetrics(new SimpleMeterRegistry());
+
+    @Spy // A real (empty) cache, so repeated searches within a test can hit it
+    private SearchResultCache searchResultCache = new SearchResultCache(searchProperties, new SimpleMeterRegistry(),
+            new SearchCoalescer(searchProperties, metrics));
+
+    // A plain mock (not @Mock): the real ContentPlacement below needs it when the fields are initialized
+    private ContentStore contentStore = mock(ContentStore.class);
+
+    // Defaults: bodies up to 64K characters stay inline
+    private StorageProperties storageProperties = new StorageProperties();
+
+    @Spy
+    private ContentPlacement contentPlacement = new ContentPlacement(storageProperties,
+            new ContentCompressor(storageProperties, searchProperties), contentStore);
+
+    @Mock
+    private ChangeLog changeLog;
+
+    @Mock // Searches run in a TransactionTemplate; the mock lets it begin and commit nothing
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks // Creates an instance of DocumentService and injects the mocks above into it
     private DocumentService documentService;
 
@@ -65,11 +125,15 @@ class DocumentServiceTest {
         // Stubbing: When 'save' is called on the document repo, return the document with ID 1
         when(documentRepository.save(any(Document.class))).thenReturn(savedDoc);
 
-        // Stubbing: Simulate that the tag does not exist in the DB (Optional.empty)
-        when(tagRepository.findByName(anyString())).thenReturn(Optional.empty());
+        // Stubbing: The dictionary resolves the tag names to ids (creating them if needed)
+        when(tagDictionary.resolve(anyList())).thenReturn(Map.of("Java", 10L, "Spring", 11L));
 
-        // Stubbing: When saving a new tag, return the same tag object
-        when(tagRepository.save(any(Tag.class))).thenAnswer(i -> i.getArguments()[0]);
+        // Stubbing: References are built from ids alone
+        when(tagRepository.getReferenceById(anyLong())).thenAnswer(i -> {
+            Tag tag = new Tag();
+            tag.setId(i.getArgument(0));
+            return tag;
+        });
 
         // --- Act (Execute the method under test) ---
         Long resultId = documentService.createDocument(request);
@@ -79,6 +143,35 @@ class DocumentServiceTest {
 
         // Verification: Ensure that the repository's save method was called exactly once
         verify(documentRepository, times(1)).save(any(Document.class));
+
+        // Verification: Tags never go through the per-name lookup anymore
+        verify(tagRepository, never()).findByName(anyString());
+        verify(tagRepository, never()).save(any(Tag.class));
+    }
+
+    /**
+     * Test Case: A body above the inline threshold goes to the content store, not to the row.
+     */
+    @Test
+    void createDocument_ShouldStoreLargeContentInFile() throws Exception {
+        storageProperties.setInlineThreshold(5);
+        Document savedDoc = new Document();
+        savedDoc.setId(1L);
+        when(documentRepository.save(any(Document.class))).thenReturn(savedDoc);
+        when(tagDictionary.resolve(anyList())).thenReturn(Map.of());
+        when(contentStore.write(eq(1L), any(Reader.class))).thenReturn(new StoredContent(12, "cafe"));
+
+        documentService.createDocument(request);
+
+        ArgumentCaptor<Document> inserted = ArgumentCaptor.forClass(Document.class);
+        verify(documentRepository).save(inserted.capture());
+        assertNull(inserted.getValue().getContent(), "The body must not be stored in the row");
+        assertEquals(ContentStorage.FILE, savedDoc.getContentStorage());
+        assertEquals(12L, savedDoc.getContentLength());
+        assertEquals("cafe", savedDoc.getContentChecksum());
+        verify(contentStore).deleteOnRollback(1L);
+        // The index still receives the terms of the body
+        verify(documentIndex).indexAfterCommit(eq(1L), any(), eq("Test Title"), eq("Test Content"), anyList());
     }
 
     /**
@@ -86,20 +179,145 @@ class DocumentServiceTest {
      * Focus: Testing data flow and return values.
      */
     @Test
-    void searchDocuments_ShouldCallFindAll() {
+    void searchDocuments_ShouldSelectIdsThenLoadRows() {
         // --- Arrange ---
-        Document doc = new Document();
+        Document doc = document(5L, 0);
         doc.setTitle("Java");
 
-        // Stubbing: Return a list containing one document when findAll is called
-        when(documentRepository.findAll(any(Specification.class))).thenReturn(List.of(doc));
+        // Stubbing: Phase 1 (Specification) selects the id, phase 2 loads the row
+        when(documentRepository.findIds(any(), any(), eq(21))).thenReturn(List.of(5L));
+        when(documentRepository.findWithTagsByIdIn(List.of(5L))).thenReturn(List.of(doc));
 
         // --- Act ---
-        List<Document> result = documentService.searchDocuments("Java", "title");
+        SearchPage<Document> result = documentService.searchDocuments("Java", "title", null, null);
 
         // --- Assert ---
         assertNotNull(result);
-        assertEquals(1, result.size());
-        assertEquals("Java", result.get(0).getTitle());
+        assertEquals(1, result.items().size());
+        assertEquals("Java", result.items().get(0).getTitle());
+        assertNull(result.nextCursor(), "A single partial page has no next page");
+    }
+
+    /**
+     * Test Case: Once the index is ready, search is answered from the index
+     * and only the ids of the page are loaded from the repository.
+     */
+    @Test
+    void searchDocuments_ShouldUseIndex_WhenIndexIsReady() {
+        // --- Arrange ---
+        Document newer = document(2L, 20);
+        Document older = document(1L, 10);
+
+        when(documentIndex.isReady()).thenReturn(true);
+        // The page size defaults to 20, so the index is asked for 21 ids (one extra to detect a next page)
+        when(documentIndex.searchPage("Java", SearchMode.TITLE, null, null, 21)).thenReturn(new long[]{2L, 1L});
+        // The repository may return rows in any order; the service restores the index order
+        when(documentRepository.findWithTagsByIdIn(List.of(2L, 1L))).thenReturn(List.of(older, newer));
+
+        // --- Act ---
+        SearchPage<Document> result = documentService.searchDocuments("Java", "title", null, null);
+
+        // --- Assert ---
+        assertEquals(List.of(newer, older), result.items());
+        verify(documentRepository, never()).findIds(any(), any(), anyInt());
+    }
+
+    /**
+     * Test Case: When more rows exist than fit on the page, a cursor pointing
+     * after the last returned row is handed out.
+     */
+    @Test
+    void searchDocuments_ShouldReturnCursor_WhenMoreResultsExist() {
+        // --- Arrange ---
+        Document newer = document(2L, 20);
+        Document older = document(1L, 10);
+
+        when(documentIndex.isReady()).thenReturn(true);
+        when(documentIndex.searchPage("Java", SearchMode.ALL, null, null, 2)).thenReturn(new long[]{2L, 1L});
+        when(documentRepository.findWithTagsByIdIn(List.of(2L, 1L))).thenReturn(List.of(newer, older));
+
+        // --- Act ---
+        SearchPage<Document> result = documentService.searchDocuments("Java", "all", null, 1);
+
+        // --- Assert ---
+        assertEquals(List.of(newer), result.items());
+        assertEquals(SearchCursor.of(newer.getCreatedAt(), 2L), SearchCursor.decode(result.nextCursor()));
+    }
+
+    /**
+     * Test Case: A ranked search asks the index for exactly the top k ids, keeps their order,
+     * and hands out no cursor; a cursor is rejected.
+     */
+    @Test
+    void searchDocuments_ShouldReturnTopK_WhenRanked() {
+        // --- Arrange ---
+        Document best = document(1L, 10);
+        Document second = document(2L, 20);
+
+        when(documentIndex.isReady()).thenReturn(true);
+        when(documentIndex.searchRanked("Java", SearchMode.ALL, null, 2)).thenReturn(new long[]{1L, 2L});
+        when(documentRepository.findWithTagsByIdIn(List.of(1L, 2L))).thenReturn(List.of(second, best));
+
+        // --- Act ---
+        SearchPage<Document> result = documentService.searchDocuments("Java", "all", null, null, 2, true);
+
+        // --- Assert ---
+        assertEquals(List.of(best, second), result.items());
+        assertNull(result.nextCursor());
+        verify(documentIndex, never()).searchPage(anyString(), any(), any(), any(), anyInt());
+        assertThrows(IllegalArgumentException.class,
+                () -> documentService.searchDocuments("Java", "all", null, "cursor", 2, true));
+    }
+
+    /**
+     * Test Case: The Specification path can be forced by configuration.
+     */
+    @Test
+    void searchDocuments_ShouldUseSpecification_WhenConfigured() {
+        // --- Arrange ---
+        searchProperties.setEngine(SearchProperties.Engine.SPECIFICATION);
+        when(documentRepository.findIds(any(), any(), anyInt())).thenReturn(List.of());
+
+        // --- Act ---
+        documentService.searchDocuments("Java", "title", null, null);
+
+        // --- Assert ---
+        verify(documentIndex, never()).searchPage(anyString(), any(), any(), any(), anyInt());
+    }
+
+    /**
+     * Test Case: Repeating a search (with differently spaced/cased text) is answered from the cache,
+     * and a committed document invalidates it.
+     */
+    @Test
+    void searchDocuments_ShouldServeRepeatsFromCache_UntilADocumentIsCreated() {
+        // --- Arrange ---
+        Document doc = document(5L, 0);
+        when(documentIndex.isReady()).thenReturn(true);
+        when(documentIndex.searchPage("Java", SearchMode.ALL, null, null, 21)).thenReturn(new long[]{5L});
+        when(documentRepository.findWithTagsByIdIn(List.of(5L))).thenReturn(List.of(doc));
+
+        // --- Act: same normalized query twice ---
+        documentService.searchDocuments("Java", "all", null, null);
+        documentService.searchDocuments("java ", "ALL", null, null);
+
+        // --- Assert: the second call never reached the index or the database ---
+        verify(documentRepository, times(1)).findWithTagsByIdIn(anyList());
+
+        // --- Act: a write (no transaction in this test, so it invalidates immediately) ---
+        when(tagDictionary.resolve(anyList())).thenReturn(Map.of());
+        when(documentRepository.save(any(Document.class))).thenReturn(document(6L, 1));
+        documentService.createDocument(request);
+        documentService.searchDocuments("Java", "all", null, null);
+
+        // --- Assert ---
+        verify(documentRepository, times(2)).findWithTagsByIdIn(anyList());
+    }
+
+    private static Document document(Long id, int minute) {
+        Document document = new Document();
+        document.setId(id);
+        document.setCreatedAt(LocalDateTime.of(2026, 1, 1, 12, minute));
+        return document;
     }
-}
\ No newline at end of file
+}
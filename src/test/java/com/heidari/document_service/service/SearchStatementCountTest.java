@@ -0,0 +1,67 @@
+package com.heidari.document_service.service;
+
+import com.heidari.document_service.config.SqlStatementCounter;
+import com.heidari.document_service.dto.CreateDocumentRequest;
+import com.heidari.document_service.dto.SearchPage;
+import com.heidari.document_service.model.Document;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration Tests guarding against N+1 queries in search.
+ * <p>
+ * Educational Note:
+ * Each search is measured with the {@link SqlStatementCounter}. A two-phase search (ids, then rows
+ * with their tags) must cost the same number of statements for 2 results as for 20; a lazy
+ * collection loaded per result would make the count grow with the page.
+ */
+@SpringBootTest(properties = "document.search.engine=specification")
+class SearchStatementCountTest {
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private SqlStatementCounter statementCounter;
+
+    @Test
+    void searchDocuments_ShouldIssueConstantStatements_RegardlessOfResultSize() {
+        createDocuments("Counted", 2);
+        long smallPage = statementsFor("counted", 2);
+
+        createDocuments("Counted", 18);
+        long largePage = statementsFor("counted", 20);
+
+        assertThat(smallPage).isEqualTo(2); // phase 1 (ids) + phase 2 (rows with tags)
+        assertThat(largePage).isEqualTo(smallPage);
+    }
+
+    private long statementsFor(String query, int expectedResults) {
+        long before = statementCounter.currentThreadCount();
+        SearchPage<Document> page = documentService.searchDocuments(query, "all", null, 50);
+
+        // Reading the tags outside the transaction would fail if they had not been fetched
+        assertThat(page.items()).hasSize(expectedResults)
+                .allSatisfy(document -> {
+                    assertThat(Hibernate.isInitialized(document.getTags())).isTrue();
+                    assertThat(document.getTags()).hasSize(2);
+                });
+        return statementCounter.currentThreadCount() - before;
+    }
+
+    private void createDocuments(String title, int count) {
+        for (int i = 0; i < count; i++) {
+            CreateDocumentRequest request = new CreateDocumentRequest();
+            request.setTitle(title + " " + i);
+            request.setContent("Body");
+            request.setTags(List.of("count-a", "count-b"));
+            documentService.createDocument(request);
+        }
+    }
+}
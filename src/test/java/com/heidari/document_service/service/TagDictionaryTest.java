@@ -0,0 +1,126 @@
+package com.heidari.document_service.service;
+
+import com.heidari.document_service.model.Tag;
+import com.heidari.document_service.repository.TagRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit Tests for the tag dictionary cache.
+ * The repository is mocked, so every interaction we verify is a would-be database round trip.
+ */
+@ExtendWith(MockitoExtension.class)
+class TagDictionaryTest {
+
+    @Mock
+    private TagRepository tagRepository;
+
+    @Mock // TransactionTemplate only needs getTransaction/commit, which a mock provides
+    private PlatformTransactionManager transactionManager;
+
+    private TagDictionary tagDictionary;
+
+    @BeforeEach
+    void setUp() {
+        tagDictionary = new TagDictionary(tagRepository, transactionManager);
+    }
+
+    @Test
+    void resolve_ShouldNotTouchTheDatabase_ForWarmedTags() {
+        // --- Arrange ---
+        when(tagRepository.findAll()).thenReturn(List.of(tag(1L, "Java"), tag(2L, "Spring")));
+        tagDictionary.afterSingletonsInstantiated();
+
+        // --- Act ---
+        Map<String, Long> ids = tagDictionary.resolve(List.of("Spring", "Java", "Spring"));
+
+        // --- Assert ---
+        assertThat(ids).containsExactly(Map.entry("Spring", 2L), Map.entry("Java", 1L));
+        verify(tagRepository, never()).insertMissing(anyCollection());
+        verify(tagRepository, never()).findByNameIn(anyCollection());
+    }
+
+    @Test
+    void resolve_ShouldUpsertOnce_WhenManyThreadsAskForTheSameNewTag() throws Exception {
+        // --- Arrange: a slow upsert widens the race window ---
+        when(tagRepository.insertMissing(anyCollection())).thenAnswer(i -> {
+            Thread.sleep(50);
+            return 1;
+        });
+        when(tagRepository.findByNameIn(anyCollection())).thenAnswer(i -> {
+            Collection<String> names = i.getArgument(0);
+            return names.stream().map(name -> tag(42L, name)).toList();
+        });
+
+        // --- Act ---
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Callable<Map<String, Long>>> calls = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            calls.add(() -> tagDictionary.resolve(List.of("Concurrency")));
+        }
+        List<Future<Map<String, Long>>> results = pool.invokeAll(calls);
+        pool.shutdown();
+
+        // --- Assert ---
+        for (Future<Map<String, Long>> result : results) {
+            assertThat(result.get()).containsEntry("Concurrency", 42L);
+        }
+        verify(tagRepository, times(1)).insertMissing(List.of("Concurrency"));
+        assertThat(tagDictionary.size()).isEqualTo(1);
+    }
+
+    @Test
+    void resolve_ShouldUpsertInTheCallersTransaction_AndCacheOnlyAfterCommit() {
+        // --- Arrange: an active transaction, as inside createDocument ---
+        when(tagRepository.findByNameIn(anyCollection())).thenAnswer(i -> {
+            Collection<String> names = i.getArgument(0);
+            return names.stream().map(name -> tag(7L, name)).toList();
+        });
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            // --- Act: two batches of one transaction ---
+            Map<String, Long> first = tagDictionary.resolve(List.of("Zeta", "Alpha"));
+            Map<String, Long> second = tagDictionary.resolve(List.of("Alpha"));
+
+            // --- Assert: no second transaction (and connection), nothing cached before the commit ---
+            assertThat(first).containsExactly(Map.entry("Zeta", 7L), Map.entry("Alpha", 7L));
+            assertThat(second).containsExactly(Map.entry("Alpha", 7L));
+            verify(transactionManager, never()).getTransaction(any());
+            verify(tagRepository, times(1)).insertMissing(List.of("Alpha", "Zeta"));
+            assertThat(tagDictionary.size()).isZero();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertThat(tagDictionary.size()).isEqualTo(2);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static Tag tag(Long id, String name) {
+        Tag tag = new Tag(name);
+        tag.setId(id);
+        return tag;
+    }
+}
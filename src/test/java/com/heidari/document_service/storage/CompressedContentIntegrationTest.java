@@ -0,0 +1,76 @@
+package com.heidari.document_service.storage;
+
+import com.heidari.document_service.config.ContentStorageMigration;
+import com.heidari.document_service.dto.CreateDocumentRequest;
+import com.heidari.document_service.dto.SearchPage;
+import com.heidari.document_service.model.ContentStorage;
+import com.heidari.document_service.model.Document;
+import com.heidari.document_service.service.DocumentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration Tests for compressed content against the H2 test database.
+ */
+@SpringBootTest
+class CompressedContentIntegrationTest {
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private ContentStorageMigration contentStorageMigration;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void createDocument_ShouldStoreCompressedBody_AndServeItDecoded() {
+        String body = "quasarnaut drifts through compressible text. ".repeat(200); // ~9 KB -> LZ4
+        CreateDocumentRequest request = new CreateDocumentRequest();
+        request.setTitle("Compressed");
+        request.setContent(body);
+
+        Long id = documentService.createDocument(request);
+
+        // The row holds only the encoded bytes
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT content, content_storage, content_codec, content_length FROM document WHERE id = ?", id);
+        assertThat(row.get("content")).isNull();
+        assertThat(row.get("content_storage")).isEqualTo(ContentStorage.COMPRESSED.name());
+        assertThat(row.get("content_codec")).isEqualTo(ContentCodec.LZ4.name());
+        assertThat(((Number) row.get("content_length")).longValue()).isEqualTo(body.length());
+
+        // Every read path sees the original text
+        assertThat(documentService.findDocument(id).orElseThrow().getContent()).isEqualTo(body);
+        assertThat(new String(documentService.findContent(id).orElseThrow().inline(), StandardCharsets.UTF_8))
+                .isEqualTo(body);
+        SearchPage<Document> page = documentService.searchDocuments("quasarnaut", "content", null, null);
+        assertThat(page.items()).extracting(Document::getId).contains(id);
+        assertThat(documentService.searchSummaries("quasarnaut", "content", null, 100, true).items())
+                .filteredOn(summary -> summary.id().equals(id)).singleElement()
+                .satisfies(summary -> assertThat(summary.snippet()).startsWith("<em>quasarnaut</em> drifts"));
+    }
+
+    @Test
+    void migration_ShouldCompressExistingInlineBodies() {
+        String body = "legacy compressible ".repeat(2_000); // 40 KB -> Deflate
+        Long id = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR document_seq", Long.class);
+        jdbcTemplate.update("INSERT INTO document (id, title, content, created_at) VALUES (?, ?, ?, CURRENT_TIMESTAMP)",
+                id, "Legacy", body);
+
+        contentStorageMigration.migrate();
+
+        List<String> codec = jdbcTemplate.queryForList("SELECT content_codec FROM document WHERE id = ?", String.class, id);
+        assertThat(codec).containsExactly(ContentCodec.DEFLATE.name());
+        assertThat(documentService.findDocument(id).orElseThrow().getContent()).isEqualTo(body);
+    }
+}
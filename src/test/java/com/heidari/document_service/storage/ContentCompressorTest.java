@@ -0,0 +1,110 @@
+package com.heidari.document_service.storage;
+
+import com.heidari.document_service.config.SearchProperties;
+import com.heidari.document_service.config.StorageProperties;
+import com.heidari.document_service.model.ContentStorage;
+import com.heidari.document_service.model.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Tests for the content codecs and the per-document compression policy.
+ */
+class ContentCompressorTest {
+
+    private final ContentCompressor contentCompressor = new ContentCompressor(new StorageProperties(), new SearchProperties());
+
+    @AfterEach
+    void tearDown() {
+        ContentCodec.setListener((codec, encode, rawBytes, encodedBytes, nanos) -> {});
+    }
+
+    /**
+     * Test Case: Every codec restores the original bytes, multi-byte characters included.
+     */
+    @Test
+    void codecs_ShouldRoundTrip() {
+        byte[] raw = "Grüße, سلام, 你好 — compressible text. ".repeat(500).getBytes(StandardCharsets.UTF_8);
+
+        for (ContentCodec codec : ContentCodec.values()) {
+            byte[] encoded = codec.compress(raw);
+            assertTrue(encoded.length < raw.length, codec + " should shrink repetitive text");
+            assertArrayEquals(raw, codec.decompress(encoded, raw.length), codec + " should round-trip");
+        }
+    }
+
+    /**
+     * Test Case: Truncated input is reported instead of returning garbage.
+     */
+    @Test
+    void codecs_ShouldRejectCorruptInput() {
+        byte[] raw = "abcdefgh".repeat(1000).getBytes(StandardCharsets.UTF_8);
+
+        for (ContentCodec codec : ContentCodec.values()) {
+            byte[] truncated = Arrays.copyOf(codec.compress(raw), 10);
+            assertThrows(RuntimeException.class, () -> codec.decompress(truncated, raw.length), codec.name());
+        }
+    }
+
+    /**
+     * Test Case: The codec is chosen by size; short or incompressible bodies stay plain text.
+     */
+    @Test
+    void compress_ShouldChooseCodecBySize() {
+        assertEquals(Optional.empty(), contentCompressor.compress("short ".repeat(100)));
+        assertEquals(ContentCodec.LZ4, contentCompressor.compress("medium ".repeat(1_000)).orElseThrow().codec());
+        assertEquals(ContentCodec.DEFLATE, contentCompressor.compress("large ".repeat(10_000)).orElseThrow().codec());
+
+        byte[] noise = new byte[6_000];
+        new Random(1).nextBytes(noise);
+        String incompressible = new String(Base64.getEncoder().encode(noise), StandardCharsets.US_ASCII);
+        assertEquals(Optional.empty(), contentCompressor.compress(incompressible));
+    }
+
+    /**
+     * Test Case: A compressed body is decoded on first read only, and never if it is not read.
+     */
+    @Test
+    void document_ShouldDecodeLazilyAndOnce() {
+        AtomicInteger decodes = new AtomicInteger();
+        ContentCodec.setListener((codec, encode, rawBytes, encodedBytes, nanos) -> {
+            if (!encode) {
+                decodes.incrementAndGet();
+            }
+        });
+        String body = "lazy ".repeat(1_000);
+        Document document = new Document();
+
+        contentCompressor.setContent(document, body);
+
+        assertEquals(ContentStorage.COMPRESSED, document.getContentStorage());
+        assertEquals(0, decodes.get(), "Nothing is decoded before the body is read");
+        assertEquals(body, document.getContent());
+        assertEquals(body, document.getContent());
+        assertEquals(1, decodes.get(), "The decoded body is kept");
+    }
+
+    /**
+     * Test Case: Without the search indexes, LIKE would have to decode every compressed body: bodies stay text.
+     */
+    @Test
+    void compress_ShouldKeepText_WhenContentSearchesDoNotUseTheIndexes() {
+        SearchProperties specification = new SearchProperties();
+        specification.setEngine(SearchProperties.Engine.SPECIFICATION);
+        SearchProperties noTrigrams = new SearchProperties();
+        noTrigrams.getTrigram().setEnabled(false);
+
+        String body = "medium ".repeat(1_000);
+        assertEquals(Optional.empty(), new ContentCompressor(new StorageProperties(), specification).compress(body));
+        assertEquals(Optional.empty(), new ContentCompressor(new StorageProperties(), noTrigrams).compress(body));
+    }
+}
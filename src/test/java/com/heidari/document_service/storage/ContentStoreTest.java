@@ -0,0 +1,109 @@
+package com.heidari.document_service.storage;
+
+import com.heidari.document_service.config.StorageProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Tests for the file-backed content store, on a temporary directory.
+ */
+class ContentStoreTest {
+
+    @TempDir
+    private Path root;
+
+    private ContentStore contentStore;
+
+    @BeforeEach
+    void setUp() {
+        StorageProperties properties = new StorageProperties();
+        properties.setRoot(root);
+        contentStore = new ContentStore(properties);
+    }
+
+    /**
+     * Test Case: A written body is read back unchanged, with its UTF-8 length and SHA-256.
+     */
+    @Test
+    void write_ShouldStoreBodyWithLengthAndChecksum() throws Exception {
+        String body = "Grüße aus Teheran ".repeat(10_000);
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        StoredContent stored = contentStore.write(7L, new StringReader(body));
+
+        assertEquals(bytes.length, stored.length());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes)), stored.checksum());
+        assertArrayEquals(bytes, Files.readAllBytes(contentStore.path(7L)));
+    }
+
+    /**
+     * Test Case: A byte range is copied to the target channel exactly.
+     */
+    @Test
+    void transferTo_ShouldCopyRequestedRange() throws Exception {
+        contentStore.write(8L, stream("0123456789"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long sent = contentStore.transferTo(8L, 3, 4, Channels.newChannel(out));
+
+        assertEquals(4, sent);
+        assertEquals("3456", out.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test Case: The memory-mapped reader tokenizes the file like the String tokenizer.
+     */
+    @Test
+    void countTerms_ShouldTokenizeFile() throws Exception {
+        contentStore.write(9L, new StringReader("Java, java and SPRING."));
+
+        Map<String, Integer> terms = contentStore.countTerms(9L);
+
+        assertEquals(Map.of("java", 2, "and", 1, "spring", 1), terms);
+    }
+
+    /**
+     * Test Case: A failing upload leaves neither the target file nor a temporary file behind.
+     */
+    @Test
+    void write_ShouldLeaveNothingBehind_WhenInputFails() throws Exception {
+        InputStream broken = new InputStream() {
+            private int left = 100_000;
+
+            @Override
+            public int read() throws IOException {
+                if (left-- <= 0) {
+                    throw new IOException("connection reset");
+                }
+                return 'x';
+            }
+        };
+
+        assertThrows(IOException.class, () -> contentStore.write(10L, broken));
+
+        assertFalse(contentStore.exists(10L));
+        try (var files = Files.list(contentStore.path(10L).getParent())) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
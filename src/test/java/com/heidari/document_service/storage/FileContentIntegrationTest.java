@@ -0,0 +1,116 @@
+package com.heidari.document_service.storage;
+
+import com.heidari.document_service.config.ContentStorageMigration;
+import com.heidari.document_service.dto.SearchPage;
+import com.heidari.document_service.model.ContentStorage;
+import com.heidari.document_service.model.Document;
+import com.heidari.document_service.repository.DocumentRepository;
+import com.heidari.document_service.service.DocumentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * End-to-end tests of file-backed content over a real Tomcat (so downloads go through sendfile).
+ * <p>
+ * Educational Note:
+ * The inline threshold is lowered to 1 KB so that small test bodies already take the file path.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "document.storage.inline-threshold=1024")
+class FileContentIntegrationTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private ContentStorageMigration contentStorageMigration;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void streamedUpload_ShouldBeStoredInFile_AndDownloadedWithRanges() {
+        String body = "zebracorn ".repeat(20_000); // 200 KB
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.TEXT_PLAIN);
+
+        // --- Act: upload as a raw stream ---
+        Long id = restTemplate.postForObject("/documents/stream?title=Streamed&tags=big",
+                new HttpEntity<>(body.getBytes(StandardCharsets.UTF_8), headers), Long.class);
+
+        // --- Assert: the row keeps only metadata ---
+        Document stored = documentRepository.findById(id).orElseThrow();
+        assertThat(stored.getContent()).isNull();
+        assertThat(stored.getContentStorage()).isEqualTo(ContentStorage.FILE);
+        assertThat(stored.getContentLength()).isEqualTo(body.length());
+
+        // Full download
+        ResponseEntity<String> full = download(id, null);
+        assertThat(full.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(full.getBody()).isEqualTo(body);
+        assertThat(full.getHeaders().getETag()).isEqualTo("\"" + stored.getContentChecksum() + "\"");
+
+        // Range download
+        ResponseEntity<String> range = download(id, "bytes=100000-100009");
+        assertThat(range.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(range.getBody()).isEqualTo("zebracorn ");
+
+        // The index tokenized the file
+        SearchPage<Document> page = documentService.searchDocuments("zebracorn", "content", null, null);
+        assertThat(page.items()).extracting(Document::getId).contains(id);
+
+        // Substring and fuzzy matches are verified against the file
+        assertThat(documentService.searchSubstring("bracor", "content", 0, null, null).items())
+                .extracting(Document::getId).contains(id);
+        assertThat(documentService.searchSubstring("zebrakorn", "content", 1, null, null).items())
+                .extracting(Document::getId).contains(id);
+        assertThat(documentService.searchSubstring("unicornz", "content", 0, null, null).items())
+                .extracting(Document::getId).doesNotContain(id);
+    }
+
+    @Test
+    void migration_ShouldMoveOversizedInlineBodiesToFiles() {
+        String body = "legacy ".repeat(1_000); // 7 KB, written inline as before file storage existed
+        Long id = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR document_seq", Long.class);
+        jdbcTemplate.update("INSERT INTO document (id, title, content, created_at) VALUES (?, ?, ?, CURRENT_TIMESTAMP)",
+                id, "Legacy", body);
+
+        int migrated = contentStorageMigration.migrate();
+
+        assertThat(migrated).isGreaterThanOrEqualTo(1);
+        List<String> content = jdbcTemplate.queryForList("SELECT content FROM document WHERE id = ?", String.class, id);
+        assertThat(content).containsExactly((String) null);
+        assertThat(download(id, null).getBody()).isEqualTo(body);
+        // Already migrated rows are skipped
+        assertThat(contentStorageMigration.migrate()).isZero();
+    }
+
+    private ResponseEntity<String> download(Long id, String range) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(MediaType.TEXT_PLAIN));
+        if (range != null) {
+            headers.set(HttpHeaders.RANGE, range);
+        }
+        return restTemplate.exchange("/documents/" + id, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+}
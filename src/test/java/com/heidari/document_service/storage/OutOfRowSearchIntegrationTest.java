@@ -0,0 +1,95 @@
+package com.heidari.document_service.storage;
+
+import com.heidari.document_service.dto.DocumentSummary;
+import com.heidari.document_service.dto.TagFacets;
+import com.heidari.document_service.model.ContentStorage;
+import com.heidari.document_service.model.Document;
+import com.heidari.document_service.repository.DocumentRepository;
+import com.heidari.document_service.service.DocumentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Content searches on the Specification path must see file-backed and compressed bodies, which LIKE cannot.
+ * <p>
+ * Educational Note:
+ * The inline threshold is lowered to 1 KB, so that small test bodies are already file-backed. With the
+ * Specification engine nothing is compressed any more (see ContentCompressor), so the compressed rows are
+ * written directly, as the index engine would have written them before the engine was switched.
+ */
+@SpringBootTest(properties = {
+        "document.search.engine=specification",
+        "document.storage.inline-threshold=1024"})
+class OutOfRowSearchIntegrationTest {
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Test
+    void contentSearches_ShouldVerifyFileBackedBodies_AndCutSnippetsFromTheFile() throws IOException {
+        String hit = "filler ".repeat(500) + "the narwhalquill sentence " + "filler ".repeat(500);
+        String miss = "filler ".repeat(1_000);
+        Long hitId = documentService.createDocument("Hit", List.of("filehit"),
+                new ByteArrayInputStream(hit.getBytes(StandardCharsets.UTF_8)));
+        Long missId = documentService.createDocument("Miss", List.of("filemiss"),
+                new ByteArrayInputStream(miss.getBytes(StandardCharsets.UTF_8)));
+
+        // Search: the matching file is found, the other candidate is rejected
+        assertThat(documentService.searchDocuments("narwhalquill", "content", null, 100).items())
+                .extracting(Document::getId).contains(hitId).doesNotContain(missId);
+
+        // Summaries: the snippet is cut from the file
+        List<DocumentSummary> summaries = documentService.searchSummaries("narwhalquill", "all", null, 100, true)
+                .items();
+        assertThat(summaries).filteredOn(summary -> summary.id().equals(hitId)).singleElement()
+                .satisfies(summary -> assertThat(summary.snippet()).contains("<em>narwhalquill</em>"));
+        assertThat(summaries).extracting(DocumentSummary::id).doesNotContain(missId);
+
+        // Facets: counted along with the inline matches
+        TagFacets facets = documentService.findTagFacets("narwhalquill", "content", null, 10);
+        assertThat(facets.tags()).extracting(TagFacets.Facet::name).contains("filehit").doesNotContain("filemiss");
+
+        // Stream
+        List<Long> streamed = new ArrayList<>();
+        documentService.streamDocuments("narwhalquill", "content", document -> streamed.add(document.getId()));
+        assertThat(streamed).contains(hitId).doesNotContain(missId);
+    }
+
+    @Test
+    void contentSearches_ShouldDecodeCompressedBodies() {
+        Long hitId = saveCompressed("Packed hit", "padding ".repeat(60) + "the krakenlute sentence "
+                + "padding ".repeat(40));
+        Long missId = saveCompressed("Packed miss", "padding ".repeat(100));
+        assertThat(documentRepository.findById(hitId).orElseThrow().getContentStorage())
+                .isEqualTo(ContentStorage.COMPRESSED);
+
+        assertThat(documentService.searchDocuments("krakenlute", "content", null, 100).items())
+                .extracting(Document::getId).contains(hitId).doesNotContain(missId);
+        assertThat(documentService.searchSummaries("krakenlute", "content", null, 100, true).items())
+                .filteredOn(summary -> summary.id().equals(hitId)).singleElement()
+                .satisfies(summary -> assertThat(summary.snippet()).contains("<em>krakenlute</em>"));
+    }
+
+    private Long saveCompressed(String title, String content) {
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        Document document = new Document();
+        document.setTitle(title);
+        document.setContentStorage(ContentStorage.COMPRESSED);
+        document.setContentCodec(ContentCodec.LZ4);
+        document.setCompressedContent(ContentCodec.LZ4.compress(raw));
+        document.setContentLength((long) raw.length);
+        return documentRepository.save(document).getId();
+    }
+}